@@ -0,0 +1,87 @@
+package com.example.schoolapp;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Navigation latency: time spent on the main thread per hop, city list -> classes -> timetable -> grades
+ * and back again. Back hops and repeated forward hops reuse retained views, so they must fit in a frame.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NavigationBenchmarkTest {
+    private static final String CITY = "Warszawa";
+    private static final String CLASS = "Klasa 1";
+    private static final String SUBJECT = "Matematyka";
+    private static final int ROUNDS = 50;
+    private static final long FRAME_NS = 16_000_000L;
+    private static final long TIMEOUT_MS = 10000;
+
+    @Test
+    public void hopsFitInAFrame() throws InterruptedException {
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            awaitClasses(scenario);
+
+            long[] forward = new long[ROUNDS];
+            long[] back = new long[ROUNDS];
+            for (int round = 0; round < ROUNDS; round++) {
+                int i = round;
+                scenario.onActivity(activity -> {
+                    long start = System.nanoTime();
+                    activity.showTimetable(CITY, CLASS);
+                    activity.showStudentList(CITY, CLASS, SUBJECT);
+                    forward[i] = (System.nanoTime() - start) / 2;
+
+                    start = System.nanoTime();
+                    activity.navigateBack();
+                    activity.navigateBack();
+                    back[i] = (System.nanoTime() - start) / 2;
+                });
+            }
+
+            long firstForward = forward[0];
+            long forwardMedian = median(Arrays.copyOfRange(forward, 1, ROUNDS));
+            long backMedian = median(back);
+            Log.i("NavigationBenchmark", "First forward hop " + firstForward / 1000 + " us, warm forward median "
+                    + forwardMedian / 1000 + " us, back median " + backMedian / 1000 + " us");
+            assertTrue("Warm forward hop " + forwardMedian + " ns exceeds a frame", forwardMedian < FRAME_NS);
+            assertTrue("Back hop " + backMedian + " ns exceeds a frame", backMedian < FRAME_NS);
+        }
+    }
+
+    private static void awaitClasses(ActivityScenario<MainActivity> scenario) throws InterruptedException {
+        AtomicInteger classes = new AtomicInteger();
+        long start = SystemClock.uptimeMillis();
+        do {
+            scenario.onActivity(activity -> {
+                if (activity.findViewById(R.id.cityRecyclerView) == null) {
+                    return;
+                }
+                activity.showClassList(CITY);
+                RecyclerView list = activity.findViewById(R.id.classRecyclerView);
+                classes.set(list == null || list.getAdapter() == null ? 0 : list.getAdapter().getItemCount());
+            });
+            if (classes.get() == 0) {
+                Thread.sleep(5);
+            }
+        } while (classes.get() == 0 && SystemClock.uptimeMillis() - start < TIMEOUT_MS);
+        assertTrue("Classes of " + CITY + " never loaded", classes.get() > 0);
+    }
+
+    private static long median(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.schoolapp;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Drawing and writing a grade report PDF of 30, 300 and 3000 rows, i.e. one class, a year group and a
+ * school. Bytes are discarded so storage speed stays out of the numbers.
+ */
+@RunWith(Parameterized.class)
+public class ReportRenderBenchmark {
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    @Parameterized.Parameters(name = "rows={0}")
+    public static List<Object[]> rows() {
+        return Arrays.asList(new Object[][] {{30}, {300}, {3000}});
+    }
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final int rows;
+    private Report report;
+
+    public ReportRenderBenchmark(int rows) {
+        this.rows = rows;
+    }
+
+    @Before
+    public void setUp() {
+        GradebookStore store = new GradebookStore();
+        new RosterGenerator(new RosterGenerator.Spec(1, 1, rows, RosterGenerator.SUBJECTS.size(), 4, 0.9, 42), store)
+                .generate();
+        String city = RosterGenerator.cityName(0);
+        report = Report.grades(store, city, store.findClass(city, RosterGenerator.classLabel(0)), 0);
+    }
+
+    @Test
+    public void render() throws IOException {
+        ReportRenderer renderer = new ReportRenderer();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            renderer.render(report, DISCARD, (rowsDone, rowCount) -> { }, cancelled);
+        }
+    }
+}
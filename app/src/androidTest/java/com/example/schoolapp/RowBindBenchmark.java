@@ -0,0 +1,66 @@
+package com.example.schoolapp;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * onBindViewHolder for the grade and attendance rows of a 30-student class, one holder rebound to every row
+ * in turn as it is while scrolling.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RowBindBenchmark {
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private RecyclerView parent;
+    private GradebookStore store;
+    private ClassBook book;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.setTheme(R.style.Theme_SchoolApp);
+        parent = new RecyclerView(context);
+        store = new GradebookStore();
+        new RosterGenerator(RosterGenerator.Spec.standard(42), store).generate();
+        book = store.book(store.findClass(RosterGenerator.cityName(0), RosterGenerator.classLabel(0)));
+    }
+
+    @Test
+    public void bindStudentRow() {
+        MainActivity.StudentAdapter adapter = new MainActivity.StudentAdapter((slot, grade) -> { });
+        adapter.submitList(Rows.students(store, book, 0));
+        MainActivity.StudentAdapter.StudentViewHolder holder = adapter.onCreateViewHolder(parent, 0);
+        int rows = adapter.getItemCount();
+        int position = 0;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            adapter.onBindViewHolder(holder, position);
+            position = (position + 1) % rows;
+        }
+    }
+
+    @Test
+    public void bindAttendanceRow() {
+        MainActivity.AttendanceAdapter adapter = new MainActivity.AttendanceAdapter(slot -> { });
+        adapter.submitList(Rows.attendance(store, book, 0));
+        MainActivity.AttendanceAdapter.AttendanceViewHolder holder = adapter.onCreateViewHolder(parent, 0);
+        int rows = adapter.getItemCount();
+        int position = 0;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            adapter.onBindViewHolder(holder, position);
+            position = (position + 1) % rows;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.schoolapp;
+
+import android.os.Debug;
+import android.util.Log;
+import android.view.Choreographer;
+
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Scrolls a 10,000-row grade list one step per frame and reports main-thread allocations per frame
+ * and dropped frames (frames that took longer than one and a half refresh intervals).
+ */
+@RunWith(AndroidJUnit4.class)
+public class ScrollBenchmarkTest {
+    private static final int STUDENTS = 10_000;
+    private static final int FRAMES = 600;
+    private static final int SCROLL_PX = 60;
+    private static final long FRAME_NS = 16_666_667L;
+    private static final double MAX_DROPPED_RATIO = 0.05;
+
+    @Test
+    public void scrollsTenThousandRows() throws InterruptedException {
+        GradebookStore store = new GradebookStore();
+        int classId = store.addClass(store.addCity("Warszawa"), "Klasa 1", Arrays.asList("Matematyka", "Fizyka"));
+        for (int i = 0; i < STUDENTS; i++) {
+            int slot = store.addStudent(classId, "Uczeń " + i);
+            for (int g = 0; g < 4; g++) {
+                store.book(classId).addGrade(slot, 0, 1 + (i + g) % 5);
+            }
+        }
+        List<Rows.Student> rows = Rows.students(store, store.book(classId), 0);
+
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            CountDownLatch done = new CountDownLatch(1);
+            long[] frameNanos = new long[FRAMES];
+            int[] allocations = new int[FRAMES];
+            scenario.onActivity(activity -> {
+                RecyclerView list = new RecyclerView(activity);
+                list.setLayoutManager(new LinearLayoutManager(activity));
+                MainActivity.StudentAdapter adapter = new MainActivity.StudentAdapter((slot, grade) -> { });
+                adapter.submitList(rows);
+                list.setAdapter(adapter);
+                activity.setContentView(list);
+
+                Debug.startAllocCounting();
+                Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                    private int frame = -1;
+                    private long last;
+                    private int lastAllocations;
+
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        int allocated = Debug.getThreadAllocCount();
+                        if (frame >= 0) {
+                            frameNanos[frame] = frameTimeNanos - last;
+                            allocations[frame] = allocated - lastAllocations;
+                        }
+                        last = frameTimeNanos;
+                        lastAllocations = allocated;
+                        if (++frame == FRAMES) {
+                            Debug.stopAllocCounting();
+                            done.countDown();
+                            return;
+                        }
+                        list.scrollBy(0, SCROLL_PX);
+                        Choreographer.getInstance().postFrameCallback(this);
+                    }
+                });
+            });
+            assertTrue("Scroll did not finish", done.await(60, TimeUnit.SECONDS));
+
+            int dropped = 0;
+            long totalAllocations = 0;
+            for (int i = 0; i < FRAMES; i++) {
+                if (frameNanos[i] > FRAME_NS * 3 / 2) {
+                    dropped++;
+                }
+                totalAllocations += allocations[i];
+            }
+            Log.i("ScrollBenchmark", "Allocations per frame " + (double) totalAllocations / FRAMES
+                    + ", dropped frames " + dropped + "/" + FRAMES);
+            assertTrue("Dropped " + dropped + " of " + FRAMES + " frames", dropped <= FRAMES * MAX_DROPPED_RATIO);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.schoolapp;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Cold-start check: the city list must be on screen within the target, while the
+ * rest of the roster keeps loading in the background.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmarkTest {
+    private static final long FIRST_FRAME_TARGET_MS = 500;
+    private static final long TIMEOUT_MS = 5000;
+
+    @Test
+    public void cityListIsShownWithinTarget() throws InterruptedException {
+        long start = SystemClock.uptimeMillis();
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            AtomicInteger cities = new AtomicInteger();
+            long elapsed;
+            do {
+                scenario.onActivity(activity -> {
+                    RecyclerView list = activity.findViewById(R.id.cityRecyclerView);
+                    cities.set(list.getAdapter() == null ? 0 : list.getAdapter().getItemCount());
+                });
+                elapsed = SystemClock.uptimeMillis() - start;
+                if (cities.get() == 0) {
+                    Thread.sleep(5);
+                }
+            } while (cities.get() == 0 && elapsed < TIMEOUT_MS);
+
+            Log.i("StartupBenchmark", "Time to city list: " + elapsed + " ms");
+            assertTrue("City list never appeared", cities.get() > 0);
+            assertTrue("Time to city list " + elapsed + " ms exceeds " + FIRST_FRAME_TARGET_MS + " ms",
+                    elapsed <= FIRST_FRAME_TARGET_MS);
+        }
+    }
+}
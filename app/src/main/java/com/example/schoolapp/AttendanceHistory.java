@@ -0,0 +1,159 @@
+package com.example.schoolapp;
+
+import java.util.Arrays;
+
+/**
+ * Attendance per school day for one class, as two bit matrices: a row per (student, subject) cell with a
+ * bit per day the student was present, and a row per subject with a bit per day the lesson was held and
+ * marked. A student not marked present on a lesson day counts as absent. Rows are {@link #WORDS} longs,
+ * so a school year takes 32 bytes per cell, and counting days in a range is the difference of two ranks,
+ * each a few popcounts. Rows are allocated on the first mark, so classes without history cost nothing.
+ * <p>
+ * Day numbers restart every school year, so the history holds one year, the one its marks were made in:
+ * the first mark of a later year starts it over.
+ */
+final class AttendanceHistory {
+    static final int MAX_DAYS = 256;
+    static final int WORDS = MAX_DAYS / 64;
+
+    private int subjects;
+    // The school year by the calendar year it starts in, or 0 before the first mark.
+    private int year;
+    private long[] lessons = new long[0];
+    private long[] present = new long[0];
+
+    AttendanceHistory(int subjects) {
+        this.subjects = subjects;
+    }
+
+    boolean isEmpty() {
+        return lessons.length == 0;
+    }
+
+    int year() {
+        return year;
+    }
+
+    /**
+     * Marks the lesson on {@code day} of the school year starting in {@code year}. Returns false, marking
+     * nothing, for a year older than the history's.
+     */
+    boolean mark(int slot, int subject, int year, int day, boolean isPresent) {
+        if (day < 0 || day >= MAX_DAYS) {
+            throw new IndexOutOfBoundsException("No school day " + day);
+        }
+        if (year != this.year) {
+            if (year < this.year) {
+                return false;
+            }
+            lessons = new long[0];
+            present = new long[0];
+            this.year = year;
+        }
+        if (lessons.length == 0) {
+            lessons = new long[subjects * WORDS];
+        }
+        int cells = (slot + 1) * subjects;
+        if (cells * WORDS > present.length) {
+            present = Arrays.copyOf(present, Math.max(cells * WORDS, present.length * 2));
+        }
+        lessons[subject * WORDS + day / 64] |= 1L << day;
+        int word = (slot * subjects + subject) * WORDS + day / 64;
+        if (isPresent) {
+            present[word] |= 1L << day;
+        } else {
+            present[word] &= ~(1L << day);
+        }
+        return true;
+    }
+
+    boolean lessonHeld(int subject, int day) {
+        return lessons.length > 0 && (lessons[subject * WORDS + day / 64] & 1L << day) != 0;
+    }
+
+    boolean wasPresent(int slot, int subject, int day) {
+        int word = (slot * subjects + subject) * WORDS + day / 64;
+        return word < present.length && (present[word] & 1L << day) != 0;
+    }
+
+    /**
+     * Lessons held in {@code subject} on days [{@code from}, {@code to}).
+     */
+    int lessonDays(int subject, int from, int to) {
+        return lessons.length == 0 ? 0 : rank(lessons, subject * WORDS, to) - rank(lessons, subject * WORDS, from);
+    }
+
+    /**
+     * Days in [{@code from}, {@code to}) the student was present at a lesson of {@code subject}.
+     */
+    int presentDays(int slot, int subject, int from, int to) {
+        int row = (slot * subjects + subject) * WORDS;
+        return row >= present.length ? 0 : rank(present, row, to) - rank(present, row, from);
+    }
+
+    /**
+     * The last day a lesson of {@code subject} was marked, or -1.
+     */
+    int lastLesson(int subject) {
+        for (int word = WORDS - 1; word >= 0 && lessons.length > 0; word--) {
+            long bits = lessons[subject * WORDS + word];
+            if (bits != 0) {
+                return word * 64 + 63 - Long.numberOfLeadingZeros(bits);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves every row to make room for a subject added at the end, as {@link ClassBook#addSubject} does.
+     */
+    void addSubject(int studentCount) {
+        int oldCount = subjects;
+        subjects++;
+        if (lessons.length == 0) {
+            return;
+        }
+        lessons = Arrays.copyOf(lessons, subjects * WORDS);
+        int students = Math.min(studentCount, present.length / (oldCount * WORDS));
+        long[] moved = new long[studentCount * subjects * WORDS];
+        for (int slot = 0; slot < students; slot++) {
+            System.arraycopy(present, slot * oldCount * WORDS, moved, slot * subjects * WORDS, oldCount * WORDS);
+        }
+        present = moved;
+    }
+
+    long[] lessonWords() {
+        return lessons.clone();
+    }
+
+    long[] presentWords() {
+        return present.clone();
+    }
+
+    /**
+     * Replaces the whole history, e.g. when decoding a stored block.
+     */
+    void setWords(int year, long[] lessons, long[] present) {
+        if (lessons.length != 0 && lessons.length != subjects * WORDS || present.length % WORDS != 0) {
+            throw new IllegalArgumentException("Attendance history does not match the class");
+        }
+        this.year = year;
+        this.lessons = lessons.clone();
+        this.present = present.clone();
+    }
+
+    /**
+     * Set bits of the row at {@code base} on days before {@code day}.
+     */
+    private static int rank(long[] bits, int base, int day) {
+        int full = Math.min(day, MAX_DAYS) / 64;
+        int count = 0;
+        for (int word = 0; word < full; word++) {
+            count += Long.bitCount(bits[base + word]);
+        }
+        if (full < WORDS && day % 64 != 0) {
+            count += Long.bitCount(bits[base + full] & (1L << day) - 1);
+        }
+        return count;
+    }
+}
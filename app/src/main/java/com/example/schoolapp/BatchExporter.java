@@ -0,0 +1,203 @@
+package com.example.schoolapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Exports many reports at once, e.g. every class x subject report of a city. Reports are fanned out over
+ * a fixed worker pool; a coordinator waits for them, optionally packs the PDFs into one ZIP and reports the
+ * wall time and throughput. Workers render through {@link ReportExporter#write}, which keeps one renderer
+ * (paints, page layout, row buffer) per worker thread.
+ */
+final class BatchExporter {
+    interface Writer {
+        void write(Report report, File file, AtomicBoolean cancelled) throws IOException;
+    }
+
+    interface Progress {
+        void onReport(int reportsDone, int reportCount);
+    }
+
+    interface Listener {
+        void onProgress(int reportsDone, int reportCount);
+
+        void onFinished(Result result);
+
+        void onFailed(IOException error);
+
+        void onCancelled();
+    }
+
+    static final class Result {
+        final List<File> files;
+        final File zip;
+        final int reports;
+        final long wallNanos;
+
+        Result(List<File> files, File zip, int reports, long wallNanos) {
+            this.files = files;
+            this.zip = zip;
+            this.reports = reports;
+            this.wallNanos = wallNanos;
+        }
+
+        double reportsPerSecond() {
+            return wallNanos == 0 ? 0 : reports * 1e9 / wallNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d reports in %d ms (%.1f reports/s)",
+                    reports, wallNanos / 1_000_000, reportsPerSecond());
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Writer writer;
+    private final ExecutorService workers;
+    private final Executor coordinator;
+    private final Executor mainThread;
+
+    BatchExporter(Writer writer, ExecutorService workers, Executor coordinator, Executor mainThread) {
+        this.writer = writer;
+        this.workers = workers;
+        this.coordinator = coordinator;
+        this.mainThread = mainThread;
+    }
+
+    /**
+     * Writes every report into {@code directory}. With a non-null {@code zipName} the PDFs are packed
+     * into {@code directory/zipName} and the loose files removed.
+     */
+    ReportExporter.Task export(List<Report> reports, File directory, String zipName, Listener listener) {
+        ReportExporter.Task task = new ReportExporter.Task();
+        coordinator.execute(() -> {
+            try {
+                Result result = run(reports, directory, zipName, task.cancelled,
+                        (done, count) -> mainThread.execute(() -> listener.onProgress(done, count)));
+                finish(task, () -> listener.onFinished(result));
+            } catch (CancellationException e) {
+                finish(task, listener::onCancelled);
+            } catch (IOException e) {
+                finish(task, () -> listener.onFailed(e));
+            } catch (RuntimeException e) {
+                finish(task, () -> listener.onFailed(new IOException("Batch export failed", e)));
+            }
+        });
+        return task;
+    }
+
+    Result run(List<Report> reports, File directory, String zipName, AtomicBoolean cancelled,
+               Progress progress) throws IOException {
+        long start = System.nanoTime();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        int count = reports.size();
+        AtomicInteger done = new AtomicInteger();
+        List<Future<File>> futures = new ArrayList<>(count);
+        for (Report report : reports) {
+            futures.add(workers.submit(() -> {
+                File file = new File(directory, report.fileName);
+                writer.write(report, file, cancelled);
+                progress.onReport(done.incrementAndGet(), count);
+                return file;
+            }));
+        }
+
+        List<File> files = new ArrayList<>(count);
+        Throwable failure = null;
+        for (Future<File> future : futures) {
+            try {
+                files.add(future.get());
+            } catch (ExecutionException e) {
+                cancelled.set(true);
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelled.set(true);
+                if (failure == null) {
+                    failure = new CancellationException("Batch export interrupted");
+                }
+            }
+        }
+        if (failure != null || cancelled.get()) {
+            delete(files);
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure instanceof RuntimeException && !(failure instanceof CancellationException)) {
+                throw (RuntimeException) failure;
+            }
+            throw new CancellationException("Batch export cancelled");
+        }
+
+        File zip = null;
+        if (zipName != null) {
+            zip = new File(directory, zipName);
+            zip(files, zip);
+            delete(files);
+            files = Collections.<File>emptyList();
+        }
+        return new Result(files, zip, count, System.nanoTime() - start);
+    }
+
+    private static void zip(List<File> files, File zip) throws IOException {
+        File temp = new File(zip.getPath() + ".part");
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE))) {
+            // PDF content streams are already deflated; spend as little CPU as possible on them again.
+            out.setLevel(Deflater.BEST_SPEED);
+            for (File file : files) {
+                out.putNextEntry(new ZipEntry(file.getName()));
+                try (InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)) {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, read);
+                    }
+                }
+                out.closeEntry();
+            }
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(zip)) {
+            temp.delete();
+            throw new IOException("Cannot move " + temp + " to " + zip);
+        }
+    }
+
+    private static void delete(List<File> files) {
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private void finish(ReportExporter.Task task, Runnable callback) {
+        task.done = true;
+        mainThread.execute(callback);
+    }
+}
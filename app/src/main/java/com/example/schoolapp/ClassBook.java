@@ -0,0 +1,298 @@
+package com.example.schoolapp;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Columnar gradebook for a single class: one row per student, one cell per (student, subject).
+ * Grades of a cell live contiguously in a shared byte pool; a full cell is moved to the end of the pool
+ * with doubled capacity, so appending a grade is amortized O(1). Attendance is one bit per cell for the
+ * latest lesson, plus an {@link AttendanceHistory} per school day for rates over any date range.
+ * Every change also updates the book's {@link ClassStats}, so averages never need a rescan.
+ * A book can be filled on a worker thread and handed to {@link GradebookStore#addClass(int, String, ClassBook)},
+ * which assigns the district-wide student ids.
+ */
+final class ClassBook {
+    /** The gradebook file stores a class's subject count in one byte. */
+    static final int MAX_SUBJECTS = 255;
+
+    private static final int INITIAL_CELL_CAPACITY = 4;
+
+    private int[] subjects;
+
+    private int[] studentIds = new int[32];
+    private int[] studentNames = new int[32];
+    private int studentCount;
+
+    private int[] gradeOffset = new int[0];
+    private byte[] gradeCount = new byte[0];
+    private byte[] gradeCapacity = new byte[0];
+    private byte[] grades = new byte[256];
+    private int gradesSize;
+
+    private final BitSet present = new BitSet();
+    private final AttendanceHistory history;
+    private final ClassStats stats;
+
+    ClassBook(int[] subjects) {
+        if (subjects.length > MAX_SUBJECTS) {
+            throw new IllegalArgumentException("Too many subjects: " + subjects.length);
+        }
+        this.subjects = subjects.clone();
+        history = new AttendanceHistory(subjects.length);
+        stats = new ClassStats(subjects.length);
+    }
+
+    ClassStats stats() {
+        return stats;
+    }
+
+    int subjectCount() {
+        return subjects.length;
+    }
+
+    int subjectId(int subjectIndex) {
+        return subjects[subjectIndex];
+    }
+
+    int subjectIndex(int subjectId) {
+        for (int i = 0; i < subjects.length; i++) {
+            if (subjects[i] == subjectId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a subject column, e.g. when an import brings grades in a subject the class did not have.
+     * Every cell moves, so this costs O(students x subjects); returns the new subject's index.
+     * Throws IllegalStateException if the class already has {@link #MAX_SUBJECTS}.
+     */
+    int addSubject(int subjectId) {
+        int existing = subjectIndex(subjectId);
+        if (existing >= 0) {
+            return existing;
+        }
+        int oldCount = subjects.length;
+        if (oldCount == MAX_SUBJECTS) {
+            throw new IllegalStateException("Too many subjects in one class");
+        }
+        int newCount = oldCount + 1;
+        int capacity = Math.max(oldCount == 0 ? 0 : gradeOffset.length / oldCount * newCount, studentCount * newCount);
+        int[] offsets = new int[capacity];
+        byte[] counts = new byte[capacity];
+        byte[] capacities = new byte[capacity];
+        BitSet moved = new BitSet();
+        for (int slot = 0; slot < studentCount; slot++) {
+            System.arraycopy(gradeOffset, slot * oldCount, offsets, slot * newCount, oldCount);
+            System.arraycopy(gradeCount, slot * oldCount, counts, slot * newCount, oldCount);
+            System.arraycopy(gradeCapacity, slot * oldCount, capacities, slot * newCount, oldCount);
+        }
+        for (int cell = present.nextSetBit(0); cell >= 0; cell = present.nextSetBit(cell + 1)) {
+            moved.set(cell / oldCount * newCount + cell % oldCount);
+        }
+        gradeOffset = offsets;
+        gradeCount = counts;
+        gradeCapacity = capacities;
+        present.clear();
+        present.or(moved);
+        subjects = Arrays.copyOf(subjects, newCount);
+        subjects[oldCount] = subjectId;
+        history.addSubject(studentCount);
+        stats.onSubjectAdded(studentCount);
+        return oldCount;
+    }
+
+    int studentCount() {
+        return studentCount;
+    }
+
+    int studentId(int slot) {
+        return studentIds[slot];
+    }
+
+    int studentName(int slot) {
+        return studentNames[slot];
+    }
+
+    void setStudentId(int slot, int studentId) {
+        if (slot >= studentCount) {
+            throw new IndexOutOfBoundsException("No student " + slot);
+        }
+        studentIds[slot] = studentId;
+    }
+
+    int addStudent(int nameId) {
+        if (studentCount == studentIds.length) {
+            studentIds = Arrays.copyOf(studentIds, studentCount * 2);
+            studentNames = Arrays.copyOf(studentNames, studentCount * 2);
+        }
+        int cells = (studentCount + 1) * subjects.length;
+        if (cells > gradeOffset.length) {
+            int capacity = Math.max(cells, gradeOffset.length * 2);
+            gradeOffset = Arrays.copyOf(gradeOffset, capacity);
+            gradeCount = Arrays.copyOf(gradeCount, capacity);
+            gradeCapacity = Arrays.copyOf(gradeCapacity, capacity);
+        }
+        studentIds[studentCount] = -1;
+        studentNames[studentCount] = nameId;
+        stats.onStudentAdded();
+        return studentCount++;
+    }
+
+    int gradeCount(int slot, int subjectIndex) {
+        return gradeCount[cell(slot, subjectIndex)];
+    }
+
+    int grade(int slot, int subjectIndex, int index) {
+        return grades[gradeOffset[cell(slot, subjectIndex)] + index];
+    }
+
+    void addGrade(int slot, int subjectIndex, int grade) {
+        if (grade < 1 || grade > 5) {
+            throw new IllegalArgumentException("Grade out of range: " + grade);
+        }
+        int cell = cell(slot, subjectIndex);
+        int count = gradeCount[cell];
+        if (count == Byte.MAX_VALUE) {
+            throw new IllegalStateException("Too many grades in one subject");
+        }
+        if (count == (gradeCapacity[cell] & 0xFF)) {
+            relocate(cell, count == 0 ? INITIAL_CELL_CAPACITY : Math.min(count * 2, Byte.MAX_VALUE));
+        }
+        grades[gradeOffset[cell] + count] = (byte) grade;
+        gradeCount[cell] = (byte) (count + 1);
+        stats.onGrade(slot, subjectIndex, grade);
+    }
+
+    double mean(int slot, int subjectIndex) {
+        int count = gradeCount[cell(slot, subjectIndex)];
+        return count == 0 ? Double.NaN : (double) stats.cellSum(slot, subjectIndex) / count;
+    }
+
+    boolean isPresent(int slot, int subjectIndex) {
+        return present.get(cell(slot, subjectIndex));
+    }
+
+    void setPresent(int slot, int subjectIndex, boolean isPresent) {
+        int cell = cell(slot, subjectIndex);
+        if (present.get(cell) != isPresent) {
+            present.set(cell, isPresent);
+            stats.onAttendance(slot, subjectIndex, isPresent);
+        }
+    }
+
+    /**
+     * Marks the student present or absent at the lesson of {@code subjectIndex} on {@code day} of the school
+     * year starting in {@code year}. A mark for the subject's latest lesson day also becomes the cell's current
+     * mark; returns whether it did. Marks for a year before the history's are dropped.
+     */
+    boolean markAttendance(int slot, int subjectIndex, int year, int day, boolean isPresent) {
+        cell(slot, subjectIndex);
+        if (!history.mark(slot, subjectIndex, year, day, isPresent) || day < history.lastLesson(subjectIndex)) {
+            return false;
+        }
+        setPresent(slot, subjectIndex, isPresent);
+        return true;
+    }
+
+    boolean wasPresent(int slot, int subjectIndex, int day) {
+        cell(slot, subjectIndex);
+        return history.wasPresent(slot, subjectIndex, day);
+    }
+
+    /**
+     * Lessons of {@code subjectIndex} marked on school days [{@code from}, {@code to}).
+     */
+    int lessonDays(int subjectIndex, int from, int to) {
+        return history.lessonDays(subjectIndex, from, to);
+    }
+
+    int presentDays(int slot, int subjectIndex, int from, int to) {
+        cell(slot, subjectIndex);
+        return history.presentDays(slot, subjectIndex, from, to);
+    }
+
+    /**
+     * Share of the lessons on school days [{@code from}, {@code to}) the student attended; NaN if none were held.
+     */
+    double attendanceRate(int slot, int subjectIndex, int from, int to) {
+        int lessons = lessonDays(subjectIndex, from, to);
+        return lessons == 0 ? Double.NaN : (double) presentDays(slot, subjectIndex, from, to) / lessons;
+    }
+
+    /**
+     * The same over the whole class.
+     */
+    double classAttendanceRate(int subjectIndex, int from, int to) {
+        long lessons = (long) lessonDays(subjectIndex, from, to) * studentCount;
+        if (lessons == 0) {
+            return Double.NaN;
+        }
+        long attended = 0;
+        for (int slot = 0; slot < studentCount; slot++) {
+            attended += history.presentDays(slot, subjectIndex, from, to);
+        }
+        return (double) attended / lessons;
+    }
+
+    long[] presentWords() {
+        return present.toLongArray();
+    }
+
+    /**
+     * The school year the attendance history belongs to, by the calendar year it starts in, or 0 if none.
+     */
+    int historyYear() {
+        return history.year();
+    }
+
+    long[] lessonHistoryWords() {
+        return history.lessonWords();
+    }
+
+    long[] presentHistoryWords() {
+        return history.presentWords();
+    }
+
+    void setHistoryWords(int year, long[] lessons, long[] present) {
+        history.setWords(year, lessons, present);
+    }
+
+    /**
+     * Replaces all attendance bits at once, e.g. when decoding a stored block.
+     */
+    void setPresentWords(long[] words) {
+        BitSet loaded = BitSet.valueOf(words);
+        for (int cell = present.nextSetBit(0); cell >= 0; cell = present.nextSetBit(cell + 1)) {
+            if (!loaded.get(cell)) {
+                stats.onAttendance(cell / subjects.length, cell % subjects.length, false);
+            }
+        }
+        for (int cell = loaded.nextSetBit(0); cell >= 0; cell = loaded.nextSetBit(cell + 1)) {
+            if (!present.get(cell)) {
+                stats.onAttendance(cell / subjects.length, cell % subjects.length, true);
+            }
+        }
+        present.clear();
+        present.or(loaded);
+    }
+
+    private void relocate(int cell, int capacity) {
+        if (gradesSize + capacity > grades.length) {
+            grades = Arrays.copyOf(grades, Math.max(grades.length * 2, gradesSize + capacity));
+        }
+        System.arraycopy(grades, gradeOffset[cell], grades, gradesSize, gradeCount[cell]);
+        gradeOffset[cell] = gradesSize;
+        gradeCapacity[cell] = (byte) capacity;
+        gradesSize += capacity;
+    }
+
+    private int cell(int slot, int subjectIndex) {
+        if (slot >= studentCount || subjectIndex < 0 || subjectIndex >= subjects.length) {
+            throw new IndexOutOfBoundsException("No cell for student " + slot + ", subject " + subjectIndex);
+        }
+        return slot * subjects.length + subjectIndex;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.schoolapp;
+
+import java.util.Arrays;
+
+/**
+ * Running aggregates of one class, kept up to date by {@link ClassBook} as grades and attendance marks
+ * are recorded: a 1-5 histogram and present count per subject, a grade sum, grade count and present count
+ * per student, and a grade sum per (student, subject) cell. Every figure is read in O(1).
+ */
+final class ClassStats {
+    private int subjectCount;
+    private int[] subjectHistogram;
+    private int[] subjectPresent;
+
+    private int[] studentSum = new int[32];
+    private int[] studentGrades = new int[32];
+    private int[] studentPresent = new int[32];
+    private short[] cellSum = new short[0];
+    private int students;
+
+    ClassStats(int subjectCount) {
+        this.subjectCount = subjectCount;
+        subjectHistogram = new int[subjectCount * 5];
+        subjectPresent = new int[subjectCount];
+    }
+
+    void onStudentAdded() {
+        if (students == studentSum.length) {
+            studentSum = Arrays.copyOf(studentSum, students * 2);
+            studentGrades = Arrays.copyOf(studentGrades, students * 2);
+            studentPresent = Arrays.copyOf(studentPresent, students * 2);
+        }
+        int cells = (students + 1) * subjectCount;
+        if (cells > cellSum.length) {
+            cellSum = Arrays.copyOf(cellSum, Math.max(cells, cellSum.length * 2));
+        }
+        students++;
+    }
+
+    /**
+     * Widens every per-subject figure by one empty subject, after {@link ClassBook#addSubject(int)}.
+     */
+    void onSubjectAdded(int studentCount) {
+        int newCount = subjectCount + 1;
+        short[] cells = new short[Math.max(cellSum.length / Math.max(subjectCount, 1) * newCount, studentCount * newCount)];
+        for (int slot = 0; slot < studentCount; slot++) {
+            System.arraycopy(cellSum, slot * subjectCount, cells, slot * newCount, subjectCount);
+        }
+        cellSum = cells;
+        subjectHistogram = Arrays.copyOf(subjectHistogram, newCount * 5);
+        subjectPresent = Arrays.copyOf(subjectPresent, newCount);
+        subjectCount = newCount;
+    }
+
+    void onGrade(int slot, int subjectIndex, int grade) {
+        subjectHistogram[subjectIndex * 5 + grade - 1]++;
+        studentSum[slot] += grade;
+        studentGrades[slot]++;
+        cellSum[slot * subjectCount + subjectIndex] += grade;
+    }
+
+    void onAttendance(int slot, int subjectIndex, boolean present) {
+        int delta = present ? 1 : -1;
+        subjectPresent[subjectIndex] += delta;
+        studentPresent[slot] += delta;
+    }
+
+    int subjectGradeCount(int subjectIndex) {
+        int count = 0;
+        for (int grade = 1; grade <= 5; grade++) {
+            count += subjectHistogram[subjectIndex * 5 + grade - 1];
+        }
+        return count;
+    }
+
+    int subjectHistogram(int subjectIndex, int grade) {
+        return subjectHistogram[subjectIndex * 5 + grade - 1];
+    }
+
+    double subjectMean(int subjectIndex) {
+        int count = 0;
+        int sum = 0;
+        for (int grade = 1; grade <= 5; grade++) {
+            int n = subjectHistogram[subjectIndex * 5 + grade - 1];
+            count += n;
+            sum += n * grade;
+        }
+        return count == 0 ? Double.NaN : (double) sum / count;
+    }
+
+    int subjectPresent(int subjectIndex) {
+        return subjectPresent[subjectIndex];
+    }
+
+    double subjectAttendanceRate(int subjectIndex) {
+        return students == 0 ? Double.NaN : (double) subjectPresent[subjectIndex] / students;
+    }
+
+    double studentMean(int slot) {
+        return studentGrades[slot] == 0 ? Double.NaN : (double) studentSum[slot] / studentGrades[slot];
+    }
+
+    double studentAttendanceRate(int slot) {
+        return subjectCount == 0 ? Double.NaN : (double) studentPresent[slot] / subjectCount;
+    }
+
+    int cellSum(int slot, int subjectIndex) {
+        return cellSum[slot * subjectCount + subjectIndex];
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.schoolapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * CSV rows with a header naming the columns (city, class, student, subject, grade, present) in any order;
+ * other columns are ignored. Comma or semicolon separated, as detected from the header, with RFC 4180 quoting.
+ * Resuming re-reads the header and then skips to the saved offset.
+ */
+final class CsvRowReader extends RowReader {
+    private int[] columnOf = new int[0];
+    private int separator = ',';
+
+    CsvRowReader(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    String format() {
+        return CSV;
+    }
+
+    @Override
+    void start(long start) throws IOException {
+        if (peek() == 0xEF) {
+            read();
+            read();
+            read();
+        }
+        readHeader();
+        if (start > position()) {
+            skipTo(start);
+        }
+    }
+
+    private void readHeader() throws IOException {
+        byte[] line = new byte[256];
+        int length = 0;
+        int commas = 0;
+        int semicolons = 0;
+        for (int b = read(); b != -1 && b != '\n'; b = read()) {
+            if (length == line.length) {
+                line = Arrays.copyOf(line, length * 2);
+            }
+            line[length++] = (byte) b;
+            commas += b == ',' ? 1 : 0;
+            semicolons += b == ';' ? 1 : 0;
+        }
+        separator = semicolons > commas ? ';' : ',';
+
+        IntList columns = new IntList();
+        int from = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || line[i] == separator) {
+                byte[] name = new byte[i - from];
+                int n = 0;
+                for (int j = from; j < i; j++) {
+                    if (line[j] != '"') {
+                        name[n++] = line[j];
+                    }
+                }
+                columns.add(column(name, n));
+                from = i + 1;
+            }
+        }
+        columnOf = columns.toArray();
+        boolean[] seen = new boolean[COLUMNS];
+        for (int column : columnOf) {
+            if (column >= 0) {
+                seen[column] = true;
+            }
+        }
+        if (!seen[CITY] || !seen[CLASS] || !seen[STUDENT]) {
+            throw new IOException("CSV header must name city, class and student columns");
+        }
+    }
+
+    @Override
+    boolean next() throws IOException {
+        while (true) {
+            int b = peek();
+            if (b == -1) {
+                return false;
+            }
+            if (b == '\n' || b == '\r') {
+                read();
+                continue;
+            }
+            break;
+        }
+        clearRow();
+        int field = 0;
+        while (true) {
+            int column = field < columnOf.length ? columnOf[field] : -1;
+            startValue(column);
+            int end = readField(column);
+            if (end == separator) {
+                field++;
+            } else {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reads one field and returns what ended it: the separator, '\n' or -1.
+     */
+    private int readField(int column) throws IOException {
+        int b = read();
+        if (b == '"') {
+            while (true) {
+                b = read();
+                if (b == -1) {
+                    throw new IOException("Unterminated quoted field before byte " + position());
+                }
+                if (b == '"') {
+                    if (peek() != '"') {
+                        break;
+                    }
+                    read();
+                }
+                append(column, b);
+            }
+            b = read();
+            while (b != separator && b != '\n' && b != -1) {
+                b = read();
+            }
+            return b;
+        }
+        while (b != separator && b != '\n' && b != -1) {
+            if (b != '\r') {
+                append(column, b);
+            }
+            b = read();
+        }
+        return b;
+    }
+}
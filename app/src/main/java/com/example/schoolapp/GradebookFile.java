@@ -0,0 +1,411 @@
+package com.example.schoolapp;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * On-device gradebook file. The layout is a fixed header, one block per class and a directory at the end:
+ * <pre>
+ * header    magic, version, cityCount, classCount, studentCount, directoryOffset, checkpoint
+ * block     per student: name; per (student, subject) cell: grade count and grades; attendance bit words;
+ *           since version 2, attendance history: school year (u16), lesson day words, then present day words
+ * directory per city: name; per class: city, label, block offset and length, student count, subject names
+ * </pre>
+ * Version 1 files are still read, as classes without attendance history; a block shorter or longer than its
+ * version's layout is corrupt.
+ * Opening maps the file and reads only the header and directory, so it costs O(classes) no matter how many
+ * grades are stored. Class blocks are decoded on demand by {@link #readClass(int, GradebookStore)}.
+ */
+final class GradebookFile {
+    static final int MAGIC = 0x53474231; // "SGB1"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 32;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File file;
+    private final ByteBuffer data;
+    private final int version;
+    private final String[] cityNames;
+    private final int[] classCity;
+    private final String[] classLabels;
+    private final long[] blockOffset;
+    private final int[] blockLength;
+    private final int[] classStudents;
+    private final List<List<String>> classSubjects;
+    private final int checkpoint;
+
+    private GradebookFile(File file, ByteBuffer data) throws IOException {
+        this.file = file;
+        this.data = data;
+        if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a gradebook file");
+        }
+        version = data.getInt(4);
+        if (version < 1 || version > VERSION) {
+            throw new IOException(file + " has format version " + version + ", expected 1 to " + VERSION);
+        }
+        int cityCount = data.getInt(8);
+        int classCount = data.getInt(12);
+        long directoryOffset = data.getLong(20);
+        checkpoint = data.getInt(28);
+        if (directoryOffset < HEADER_SIZE || directoryOffset > data.limit()) {
+            throw new IOException(file + " has a corrupt directory offset " + directoryOffset);
+        }
+
+        // A torn or corrupt directory surfaces here as buffer underflows and bad counts; callers expect IOException.
+        try {
+            ByteBuffer directory = data.duplicate();
+            directory.position((int) directoryOffset);
+            cityNames = new String[cityCount];
+            for (int i = 0; i < cityCount; i++) {
+                cityNames[i] = readString(directory);
+            }
+            classCity = new int[classCount];
+            classLabels = new String[classCount];
+            blockOffset = new long[classCount];
+            blockLength = new int[classCount];
+            classStudents = new int[classCount];
+            classSubjects = new ArrayList<>(classCount);
+            for (int i = 0; i < classCount; i++) {
+                classCity[i] = directory.getInt();
+                if (classCity[i] < 0 || classCity[i] >= cityCount) {
+                    throw new IOException(file + " has a class in unknown city " + classCity[i]);
+                }
+                classLabels[i] = readString(directory);
+                blockOffset[i] = directory.getLong();
+                blockLength[i] = directory.getInt();
+                classStudents[i] = directory.getInt();
+                int subjectCount = directory.get() & 0xFF;
+                List<String> subjects = new ArrayList<>(subjectCount);
+                for (int s = 0; s < subjectCount; s++) {
+                    subjects.add(readString(directory));
+                }
+                classSubjects.add(subjects);
+            }
+        } catch (RuntimeException e) {
+            throw new IOException(file + " has a corrupt directory", e);
+        }
+    }
+
+    static GradebookFile open(File file) throws IOException {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r");
+             FileChannel channel = input.getChannel()) {
+            return new GradebookFile(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Random id tagging this save, matched by import checkpoints and by the edit journal; 0 if untagged.
+     */
+    int checkpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * A fresh, non-zero checkpoint id for {@link Writer#setCheckpoint(int)}.
+     */
+    static int newCheckpoint(Random random) {
+        int id;
+        do {
+            id = random.nextInt();
+        } while (id == 0);
+        return id;
+    }
+
+    /**
+     * Reads just the checkpoint id from the header of {@code file}; 0 if it is missing or not a gradebook.
+     */
+    static int readCheckpoint(File file) {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            if (input.length() < HEADER_SIZE || input.readInt() != MAGIC) {
+                return 0;
+            }
+            input.seek(28);
+            return input.readInt();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    int cityCount() {
+        return cityNames.length;
+    }
+
+    String cityName(int cityIndex) {
+        return cityNames[cityIndex];
+    }
+
+    int classCount() {
+        return classLabels.length;
+    }
+
+    int classCity(int classIndex) {
+        return classCity[classIndex];
+    }
+
+    String classLabel(int classIndex) {
+        return classLabels[classIndex];
+    }
+
+    int classStudentCount(int classIndex) {
+        return classStudents[classIndex];
+    }
+
+    List<String> classSubjects(int classIndex) {
+        return classSubjects.get(classIndex);
+    }
+
+    /**
+     * Decodes one class block into a new book, interning its names into the store's pools.
+     */
+    ClassBook readClass(int classIndex, GradebookStore store) throws IOException {
+        ByteBuffer block = data.duplicate();
+        block.position((int) blockOffset[classIndex]);
+        block.limit((int) blockOffset[classIndex] + blockLength[classIndex]);
+        try {
+            ClassBook book = store.newBook(classSubjects.get(classIndex));
+            for (int slot = 0; slot < classStudents[classIndex]; slot++) {
+                book.addStudent(store.studentNames.intern(readString(block)));
+            }
+            for (int slot = 0; slot < book.studentCount(); slot++) {
+                for (int subject = 0; subject < book.subjectCount(); subject++) {
+                    int count = block.get();
+                    for (int i = 0; i < count; i++) {
+                        book.addGrade(slot, subject, block.get());
+                    }
+                }
+            }
+            long[] words = new long[block.getInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = block.getLong();
+            }
+            book.setPresentWords(words);
+            if (version >= 2) {
+                int year = block.getShort();
+                long[] lessons = new long[block.getInt()];
+                for (int i = 0; i < lessons.length; i++) {
+                    lessons[i] = block.getLong();
+                }
+                long[] present = new long[block.getInt()];
+                for (int i = 0; i < present.length; i++) {
+                    present[i] = block.getLong();
+                }
+                book.setHistoryWords(year, lessons, present);
+            }
+            if (block.hasRemaining()) {
+                throw new IOException("Block for " + classLabels[classIndex] + " in " + file + " has "
+                        + block.remaining() + " bytes past its end");
+            }
+            return book;
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt block for " + classLabels[classIndex] + " in " + file, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("String too long: " + value.length() + " chars");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * A class block as {@link Writer#addClass} writes it, for a writer on another thread to add later.
+     */
+    static byte[] encodeClass(ClassBook book, StringPool studentNames) throws IOException {
+        ByteArrayOutputStream block = new ByteArrayOutputStream();
+        writeBlock(new DataOutputStream(block), book, studentNames);
+        return block.toByteArray();
+    }
+
+    static int[] subjectIds(ClassBook book) {
+        int[] subjects = new int[book.subjectCount()];
+        for (int s = 0; s < subjects.length; s++) {
+            subjects[s] = book.subjectId(s);
+        }
+        return subjects;
+    }
+
+    private static void writeBlock(DataOutputStream out, ClassBook book, StringPool studentNames) throws IOException {
+        for (int slot = 0; slot < book.studentCount(); slot++) {
+            writeString(out, studentNames.get(book.studentName(slot)));
+        }
+        for (int slot = 0; slot < book.studentCount(); slot++) {
+            for (int subject = 0; subject < book.subjectCount(); subject++) {
+                int count = book.gradeCount(slot, subject);
+                out.writeByte(count);
+                for (int i = 0; i < count; i++) {
+                    out.writeByte(book.grade(slot, subject, i));
+                }
+            }
+        }
+        writeWords(out, book.presentWords());
+        out.writeShort(book.historyYear());
+        writeWords(out, book.lessonHistoryWords());
+        writeWords(out, book.presentHistoryWords());
+    }
+
+    private static void writeWords(DataOutputStream out, long[] words) throws IOException {
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    /**
+     * Streams class blocks to a temporary file and moves it into place on {@link #finish()},
+     * so a crash while writing never leaves a half-written gradebook behind.
+     */
+    static final class Writer {
+        private final File target;
+        private final File temp;
+        private final GradebookStore store;
+        private final FileOutputStream fileOut;
+        private final DataOutputStream out;
+        private final List<String> cities = new ArrayList<>();
+        private final IntList classCity = new IntList();
+        private final List<String> classLabels = new ArrayList<>();
+        private final List<Long> blockOffsets = new ArrayList<>();
+        private final IntList blockLengths = new IntList();
+        private final IntList classStudents = new IntList();
+        private final List<int[]> classSubjects = new ArrayList<>();
+        private long position = HEADER_SIZE;
+        private int studentCount;
+        private int checkpoint;
+
+        Writer(File target, GradebookStore store) throws IOException {
+            this.target = target;
+            this.temp = new File(target.getPath() + ".tmp");
+            this.store = store;
+            fileOut = new FileOutputStream(temp);
+            out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024));
+            out.write(new byte[HEADER_SIZE]);
+        }
+
+        int addCity(String name) {
+            cities.add(name);
+            return cities.size() - 1;
+        }
+
+        void addClass(int cityIndex, String label, ClassBook book) throws IOException {
+            int start = out.size();
+            writeBlock(out, book, store.studentNames);
+            added(cityIndex, label, out.size() - start, book.studentCount(), subjectIds(book));
+        }
+
+        /**
+         * Adds a class whose block was encoded beforehand by {@link #encodeClass}.
+         */
+        void addBlock(int cityIndex, String label, byte[] block, int students, int[] subjects) throws IOException {
+            out.write(block);
+            added(cityIndex, label, block.length, students, subjects);
+        }
+
+        /**
+         * Adds a class by copying its block from {@code source} as is, without decoding it. Blocks of an older
+         * version are decoded and written again in the current layout.
+         */
+        void copyClass(int cityIndex, String label, GradebookFile source, int classIndex) throws IOException {
+            if (source.version != VERSION) {
+                addClass(cityIndex, label, source.readClass(classIndex, store));
+                return;
+            }
+            byte[] block = new byte[source.blockLength[classIndex]];
+            ByteBuffer data = source.data.duplicate();
+            data.position((int) source.blockOffset[classIndex]);
+            data.get(block);
+            List<String> names = source.classSubjects.get(classIndex);
+            int[] subjects = new int[names.size()];
+            for (int s = 0; s < subjects.length; s++) {
+                subjects[s] = store.subjectNames.intern(names.get(s));
+            }
+            addBlock(cityIndex, label, block, source.classStudents[classIndex], subjects);
+        }
+
+        private void added(int cityIndex, String label, int length, int students, int[] subjects) throws IOException {
+            if (subjects.length > ClassBook.MAX_SUBJECTS) {
+                throw new IOException(label + " has more subjects than the file holds: " + subjects.length);
+            }
+            classCity.add(cityIndex);
+            classLabels.add(label);
+            blockOffsets.add(position);
+            blockLengths.add(length);
+            classStudents.add(students);
+            classSubjects.add(subjects);
+            position += length;
+            studentCount += students;
+        }
+
+        void setCheckpoint(int checkpoint) {
+            this.checkpoint = checkpoint;
+        }
+
+        void finish() throws IOException {
+            long directoryOffset = position;
+            try {
+                for (String city : cities) {
+                    writeString(out, city);
+                }
+                for (int i = 0; i < classLabels.size(); i++) {
+                    int[] subjects = classSubjects.get(i);
+                    out.writeInt(classCity.get(i));
+                    writeString(out, classLabels.get(i));
+                    out.writeLong(blockOffsets.get(i));
+                    out.writeInt(blockLengths.get(i));
+                    out.writeInt(classStudents.get(i));
+                    out.writeByte(subjects.length);
+                    for (int subject : subjects) {
+                        writeString(out, store.subjectNames.get(subject));
+                    }
+                }
+                out.flush();
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putInt(cities.size()).putInt(classLabels.size())
+                        .putInt(studentCount).putLong(directoryOffset).putInt(checkpoint);
+                header.rewind();
+                fileOut.getChannel().write(header, 0);
+                fileOut.getFD().sync();
+            } finally {
+                out.close();
+            }
+            if (!temp.renameTo(target)) {
+                throw new IOException("Cannot move " + temp + " to " + target);
+            }
+        }
+
+        void abort() {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+                // Nothing to salvage from a file that is being thrown away.
+            }
+            temp.delete();
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package com.example.schoolapp;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only, write-behind journal of the grades and attendance entered in the app. Edits are applied to
+ * the store at once and only queued here, so a tap costs O(1) on the main thread whatever the size of the
+ * store. The writer thread wakes {@link #FLUSH_DELAY_MS} after the first queued edit, drops attendance
+ * marks overwritten within the batch and appends the rest with one write and one fsync.
+ * <p>
+ * The journal starts with the checkpoint id of the gradebook file it applies to, and every save of the
+ * store rebases it onto the new file, which already holds the edits made so far. After a crash,
+ * {@link #recover} replays the records only if the ids still match, up to the first torn record. Records
+ * name the city, class and subject and the student's slot, since slots survive a save and class ids do not.
+ */
+final class GradebookJournal {
+    static final int MAGIC = 0x53474a31; // "SGJ1"
+    static final long FLUSH_DELAY_MS = 250;
+    /**
+     * Size past which {@link #needsCompaction()} asks for the store to be saved, emptying the journal.
+     */
+    static final long COMPACT_BYTES = 256 * 1024;
+
+    static final byte GRADE = 1;
+    static final byte ATTENDANCE = 2;
+    private static final byte REBASE = 3;
+    static final byte LESSON = 4;
+
+    private static final String TAG = "GradebookJournal";
+    private static final int HEADER_SIZE = 8;
+    private static final int MAX_RECORD = 4096;
+
+    interface RecoveryListener {
+        void onRecovered(int edits);
+    }
+
+    interface Save {
+        /**
+         * Replaces {@code gradebook} with a file tagged {@code checkpoint}; called on the writer thread.
+         */
+        void write(File gradebook, int checkpoint) throws IOException;
+    }
+
+    static final class Edit {
+        final byte kind;
+        final String city;
+        final String classLabel;
+        final int slot;
+        final String subject;
+        final int value;
+        final int year;
+        final int day;
+
+        Edit(byte kind, String city, String classLabel, int slot, String subject, int value, int year, int day) {
+            this.kind = kind;
+            this.city = city;
+            this.classLabel = classLabel;
+            this.slot = slot;
+            this.subject = subject;
+            this.value = value;
+            this.year = year;
+            this.day = day;
+        }
+
+        static Edit grade(String city, String classLabel, int slot, String subject, int grade) {
+            return new Edit(GRADE, city, classLabel, slot, subject, grade, 0, 0);
+        }
+
+        static Edit attendance(String city, String classLabel, int slot, String subject, boolean present) {
+            return new Edit(ATTENDANCE, city, classLabel, slot, subject, present ? 1 : 0, 0, 0);
+        }
+
+        static Edit lesson(String city, String classLabel, int slot, String subject, int year, int day,
+                boolean present) {
+            return new Edit(LESSON, city, classLabel, slot, subject, present ? 1 : 0, year, day);
+        }
+
+        /**
+         * What a later edit of the same kind overwrites: the current mark of a cell, or its mark on one day.
+         */
+        String cell() {
+            String cell = city + '\n' + classLabel + '\n' + slot + '\n' + subject;
+            return kind == LESSON ? cell + '\n' + year + '\n' + day : cell;
+        }
+    }
+
+    private final File file;
+    private final File gradebook;
+    private final ScheduledExecutorService writer;
+    private final Executor mainThread;
+    private final ConcurrentLinkedQueue<Edit> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // Background saves by checkpoint, written on the writer thread just before their rebase record.
+    private final Map<Integer, Save> saves = new ConcurrentHashMap<>();
+    private volatile long length;
+
+    // Writer thread only.
+    private FileOutputStream out;
+    private List<Edit> retry = new ArrayList<>();
+
+    GradebookJournal(File file, File gradebook, ScheduledExecutorService writer, Executor mainThread) {
+        this.file = file;
+        this.gradebook = gradebook;
+        this.writer = writer;
+        this.mainThread = mainThread;
+    }
+
+    /**
+     * Queues an edit already applied to the store; it reaches the disk within {@link #FLUSH_DELAY_MS}.
+     */
+    void append(Edit edit) {
+        queue.add(edit);
+        if (scheduled.compareAndSet(false, true)) {
+            writer.schedule(this::drain, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Starts the journal afresh on top of a gradebook just saved under {@code checkpoint}. Called by
+     * {@link GradebookStore#save}; edits queued before the save are in the file and are dropped.
+     */
+    void rebase(int checkpoint) {
+        append(new Edit(REBASE, null, null, 0, null, checkpoint, 0, 0));
+    }
+
+    /**
+     * Writes queued edits now, e.g. when the app goes to the background.
+     */
+    Future<?> flush() {
+        return writer.submit(this::drain);
+    }
+
+    /**
+     * Runs {@code save} on the writer thread, then starts the journal afresh on top of the file it wrote,
+     * without blocking the caller. Edits appended before this call must be in what {@code save} writes, e.g. a
+     * {@link GradebookStore.Snapshot} taken just before, and are dropped from the journal; later ones go to
+     * the new journal. If the save fails, the old gradebook and journal stay in use.
+     */
+    void compact(Save save, int checkpoint) {
+        saves.put(checkpoint, save);
+        rebase(checkpoint);
+        flush();
+    }
+
+    boolean needsCompaction() {
+        return length > COMPACT_BYTES && saves.isEmpty();
+    }
+
+    /**
+     * Replays the journal onto a store opened from the gradebook file, then keeps appending to it. Edits made
+     * meanwhile are queued behind the replay.
+     */
+    void recover(GradebookStore store, RecoveryListener listener) {
+        writer.execute(() -> {
+            List<Edit> edits = new ArrayList<>();
+            try {
+                open(edits);
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot open journal " + file, e);
+            }
+            mainThread.execute(() -> {
+                int applied = 0;
+                for (Edit edit : edits) {
+                    if (apply(store, edit)) {
+                        applied++;
+                    }
+                }
+                listener.onRecovered(applied);
+            });
+        });
+    }
+
+    /**
+     * Applies a replayed edit; false if its class, student or subject no longer exists.
+     */
+    static boolean apply(GradebookStore store, Edit edit) {
+        int classId = store.findClass(edit.city, edit.classLabel);
+        if (classId < 0) {
+            return false;
+        }
+        ClassBook book = store.book(classId);
+        int subjectId = store.subjectNames.find(edit.subject);
+        int subjectIndex = subjectId < 0 || book == null ? -1 : book.subjectIndex(subjectId);
+        if (subjectIndex < 0 || edit.slot >= book.studentCount()) {
+            return false;
+        }
+        store.pin(classId);
+        if (edit.kind == ATTENDANCE) {
+            book.setPresent(edit.slot, subjectIndex, edit.value != 0);
+            return true;
+        }
+        if (edit.kind == LESSON) {
+            if (edit.day < 0 || edit.day >= AttendanceHistory.MAX_DAYS) {
+                return false;
+            }
+            book.markAttendance(edit.slot, subjectIndex, edit.year, edit.day, edit.value != 0);
+            return true;
+        }
+        try {
+            book.addGrade(edit.slot, subjectIndex, edit.value);
+            return true;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    private void drain() {
+        scheduled.set(false);
+        List<Edit> batch = retry;
+        retry = new ArrayList<>();
+        for (Edit edit; (edit = queue.poll()) != null; ) {
+            batch.add(edit);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        int from = 0;
+        try {
+            from = lastRebase(batch);
+            if (batch.isEmpty()) {
+                return;
+            }
+            boolean rebase = batch.get(from).kind == REBASE;
+            if (rebase) {
+                reset(batch.get(from).value);
+            } else if (out == null) {
+                open(null);
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            encode(coalesce(batch, rebase ? from + 1 : from), bytes);
+            bytes.writeTo(out);
+            out.getFD().sync();
+            length += bytes.size();
+        } catch (IOException | RuntimeException e) {
+            // Keep the edits for the next flush, whatever failed: they are off the queue and nowhere else.
+            // Reopening drops whatever part of a record was written.
+            retry = new ArrayList<>(batch.subList(from, batch.size()));
+            close();
+            Log.e(TAG, "Cannot write journal " + file, e);
+        }
+    }
+
+    /**
+     * Runs the background saves of the batch's rebase records in order and returns the index of the last
+     * rebase whose gradebook is on disk, or 0. A rebase whose save failed is removed, so the edits before it
+     * are journaled for the gradebook that is still there.
+     */
+    private int lastRebase(List<Edit> batch) {
+        int last = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i).kind != REBASE) {
+                continue;
+            }
+            int checkpoint = batch.get(i).value;
+            Save save = saves.remove(checkpoint);
+            try {
+                if (save != null) {
+                    save.write(gradebook, checkpoint);
+                }
+                last = i;
+            } catch (IOException | RuntimeException e) {
+                batch.remove(i--);
+                Log.e(TAG, "Cannot save " + gradebook + " before rebasing the journal", e);
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Keeps every grade and only the last attendance mark per cell, or per cell and day, in their original order.
+     */
+    private static List<Edit> coalesce(List<Edit> batch, int start) {
+        List<Edit> kept = new ArrayList<>(batch.size() - start);
+        Set<String> marked = new HashSet<>();
+        for (int i = batch.size() - 1; i >= start; i--) {
+            Edit edit = batch.get(i);
+            if (edit.kind == GRADE || marked.add(edit.kind + edit.cell())) {
+                kept.add(edit);
+            }
+        }
+        Collections.reverse(kept);
+        return kept;
+    }
+
+    private static void encode(List<Edit> edits, ByteArrayOutputStream bytes) throws IOException {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        DataOutputStream payload = new DataOutputStream(record);
+        DataOutputStream out = new DataOutputStream(bytes);
+        CRC32 crc = new CRC32();
+        for (Edit edit : edits) {
+            record.reset();
+            payload.writeByte(edit.kind);
+            payload.writeUTF(edit.city);
+            payload.writeUTF(edit.classLabel);
+            payload.writeInt(edit.slot);
+            payload.writeUTF(edit.subject);
+            payload.writeByte(edit.value);
+            if (edit.kind == LESSON) {
+                payload.writeShort(edit.year);
+                payload.writeShort(edit.day);
+            }
+            crc.reset();
+            crc.update(record.toByteArray(), 0, record.size());
+            out.writeInt(record.size());
+            record.writeTo(out);
+            out.writeInt((int) crc.getValue());
+        }
+    }
+
+    /**
+     * Opens the journal for appending, collecting its valid records into {@code edits} if it applies to the
+     * gradebook on disk, and starting it afresh otherwise.
+     */
+    private void open(List<Edit> edits) throws IOException {
+        close();
+        int base = GradebookFile.readCheckpoint(gradebook);
+        long valid = scan(base, edits);
+        if (valid < 0) {
+            reset(base);
+            return;
+        }
+        try (RandomAccessFile truncate = new RandomAccessFile(file, "rw")) {
+            truncate.setLength(valid);
+        }
+        out = new FileOutputStream(file, true);
+        length = valid;
+    }
+
+    private void reset(int base) throws IOException {
+        close();
+        out = new FileOutputStream(file);
+        DataOutputStream header = new DataOutputStream(out);
+        header.writeInt(MAGIC);
+        header.writeInt(base);
+        out.getFD().sync();
+        length = HEADER_SIZE;
+    }
+
+    /**
+     * Returns the length of the valid prefix, or -1 if the journal is missing or belongs to another save.
+     */
+    private long scan(int base, List<Edit> edits) {
+        if (base == 0 || !file.exists()) {
+            return -1;
+        }
+        long valid = HEADER_SIZE;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != base) {
+                return -1;
+            }
+            byte[] record = new byte[MAX_RECORD];
+            CRC32 crc = new CRC32();
+            while (true) {
+                int size = in.readInt();
+                if (size <= 0 || size > MAX_RECORD) {
+                    return valid;
+                }
+                in.readFully(record, 0, size);
+                int sum = in.readInt();
+                crc.reset();
+                crc.update(record, 0, size);
+                if ((int) crc.getValue() != sum) {
+                    return valid;
+                }
+                if (edits != null) {
+                    edits.add(decode(record, size));
+                }
+                valid += 8 + size;
+            }
+        } catch (EOFException e) {
+            return valid;
+        } catch (IOException e) {
+            Log.w(TAG, "Journal " + file + " is unreadable past byte " + valid, e);
+            return valid == HEADER_SIZE ? -1 : valid;
+        }
+    }
+
+    private static Edit decode(byte[] record, int size) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record, 0, size));
+        byte kind = in.readByte();
+        String city = in.readUTF();
+        String classLabel = in.readUTF();
+        int slot = in.readInt();
+        String subject = in.readUTF();
+        byte value = in.readByte();
+        int year = kind == LESSON ? in.readShort() : 0;
+        return new Edit(kind, city, classLabel, slot, subject, value, year, kind == LESSON ? in.readShort() : 0);
+    }
+
+    private void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot close journal " + file, e);
+            }
+            out = null;
+        }
+    }
+}
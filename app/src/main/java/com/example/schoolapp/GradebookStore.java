@@ -0,0 +1,589 @@
+package com.example.schoolapp;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * District gradebook. Cities, classes, subjects and student names are interned to int ids,
+ * classes are indexed by city and by (city, label), and each class keeps its roster, grades and attendance
+ * in a {@link ClassBook}, so opening a class screen never looks at students of other classes.
+ * Students get a district-wide id, so two students with the same name never collide.
+ * Classes opened from a {@link GradebookFile} are paged in on first access and evicted again
+ * once more than {@link #MAX_PAGED_CLASSES} have been read, so the heap holds only what is on screen.
+ * Not thread-safe: the activity owns the store and mutates it from the main thread only. Books are
+ * built off the main thread with {@link #newBook(List)} and attached here.
+ */
+final class GradebookStore {
+    static final int MAX_PAGED_CLASSES = 32;
+
+    private static final String TAG = "GradebookStore";
+
+    final StringPool cityNames = new StringPool();
+    final StringPool classNames = new StringPool();
+    final StringPool subjectNames = new StringPool();
+    final StringPool studentNames = new StringPool();
+
+    private final IntList cities = new IntList();
+    private final IntList cityByName = new IntList();
+    private final List<IntList> classesByCity = new ArrayList<>();
+    private final Map<Long, Integer> classByCityAndLabel = new HashMap<>();
+
+    private final IntList classCity = new IntList();
+    private final IntList classLabel = new IntList();
+    private final IntList classFirstStudent = new IntList();
+    private final IntList classFileIndex = new IntList();
+    private final IntList classChanged = new IntList();
+    private final List<ClassBook> books = new ArrayList<>();
+    private final Map<Integer, Boolean> pagedIn = new LinkedHashMap<>(MAX_PAGED_CLASSES, 0.75f, true);
+    private GradebookFile file;
+    private GradebookJournal journal;
+    private SyncEngine sync;
+
+    private int studentCount;
+    private int nextStudentId;
+    private int changes;
+
+    int addCity(String name) {
+        int nameId = cityNames.intern(name);
+        int existing = findCity(name);
+        if (existing >= 0) {
+            return existing;
+        }
+        cities.add(nameId);
+        classesByCity.add(new IntList());
+        while (cityByName.size() <= nameId) {
+            cityByName.add(-1);
+        }
+        cityByName.set(nameId, cities.size() - 1);
+        return cities.size() - 1;
+    }
+
+    int addClass(int cityId, String label, List<String> subjects) {
+        return addClass(cityId, label, newBook(subjects));
+    }
+
+    int addClass(int cityId, String label, ClassBook book) {
+        int classId = registerClass(cityId, label, -1, book.studentCount());
+        books.set(classId, book);
+        assignStudentIds(classId, book);
+        return classId;
+    }
+
+    /**
+     * Registers every city and class of the file without reading any class block.
+     */
+    void open(GradebookFile file) {
+        this.file = file;
+        for (int i = 0; i < file.classCount(); i++) {
+            int cityId = addCity(file.cityName(file.classCity(i)));
+            registerClass(cityId, file.classLabel(i), i, file.classStudentCount(i));
+        }
+    }
+
+    /**
+     * What {@link #save} writes, captured on the main thread so that a worker can write it while the store
+     * keeps changing. Classes changed since the file was last written are encoded now, which costs as much as
+     * those classes hold; the others are unchanged and are copied block by block from the file when written.
+     */
+    static final class Snapshot implements GradebookJournal.Save {
+        private final GradebookStore store;
+        private final GradebookFile file;
+        private final int since;
+        private final String[] cities;
+        private final int[] classCity;
+        private final String[] labels;
+        private final int[] fileIndex;
+        private final byte[][] blocks;
+        private final int[] students;
+        private final int[][] subjects;
+
+        private Snapshot(GradebookStore store) throws IOException {
+            this.store = store;
+            file = store.file;
+            since = store.changes;
+            cities = new String[store.cityCount()];
+            int classCount = store.classCount();
+            classCity = new int[classCount];
+            labels = new String[classCount];
+            fileIndex = new int[classCount];
+            blocks = new byte[classCount][];
+            students = new int[classCount];
+            subjects = new int[classCount][];
+            int i = 0;
+            for (int cityId = 0; cityId < cities.length; cityId++) {
+                cities[cityId] = store.cityName(cityId);
+                IntList classes = store.classesByCity.get(cityId);
+                for (int c = 0; c < classes.size(); c++, i++) {
+                    int classId = classes.get(c);
+                    classCity[i] = cityId;
+                    labels[i] = store.className(classId);
+                    fileIndex[i] = store.classFileIndex.get(classId);
+                    if (fileIndex[i] < 0) {
+                        ClassBook book = store.books.get(classId);
+                        blocks[i] = GradebookFile.encodeClass(book, store.studentNames);
+                        students[i] = book.studentCount();
+                        subjects[i] = GradebookFile.subjectIds(book);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Writes the snapshot to {@code target}, replacing it atomically. Safe on any one thread.
+         */
+        @Override
+        public void write(File target, int checkpoint) throws IOException {
+            GradebookFile.Writer writer = new GradebookFile.Writer(target, store);
+            try {
+                for (String city : cities) {
+                    writer.addCity(city);
+                }
+                for (int i = 0; i < labels.length; i++) {
+                    if (fileIndex[i] < 0) {
+                        writer.addBlock(classCity[i], labels[i], blocks[i], students[i], subjects[i]);
+                    } else {
+                        writer.copyClass(classCity[i], labels[i], file, fileIndex[i]);
+                    }
+                }
+                writer.setCheckpoint(checkpoint);
+                writer.finish();
+            } catch (IOException | RuntimeException e) {
+                writer.abort();
+                throw e;
+            }
+        }
+
+        /**
+         * This snapshot as a save that, once written, hands the new file to the store on {@code mainThread}, so
+         * that the next snapshot encodes only classes changed after this one.
+         */
+        GradebookJournal.Save adoptedOn(Executor mainThread) {
+            return (target, checkpoint) -> {
+                write(target, checkpoint);
+                GradebookFile written;
+                try {
+                    written = GradebookFile.open(target);
+                } catch (IOException e) {
+                    // The file is saved; the store keeps reading the old one and encodes these classes again.
+                    return;
+                }
+                mainThread.execute(() -> store.adopt(written, since));
+            };
+        }
+    }
+
+    Snapshot snapshot() throws IOException {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Writes every city and class to {@code target}, replacing it atomically, on the calling thread.
+     */
+    void save(File target, int checkpoint) throws IOException {
+        Snapshot snapshot = snapshot();
+        snapshot.write(target, checkpoint);
+        if (journal != null) {
+            journal.rebase(checkpoint);
+        }
+        adopt(GradebookFile.open(target), snapshot.since);
+    }
+
+    /**
+     * Reads classes from {@code written} from now on, a file saved from a snapshot taken when
+     * {@link #changes()} was {@code since}, or 0 for a file holding classes as they were added. Classes not
+     * changed after that become file-backed again: later snapshots copy their blocks, and resident ones can
+     * be evicted.
+     */
+    void adopt(GradebookFile written, int since) {
+        int[] index = new int[classCount()];
+        Arrays.fill(index, -1);
+        for (int i = 0; i < written.classCount(); i++) {
+            int classId = findClass(written.cityName(written.classCity(i)), written.classLabel(i));
+            if (classId >= 0) {
+                index[classId] = i;
+            }
+        }
+        for (int classId = 0; classId < index.length; classId++) {
+            if (index[classId] < 0 && classFileIndex.get(classId) >= 0 && book(classId) != null) {
+                pin(classId);
+            }
+        }
+        for (int classId = 0; classId < index.length; classId++) {
+            if (index[classId] < 0 || classChanged.get(classId) > since) {
+                continue;
+            }
+            classFileIndex.set(classId, index[classId]);
+            ClassBook book = books.get(classId);
+            if (book != null && !pagedIn.containsKey(classId)) {
+                if (!idsFollowFile(classId, book)) {
+                    // Students added one by one got ids as they came; paging in numbers them from the first.
+                    classFirstStudent.set(classId, nextStudentId);
+                    nextStudentId += book.studentCount();
+                    assignStudentIds(classId, book);
+                }
+                pagedIn.put(classId, Boolean.TRUE);
+            }
+        }
+        file = written;
+        evictOverflow();
+    }
+
+    /**
+     * True if paging the class back in would give its students the ids they have now.
+     */
+    private boolean idsFollowFile(int classId, ClassBook book) {
+        int first = classFirstStudent.get(classId);
+        for (int slot = 0; slot < book.studentCount(); slot++) {
+            if (book.studentId(slot) != first + slot) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Runs {@code save} off the main thread. With a journal attached it runs on the journal's writer, just
+     * before the journal is rebased on the new file, so edits entered meanwhile are journaled on top of it;
+     * otherwise on {@code worker}. {@code target} must be the gradebook the journal belongs to. {@code save}
+     * reports its own outcome.
+     */
+    void saveInBackground(GradebookJournal.Save save, File target, int checkpoint, Executor worker) {
+        if (journal != null) {
+            journal.compact(save, checkpoint);
+            return;
+        }
+        worker.execute(() -> {
+            try {
+                save.write(target, checkpoint);
+            } catch (IOException ignored) {
+                // Reported by the save itself.
+            }
+        });
+    }
+
+    /**
+     * Records edits entered from now on in {@code journal}, and rebases it whenever the store is saved.
+     */
+    void attach(GradebookJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Hands edits entered from now on to {@code sync} as well, to be shared with other devices.
+     */
+    void attach(SyncEngine sync) {
+        this.sync = sync;
+    }
+
+    /**
+     * Applies an edit received from another device and journals it, without handing it back to the sync
+     * engine; false if its class, student or subject is not here.
+     */
+    boolean applySynced(GradebookJournal.Edit edit) {
+        if (!GradebookJournal.apply(this, edit)) {
+            return false;
+        }
+        if (journal != null) {
+            journal.append(edit);
+        }
+        return true;
+    }
+
+    /**
+     * Applies a lesson mark received from another device to the attendance history only, keeping the current
+     * mark, which sync resolves on its own. A current mark the lesson overwrote is restored and journaled
+     * after it, so that replay ends in the same state.
+     */
+    boolean applySyncedLesson(GradebookJournal.Edit lesson) {
+        int classId = findClass(lesson.city, lesson.classLabel);
+        int subjectId = subjectNames.find(lesson.subject);
+        ClassBook book = classId < 0 ? null : book(classId);
+        int subjectIndex = book == null || subjectId < 0 ? -1 : book.subjectIndex(subjectId);
+        if (subjectIndex < 0 || lesson.slot >= book.studentCount()) {
+            return false;
+        }
+        boolean present = book.isPresent(lesson.slot, subjectIndex);
+        if (!applySynced(lesson)) {
+            return false;
+        }
+        if (book(classId).isPresent(lesson.slot, subjectIndex) != present) {
+            applySynced(GradebookJournal.Edit.attendance(lesson.city, lesson.classLabel, lesson.slot,
+                    lesson.subject, present));
+        }
+        return true;
+    }
+
+    /**
+     * Adds a grade entered by a teacher. The class stays resident from now on and the edit is journaled
+     * in the background, so this costs the same however large the store is.
+     */
+    void enterGrade(int classId, int slot, int subjectIndex, int grade) {
+        ClassBook book = book(classId);
+        if (book == null) {
+            return;
+        }
+        pin(classId);
+        book.addGrade(slot, subjectIndex, grade);
+        if (journal != null || sync != null) {
+            record(GradebookJournal.Edit.grade(cityName(classCity(classId)), className(classId), slot,
+                    subjectNames.get(book.subjectId(subjectIndex)), grade));
+        }
+    }
+
+    void enterAttendance(int classId, int slot, int subjectIndex, boolean present) {
+        ClassBook book = book(classId);
+        if (book == null) {
+            return;
+        }
+        pin(classId);
+        book.setPresent(slot, subjectIndex, present);
+        if (journal != null || sync != null) {
+            record(GradebookJournal.Edit.attendance(cityName(classCity(classId)), className(classId), slot,
+                    subjectNames.get(book.subjectId(subjectIndex)), present));
+        }
+    }
+
+    /**
+     * Marks attendance at the lesson on {@code day} of the school year starting in {@code year}, journaled like
+     * {@link #enterAttendance(int, int, int, boolean)}.
+     */
+    void enterAttendance(int classId, int slot, int subjectIndex, int year, int day, boolean present) {
+        ClassBook book = book(classId);
+        if (book == null) {
+            return;
+        }
+        pin(classId);
+        boolean current = book.markAttendance(slot, subjectIndex, year, day, present);
+        if (journal != null || sync != null) {
+            String city = cityName(classCity(classId));
+            String subject = subjectNames.get(book.subjectId(subjectIndex));
+            record(GradebookJournal.Edit.lesson(city, className(classId), slot, subject, year, day, present));
+            if (current && sync != null) {
+                // Other devices take a lesson mark into the history only; the current mark it set travels
+                // separately, to be resolved against attendance edits of the cell.
+                sync.record(GradebookJournal.Edit.attendance(city, className(classId), slot, subject, present));
+            }
+        }
+    }
+
+    private void record(GradebookJournal.Edit edit) {
+        if (journal != null) {
+            journal.append(edit);
+        }
+        if (sync != null) {
+            sync.record(edit);
+        }
+    }
+
+    /**
+     * Creates an empty, unattached book. Safe to call from a worker thread, since only the
+     * string pools are touched.
+     */
+    ClassBook newBook(List<String> subjects) {
+        int[] subjectIds = new int[subjects.size()];
+        for (int i = 0; i < subjectIds.length; i++) {
+            subjectIds[i] = subjectNames.intern(subjects.get(i));
+        }
+        return new ClassBook(subjectIds);
+    }
+
+    /**
+     * Adds a student to the class and returns their slot in its book, or -1 if the class cannot be read.
+     */
+    int addStudent(int classId, String name) {
+        ClassBook book = book(classId);
+        if (book == null) {
+            return -1;
+        }
+        pin(classId);
+        int slot = book.addStudent(studentNames.intern(name));
+        book.setStudentId(slot, nextStudentId++);
+        studentCount++;
+        return slot;
+    }
+
+    private int registerClass(int cityId, String label, int fileIndex, int students) {
+        int classId = books.size();
+        int labelId = classNames.intern(label);
+        classCity.add(cityId);
+        classLabel.add(labelId);
+        classByCityAndLabel.put(classKey(cityId, labelId), classId);
+        classFirstStudent.add(nextStudentId);
+        classFileIndex.add(fileIndex);
+        classChanged.add(0);
+        changes++;
+        books.add(null);
+        classesByCity.get(cityId).add(classId);
+        studentCount += students;
+        nextStudentId += students;
+        return classId;
+    }
+
+    private void assignStudentIds(int classId, ClassBook book) {
+        int first = classFirstStudent.get(classId);
+        for (int slot = 0; slot < book.studentCount(); slot++) {
+            book.setStudentId(slot, first + slot);
+        }
+    }
+
+    int cityCount() {
+        return cities.size();
+    }
+
+    String cityName(int cityId) {
+        return cityNames.get(cities.get(cityId));
+    }
+
+    int findCity(String name) {
+        int nameId = cityNames.find(name);
+        return nameId < 0 || nameId >= cityByName.size() ? -1 : cityByName.get(nameId);
+    }
+
+    int classCount() {
+        return books.size();
+    }
+
+    int classCity(int classId) {
+        return classCity.get(classId);
+    }
+
+    String className(int classId) {
+        return classNames.get(classLabel.get(classId));
+    }
+
+    int findClass(int cityId, String label) {
+        int labelId = classNames.find(label);
+        Integer classId = labelId < 0 ? null : classByCityAndLabel.get(classKey(cityId, labelId));
+        return classId == null ? -1 : classId;
+    }
+
+    /**
+     * Resolves a (city, class) pair to its class id in O(1), or -1 if either is unknown.
+     */
+    int findClass(String city, String label) {
+        int cityId = findCity(city);
+        return cityId < 0 ? -1 : findClass(cityId, label);
+    }
+
+    private static long classKey(int cityId, int labelId) {
+        return ((long) cityId << 32) | labelId;
+    }
+
+    int[] classesOf(int cityId) {
+        return classesByCity.get(cityId).toArray();
+    }
+
+    /**
+     * The class's book, paged in if needed; null if its block cannot be read, in which case callers leave the
+     * class out rather than fail.
+     */
+    ClassBook book(int classId) {
+        ClassBook book = books.get(classId);
+        if (book == null) {
+            book = pageIn(classId);
+        } else if (classFileIndex.get(classId) >= 0) {
+            pagedIn.get(classId);
+        }
+        return book;
+    }
+
+    /**
+     * Keeps a paged-in class resident from now on, so changes made to its book are not evicted, and marks it
+     * changed, so that snapshots encode it until it is saved. Callers pin a class before every change to it.
+     */
+    void pin(int classId) {
+        classChanged.set(classId, ++changes);
+        if (classFileIndex.get(classId) >= 0 && books.get(classId) != null) {
+            classFileIndex.set(classId, -1);
+            pagedIn.remove(classId);
+        }
+    }
+
+    /**
+     * The class's book if it is in memory, without paging it in; null otherwise.
+     */
+    ClassBook residentBook(int classId) {
+        return books.get(classId);
+    }
+
+    /**
+     * Block index of the class in the gradebook file, or -1 if the class lives only in memory.
+     */
+    int classFileIndex(int classId) {
+        return classFileIndex.get(classId);
+    }
+
+    GradebookFile file() {
+        return file;
+    }
+
+    int residentClassCount() {
+        int resident = 0;
+        for (ClassBook book : books) {
+            if (book != null) {
+                resident++;
+            }
+        }
+        return resident;
+    }
+
+    private ClassBook pageIn(int classId) {
+        ClassBook book;
+        try {
+            book = file.readClass(classFileIndex.get(classId), this);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read " + className(classId) + " from " + file, e);
+            return null;
+        }
+        assignStudentIds(classId, book);
+        books.set(classId, book);
+        pagedIn.put(classId, Boolean.TRUE);
+        evictOverflow();
+        return book;
+    }
+
+    private void evictOverflow() {
+        Iterator<Integer> eldest = pagedIn.keySet().iterator();
+        while (pagedIn.size() > MAX_PAGED_CLASSES) {
+            books.set(eldest.next(), null);
+            eldest.remove();
+        }
+    }
+
+    /**
+     * The class's subjects. For a class not in memory they come from the file's directory, so listing the
+     * subjects of a whole city, as timetable planning does, pages nothing in.
+     */
+    List<String> subjectNameList(int classId) {
+        ClassBook book = books.get(classId);
+        if (book == null) {
+            return new ArrayList<>(file.classSubjects(classFileIndex.get(classId)));
+        }
+        List<String> names = new ArrayList<>(book.subjectCount());
+        for (int i = 0; i < book.subjectCount(); i++) {
+            names.add(subjectNames.get(book.subjectId(i)));
+        }
+        return names;
+    }
+
+    int studentCount() {
+        return studentCount;
+    }
+
+    /**
+     * Counts classes added and changes made to them; equal between two calls if the store did not change.
+     */
+    int changes() {
+        return changes;
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.schoolapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * JSON rows: a top-level array of flat objects, or one object per line, keyed like the CSV columns.
+ * Values may be strings, numbers, booleans or null; unknown keys are skipped. Commas and brackets between
+ * objects are skipped rather than tracked, so reading can resume at any offset just past an object.
+ */
+final class JsonRowReader extends RowReader {
+    private final byte[] key = new byte[32];
+
+    JsonRowReader(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    String format() {
+        return JSON;
+    }
+
+    @Override
+    boolean next() throws IOException {
+        int b = read();
+        while (b != -1 && (isWhitespace(b) || b == ',' || b == '[' || b == ']' || b == 0xEF || b == 0xBB || b == 0xBF)) {
+            b = read();
+        }
+        if (b == -1) {
+            return false;
+        }
+        if (b != '{') {
+            throw error("Expected an object");
+        }
+        clearRow();
+        b = skipWhitespace();
+        if (b == '}') {
+            return true;
+        }
+        while (true) {
+            if (b != '"') {
+                throw error("Expected a key");
+            }
+            int column = readKey();
+            if (skipWhitespace() != ':') {
+                throw error("Expected ':'");
+            }
+            readValue(column, skipWhitespace());
+            b = skipWhitespace();
+            if (b == '}') {
+                return true;
+            }
+            if (b != ',') {
+                throw error("Expected ',' or '}'");
+            }
+            b = skipWhitespace();
+        }
+    }
+
+    private int readKey() throws IOException {
+        int length = 0;
+        for (int b = read(); b != '"'; b = read()) {
+            if (b == -1) {
+                throw error("Unterminated key");
+            }
+            if (b == '\\') {
+                b = read();
+            }
+            if (length < key.length) {
+                key[length] = (byte) b;
+            }
+            length++;
+        }
+        return length > key.length ? -1 : column(key, length);
+    }
+
+    private void readValue(int column, int b) throws IOException {
+        if (b == '"') {
+            startValue(column);
+            readString(column);
+        } else if (b == '{' || b == '[') {
+            throw error("Nested values are not supported");
+        } else {
+            // A number or a literal; keep its text and leave the terminator for the caller.
+            startValue(column);
+            append(column, b);
+            for (int next = peek(); next != -1 && next != ',' && next != '}' && !isWhitespace(next); next = peek()) {
+                append(column, read());
+            }
+            if (column >= 0 && equalsIgnoreCase(values[column], 0, lengths[column], "null")) {
+                lengths[column] = -1;
+            }
+        }
+    }
+
+    private void readString(int column) throws IOException {
+        while (true) {
+            int b = read();
+            if (b == -1) {
+                throw error("Unterminated string");
+            }
+            if (b == '"') {
+                return;
+            }
+            if (b != '\\') {
+                append(column, b);
+                continue;
+            }
+            int escape = read();
+            switch (escape) {
+                case 'b':
+                    append(column, '\b');
+                    break;
+                case 'f':
+                    append(column, '\f');
+                    break;
+                case 'n':
+                    append(column, '\n');
+                    break;
+                case 'r':
+                    append(column, '\r');
+                    break;
+                case 't':
+                    append(column, '\t');
+                    break;
+                case 'u':
+                    int unit = readHex();
+                    if (Character.isHighSurrogate((char) unit) && peek() == '\\') {
+                        read();
+                        if (read() != 'u') {
+                            throw error("Expected a low surrogate");
+                        }
+                        unit = Character.toCodePoint((char) unit, (char) readHex());
+                    }
+                    appendCodePoint(column, unit);
+                    break;
+                case -1:
+                    throw error("Unterminated string");
+                default:
+                    append(column, escape);
+            }
+        }
+    }
+
+    private int readHex() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(read(), 16);
+            if (digit < 0) {
+                throw error("Bad \\u escape");
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    private int skipWhitespace() throws IOException {
+        int b = read();
+        while (isWhitespace(b)) {
+            b = read();
+        }
+        return b;
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at byte " + position());
+    }
+}
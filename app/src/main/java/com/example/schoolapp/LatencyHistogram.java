@@ -0,0 +1,111 @@
+package com.example.schoolapp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * HDR-style histogram of nanosecond durations. Buckets are log-linear: every power of two is split into
+ * {@code SUB_BUCKETS / 2} equal slices, so a recorded value is known to within 1/16 of itself from 1 ns up
+ * to {@link #MAX_VALUE}, in a few kilobytes. Recording is a handful of atomic adds with no locks and no
+ * allocation, safe from any thread; snapshots taken while samples are recorded may be off by those samples.
+ */
+final class LatencyHistogram {
+    static final int SUB_BUCKETS = 32;
+    /**
+     * About 18 minutes; longer samples are counted as this.
+     */
+    static final long MAX_VALUE = (1L << 40) - 1;
+
+    private static final int SUB_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+    private static final int BUCKETS = bucket(MAX_VALUE) + 1;
+
+    static final class Snapshot {
+        final long count;
+        final long sum;
+        final long max;
+        private final long[] counts;
+
+        private Snapshot(long count, long sum, long max, long[] counts) {
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+            this.counts = counts;
+        }
+
+        double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * The value below which {@code percentile} percent of the samples fall, rounded up to its bucket.
+         */
+        long percentile(double percentile) {
+            long total = 0;
+            for (long bucketCount : counts) {
+                total += bucketCount;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+            long seen = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                seen += counts[bucket];
+                if (seen >= rank) {
+                    return Math.min(highest(bucket), max);
+                }
+            }
+            return max;
+        }
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts.incrementAndGet(bucket(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        for (long seen = max.get(); value > seen && !max.compareAndSet(seen, value); seen = max.get()) {
+        }
+    }
+
+    Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            copy[bucket] = counts.get(bucket);
+        }
+        return new Snapshot(count.get(), sum.get(), max.get(), copy);
+    }
+
+    void reset() {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts.set(bucket, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // Shift the value down until it has SUB_BITS significant bits; values in [SUB_BUCKETS/2, SUB_BUCKETS)
+        // then index the slice within the power of two picked by the shift.
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1);
+        return (shift + 1) * (SUB_BUCKETS / 2) + (int) (value >>> shift) - SUB_BUCKETS / 2;
+    }
+
+    static long highest(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / (SUB_BUCKETS / 2) - 1;
+        long lowest = (long) (SUB_BUCKETS / 2 + bucket % (SUB_BUCKETS / 2)) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
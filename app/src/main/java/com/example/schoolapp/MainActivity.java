@@ -1,258 +1,1048 @@
 package com.example.schoolapp;
 
-import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.pdf.PdfDocument;
+import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
 import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.Button;
+import android.widget.EditText;
+import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class MainActivity extends AppCompatActivity {
-    private RecyclerView recyclerView;
-    private List<String> cities;
-    private Map<String, List<String>> classesPerCity;
-    private Map<String, List<String>> subjectsPerClass;
-    private Map<String, Map<String, List<Integer>>> gradesPerStudent;
-    private Map<String, Map<String, Boolean>> attendancePerStudent;
-    private Stack<Runnable> navigationStack = new Stack<>();
+    private static final String TAG = "MainActivity";
+    private static final String GRADEBOOK_FILE = "gradebook.bin";
+    private static final String IMPORT_CHECKPOINT_FILE = "import.checkpoint";
+    private static final String JOURNAL_FILE = "gradebook.journal";
+    private static final String[] IMPORT_TYPES = {"text/*", "application/json"};
+    private static final int SCREEN_CACHE_SIZE = 8;
+    private static final String REPORT_CACHE_DIR = "reports";
+    private static final long REPORT_CACHE_BYTES = 32 * 1024 * 1024;
+    private static final long TIMETABLE_BUDGET_NANOS = 500_000_000L;
+    private static final long TIMETABLE_SEED = 1;
+    private static final Metrics.SystemProbe METRICS_PROBE = new Metrics.SystemProbe();
+
+    private GradebookStore store;
+    private ExecutorService loaderExecutor;
+    private RosterLoader rosterLoader;
+    private ExecutorService exportExecutor;
+    private ReportCache reportCache;
+    private ReportExporter exporter;
+    private ExecutorService batchWorkers;
+    private ScheduledExecutorService searchExecutor;
+    private ScheduledExecutorService journalExecutor;
+    private GradebookJournal journal;
+    private boolean journalRecovered;
+    private Handler mainHandler;
+    private BatchExporter batchExporter;
+    private ReportExporter.Task currentExport;
+    private RosterImporter importer;
+    private ReportExporter.Task currentImport;
+    private ActivityResultLauncher<String[]> importPicker;
+    private boolean rosterLoaded;
+    private long createdAt;
+    private ViewGroup screenContainer;
+    private ScreenStack screens;
+    private final Map<Integer, Timetable> timetables = new HashMap<>();
+    private final Set<Integer> timetablesPlanning = new HashSet<>();
+    // Class count of cities whose planning failed, so they are not retried until a class is added.
+    private final Map<Integer, Integer> timetablesFailed = new HashMap<>();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        createdAt = SystemClock.uptimeMillis();
+        Metrics.install(METRICS_PROBE);
         super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_main);
+        setContentView(R.layout.activity_host);
+
+        screenContainer = findViewById(R.id.screenContainer);
+        screens = new ScreenStack(screenContainer, SCREEN_CACHE_SIZE);
+
+        store = new GradebookStore();
+        loaderExecutor = Executors.newSingleThreadExecutor();
+        mainHandler = new Handler(Looper.getMainLooper());
+        searchExecutor = Executors.newSingleThreadScheduledExecutor();
+        exportExecutor = Executors.newSingleThreadExecutor();
+        reportCache = new ReportCache(new File(getCacheDir(), REPORT_CACHE_DIR), REPORT_CACHE_BYTES);
+        exporter = new ReportExporter(exportExecutor, mainHandler::post, reportCache);
+        batchWorkers = Executors.newFixedThreadPool(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1)));
+        batchExporter = new BatchExporter((report, file, cancelled) -> exporter.write(report, file, (rowsDone, rowCount) -> { }, cancelled),
+                batchWorkers, exportExecutor, mainHandler::post);
+        journalExecutor = Executors.newSingleThreadScheduledExecutor();
+        rosterLoader = new RosterLoader(store, new File(getFilesDir(), GRADEBOOK_FILE), loaderExecutor, mainHandler::post);
+        importer = new RosterImporter(store, new File(getFilesDir(), GRADEBOOK_FILE),
+                new File(getFilesDir(), IMPORT_CHECKPOINT_FILE), loaderExecutor, journalExecutor, mainHandler::post);
+        importPicker = registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::onImportPicked);
+        journal = new GradebookJournal(new File(getFilesDir(), JOURNAL_FILE), new File(getFilesDir(), GRADEBOOK_FILE),
+                journalExecutor, mainHandler::post);
+        rosterLoader.start(new RosterLoader.Listener() {
+            @Override
+            public void onFileOpened(GradebookFile file) {
+                store.open(file);
+                onRosterShown();
+            }
+
+            @Override
+            public void onCitiesLoaded(List<String> cities) {
+                MainActivity.this.onCitiesLoaded(cities);
+            }
+
+            @Override
+            public void onCityLoaded(RosterLoader.CityChunk chunk) {
+                MainActivity.this.onCityLoaded(chunk);
+            }
 
-        recyclerView = findViewById(R.id.cityRecyclerView);
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+            @Override
+            public void onFileSaved(GradebookFile file) {
+                // Generated classes are file-backed from now on, so snapshots no longer encode them.
+                store.adopt(file, 0);
+            }
 
-        initializeData();
-        setupCityList();
+            @Override
+            public void onLoadFinished() {
+                Log.i(TAG, "Roster loaded in " + (SystemClock.uptimeMillis() - createdAt) + " ms");
+                rosterLoaded = true;
+                journal.recover(store, MainActivity.this::onJournalRecovered);
+                ScreenStack.Screen cities = screens.find(CITIES_KEY);
+                if (cities != null) {
+                    ((CityScreen) cities).showImportLabel();
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (!journalRecovered) {
+            return;
+        }
+        if (journal.needsCompaction() && (currentImport == null || currentImport.isDone()) && importer.pending() == null) {
+            try {
+                // Only changed classes are encoded here; the file is written on the journal's writer thread.
+                journal.compact(store.snapshot().adoptedOn(mainHandler::post), GradebookFile.newCheckpoint(new Random()));
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot compact the edit journal", e);
+            }
+        }
+        journal.flush();
+    }
+
+    @Override
+    protected void onDestroy() {
+        rosterLoader.cancel();
+        loaderExecutor.shutdownNow();
+        if (currentExport != null) {
+            currentExport.cancel();
+        }
+        if (currentImport != null) {
+            currentImport.cancel();
+        }
+        exportExecutor.shutdown();
+        batchWorkers.shutdown();
+        searchExecutor.shutdownNow();
+        // Lets queued journal writes finish; delayed flushes still run after shutdown.
+        journalExecutor.shutdown();
+        super.onDestroy();
     }
 
-    private void initializeData() {
-        cities = Arrays.asList("New York", "Los Angeles", "Chicago");
+    /**
+     * Edits are accepted only once the journal has replayed, so a replayed mark never overwrites a newer tap.
+     */
+    private void onJournalRecovered(int edits) {
+        Log.i(TAG, "Replayed " + edits + " journaled edits");
+        store.attach(journal);
+        journalRecovered = true;
+        ScreenStack.Screen top = screens.top();
+        if (edits > 0 && top != null) {
+            top.onShow();
+        }
+    }
 
-        classesPerCity = new HashMap<>();
-        classesPerCity.put("Warszawa", Arrays.asList("Klasa 1", "Klasa 2", "Klasa 3", "Klasa 4", "Klasa 5", "Klasa 6", "Klasa 7", "Klasa 8"));
-        classesPerCity.put("Kraków", Arrays.asList("Klasa 1", "Klasa 2", "Klasa 3", "Klasa 4", "Klasa 5", "Klasa 6", "Klasa 7", "Klasa 8"));
-        classesPerCity.put("Rzeszów", Arrays.asList("Klasa 1", "Klasa 2", "Klasa 3", "Klasa 4", "Klasa 5", "Klasa 6", "Klasa 7", "Klasa 8"));
+    /**
+     * Today as an epoch day in the device's time zone.
+     */
+    private static int today() {
+        long now = System.currentTimeMillis();
+        return (int) Math.floorDiv(now + TimeZone.getDefault().getOffset(now), 24 * 60 * 60 * 1000L);
+    }
 
-        List<String> subjects = Arrays.asList("Matematyka", "Fizyka", "Język Angielski", "Historia", "Geografia", "Plastyka", "Muzyka", "WF", "Informatyka", "Biologia", "Chemia", "Jezyk niemiecki");
+    private boolean canEdit() {
+        if (!journalRecovered) {
+            Toast.makeText(this, "Roster is still loading", Toast.LENGTH_SHORT).show();
+        }
+        return journalRecovered;
+    }
 
-        subjectsPerClass = new HashMap<>();
+    private void onCitiesLoaded(List<String> cities) {
         for (String city : cities) {
-            for (String className : classesPerCity.get(city)) {
-                List<String> shuffledSubjects = new ArrayList<>(subjects);
-                Collections.shuffle(shuffledSubjects);
-                subjectsPerClass.put(className, shuffledSubjects);
+            store.addCity(city);
+        }
+        onRosterShown();
+    }
+
+    private void onRosterShown() {
+        screens.push(new CityScreen());
+        Log.i(TAG, "City list ready in " + (SystemClock.uptimeMillis() - createdAt) + " ms");
+        screenContainer.post(this::reportFullyDrawn);
+    }
+
+    private void onCityLoaded(RosterLoader.CityChunk chunk) {
+        int cityId = store.findCity(chunk.city);
+        for (int i = 0; i < chunk.books.size(); i++) {
+            store.addClass(cityId, chunk.classLabels.get(i), chunk.books.get(i));
+        }
+        ScreenStack.Screen classList = screens.find(classListKey(chunk.city));
+        if (classList != null) {
+            ((ClassListScreen) classList).refresh();
+        }
+    }
+
+    @VisibleForTesting
+    void showClassList(String city) {
+        long start = Metrics.SHOW_CLASS_LIST.begin();
+        try {
+            screens.push(new ClassListScreen(city));
+        } finally {
+            Metrics.SHOW_CLASS_LIST.end(start);
+        }
+    }
+
+    @VisibleForTesting
+    void showTimetable(String city, String className) {
+        if (readableBook(store.findClass(city, className)) == null) {
+            return;
+        }
+        long start = Metrics.SHOW_TIMETABLE.begin();
+        try {
+            screens.push(new TimetableScreen(city, className));
+        } finally {
+            Metrics.SHOW_TIMETABLE.end(start);
+        }
+    }
+
+    @VisibleForTesting
+    void showStudentList(String city, String className, String subject) {
+        long start = Metrics.SHOW_STUDENT_LIST.begin();
+        try {
+            screens.push(new StudentListScreen(city, className, subject));
+        } finally {
+            Metrics.SHOW_STUDENT_LIST.end(start);
+        }
+    }
+
+    @VisibleForTesting
+    void showAttendanceList(String city, String className, String subject) {
+        long start = Metrics.SHOW_ATTENDANCE_LIST.begin();
+        try {
+            screens.push(new AttendanceListScreen(city, className, subject));
+        } finally {
+            Metrics.SHOW_ATTENDANCE_LIST.end(start);
+        }
+    }
+
+    @VisibleForTesting
+    void showSearch() {
+        long start = Metrics.SHOW_SEARCH.begin();
+        try {
+            screens.push(new SearchScreen());
+        } finally {
+            Metrics.SHOW_SEARCH.end(start);
+        }
+    }
+
+    @VisibleForTesting
+    boolean navigateBack() {
+        long start = Metrics.NAVIGATE_BACK.begin();
+        try {
+            return screens.pop();
+        } finally {
+            Metrics.NAVIGATE_BACK.end(start);
+        }
+    }
+
+    /**
+     * The class's book, or null after telling the user that it cannot be read.
+     */
+    private ClassBook readableBook(int classId) {
+        ClassBook book = store.book(classId);
+        if (book == null) {
+            Toast.makeText(this, "Cannot read " + store.className(classId), Toast.LENGTH_SHORT).show();
+        }
+        return book;
+    }
+
+    private void showDiagnostics() {
+        screens.push(new DiagnosticsScreen());
+    }
+
+    private RecyclerView setupList(View view, int listId) {
+        view.findViewById(R.id.backButton).setOnClickListener(v -> navigateBack());
+        RecyclerView list = view.findViewById(listId);
+        list.setLayoutManager(new LinearLayoutManager(this));
+        return list;
+    }
+
+    private static final String CITIES_KEY = "cities";
+
+    private class CityScreen extends ScreenStack.Screen {
+        private CityAdapter cityAdapter;
+        private Button importButton;
+
+        CityScreen() {
+            super(CITIES_KEY);
+        }
+
+        @Override
+        View create(LayoutInflater inflater, ViewGroup container) {
+            View view = inflater.inflate(R.layout.activity_main, container, false);
+            view.findViewById(R.id.titleTextView).setOnLongClickListener(v -> {
+                showDiagnostics();
+                return true;
+            });
+            RecyclerView cityRecyclerView = view.findViewById(R.id.cityRecyclerView);
+            cityRecyclerView.setLayoutManager(new LinearLayoutManager(MainActivity.this));
+            cityAdapter = new CityAdapter(MainActivity.this::showClassList);
+            cityAdapter.submitList(Rows.cities(store));
+            cityRecyclerView.setAdapter(cityAdapter);
+            view.findViewById(R.id.searchStudentsButton).setOnClickListener(v -> showSearch());
+            importButton = view.findViewById(R.id.importRosterButton);
+            importButton.setOnClickListener(v -> importRoster());
+            importButton.setOnLongClickListener(v -> discardImport());
+            showImportLabel();
+            return view;
+        }
+
+        void refresh() {
+            if (cityAdapter != null) {
+                cityAdapter.submitList(Rows.cities(store));
             }
         }
 
-        gradesPerStudent = new HashMap<>();
-        attendancePerStudent = new HashMap<>();
+        void showImportLabel() {
+            if (importButton != null && (currentImport == null || currentImport.isDone())) {
+                importButton.setText(rosterLoaded && importer.pending() != null ? "Resume Import" : "Import Roster");
+            }
+        }
 
-        List<String> firstNames = Arrays.asList("Michał", "Paweł", "Karol", "Kacper", "Rysiu", "Radek", "Artur", "Maksymilian", "Krystian", "Adrian");
-        List<String> lastNames = Arrays.asList("Urban", "Rzeszutek", "Łojszczyk", "Bucki", "Baran", "Połeć", "Kępa", "Pociask", "Kalita", "Krupa");
+        void showImportProgress(long bytes, long totalBytes) {
+            if (importButton != null) {
+                importButton.setText(totalBytes > 0
+                        ? "Importing " + bytes * 100 / totalBytes + "% (tap to cancel)"
+                        : "Importing " + bytes / 1024 + " KB (tap to cancel)");
+            }
+        }
+    }
 
-        Random random = new Random();
+    /**
+     * Imports a CSV or JSON roster picked by the user, or resumes the one that was interrupted.
+     * Only once the roster has loaded, since both save to the same gradebook file.
+     */
+    @VisibleForTesting
+    void importRoster() {
+        if (!rosterLoaded) {
+            Toast.makeText(this, "Roster is still loading", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (currentImport != null && !currentImport.isDone()) {
+            currentImport.cancel();
+            return;
+        }
+        RosterImporter.Checkpoint pending = importer.pending();
+        if (pending != null) {
+            startImport(uriSource(Uri.parse(pending.key)), pending);
+        } else {
+            importPicker.launch(IMPORT_TYPES);
+        }
+    }
 
-        for (String city : cities) {
-            for (String className : classesPerCity.get(city)) {
-                for (int i = 1; i <= 30; i++) {
-                    String studentName = firstNames.get(random.nextInt(firstNames.size())) + " " + lastNames.get(random.nextInt(lastNames.size()));
-                    Map<String, List<Integer>> studentGrades = new HashMap<>();
-                    Map<String, Boolean> studentAttendance = new HashMap<>();
-                    for (String subject : subjectsPerClass.get(className)) {
-                        List<Integer> grades = new ArrayList<>();
-                        for (int j = 0; j < 4; j++) {
-                            grades.add(random.nextInt(5) + 1);  // Grades from 1 to 5
-                        }
-                        studentGrades.put(subject, grades);
-                        studentAttendance.put(subject, random.nextDouble() > 0.1);
-                    }
-                    gradesPerStudent.put(studentName, studentGrades);
-                    attendancePerStudent.put(studentName, studentAttendance);
+    private boolean discardImport() {
+        if (!rosterLoaded || currentImport != null && !currentImport.isDone() || importer.pending() == null) {
+            return false;
+        }
+        importer.discardPending();
+        onImportStopped();
+        Toast.makeText(this, "Interrupted import discarded", Toast.LENGTH_SHORT).show();
+        return true;
+    }
+
+    private void onImportPicked(Uri uri) {
+        if (uri == null) {
+            return;
+        }
+        try {
+            // Lets an interrupted import be resumed after the app restarts.
+            getContentResolver().takePersistableUriPermission(uri, Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        } catch (SecurityException e) {
+            Log.w(TAG, "No persistable permission for " + uri, e);
+        }
+        importer.discardPending();
+        startImport(uriSource(uri), null);
+    }
+
+    private void startImport(RosterImporter.Source source, RosterImporter.Checkpoint resume) {
+        currentImport = importer.start(source, resume, new RosterImporter.Listener() {
+            @Override
+            public void onProgress(long rows, long bytes, long totalBytes) {
+                refreshRoster();
+                ScreenStack.Screen cities = screens.find(CITIES_KEY);
+                if (cities != null) {
+                    ((CityScreen) cities).showImportProgress(bytes, totalBytes);
                 }
             }
+
+            @Override
+            public void onFinished(RosterImporter.Result result) {
+                Log.i(TAG, "Imported " + source.key() + ": " + result);
+                onImportStopped();
+                Toast.makeText(MainActivity.this, "Imported " + result.rows + " rows (" + result.skipped + " skipped)", Toast.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onFailed(IOException error) {
+                Log.e(TAG, "Import of " + source.key() + " failed", error);
+                onImportStopped();
+                Toast.makeText(MainActivity.this, "Error importing roster", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onCancelled(RosterImporter.Result partial) {
+                onImportStopped();
+                Toast.makeText(MainActivity.this, "Import paused after " + partial.rows + " rows", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void onImportStopped() {
+        refreshRoster();
+        ScreenStack.Screen cities = screens.find(CITIES_KEY);
+        if (cities != null) {
+            ((CityScreen) cities).showImportLabel();
         }
     }
 
-    private void setupCityList() {
-        navigationStack.clear();
-        CityAdapter adapter = new CityAdapter(cities, this::showClassList);
-        recyclerView.setAdapter(adapter);
+    private void refreshRoster() {
+        ScreenStack.Screen cities = screens.find(CITIES_KEY);
+        if (cities != null) {
+            ((CityScreen) cities).refresh();
+        }
+        for (int cityId = 0; cityId < store.cityCount(); cityId++) {
+            ScreenStack.Screen classList = screens.find(classListKey(store.cityName(cityId)));
+            if (classList != null) {
+                ((ClassListScreen) classList).refresh();
+            }
+        }
     }
 
-    private void showClassList(String city) {
-        setContentView(R.layout.activity_class_list);
-        TextView cityNameTextView = findViewById(R.id.cityNameTextView);
-        cityNameTextView.setText(city);
-        RecyclerView classRecyclerView = findViewById(R.id.classRecyclerView);
-        classRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        ClassAdapter classAdapter = new ClassAdapter(classesPerCity.get(city), className -> showTimetable(city, className));
-        classRecyclerView.setAdapter(classAdapter);
+    private RosterImporter.Source uriSource(Uri uri) {
+        return new RosterImporter.Source() {
+            @Override
+            public String key() {
+                return uri.toString();
+            }
 
-        navigationStack.push(this::setupCityList);
-        setupBackButton();
-    }
+            @Override
+            public long length() {
+                try (ParcelFileDescriptor descriptor = getContentResolver().openFileDescriptor(uri, "r")) {
+                    return descriptor == null ? -1 : descriptor.getStatSize();
+                } catch (IOException | SecurityException e) {
+                    return -1;
+                }
+            }
 
-    private void showTimetable(String city, String className) {
-        setContentView(R.layout.activity_timetable);
-        TextView classNameTextView = findViewById(R.id.classNameTextView);
-        classNameTextView.setText(className);
-        RecyclerView timetableRecyclerView = findViewById(R.id.timetableRecyclerView);
-        timetableRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        SubjectAdapter subjectAdapter = new SubjectAdapter(subjectsPerClass.get(className),
-                new SubjectAdapter.OnSubjectClickListener() {
-                    @Override
-                    public void onViewGrades(String subject) {
-                        showStudentList(city, className, subject);
+            @Override
+            public InputStream open() throws IOException {
+                try {
+                    InputStream in = getContentResolver().openInputStream(uri);
+                    if (in == null) {
+                        throw new IOException("Cannot open " + uri);
                     }
+                    return in;
+                } catch (SecurityException e) {
+                    throw new IOException("No permission to read " + uri, e);
+                }
+            }
+        };
+    }
 
-                    @Override
-                    public void onViewAttendance(String subject) {
-                        showAttendanceList(city, className, subject);
-                    }
-                });
-        timetableRecyclerView.setAdapter(subjectAdapter);
+    private static String classListKey(String city) {
+        return "classes/" + city;
+    }
+
+    private class ClassListScreen extends ScreenStack.Screen {
+        private final String city;
+        private ClassAdapter classAdapter;
+
+        ClassListScreen(String city) {
+            super(classListKey(city));
+            this.city = city;
+        }
 
-        navigationStack.push(() -> showClassList(city));
-        setupBackButton();
+        @Override
+        View create(LayoutInflater inflater, ViewGroup container) {
+            View view = inflater.inflate(R.layout.activity_class_list, container, false);
+            TextView cityNameTextView = view.findViewById(R.id.cityNameTextView);
+            cityNameTextView.setText(city);
+            classAdapter = new ClassAdapter(className -> showTimetable(city, className));
+            refresh();
+            setupList(view, R.id.classRecyclerView).setAdapter(classAdapter);
+            view.findViewById(R.id.exportCityButton).setOnClickListener(v -> exportCity(city, (Button) v));
+            return view;
+        }
+
+        void refresh() {
+            classAdapter.submitList(Rows.classes(store, store.findCity(city)));
+        }
     }
 
-    private void showStudentList(String city, String className, String subject) {
-        setContentView(R.layout.activity_student_list);
-        TextView subjectNameTextView = findViewById(R.id.subjectNameTextView);
-        subjectNameTextView.setText(subject);
-        RecyclerView studentRecyclerView = findViewById(R.id.studentRecyclerView);
-        studentRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        List<String> students = new ArrayList<>(gradesPerStudent.keySet());
-        StudentAdapter studentAdapter = new StudentAdapter(students, gradesPerStudent, subject);
-        studentRecyclerView.setAdapter(studentAdapter);
+    /**
+     * The city's timetable, or null while it is being planned or if planning failed; the top screen is shown
+     * again once planning ends. Planning runs on the loader thread, which hands the attempts to the batch workers.
+     */
+    private Timetable timetable(int cityId) {
+        Timetable timetable = timetables.get(cityId);
+        int[] classes = store.classesOf(cityId);
+        if (timetable != null && timetable.classCount() == classes.length) {
+            return timetable;
+        }
+        Integer failed = timetablesFailed.get(cityId);
+        if (failed != null && failed == classes.length) {
+            return null;
+        }
+        if (timetablesPlanning.add(cityId)) {
+            String city = store.cityName(cityId);
+            TimetableSolver solver = new TimetableSolver(TimetableSolver.Problem.of(store, cityId), TIMETABLE_SEED);
+            int attempts = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+            loaderExecutor.execute(() -> {
+                long start = Metrics.SOLVE_TIMETABLE.begin();
+                Timetable planned = null;
+                boolean interrupted = false;
+                try {
+                    planned = solver.solve(batchWorkers, attempts, TIMETABLE_BUDGET_NANOS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Cannot plan the timetable of " + city, e);
+                } finally {
+                    Metrics.SOLVE_TIMETABLE.end(start);
+                    Timetable result = planned;
+                    boolean retry = interrupted;
+                    mainHandler.post(() -> timetablePlanned(cityId, classes.length, result, retry));
+                }
+            });
+        }
+        return null;
+    }
+
+    /**
+     * Ends planning of the city on the main thread, however it went. A city whose planning failed shows the
+     * failure instead of being planned again on every show; an interrupted one is planned again.
+     */
+    private void timetablePlanned(int cityId, int classCount, Timetable planned, boolean interrupted) {
+        timetablesPlanning.remove(cityId);
+        if (planned != null) {
+            timetables.put(cityId, planned);
+            timetablesFailed.remove(cityId);
+        } else if (interrupted) {
+            return;
+        } else {
+            timetablesFailed.put(cityId, classCount);
+            Toast.makeText(this, "Error planning timetable", Toast.LENGTH_SHORT).show();
+        }
+        ScreenStack.Screen top = screens.top();
+        if (top != null) {
+            top.onShow();
+        }
+    }
 
-        findViewById(R.id.downloadGradesButton).setOnClickListener(v -> downloadGrades(city, className, subject));
+    private class TimetableScreen extends ScreenStack.Screen {
+        private final String city;
+        private final String className;
+        private TextView scheduleTextView;
 
-        navigationStack.push(() -> showTimetable(city, className));
-        setupBackButton();
+        TimetableScreen(String city, String className) {
+            super("timetable/" + city + "/" + className);
+            this.city = city;
+            this.className = className;
+        }
+
+        @Override
+        View create(LayoutInflater inflater, ViewGroup container) {
+            View view = inflater.inflate(R.layout.activity_timetable, container, false);
+            TextView classNameTextView = view.findViewById(R.id.classNameTextView);
+            classNameTextView.setText(className);
+            SubjectAdapter subjectAdapter = new SubjectAdapter(new SubjectAdapter.OnSubjectClickListener() {
+                @Override
+                public void onViewGrades(String subject) {
+                    showStudentList(city, className, subject);
+                }
+
+                @Override
+                public void onViewAttendance(String subject) {
+                    showAttendanceList(city, className, subject);
+                }
+            });
+            subjectAdapter.submitList(Rows.subjects(store, store.findClass(city, className)));
+            setupList(view, R.id.timetableRecyclerView).setAdapter(subjectAdapter);
+            scheduleTextView = view.findViewById(R.id.scheduleTextView);
+            return view;
+        }
+
+        @Override
+        void onShow() {
+            Timetable timetable = timetable(store.findCity(city));
+            int classId = store.findClass(city, className);
+            if (timetable == null || timetable.classIndex(classId) < 0) {
+                scheduleTextView.setText(timetablesPlanning.contains(store.findCity(city))
+                        ? "Planning timetable..." : "Timetable could not be planned");
+                return;
+            }
+            Calendar now = Calendar.getInstance();
+            int day = SchoolCalendar.dayOfWeek(today());
+            int period = Timetable.periodAt(now.get(Calendar.HOUR_OF_DAY) * 60 + now.get(Calendar.MINUTE));
+            if (day >= Timetable.DAYS) {
+                // Shows Monday's lessons over the weekend.
+                day = 0;
+                period = -1;
+            }
+            scheduleTextView.setText(timetable.describeDay(timetable.classIndex(classId), day, period,
+                    store.subjectNameList(classId)));
+        }
     }
 
-    private void showAttendanceList(String city, String className, String subject) {
-        setContentView(R.layout.attendance_list);
-        TextView subjectNameTextView = findViewById(R.id.subjectNameTextView);
-        subjectNameTextView.setText(subject);
-        RecyclerView attendanceRecyclerView = findViewById(R.id.attendanceRecyclerView);
-        attendanceRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        List<String> students = new ArrayList<>(attendancePerStudent.keySet());
-        AttendanceAdapter attendanceAdapter = new AttendanceAdapter(students, attendancePerStudent, subject);
-        attendanceRecyclerView.setAdapter(attendanceAdapter);
+    private class StudentListScreen extends ScreenStack.Screen {
+        private final String city;
+        private final String className;
+        private final String subject;
+        private int subjectIndex;
+        private int classId;
+        private TextView summaryTextView;
+        private final StudentAdapter studentAdapter = new StudentAdapter(this::enterGrade);
+
+        StudentListScreen(String city, String className, String subject) {
+            super("grades/" + city + "/" + className + "/" + subject);
+            this.city = city;
+            this.className = className;
+            this.subject = subject;
+        }
 
-        findViewById(R.id.downloadAttendanceButton).setOnClickListener(v -> downloadAttendance(city, className, subject));
+        @Override
+        View create(LayoutInflater inflater, ViewGroup container) {
+            View view = inflater.inflate(R.layout.activity_student_list, container, false);
+            TextView subjectNameTextView = view.findViewById(R.id.subjectNameTextView);
+            subjectNameTextView.setText(subject);
+            summaryTextView = view.findViewById(R.id.summaryTextView);
+            classId = store.findClass(city, className);
+            ClassBook book = store.book(classId);
+            subjectIndex = book == null ? -1 : book.subjectIndex(store.subjectNames.find(subject));
+            setupList(view, R.id.studentRecyclerView).setAdapter(studentAdapter);
+            view.findViewById(R.id.downloadGradesButton).setOnClickListener(v -> downloadGrades(city, className, subject, (Button) v));
+            return view;
+        }
 
-        navigationStack.push(() -> showTimetable(city, className));
-        setupBackButton();
+        @Override
+        void onShow() {
+            // Looked up on every show: while the screen sat in the stack, the store may have paged the class out.
+            ClassBook book = readableBook(classId);
+            if (book == null || subjectIndex < 0) {
+                return;
+            }
+            summaryTextView.setText(Report.gradeSummary(book.stats(), subjectIndex));
+            studentAdapter.submitList(Rows.students(store, book, subjectIndex, studentAdapter.getCurrentList()));
+        }
+
+        private void enterGrade(int slot, int grade) {
+            if (canEdit()) {
+                store.enterGrade(classId, slot, subjectIndex, grade);
+                onShow();
+            }
+        }
     }
 
-    private void setupBackButton() {
-        findViewById(R.id.backButton).setOnClickListener(v -> {
-            if (!navigationStack.isEmpty()) {
-                navigationStack.pop().run();
+    private class AttendanceListScreen extends ScreenStack.Screen {
+        private final String city;
+        private final String className;
+        private final String subject;
+        private int subjectIndex;
+        private int classId;
+        private TextView summaryTextView;
+        private final AttendanceAdapter attendanceAdapter = new AttendanceAdapter(this::toggleAttendance);
+
+        AttendanceListScreen(String city, String className, String subject) {
+            super("attendance/" + city + "/" + className + "/" + subject);
+            this.city = city;
+            this.className = className;
+            this.subject = subject;
+        }
+
+        @Override
+        View create(LayoutInflater inflater, ViewGroup container) {
+            View view = inflater.inflate(R.layout.attendance_list, container, false);
+            TextView subjectNameTextView = view.findViewById(R.id.subjectNameTextView);
+            subjectNameTextView.setText(subject);
+            summaryTextView = view.findViewById(R.id.summaryTextView);
+            classId = store.findClass(city, className);
+            ClassBook book = store.book(classId);
+            subjectIndex = book == null ? -1 : book.subjectIndex(store.subjectNames.find(subject));
+            setupList(view, R.id.attendanceRecyclerView).setAdapter(attendanceAdapter);
+            view.findViewById(R.id.downloadAttendanceButton).setOnClickListener(v -> downloadAttendance(city, className, subject, (Button) v));
+            return view;
+        }
+
+        @Override
+        void onShow() {
+            ClassBook book = readableBook(classId);
+            if (book == null || subjectIndex < 0) {
+                return;
             }
-        });
+            summaryTextView.setText(Report.attendanceSummary(book.stats(), subjectIndex));
+            // Looked up on every show, so a screen left open over the summer moves on to the new school year.
+            SchoolCalendar calendar = SchoolCalendar.schoolYearOf(today());
+            int date = SchoolCalendar.civil(today());
+            attendanceAdapter.submitList(Rows.attendance(store, book, subjectIndex, calendar.startYear(),
+                    calendar.monthStart(date / 10000, date / 100 % 100), calendar.monthEnd(date / 10000, date / 100 % 100)));
+        }
+
+        private void toggleAttendance(int slot) {
+            ClassBook book = readableBook(classId);
+            if (book != null && canEdit()) {
+                boolean present = !book.isPresent(slot, subjectIndex);
+                SchoolCalendar calendar = SchoolCalendar.schoolYearOf(today());
+                int day = calendar.dayOf(today());
+                if (day >= 0) {
+                    // Marks today's lesson; on a day without school only the current mark changes.
+                    store.enterAttendance(classId, slot, subjectIndex, calendar.startYear(), day, present);
+                } else {
+                    store.enterAttendance(classId, slot, subjectIndex, present);
+                }
+                onShow();
+            }
+        }
     }
 
-    private void downloadGrades(String city, String className, String subject) {
-        PdfDocument document = new PdfDocument();
-        PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(595, 842, 1).create();
-        PdfDocument.Page page = document.startPage(pageInfo);
+    private class SearchScreen extends ScreenStack.Screen implements StudentSearch.Listener {
+        private final MatchAdapter matchAdapter = new MatchAdapter(match -> showTimetable(match.city, match.classLabel));
+        private StudentSearch search;
+        private EditText searchEditText;
+        private Spinner subjectSpinner;
+        private EditText averageBelowEditText;
+        private EditText attendanceBelowEditText;
+        private TextView resultCountTextView;
+
+        SearchScreen() {
+            super("search");
+        }
+
+        @Override
+        View create(LayoutInflater inflater, ViewGroup container) {
+            View view = inflater.inflate(R.layout.activity_search, container, false);
+            setupList(view, R.id.searchRecyclerView).setAdapter(matchAdapter);
+            searchEditText = view.findViewById(R.id.searchEditText);
+            subjectSpinner = view.findViewById(R.id.subjectSpinner);
+            averageBelowEditText = view.findViewById(R.id.averageBelowEditText);
+            attendanceBelowEditText = view.findViewById(R.id.attendanceBelowEditText);
+            resultCountTextView = view.findViewById(R.id.resultCountTextView);
+            search = new StudentSearch(searchExecutor, mainHandler::post, this);
+
+            List<String> subjects = new ArrayList<>();
+            subjects.add("All subjects");
+            for (int subjectId = 0; subjectId < store.subjectNames.size(); subjectId++) {
+                subjects.add(store.subjectNames.get(subjectId));
+            }
+            ArrayAdapter<String> subjectAdapter = new ArrayAdapter<>(MainActivity.this, android.R.layout.simple_spinner_item, subjects);
+            subjectAdapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+            subjectSpinner.setAdapter(subjectAdapter);
+            subjectSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+                @Override
+                public void onItemSelected(AdapterView<?> parent, View item, int position, long id) {
+                    query();
+                }
 
-        Canvas canvas = page.getCanvas();
-        Paint paint = new Paint();
-        paint.setColor(Color.BLACK);
-        paint.setTextSize(12f);
+                @Override
+                public void onNothingSelected(AdapterView<?> parent) {
+                    query();
+                }
+            });
+            TextWatcher watcher = new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence text, int start, int count, int after) {
+                }
 
-        canvas.drawText("Grades for " + city + " - " + className + " - " + subject, 50, 50, paint);
+                @Override
+                public void onTextChanged(CharSequence text, int start, int before, int count) {
+                }
 
-        int y = 100;
-        for (Map.Entry<String, Map<String, List<Integer>>> entry : gradesPerStudent.entrySet()) {
-            String studentName = entry.getKey();
-            List<Integer> grades = entry.getValue().get(subject);
-            String gradeText = studentName + ": " + grades.toString();
-            canvas.drawText(gradeText, 50, y, paint);
-            y += 20;
+                @Override
+                public void afterTextChanged(Editable text) {
+                    query();
+                }
+            };
+            searchEditText.addTextChangedListener(watcher);
+            averageBelowEditText.addTextChangedListener(watcher);
+            attendanceBelowEditText.addTextChangedListener(watcher);
+            return view;
         }
 
-        document.finishPage(page);
+        @Override
+        void onShow() {
+            search.rebuild(store);
+            query();
+        }
 
-        String fileName = city + "_" + className + "_" + subject + "_grades.pdf";
-        File file = new File(getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS), fileName);
+        private void query() {
+            // Spinner position 0 is "All subjects"; position p is subject id p - 1.
+            int subjectId = subjectSpinner.getSelectedItemPosition() - 1;
+            search.search(new StudentIndex.Query(searchEditText.getText().toString(), subjectId,
+                    threshold(averageBelowEditText), threshold(attendanceBelowEditText) / 100));
+        }
 
-        try {
-            document.writeTo(new FileOutputStream(file));
-            Toast.makeText(this, "Grades downloaded: " + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
-        } catch (IOException e) {
-            e.printStackTrace();
-            Toast.makeText(this, "Error downloading grades", Toast.LENGTH_SHORT).show();
+        private double threshold(EditText field) {
+            String text = field.getText().toString().trim().replace(',', '.');
+            if (text.isEmpty()) {
+                return Double.NaN;
+            }
+            try {
+                return Double.parseDouble(text);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
         }
 
-        document.close();
+        @Override
+        public void onResults(PagedRows<StudentSearch.Match> matches) {
+            matchAdapter.submit(matches);
+            resultCountTextView.setText(matches.size() + " students");
+        }
+
+        @Override
+        public void onIndexFailed(IOException error) {
+            Log.e(TAG, "Cannot build the student index", error);
+            Toast.makeText(MainActivity.this, "Error loading students for search", Toast.LENGTH_SHORT).show();
+        }
     }
 
-    private void downloadAttendance(String city, String className, String subject) {
-        PdfDocument document = new PdfDocument();
-        PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(595, 842, 1).create();
-        PdfDocument.Page page = document.startPage(pageInfo);
+    /**
+     * Hidden screen, opened by long-pressing the city list title, with the {@link Metrics} of this run.
+     */
+    private class DiagnosticsScreen extends ScreenStack.Screen {
+        private TextView metricsTextView;
+        private Button countAllocationsButton;
 
-        Canvas canvas = page.getCanvas();
-        Paint paint = new Paint();
-        paint.setColor(Color.BLACK);
-        paint.setTextSize(12f);
+        DiagnosticsScreen() {
+            super("diagnostics");
+        }
 
-        canvas.drawText("Attendance for " + city + " - " + className + " - " + subject, 50, 50, paint);
+        @Override
+        View create(LayoutInflater inflater, ViewGroup container) {
+            View view = inflater.inflate(R.layout.activity_diagnostics, container, false);
+            view.findViewById(R.id.backButton).setOnClickListener(v -> navigateBack());
+            metricsTextView = view.findViewById(R.id.metricsTextView);
+            countAllocationsButton = view.findViewById(R.id.countAllocationsButton);
+            countAllocationsButton.setOnClickListener(v -> {
+                METRICS_PROBE.setCountingAllocations(!METRICS_PROBE.isCountingAllocations());
+                onShow();
+            });
+            view.findViewById(R.id.resetMetricsButton).setOnClickListener(v -> {
+                Metrics.resetAll();
+                onShow();
+            });
+            view.findViewById(R.id.dumpMetricsButton).setOnClickListener(v -> dumpMetrics());
+            return view;
+        }
 
-        int y = 100;
-        for (Map.Entry<String, Map<String, Boolean>> entry : attendancePerStudent.entrySet()) {
-            String studentName = entry.getKey();
-            String attendanceText = studentName + ": " + (int)(Math.random() * (100 - 50 + 1)) + 50; ;
-            canvas.drawText(attendanceText, 50, y, paint);
-            y += 20;
+        @Override
+        void onShow() {
+            StringWriter text = new StringWriter();
+            try {
+                Metrics.dump(text);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            text.write("\nReport cache: " + reportCache.stats() + "\n");
+            metricsTextView.setText(text.toString());
+            countAllocationsButton.setText(METRICS_PROBE.isCountingAllocations()
+                    ? "Stop Counting Allocations" : "Count Allocations");
         }
+    }
 
-        document.finishPage(page);
+    private void dumpMetrics() {
+        File file = new File(getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS),
+                "metrics_" + System.currentTimeMillis() + ".txt");
+        exportExecutor.execute(() -> {
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+                Metrics.dump(out);
+                out.write("\nReport cache: " + reportCache.stats() + "\n");
+                mainHandler.post(() -> Toast.makeText(this, "Metrics saved: " + file.getAbsolutePath(), Toast.LENGTH_LONG).show());
+            } catch (IOException e) {
+                Log.e(TAG, "Cannot write " + file, e);
+                mainHandler.post(() -> Toast.makeText(this, "Error saving metrics", Toast.LENGTH_SHORT).show());
+            }
+        });
+    }
 
-        String fileName = city + "_" + className + "_" + subject + "_attendance.pdf";
-        File file = new File(getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS), fileName);
+    /**
+     * Main-thread part of a download: the report snapshot and handing it to the exporter. Rendering is
+     * timed separately, per report, as {@link Metrics#RENDER_REPORT}.
+     */
+    private void downloadGrades(String city, String className, String subject, Button button) {
+        long start = Metrics.DOWNLOAD_GRADES.begin();
+        try {
+            int classId = store.findClass(city, className);
+            ClassBook book = readableBook(classId);
+            if (book == null) {
+                return;
+            }
+            Report report = Report.grades(store, city, classId, book.subjectIndex(store.subjectNames.find(subject)));
+            export(report, button, "Grades");
+        } finally {
+            Metrics.DOWNLOAD_GRADES.end(start);
+        }
+    }
 
+    private void downloadAttendance(String city, String className, String subject, Button button) {
+        long start = Metrics.DOWNLOAD_ATTENDANCE.begin();
         try {
-            document.writeTo(new FileOutputStream(file));
-            Toast.makeText(this, "Attendance downloaded: " + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
-        } catch (IOException e) {
-            e.printStackTrace();
-            Toast.makeText(this, "Error downloading attendance", Toast.LENGTH_SHORT).show();
+            int classId = store.findClass(city, className);
+            ClassBook book = readableBook(classId);
+            if (book == null) {
+                return;
+            }
+            Report report = Report.attendance(store, city, classId, book.subjectIndex(store.subjectNames.find(subject)));
+            export(report, button, "Attendance");
+        } finally {
+            Metrics.DOWNLOAD_ATTENDANCE.end(start);
         }
+    }
+
+    private void exportCity(String city, Button button) {
+        if (currentExport != null && !currentExport.isDone()) {
+            currentExport.cancel();
+            return;
+        }
+        long start = Metrics.EXPORT_CITY.begin();
+        List<Report> reports = new ArrayList<>();
+        try {
+            for (int classId : store.classesOf(store.findCity(city))) {
+                ClassBook book = store.book(classId);
+                if (book == null) {
+                    // Logged by the store; the other classes are still exported.
+                    continue;
+                }
+                for (int subject = 0; subject < book.subjectCount(); subject++) {
+                    reports.add(Report.grades(store, city, classId, subject));
+                    reports.add(Report.attendance(store, city, classId, subject));
+                }
+            }
+        } finally {
+            Metrics.EXPORT_CITY.end(start);
+        }
+        if (reports.isEmpty()) {
+            Toast.makeText(this, "No reports to export yet", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        CharSequence label = button.getText();
+        File directory = new File(getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS), city);
+        currentExport = batchExporter.export(reports, directory, city + "_reports.zip", new BatchExporter.Listener() {
+            @Override
+            public void onProgress(int reportsDone, int reportCount) {
+                button.setText("Exporting " + reportsDone + "/" + reportCount + " (tap to cancel)");
+            }
+
+            @Override
+            public void onFinished(BatchExporter.Result result) {
+                Log.i(TAG, "Batch export of " + city + ": " + result);
+                button.setText(label);
+                Toast.makeText(MainActivity.this, "Reports downloaded: " + result.zip.getAbsolutePath() + "\n" + result, Toast.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onFailed(IOException error) {
+                Log.e(TAG, "Batch export of " + city + " failed", error);
+                button.setText(label);
+                Toast.makeText(MainActivity.this, "Error exporting reports", Toast.LENGTH_SHORT).show();
+            }
+
+            @Override
+            public void onCancelled() {
+                button.setText(label);
+                Toast.makeText(MainActivity.this, "Report export cancelled", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void export(Report report, Button button, String kind) {
+        if (currentExport != null && !currentExport.isDone()) {
+            currentExport.cancel();
+            return;
+        }
+        CharSequence label = button.getText();
+        File file = new File(getExternalFilesDir(Environment.DIRECTORY_DOWNLOADS), report.fileName);
+        currentExport = exporter.export(report, file, new ReportExporter.Listener() {
+            @Override
+            public void onProgress(int rowsDone, int rowCount) {
+                button.setText("Exporting " + (rowCount == 0 ? 100 : rowsDone * 100 / rowCount) + "% (tap to cancel)");
+            }
+
+            @Override
+            public void onFinished(File file) {
+                button.setText(label);
+                Toast.makeText(MainActivity.this, kind + " downloaded: " + file.getAbsolutePath(), Toast.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onFailed(IOException error) {
+                Log.e(TAG, "Export of " + report.fileName + " failed", error);
+                button.setText(label);
+                Toast.makeText(MainActivity.this, "Error downloading " + kind.toLowerCase(Locale.ROOT), Toast.LENGTH_SHORT).show();
+            }
 
-        document.close();
+            @Override
+            public void onCancelled() {
+                button.setText(label);
+                Toast.makeText(MainActivity.this, kind + " export cancelled", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
-    private class CityAdapter extends RecyclerView.Adapter<CityAdapter.CityViewHolder> {
-        private List<String> cities;
+    private static class CityAdapter extends ListAdapter<Rows.Named, CityAdapter.CityViewHolder> {
         private OnItemClickListener listener;
 
-        public CityAdapter(List<String> cities, OnItemClickListener listener) {
-            this.cities = cities;
+        public CityAdapter(OnItemClickListener listener) {
+            super(Rows.Named.DIFF);
             this.listener = listener;
+            setHasStableIds(true);
         }
 
         @NonNull
@@ -264,12 +1054,17 @@ public class MainActivity extends AppCompatActivity {
 
         @Override
         public void onBindViewHolder(@NonNull CityViewHolder holder, int position) {
-            holder.bind(cities.get(position), listener);
+            long start = Metrics.BIND_CITY.begin();
+            try {
+                holder.bind(getItem(position).name);
+            } finally {
+                Metrics.BIND_CITY.end(start);
+            }
         }
 
         @Override
-        public int getItemCount() {
-            return cities.size();
+        public long getItemId(int position) {
+            return getItem(position).id;
         }
 
         class CityViewHolder extends RecyclerView.ViewHolder {
@@ -278,22 +1073,27 @@ public class MainActivity extends AppCompatActivity {
             public CityViewHolder(@NonNull View itemView) {
                 super(itemView);
                 cityNameTextView = itemView.findViewById(R.id.cityNameTextView);
+                itemView.setOnClickListener(v -> {
+                    int position = getAdapterPosition();
+                    if (position != RecyclerView.NO_POSITION) {
+                        listener.onItemClick(getItem(position).name);
+                    }
+                });
             }
 
-            public void bind(final String city, final OnItemClickListener listener) {
+            public void bind(String city) {
                 cityNameTextView.setText(city);
-                itemView.setOnClickListener(v -> listener.onItemClick(city));
             }
         }
     }
 
-    private class ClassAdapter extends RecyclerView.Adapter<ClassAdapter.ClassViewHolder> {
-        private List<String> classes;
+    private static class ClassAdapter extends ListAdapter<Rows.Named, ClassAdapter.ClassViewHolder> {
         private OnItemClickListener listener;
 
-        public ClassAdapter(List<String> classes, OnItemClickListener listener) {
-            this.classes = classes;
+        public ClassAdapter(OnItemClickListener listener) {
+            super(Rows.Named.DIFF);
             this.listener = listener;
+            setHasStableIds(true);
         }
 
         @NonNull
@@ -305,12 +1105,17 @@ public class MainActivity extends AppCompatActivity {
 
         @Override
         public void onBindViewHolder(@NonNull ClassViewHolder holder, int position) {
-            holder.bind(classes.get(position), listener);
+            long start = Metrics.BIND_CLASS.begin();
+            try {
+                holder.bind(getItem(position).name);
+            } finally {
+                Metrics.BIND_CLASS.end(start);
+            }
         }
 
         @Override
-        public int getItemCount() {
-            return classes.size();
+        public long getItemId(int position) {
+            return getItem(position).id;
         }
 
         class ClassViewHolder extends RecyclerView.ViewHolder {
@@ -319,17 +1124,21 @@ public class MainActivity extends AppCompatActivity {
             public ClassViewHolder(@NonNull View itemView) {
                 super(itemView);
                 classNameTextView = itemView.findViewById(R.id.classNameTextView);
+                itemView.setOnClickListener(v -> {
+                    int position = getAdapterPosition();
+                    if (position != RecyclerView.NO_POSITION) {
+                        listener.onItemClick(getItem(position).name);
+                    }
+                });
             }
 
-            public void bind(final String className, final OnItemClickListener listener) {
+            public void bind(String className) {
                 classNameTextView.setText(className);
-                itemView.setOnClickListener(v -> listener.onItemClick(className));
             }
         }
     }
 
-    private static class SubjectAdapter extends RecyclerView.Adapter<SubjectAdapter.SubjectViewHolder> {
-        private List<String> subjects;
+    private static class SubjectAdapter extends ListAdapter<Rows.Named, SubjectAdapter.SubjectViewHolder> {
         private OnSubjectClickListener listener;
 
         public interface OnSubjectClickListener {
@@ -337,9 +1146,10 @@ public class MainActivity extends AppCompatActivity {
             void onViewAttendance(String subject);
         }
 
-        public SubjectAdapter(List<String> subjects, OnSubjectClickListener listener) {
-            this.subjects = subjects;
+        public SubjectAdapter(OnSubjectClickListener listener) {
+            super(Rows.Named.DIFF);
             this.listener = listener;
+            setHasStableIds(true);
         }
 
         @NonNull
@@ -351,12 +1161,17 @@ public class MainActivity extends AppCompatActivity {
 
         @Override
         public void onBindViewHolder(@NonNull SubjectViewHolder holder, int position) {
-            holder.bind(subjects.get(position), listener);
+            long start = Metrics.BIND_SUBJECT.begin();
+            try {
+                holder.bind(getItem(position).name);
+            } finally {
+                Metrics.BIND_SUBJECT.end(start);
+            }
         }
 
         @Override
-        public int getItemCount() {
-            return subjects.size();
+        public long getItemId(int position) {
+            return getItem(position).id;
         }
 
         class SubjectViewHolder extends RecyclerView.ViewHolder {
@@ -364,31 +1179,44 @@ public class MainActivity extends AppCompatActivity {
             private Button viewGradesButton;
             private Button viewAttendanceButton;
 
-            public SubjectViewHolder(@
-                                             NonNull View itemView) {
+            public SubjectViewHolder(@NonNull View itemView) {
                 super(itemView);
                 subjectNameTextView = itemView.findViewById(R.id.subjectNameTextView);
                 viewGradesButton = itemView.findViewById(R.id.viewGradesButton);
                 viewAttendanceButton = itemView.findViewById(R.id.viewAttendanceButton);
+                viewGradesButton.setOnClickListener(v -> {
+                    int position = getAdapterPosition();
+                    if (position != RecyclerView.NO_POSITION) {
+                        listener.onViewGrades(getItem(position).name);
+                    }
+                });
+                viewAttendanceButton.setOnClickListener(v -> {
+                    int position = getAdapterPosition();
+                    if (position != RecyclerView.NO_POSITION) {
+                        listener.onViewAttendance(getItem(position).name);
+                    }
+                });
             }
 
-            public void bind(final String subject, final OnSubjectClickListener listener) {
+            public void bind(String subject) {
                 subjectNameTextView.setText(subject);
-                viewGradesButton.setOnClickListener(v -> listener.onViewGrades(subject));
-                viewAttendanceButton.setOnClickListener(v -> listener.onViewAttendance(subject));
             }
         }
     }
 
-    private class StudentAdapter extends RecyclerView.Adapter<StudentAdapter.StudentViewHolder> {
-        private List<String> students;
-        private Map<String, Map<String, List<Integer>>> gradesPerStudent;
-        private String subject;
+    static class StudentAdapter extends ListAdapter<Rows.Student, StudentAdapter.StudentViewHolder> {
+        private static final int[] GRADE_BUTTONS = {R.id.grade1Button, R.id.grade2Button, R.id.grade3Button,
+                R.id.grade4Button, R.id.grade5Button};
+        private OnGradeListener listener;
 
-        public StudentAdapter(List<String> students, Map<String, Map<String, List<Integer>>> gradesPerStudent, String subject) {
-            this.students = students;
-            this.gradesPerStudent = gradesPerStudent;
-            this.subject = subject;
+        public interface OnGradeListener {
+            void onGrade(int slot, int grade);
+        }
+
+        public StudentAdapter(OnGradeListener listener) {
+            super(Rows.Student.DIFF);
+            this.listener = listener;
+            setHasStableIds(true);
         }
 
         @NonNull
@@ -400,14 +1228,17 @@ public class MainActivity extends AppCompatActivity {
 
         @Override
         public void onBindViewHolder(@NonNull StudentViewHolder holder, int position) {
-            String student = students.get(position);
-            List<Integer> grades = gradesPerStudent.get(student).get(subject);
-            holder.bind(student, grades);
+            long start = Metrics.BIND_STUDENT.begin();
+            try {
+                holder.bind(getItem(position));
+            } finally {
+                Metrics.BIND_STUDENT.end(start);
+            }
         }
 
         @Override
-        public int getItemCount() {
-            return students.size();
+        public long getItemId(int position) {
+            return getItem(position).slot;
         }
 
         class StudentViewHolder extends RecyclerView.ViewHolder {
@@ -418,24 +1249,35 @@ public class MainActivity extends AppCompatActivity {
                 super(itemView);
                 studentNameTextView = itemView.findViewById(R.id.studentNameTextView);
                 studentGradesTextView = itemView.findViewById(R.id.studentGradesTextView);
+                for (int i = 0; i < GRADE_BUTTONS.length; i++) {
+                    int grade = i + 1;
+                    itemView.findViewById(GRADE_BUTTONS[i]).setOnClickListener(v -> {
+                        int position = getAdapterPosition();
+                        if (position != RecyclerView.NO_POSITION) {
+                            listener.onGrade(getItem(position).slot, grade);
+                        }
+                    });
+                }
             }
 
-            public void bind(String student, List<Integer> grades) {
-                studentNameTextView.setText(student);
-                studentGradesTextView.setText(grades.toString().replaceAll("[\\[\\]]", ""));
+            public void bind(Rows.Student row) {
+                studentNameTextView.setText(row.name);
+                studentGradesTextView.setText(row.grades);
             }
         }
     }
 
-    private class AttendanceAdapter extends RecyclerView.Adapter<AttendanceAdapter.AttendanceViewHolder> {
-        private List<String> students;
-        private Map<String, Map<String, Boolean>> attendancePerStudent;
-        private String subject;
+    static class AttendanceAdapter extends ListAdapter<Rows.Attendance, AttendanceAdapter.AttendanceViewHolder> {
+        private OnToggleListener listener;
 
-        public AttendanceAdapter(List<String> students, Map<String, Map<String, Boolean>> attendancePerStudent, String subject) {
-            this.students = students;
-            this.attendancePerStudent = attendancePerStudent;
-            this.subject = subject;
+        public interface OnToggleListener {
+            void onToggle(int slot);
+        }
+
+        public AttendanceAdapter(OnToggleListener listener) {
+            super(Rows.Attendance.DIFF);
+            this.listener = listener;
+            setHasStableIds(true);
         }
 
         @NonNull
@@ -447,14 +1289,17 @@ public class MainActivity extends AppCompatActivity {
 
         @Override
         public void onBindViewHolder(@NonNull AttendanceViewHolder holder, int position) {
-            String student = students.get(position);
-            boolean isPresent = attendancePerStudent.get(student).get(subject);
-            holder.bind(student, isPresent);
+            long start = Metrics.BIND_ATTENDANCE.begin();
+            try {
+                holder.bind(getItem(position));
+            } finally {
+                Metrics.BIND_ATTENDANCE.end(start);
+            }
         }
 
         @Override
-        public int getItemCount() {
-            return students.size();
+        public long getItemId(int position) {
+            return getItem(position).slot;
         }
 
         class AttendanceViewHolder extends RecyclerView.ViewHolder {
@@ -465,11 +1310,100 @@ public class MainActivity extends AppCompatActivity {
                 super(itemView);
                 text1 = itemView.findViewById(android.R.id.text1);
                 text2 = itemView.findViewById(android.R.id.text2);
+                itemView.setOnClickListener(v -> {
+                    int position = getAdapterPosition();
+                    if (position != RecyclerView.NO_POSITION) {
+                        listener.onToggle(getItem(position).slot);
+                    }
+                });
             }
 
-            public void bind(String student, boolean isPresent) {
-                text1.setText(student);
-                text2.setText(isPresent ? "Present" : "Absent");
+            public void bind(Rows.Attendance row) {
+                text1.setText(row.name);
+                text2.setText(row.detail);
+            }
+        }
+    }
+
+    /**
+     * Search results, any number of them: rows come from {@link PagedRows}, and a row whose page is still
+     * loading is bound as a placeholder and rebound when the page arrives.
+     */
+    private static class MatchAdapter extends RecyclerView.Adapter<MatchAdapter.MatchViewHolder>
+            implements PagedRows.Listener {
+        private OnMatchClickListener listener;
+        private PagedRows<StudentSearch.Match> rows;
+
+        public interface OnMatchClickListener {
+            void onMatchClick(StudentSearch.Match match);
+        }
+
+        public MatchAdapter(OnMatchClickListener listener) {
+            this.listener = listener;
+        }
+
+        public void submit(PagedRows<StudentSearch.Match> rows) {
+            if (this.rows != null) {
+                this.rows.close();
+            }
+            this.rows = rows;
+            rows.setListener(this);
+            // A new query: diffing thousands of rows, most not loaded, would cost more than redrawing a screenful.
+            notifyDataSetChanged();
+        }
+
+        @Override
+        public void onRowsLoaded(int position, int count) {
+            notifyItemRangeChanged(position, count);
+        }
+
+        @Override
+        public void onLoadFailed(IOException error) {
+            Log.e(TAG, "Cannot load search results", error);
+        }
+
+        @NonNull
+        @Override
+        public MatchViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            View view = LayoutInflater.from(parent.getContext()).inflate(android.R.layout.simple_list_item_2, parent, false);
+            return new MatchViewHolder(view);
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull MatchViewHolder holder, int position) {
+            long start = Metrics.BIND_MATCH.begin();
+            try {
+                holder.bind(rows.get(position));
+            } finally {
+                Metrics.BIND_MATCH.end(start);
+            }
+        }
+
+        @Override
+        public int getItemCount() {
+            return rows == null ? 0 : rows.size();
+        }
+
+        class MatchViewHolder extends RecyclerView.ViewHolder {
+            private TextView text1;
+            private TextView text2;
+
+            public MatchViewHolder(@NonNull View itemView) {
+                super(itemView);
+                text1 = itemView.findViewById(android.R.id.text1);
+                text2 = itemView.findViewById(android.R.id.text2);
+                itemView.setOnClickListener(v -> {
+                    int position = getAdapterPosition();
+                    StudentSearch.Match row = position == RecyclerView.NO_POSITION ? null : rows.get(position);
+                    if (row != null) {
+                        listener.onMatchClick(row);
+                    }
+                });
+            }
+
+            public void bind(StudentSearch.Match row) {
+                text1.setText(row == null ? "Loading…" : row.name);
+                text2.setText(row == null ? "" : row.detail);
             }
         }
     }
@@ -480,9 +1414,7 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     public void onBackPressed() {
-        if (!navigationStack.isEmpty()) {
-            navigationStack.pop().run();
-        } else {
+        if (!navigateBack()) {
             super.onBackPressed();
         }
     }
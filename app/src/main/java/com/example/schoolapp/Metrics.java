@@ -0,0 +1,234 @@
+package com.example.schoolapp;
+
+import android.os.Debug;
+import android.os.Trace;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Always-on timings of navigation hops, row binds and report exports. Code under measurement brackets itself
+ * with {@link Metric#begin()} and, in a {@code finally} block, {@link Metric#end(long)}; each pair records the
+ * elapsed time into the metric's {@link LatencyHistogram} and, while allocation counting is on, the objects
+ * the thread allocated in between. Sections also go to the installed {@link Probe}, which on a device is the
+ * system trace, so they line up with frames in Perfetto. Recording takes no locks and allocates nothing.
+ */
+final class Metrics {
+    /**
+     * Where sections and allocation counts come from; {@link #NONE} until the app installs a {@link SystemProbe}.
+     */
+    interface Probe {
+        void beginSection(String name);
+
+        void endSection();
+
+        /**
+         * Objects allocated by the calling thread so far, or -1 if allocations are not being counted.
+         */
+        long allocations();
+    }
+
+    static final Probe NONE = new Probe() {
+        @Override
+        public void beginSection(String name) {
+        }
+
+        @Override
+        public void endSection() {
+        }
+
+        @Override
+        public long allocations() {
+            return -1;
+        }
+    };
+
+    /**
+     * android.os.Trace sections and the runtime's per-thread allocation count. Counting slows allocation
+     * down for the whole process, so it stays off until turned on from the diagnostics screen.
+     */
+    static final class SystemProbe implements Probe {
+        private volatile boolean countingAllocations;
+
+        @Override
+        public void beginSection(String name) {
+            Trace.beginSection(name);
+        }
+
+        @Override
+        public void endSection() {
+            Trace.endSection();
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public long allocations() {
+            return countingAllocations ? Debug.getThreadAllocCount() : -1;
+        }
+
+        boolean isCountingAllocations() {
+            return countingAllocations;
+        }
+
+        @SuppressWarnings("deprecation")
+        void setCountingAllocations(boolean counting) {
+            if (counting == countingAllocations) {
+                return;
+            }
+            if (counting) {
+                Debug.startAllocCounting();
+            } else {
+                Debug.stopAllocCounting();
+            }
+            countingAllocations = counting;
+        }
+    }
+
+    static final class Metric {
+        final String name;
+        final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong allocations = new AtomicLong();
+        private final AtomicLong allocationSamples = new AtomicLong();
+
+        private Metric(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Starts a section on the calling thread; pass the result to {@link #end(long)} on the same thread, from a
+         * {@code finally} block: a section left open on a throw would keep the trace section open and shift the
+         * allocation counts of every section after it. Sections may nest.
+         */
+        long begin() {
+            Probe current = probe;
+            current.beginSection(name);
+            Sections sections = SECTIONS.get();
+            if (sections.depth < Sections.MAX_DEPTH) {
+                sections.allocations[sections.depth] = current.allocations();
+            }
+            sections.depth++;
+            return System.nanoTime();
+        }
+
+        void end(long start) {
+            long elapsed = System.nanoTime() - start;
+            Probe current = probe;
+            Sections sections = SECTIONS.get();
+            sections.depth--;
+            if (sections.depth < Sections.MAX_DEPTH) {
+                long before = sections.allocations[sections.depth];
+                long after = before < 0 ? -1 : current.allocations();
+                if (after >= 0) {
+                    allocations.addAndGet(after - before);
+                    allocationSamples.incrementAndGet();
+                }
+            }
+            latency.record(elapsed);
+            current.endSection();
+        }
+
+        /**
+         * Mean objects allocated per section, over the sections recorded with counting on; NaN if none were.
+         */
+        double allocationsPerSample() {
+            long samples = allocationSamples.get();
+            return samples == 0 ? Double.NaN : (double) allocations.get() / samples;
+        }
+
+        void reset() {
+            latency.reset();
+            allocations.set(0);
+            allocationSamples.set(0);
+        }
+    }
+
+    /**
+     * Per-thread stack of allocation counts at the start of the open sections.
+     */
+    private static final class Sections {
+        static final int MAX_DEPTH = 16;
+
+        final long[] allocations = new long[MAX_DEPTH];
+        int depth;
+    }
+
+    private static final List<Metric> ALL = new ArrayList<>();
+    private static final ThreadLocal<Sections> SECTIONS = new ThreadLocal<Sections>() {
+        @Override
+        protected Sections initialValue() {
+            return new Sections();
+        }
+    };
+
+    static final Metric SHOW_CLASS_LIST = register("nav.showClassList");
+    static final Metric SHOW_TIMETABLE = register("nav.showTimetable");
+    static final Metric SHOW_STUDENT_LIST = register("nav.showStudentList");
+    static final Metric SHOW_ATTENDANCE_LIST = register("nav.showAttendanceList");
+    static final Metric SHOW_SEARCH = register("nav.showSearch");
+    static final Metric NAVIGATE_BACK = register("nav.back");
+    static final Metric BIND_CITY = register("bind.city");
+    static final Metric BIND_CLASS = register("bind.class");
+    static final Metric BIND_SUBJECT = register("bind.subject");
+    static final Metric BIND_STUDENT = register("bind.student");
+    static final Metric BIND_ATTENDANCE = register("bind.attendance");
+    static final Metric BIND_MATCH = register("bind.match");
+    static final Metric DOWNLOAD_GRADES = register("export.downloadGrades");
+    static final Metric DOWNLOAD_ATTENDANCE = register("export.downloadAttendance");
+    static final Metric EXPORT_CITY = register("export.city");
+    static final Metric RENDER_REPORT = register("export.renderReport");
+    static final Metric SOLVE_TIMETABLE = register("timetable.solve");
+
+    private static volatile Probe probe = NONE;
+
+    private Metrics() {
+    }
+
+    private static Metric register(String name) {
+        Metric metric = new Metric(name);
+        ALL.add(metric);
+        return metric;
+    }
+
+    static void install(Probe probe) {
+        Metrics.probe = probe;
+    }
+
+    static Probe probe() {
+        return probe;
+    }
+
+    static List<Metric> all() {
+        return Collections.unmodifiableList(ALL);
+    }
+
+    static void resetAll() {
+        for (Metric metric : ALL) {
+            metric.reset();
+        }
+    }
+
+    /**
+     * One line per metric that has samples: count, mean, percentiles and max in microseconds, then objects
+     * allocated per sample where counted.
+     */
+    static void dump(Writer out) throws IOException {
+        out.write(String.format(Locale.ROOT, "%-28s %8s %10s %10s %10s %10s %10s %10s%n",
+                "metric", "count", "mean_us", "p50_us", "p90_us", "p99_us", "max_us", "allocs"));
+        for (Metric metric : ALL) {
+            LatencyHistogram.Snapshot snapshot = metric.latency.snapshot();
+            if (snapshot.count == 0) {
+                continue;
+            }
+            double allocations = metric.allocationsPerSample();
+            out.write(String.format(Locale.ROOT, "%-28s %8d %10.1f %10.1f %10.1f %10.1f %10.1f %10s%n",
+                    metric.name, snapshot.count, snapshot.mean() / 1e3, snapshot.percentile(50) / 1e3,
+                    snapshot.percentile(90) / 1e3, snapshot.percentile(99) / 1e3, snapshot.max / 1e3,
+                    Double.isNaN(allocations) ? "-" : String.format(Locale.ROOT, "%.1f", allocations)));
+        }
+    }
+}
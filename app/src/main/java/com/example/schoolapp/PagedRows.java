@@ -0,0 +1,186 @@
+package com.example.schoolapp;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * Rows of a list too long to materialize, such as every failing student of the district. Rows are loaded in
+ * fixed-size pages on a worker as the list asks for them: {@link #get} returns null for a row not loaded
+ * yet and loads its page, then prefetches the next pages in the direction the list is moving and drops the
+ * pages farthest from it, so at most {@code maxPages} pages are held however long the list is.
+ * <p>
+ * Everything but the loader runs on the main thread. Once {@link #close}d, for instance because a new query
+ * replaced the rows, loads still under way are dropped on arrival.
+ */
+final class PagedRows<T> {
+    static final int PAGE_SIZE = 50;
+    static final int PREFETCH_PAGES = 2;
+    static final int MAX_PAGES = 8;
+
+    interface Loader<T> {
+        /**
+         * Rows [{@code offset}, {@code offset + count}); called on the worker.
+         */
+        List<T> load(int offset, int count) throws IOException;
+    }
+
+    interface Listener {
+        void onRowsLoaded(int position, int count);
+
+        void onLoadFailed(IOException error);
+    }
+
+    private final int size;
+    private final int pageSize;
+    private final int prefetchPages;
+    private final int maxPages;
+    private final Loader<T> loader;
+    private final Executor worker;
+    private final Executor mainThread;
+    private final Map<Integer, List<T>> pages = new HashMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+    private Listener listener;
+    private int anchor;
+    private boolean forward = true;
+    private boolean closed;
+    private int loads;
+    private int evictions;
+
+    PagedRows(int size, Loader<T> loader, Executor worker, Executor mainThread) {
+        this(size, PAGE_SIZE, PREFETCH_PAGES, MAX_PAGES, loader, worker, mainThread);
+    }
+
+    PagedRows(int size, int pageSize, int prefetchPages, int maxPages, Loader<T> loader, Executor worker,
+            Executor mainThread) {
+        if (pageSize < 1 || prefetchPages < 0 || maxPages < 2 * prefetchPages + 1) {
+            throw new IllegalArgumentException("Paging keeps fewer pages than it prefetches");
+        }
+        this.size = size;
+        this.pageSize = pageSize;
+        this.prefetchPages = prefetchPages;
+        this.maxPages = maxPages;
+        this.loader = loader;
+        this.worker = worker;
+        this.mainThread = mainThread;
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Hands over a page loaded ahead, e.g. the first one, loaded with the query so the list opens full.
+     */
+    void put(int page, List<T> rows) {
+        pages.put(page, rows);
+        trim();
+    }
+
+    /**
+     * The row at {@code position}, or null while its page loads. Call it for the rows being shown, as
+     * binding does: it is what moves the prefetch window.
+     */
+    T get(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Row " + position + " of " + size);
+        }
+        if (position != anchor) {
+            forward = position > anchor;
+            anchor = position;
+        }
+        int page = position / pageSize;
+        request(page);
+        for (int ahead = 1; ahead <= prefetchPages; ahead++) {
+            request(forward ? page + ahead : page - ahead);
+        }
+        List<T> rows = pages.get(page);
+        return rows == null ? null : rows.get(position - page * pageSize);
+    }
+
+    int loadedPages() {
+        return pages.size();
+    }
+
+    int loads() {
+        return loads;
+    }
+
+    int evictions() {
+        return evictions;
+    }
+
+    void close() {
+        closed = true;
+        pages.clear();
+        loading.clear();
+    }
+
+    private void request(int page) {
+        if (page < 0 || page * pageSize >= size || closed || pages.containsKey(page) || !loading.add(page)) {
+            return;
+        }
+        loads++;
+        int offset = page * pageSize;
+        int count = Math.min(pageSize, size - offset);
+        worker.execute(() -> {
+            List<T> rows;
+            try {
+                rows = loader.load(offset, count);
+            } catch (IOException e) {
+                mainThread.execute(() -> {
+                    if (!closed) {
+                        loading.remove(page);
+                        if (listener != null) {
+                            listener.onLoadFailed(e);
+                        }
+                    }
+                });
+                return;
+            }
+            mainThread.execute(() -> {
+                if (closed || !loading.remove(page)) {
+                    return;
+                }
+                pages.put(page, rows);
+                trim();
+                if (pages.containsKey(page) && listener != null) {
+                    listener.onRowsLoaded(offset, count);
+                }
+            });
+        });
+    }
+
+    /**
+     * Drops the pages farthest from the anchor until at most {@code maxPages} are left.
+     */
+    private void trim() {
+        int center = anchor / pageSize;
+        while (pages.size() > maxPages) {
+            int farthest = -1;
+            for (int page : pages.keySet()) {
+                if (farthest < 0 || Math.abs(page - center) > Math.abs(farthest - center)) {
+                    farthest = page;
+                }
+            }
+            pages.remove(farthest);
+            evictions++;
+        }
+        // A page prefetched while the list was elsewhere, and now far behind, is not worth keeping either.
+        for (Iterator<Integer> it = pages.keySet().iterator(); it.hasNext(); ) {
+            if (Math.abs(it.next() - center) > maxPages) {
+                it.remove();
+                evictions++;
+            }
+        }
+    }
+}
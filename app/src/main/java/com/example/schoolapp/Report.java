@@ -0,0 +1,175 @@
+package com.example.schoolapp;
+
+import java.util.Locale;
+
+/**
+ * Row source for {@link ReportRenderer}. A report is a snapshot copied out of the store on the main thread,
+ * so it can be rendered on a worker while the store keeps changing. Rows are formatted lazily, one at a time.
+ * {@link #version} fingerprints everything that ends up in the PDF, so it changes exactly when a grade, mark
+ * or student of the report's scope does, whether in this session or before a restart.
+ */
+abstract class Report {
+    static final String PRESENT = "Present";
+    static final String ABSENT = "Absent";
+
+    final String title;
+    final String summary;
+    final String fileName;
+    final String[] students;
+    final long version;
+
+    private Report(String title, String summary, String fileName, String[] students, long version) {
+        this.title = title;
+        this.summary = summary;
+        this.fileName = fileName;
+        this.students = students;
+        this.version = version;
+    }
+
+    int rowCount() {
+        return students.length;
+    }
+
+    abstract void formatRow(int row, StringBuilder out);
+
+    static Report grades(GradebookStore store, String city, int classId, int subjectIndex) {
+        ClassBook book = store.book(classId);
+        String subject = store.subjectNames.get(book.subjectId(subjectIndex));
+        String className = store.className(classId);
+        int[] offsets = new int[book.studentCount() + 1];
+        for (int slot = 0; slot < book.studentCount(); slot++) {
+            offsets[slot + 1] = offsets[slot] + book.gradeCount(slot, subjectIndex);
+        }
+        byte[] grades = new byte[offsets[book.studentCount()]];
+        String title = "Grades for " + city + " - " + className + " - " + subject;
+        String[] names = names(store, book);
+        long version = fingerprint(title, names);
+        for (int slot = 0; slot < book.studentCount(); slot++) {
+            version = mix(version, offsets[slot + 1]);
+            for (int i = 0; i < book.gradeCount(slot, subjectIndex); i++) {
+                grades[offsets[slot] + i] = (byte) book.grade(slot, subjectIndex, i);
+                version = mix(version, grades[offsets[slot] + i]);
+            }
+        }
+        return new GradeReport(title, gradeSummary(book.stats(), subjectIndex),
+                city + "_" + className + "_" + subject + "_grades.pdf", names, version, offsets, grades);
+    }
+
+    static Report attendance(GradebookStore store, String city, int classId, int subjectIndex) {
+        ClassBook book = store.book(classId);
+        String subject = store.subjectNames.get(book.subjectId(subjectIndex));
+        String className = store.className(classId);
+        boolean[] present = new boolean[book.studentCount()];
+        int lessons = book.lessonDays(subjectIndex, 0, AttendanceHistory.MAX_DAYS);
+        int[] attended = new int[lessons == 0 ? 0 : present.length];
+        String title = "Attendance for " + city + " - " + className + " - " + subject;
+        String[] names = names(store, book);
+        long version = mix(fingerprint(title, names), lessons);
+        for (int slot = 0; slot < present.length; slot++) {
+            present[slot] = book.isPresent(slot, subjectIndex);
+            version = mix(version, present[slot] ? 1 : 0);
+            if (lessons > 0) {
+                attended[slot] = book.presentDays(slot, subjectIndex, 0, AttendanceHistory.MAX_DAYS);
+                version = mix(version, attended[slot]);
+            }
+        }
+        String summary = attendanceSummary(book.stats(), subjectIndex);
+        if (lessons > 0) {
+            // The history holds a single school year; say which, so last year's report is not read as this one's.
+            summary += String.format(Locale.ROOT, " | %.0f%% over %d lessons in %d/%02d",
+                    book.classAttendanceRate(subjectIndex, 0, AttendanceHistory.MAX_DAYS) * 100, lessons,
+                    book.historyYear(), (book.historyYear() + 1) % 100);
+        }
+        return new AttendanceReport(title, summary, city + "_" + className + "_" + subject + "_attendance.pdf", names,
+                version, present, lessons, attended);
+    }
+
+    static String gradeSummary(ClassStats stats, int subjectIndex) {
+        int count = stats.subjectGradeCount(subjectIndex);
+        if (count == 0) {
+            return "No grades yet";
+        }
+        StringBuilder out = new StringBuilder(64);
+        out.append(String.format(Locale.ROOT, "Average %.2f (%d grades) |", stats.subjectMean(subjectIndex), count));
+        for (int grade = 1; grade <= 5; grade++) {
+            out.append(grade == 1 ? " " : ", ").append(grade).append(": ").append(stats.subjectHistogram(subjectIndex, grade));
+        }
+        return out.toString();
+    }
+
+    static String attendanceSummary(ClassStats stats, int subjectIndex) {
+        double rate = stats.subjectAttendanceRate(subjectIndex);
+        if (Double.isNaN(rate)) {
+            return "No students";
+        }
+        return String.format(Locale.ROOT, "Attendance %.0f%% (%d present)", rate * 100, stats.subjectPresent(subjectIndex));
+    }
+
+    private static long fingerprint(String title, String[] names) {
+        long hash = mix(title.hashCode(), names.length);
+        for (String name : names) {
+            hash = mix(hash, name.hashCode());
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    private static String[] names(GradebookStore store, ClassBook book) {
+        String[] names = new String[book.studentCount()];
+        for (int slot = 0; slot < names.length; slot++) {
+            names[slot] = store.studentNames.get(book.studentName(slot));
+        }
+        return names;
+    }
+
+    private static final class GradeReport extends Report {
+        private final int[] offsets;
+        private final byte[] grades;
+
+        GradeReport(String title, String summary, String fileName, String[] students, long version, int[] offsets,
+                byte[] grades) {
+            super(title, summary, fileName, students, version);
+            this.offsets = offsets;
+            this.grades = grades;
+        }
+
+        @Override
+        void formatRow(int row, StringBuilder out) {
+            out.append(students[row]).append(": [");
+            for (int i = offsets[row]; i < offsets[row + 1]; i++) {
+                if (i > offsets[row]) {
+                    out.append(", ");
+                }
+                out.append(grades[i]);
+            }
+            out.append(']');
+        }
+    }
+
+    private static final class AttendanceReport extends Report {
+        private final boolean[] present;
+        private final int lessons;
+        private final int[] attended;
+
+        AttendanceReport(String title, String summary, String fileName, String[] students, long version,
+                boolean[] present, int lessons, int[] attended) {
+            super(title, summary, fileName, students, version);
+            this.present = present;
+            this.lessons = lessons;
+            this.attended = attended;
+        }
+
+        @Override
+        void formatRow(int row, StringBuilder out) {
+            out.append(students[row]).append(": ").append(present[row] ? PRESENT : ABSENT);
+            if (lessons > 0) {
+                out.append(" (attended ").append(attended[row]).append(" of ").append(lessons).append(" lessons, ")
+                        .append(Math.round(attended[row] * 100.0 / lessons)).append("%)");
+            }
+        }
+    }
+}
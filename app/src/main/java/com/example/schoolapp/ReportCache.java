@@ -0,0 +1,243 @@
+package com.example.schoolapp;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Size-bounded LRU directory of rendered report PDFs. An entry is keyed by the report's scope, its file name
+ * (city, class, subject and report type), and holds the PDF of one {@link Report#version}: storing a newer
+ * version replaces it, and an export whose version does not match is a miss. Entries are named
+ * {@code <scope hash>.<version>.pdf}, in hex so that no city or class name ends up in a path, and the cache
+ * survives restarts: the index is rebuilt lazily from the directory, least recently modified first.
+ * <p>
+ * Thread-safe. PDFs are copied in and out without holding the lock.
+ */
+final class ReportCache {
+    static final class Stats {
+        final long hits;
+        final long misses;
+        final long evictions;
+        final int entries;
+        final long bytes;
+
+        Stats(long hits, long misses, long evictions, int entries, long bytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.entries = entries;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d hits, %d misses, %d evictions, %d reports (%d KB)",
+                    hits, misses, evictions, entries, bytes / 1024);
+        }
+    }
+
+    private static final class Entry {
+        final long version;
+        final File file;
+        final long bytes;
+
+        Entry(long version, File file, long bytes) {
+            this.version = version;
+            this.file = file;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final String TAG = "ReportCache";
+    private static final String SUFFIX = ".pdf";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File directory;
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean loaded;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    ReportCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Copies the cached PDF of {@code report} to {@code target}; false, with nothing written, on a miss.
+     */
+    boolean copyTo(Report report, File target) throws IOException {
+        File cached;
+        synchronized (this) {
+            load();
+            Entry entry = entries.get(scope(report));
+            if (entry == null || entry.version != report.version) {
+                misses++;
+                return false;
+            }
+            hits++;
+            cached = entry.file;
+        }
+        try {
+            copy(cached, target);
+            // Keeps the recency order across restarts.
+            cached.setLastModified(System.currentTimeMillis());
+            return true;
+        } catch (IOException e) {
+            // Evicted by another thread since the lookup; render it again.
+            synchronized (this) {
+                hits--;
+                misses++;
+            }
+            target.delete();
+            if (cached.exists()) {
+                throw e;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Stores {@code rendered} as the PDF of {@code report}, dropping older versions of the same scope and,
+     * least recently used first, whatever no longer fits.
+     */
+    void put(Report report, File rendered) throws IOException {
+        String scope = scope(report);
+        File file = new File(directory, scope + '.' + Long.toHexString(report.version) + SUFFIX);
+        File temp = new File(file.getPath() + ".part");
+        synchronized (this) {
+            load();
+        }
+        copy(rendered, temp);
+        synchronized (this) {
+            Entry current = entries.get(scope);
+            if (current != null && current.version == report.version) {
+                // Rendered concurrently by another export.
+                temp.delete();
+                return;
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("Cannot move " + temp + " to " + file);
+            }
+            remove(scope);
+            Entry entry = new Entry(report.version, file, file.length());
+            entries.put(scope, entry);
+            bytes += entry.bytes;
+            trim();
+        }
+    }
+
+    synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, entries.size(), bytes);
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Cannot create " + directory);
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File file : files) {
+            String name = file.getName();
+            int dot = name.lastIndexOf('.', name.length() - SUFFIX.length() - 1);
+            Long version = dot < 0 || !name.endsWith(SUFFIX) ? null : parseVersion(name.substring(dot + 1, name.length() - SUFFIX.length()));
+            if (version == null) {
+                // A copy interrupted by the process dying, or not ours.
+                file.delete();
+                continue;
+            }
+            String scope = name.substring(0, dot);
+            remove(scope);
+            Entry entry = new Entry(version, file, file.length());
+            entries.put(scope, entry);
+            bytes += entry.bytes;
+        }
+        trim();
+    }
+
+    private void remove(String scope) {
+        Entry old = entries.remove(scope);
+        if (old != null) {
+            bytes -= old.bytes;
+            old.file.delete();
+        }
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Entry entry = eldest.next().getValue();
+            eldest.remove();
+            bytes -= entry.bytes;
+            entry.file.delete();
+            evictions++;
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a of the report's file name, which names its city, class, subject and type.
+     */
+    private static String scope(Report report) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < report.fileName.length(); i++) {
+            hash = (hash ^ report.fileName.charAt(i)) * 0x100000001b3L;
+        }
+        return Long.toHexString(hash);
+    }
+
+    private static Long parseVersion(String hex) {
+        if (hex.isEmpty() || hex.length() > 16) {
+            return null;
+        }
+        long version = 0;
+        for (int i = 0; i < hex.length(); i++) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                return null;
+            }
+            version = version << 4 | digit;
+        }
+        return version;
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = new BufferedInputStream(new FileInputStream(from), BUFFER_SIZE);
+             OutputStream out = new BufferedOutputStream(new FileOutputStream(to), BUFFER_SIZE)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+}
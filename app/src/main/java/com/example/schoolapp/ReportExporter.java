@@ -0,0 +1,115 @@
+package com.example.schoolapp;
+
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs report exports on a background executor and reports back on the main thread.
+ * The PDF goes to a temporary file through a buffered stream and replaces the target only once complete,
+ * so a cancelled or failed export never leaves a truncated report behind. Reports whose data has not changed
+ * since they were last rendered are copied from the {@link ReportCache} instead.
+ */
+final class ReportExporter {
+    interface Listener {
+        void onProgress(int rowsDone, int rowCount);
+
+        void onFinished(File file);
+
+        void onFailed(IOException error);
+
+        void onCancelled();
+    }
+
+    static final class Task {
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        volatile boolean done;
+
+        void cancel() {
+            cancelled.set(true);
+        }
+
+        boolean isDone() {
+            return done;
+        }
+    }
+
+    private static final String TAG = "ReportExporter";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Executor background;
+    private final Executor mainThread;
+    private final ReportCache cache;
+    private final ThreadLocal<ReportRenderer> renderers = new ThreadLocal<ReportRenderer>() {
+        @Override
+        protected ReportRenderer initialValue() {
+            return new ReportRenderer();
+        }
+    };
+
+    ReportExporter(Executor background, Executor mainThread, ReportCache cache) {
+        this.background = background;
+        this.mainThread = mainThread;
+        this.cache = cache;
+    }
+
+    Task export(Report report, File file, Listener listener) {
+        Task task = new Task();
+        background.execute(() -> {
+            try {
+                write(report, file, (rowsDone, rowCount) -> mainThread.execute(() -> listener.onProgress(rowsDone, rowCount)), task.cancelled);
+                finish(task, () -> listener.onFinished(file));
+            } catch (CancellationException e) {
+                finish(task, listener::onCancelled);
+            } catch (IOException e) {
+                finish(task, () -> listener.onFailed(e));
+            }
+        });
+        return task;
+    }
+
+    /**
+     * Renders synchronously on the calling thread.
+     */
+    void write(Report report, File file, ReportRenderer.Progress progress, AtomicBoolean cancelled) throws IOException {
+        File temp = new File(file.getPath() + ".part");
+        boolean complete = false;
+        try {
+            if (cache.copyTo(report, temp)) {
+                progress.onPage(report.rowCount(), report.rowCount());
+            } else {
+                long start = Metrics.RENDER_REPORT.begin();
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE)) {
+                    renderers.get().render(report, out, progress, cancelled);
+                } finally {
+                    Metrics.RENDER_REPORT.end(start);
+                }
+                try {
+                    cache.put(report, temp);
+                } catch (IOException e) {
+                    Log.w(TAG, "Cannot cache " + report.fileName, e);
+                }
+            }
+            if (!temp.renameTo(file)) {
+                throw new IOException("Cannot move " + temp + " to " + file);
+            }
+            complete = true;
+        } finally {
+            if (!complete) {
+                temp.delete();
+            }
+        }
+    }
+
+    private void finish(Task task, Runnable callback) {
+        task.done = true;
+        mainThread.execute(callback);
+    }
+}
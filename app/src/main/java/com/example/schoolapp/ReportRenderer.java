@@ -0,0 +1,92 @@
+package com.example.schoolapp;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.pdf.PdfDocument;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Lays a {@link Report} out on A4 pages, starting a new page whenever the current one is full.
+ * Each page is finished as soon as its last row is drawn, so only the page being drawn is live on a canvas.
+ * A renderer keeps its paints and row buffer between reports; use one instance per thread.
+ */
+final class ReportRenderer {
+    interface Progress {
+        void onPage(int rowsDone, int rowCount);
+    }
+
+    static final int PAGE_WIDTH = 595;
+    static final int PAGE_HEIGHT = 842;
+    static final int MARGIN = 50;
+    static final int SUMMARY_Y = 70;
+    static final int FIRST_ROW_Y = 100;
+    static final int ROW_HEIGHT = 20;
+    static final int ROWS_PER_PAGE = (PAGE_HEIGHT - MARGIN - FIRST_ROW_Y) / ROW_HEIGHT;
+
+    private final Paint titlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint rowPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint footerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final StringBuilder row = new StringBuilder(128);
+
+    ReportRenderer() {
+        titlePaint.setColor(Color.BLACK);
+        titlePaint.setTextSize(12f);
+        titlePaint.setFakeBoldText(true);
+        rowPaint.setColor(Color.BLACK);
+        rowPaint.setTextSize(12f);
+        footerPaint.setColor(Color.GRAY);
+        footerPaint.setTextSize(9f);
+    }
+
+    static int pageCount(int rowCount) {
+        return Math.max(1, (rowCount + ROWS_PER_PAGE - 1) / ROWS_PER_PAGE);
+    }
+
+    /**
+     * Renders the whole report into {@code out}. The stream is not closed here.
+     *
+     * @throws CancellationException if {@code cancelled} was set while rendering
+     */
+    void render(Report report, OutputStream out, Progress progress, AtomicBoolean cancelled) throws IOException {
+        PdfDocument document = new PdfDocument();
+        try {
+            int rowCount = report.rowCount();
+            int pages = pageCount(rowCount);
+            int next = 0;
+            for (int pageNumber = 1; pageNumber <= pages; pageNumber++) {
+                if (cancelled.get()) {
+                    throw new CancellationException("Export of " + report.fileName + " cancelled");
+                }
+                PdfDocument.Page page = document.startPage(new PdfDocument.PageInfo.Builder(PAGE_WIDTH, PAGE_HEIGHT, pageNumber).create());
+                Canvas canvas = page.getCanvas();
+                if (pageNumber == 1) {
+                    canvas.drawText(report.title, MARGIN, MARGIN, titlePaint);
+                    canvas.drawText(report.summary, MARGIN, SUMMARY_Y, rowPaint);
+                } else {
+                    canvas.drawText(report.title + " (cont.)", MARGIN, MARGIN, titlePaint);
+                }
+
+                int end = Math.min(rowCount, next + ROWS_PER_PAGE);
+                for (int y = FIRST_ROW_Y; next < end; next++, y += ROW_HEIGHT) {
+                    row.setLength(0);
+                    report.formatRow(next, row);
+                    canvas.drawText(row, 0, row.length(), MARGIN, y, rowPaint);
+                }
+
+                row.setLength(0);
+                row.append("Page ").append(pageNumber).append(" of ").append(pages);
+                canvas.drawText(row, 0, row.length(), MARGIN, PAGE_HEIGHT - MARGIN / 2f, footerPaint);
+                document.finishPage(page);
+                progress.onPage(next, rowCount);
+            }
+            document.writeTo(out);
+        } finally {
+            document.close();
+        }
+    }
+}
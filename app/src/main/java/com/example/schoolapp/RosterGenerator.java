@@ -0,0 +1,181 @@
+package com.example.schoolapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Synthetic rosters for first launch, tests and benchmarks. Every class draws from its own {@link Random}
+ * seeded from the spec's seed and the class's position, so the same spec yields the same dataset whether
+ * cities are generated one by one or in parallel, and a single city can be regenerated on its own.
+ * Only the store's string pools are touched, so generation is safe off the main thread.
+ */
+final class RosterGenerator {
+    static final class Spec {
+        final int cities;
+        final int classesPerCity;
+        final int studentsPerClass;
+        final int subjectsPerClass;
+        final int gradesPerSubject;
+        final double attendanceRate;
+        final long seed;
+
+        Spec(int cities, int classesPerCity, int studentsPerClass, int subjectsPerClass, int gradesPerSubject,
+                double attendanceRate, long seed) {
+            if (cities < 1 || classesPerCity < 1 || studentsPerClass < 0 || subjectsPerClass < 1
+                    || subjectsPerClass > SUBJECTS.size() || gradesPerSubject < 0 || gradesPerSubject > Byte.MAX_VALUE
+                    || attendanceRate < 0 || attendanceRate > 1) {
+                throw new IllegalArgumentException("Bad roster spec");
+            }
+            this.cities = cities;
+            this.classesPerCity = classesPerCity;
+            this.studentsPerClass = studentsPerClass;
+            this.subjectsPerClass = subjectsPerClass;
+            this.gradesPerSubject = gradesPerSubject;
+            this.attendanceRate = attendanceRate;
+            this.seed = seed;
+        }
+
+        /**
+         * The district the app starts with: 3 cities of 8 classes of 30 students, every subject, 4 grades each.
+         */
+        static Spec standard(long seed) {
+            return new Spec(3, 8, 30, SUBJECTS.size(), 4, 0.9, seed);
+        }
+
+        /**
+         * Grades plus attendance marks in the dataset.
+         */
+        long records() {
+            return (long) cities * classesPerCity * studentsPerClass * subjectsPerClass * (gradesPerSubject + 1);
+        }
+    }
+
+    static final List<String> SUBJECTS = Collections.unmodifiableList(Arrays.asList("Matematyka", "Fizyka",
+            "Język Angielski", "Historia", "Geografia", "Plastyka", "Muzyka", "WF", "Informatyka", "Biologia",
+            "Chemia", "Jezyk niemiecki"));
+
+    private static final List<String> CITIES = Arrays.asList("Warszawa", "Kraków", "Rzeszów", "Gdańsk", "Wrocław",
+            "Poznań", "Łódź", "Lublin", "Szczecin", "Katowice", "Białystok", "Toruń");
+    private static final List<String> FIRST_NAMES = Arrays.asList("Michał", "Paweł", "Karol", "Kacper", "Rysiu",
+            "Radek", "Artur", "Maksymilian", "Krystian", "Adrian");
+    private static final List<String> LAST_NAMES = Arrays.asList("Urban", "Rzeszutek", "Łojszczyk", "Bucki", "Baran",
+            "Połeć", "Kępa", "Pociask", "Kalita", "Krupa");
+
+    private final Spec spec;
+    private final GradebookStore store;
+
+    RosterGenerator(Spec spec, GradebookStore store) {
+        this.spec = spec;
+        this.store = store;
+    }
+
+    Spec spec() {
+        return spec;
+    }
+
+    List<String> cityNames() {
+        List<String> names = new ArrayList<>(spec.cities);
+        for (int city = 0; city < spec.cities; city++) {
+            names.add(cityName(city));
+        }
+        return names;
+    }
+
+    static String cityName(int city) {
+        return city < CITIES.size() ? CITIES.get(city) : "Miasto " + (city + 1);
+    }
+
+    static String classLabel(int classIndex) {
+        return "Klasa " + (classIndex + 1);
+    }
+
+    /**
+     * Fills one city's classes. Each class gets its own shuffled subset of subjects.
+     */
+    RosterLoader.CityChunk city(int city) {
+        List<String> labels = new ArrayList<>(spec.classesPerCity);
+        List<ClassBook> books = new ArrayList<>(spec.classesPerCity);
+        List<String> subjects = new ArrayList<>(SUBJECTS);
+        // Names repeat across the city, so intern each one once instead of contending on the pool per student.
+        int[] nameIds = new int[FIRST_NAMES.size() * LAST_NAMES.size()];
+        Arrays.fill(nameIds, -1);
+        for (int c = 0; c < spec.classesPerCity; c++) {
+            Random random = new Random(classSeed(city, c));
+            subjects.clear();
+            subjects.addAll(SUBJECTS);
+            Collections.shuffle(subjects, random);
+            ClassBook book = store.newBook(subjects.subList(0, spec.subjectsPerClass));
+            for (int s = 0; s < spec.studentsPerClass; s++) {
+                int first = random.nextInt(FIRST_NAMES.size());
+                int last = random.nextInt(LAST_NAMES.size());
+                int name = first * LAST_NAMES.size() + last;
+                if (nameIds[name] < 0) {
+                    nameIds[name] = store.studentNames.intern(FIRST_NAMES.get(first) + " " + LAST_NAMES.get(last));
+                }
+                int slot = book.addStudent(nameIds[name]);
+                for (int subject = 0; subject < book.subjectCount(); subject++) {
+                    for (int g = 0; g < spec.gradesPerSubject; g++) {
+                        book.addGrade(slot, subject, random.nextInt(5) + 1);
+                    }
+                    book.setPresent(slot, subject, random.nextDouble() < spec.attendanceRate);
+                }
+            }
+            labels.add(classLabel(c));
+            books.add(book);
+        }
+        return new RosterLoader.CityChunk(cityName(city), labels, books);
+    }
+
+    /**
+     * Generates every city on {@code workers} and attaches them to the store in city order, so class ids
+     * come out the same as with a serial run. Call from the thread that owns the store.
+     */
+    void generate(ExecutorService workers) throws InterruptedException {
+        List<Future<RosterLoader.CityChunk>> chunks = new ArrayList<>(spec.cities);
+        for (int city = 0; city < spec.cities; city++) {
+            int index = city;
+            chunks.add(workers.submit(() -> city(index)));
+        }
+        try {
+            for (Future<RosterLoader.CityChunk> chunk : chunks) {
+                attach(chunk.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Roster generation failed", e.getCause());
+        } finally {
+            for (Future<RosterLoader.CityChunk> chunk : chunks) {
+                chunk.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Generates every city on the calling thread.
+     */
+    void generate() {
+        for (int city = 0; city < spec.cities; city++) {
+            attach(city(city));
+        }
+    }
+
+    private void attach(RosterLoader.CityChunk chunk) {
+        int cityId = store.addCity(chunk.city);
+        for (int i = 0; i < chunk.books.size(); i++) {
+            store.addClass(cityId, chunk.classLabels.get(i), chunk.books.get(i));
+        }
+    }
+
+    private long classSeed(int city, int classIndex) {
+        // SplitMix64 finalizer over (seed, position), so neighbouring classes get unrelated streams.
+        long z = spec.seed + 0x9E3779B97F4A7C15L * ((long) city * spec.classesPerCity + classIndex + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
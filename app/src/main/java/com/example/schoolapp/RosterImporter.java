@@ -0,0 +1,711 @@
+package com.example.schoolapp;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk import of rosters, grades and attendance from CSV or JSON, one row per grade or attendance mark.
+ * A worker parses the input as a stream ({@link RowReader}), interns city, class, student and subject names
+ * straight from the row bytes and fills columnar batches of {@link #BATCH_ROWS} rows; the main thread
+ * applies each batch to the store in one go. Only {@link #BATCHES_IN_FLIGHT} batches exist and the worker
+ * waits for a free one, so memory does not grow with the file.
+ * <p>
+ * Every {@link #SAVE_EVERY_BATCHES} batches, and whenever the import stops, the store is saved to the
+ * gradebook file under a fresh checkpoint id and the byte offset reached is recorded next to it. The main
+ * thread only takes a {@link GradebookStore.Snapshot}; the files are written on a writer thread, one save at
+ * a time, while batches keep being applied. The offset is written as pending before the gradebook is
+ * replaced, so after a crash at any point {@link #pending()} finds the offset that matches the gradebook on
+ * disk and no row is applied twice.
+ */
+final class RosterImporter {
+    interface Source {
+        /**
+         * Identifies the input across launches, e.g. its Uri.
+         */
+        String key();
+
+        /**
+         * Size in bytes, or -1 if unknown.
+         */
+        long length();
+
+        InputStream open() throws IOException;
+    }
+
+    interface Listener {
+        void onProgress(long rows, long bytes, long totalBytes);
+
+        void onFinished(Result result);
+
+        void onFailed(IOException error);
+
+        void onCancelled(Result partial);
+    }
+
+    static final class Result {
+        final long rows;
+        final long skipped;
+        final long bytes;
+        final long wallNanos;
+
+        Result(long rows, long skipped, long bytes, long wallNanos) {
+            this.rows = rows;
+            this.skipped = skipped;
+            this.bytes = bytes;
+            this.wallNanos = wallNanos;
+        }
+
+        double rowsPerSecond() {
+            return wallNanos == 0 ? 0 : rows * 1e9 / wallNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d rows (%d skipped) in %d ms (%.0f rows/s)",
+                    rows, skipped, wallNanos / 1_000_000, rowsPerSecond());
+        }
+    }
+
+    static final class Checkpoint {
+        final String key;
+        final String format;
+        final long offset;
+        final long rows;
+        final long skipped;
+
+        Checkpoint(String key, String format, long offset, long rows, long skipped) {
+            this.key = key;
+            this.format = format;
+            this.offset = offset;
+            this.rows = rows;
+            this.skipped = skipped;
+        }
+    }
+
+    static final int BATCH_ROWS = 4096;
+    static final int BATCHES_IN_FLIGHT = 2;
+    static final int SAVE_EVERY_BATCHES = 32;
+
+    private static final String TAG = "RosterImporter";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final GradebookStore store;
+    private final File gradebook;
+    private final File checkpointFile;
+    private final Executor background;
+    private final Executor writer;
+    private final Executor mainThread;
+    private final Random random = new Random();
+
+    /**
+     * Rows are parsed on {@code background} and saves written on {@code writer}, which must be single-threaded.
+     */
+    RosterImporter(GradebookStore store, File gradebook, File checkpointFile, Executor background, Executor writer,
+            Executor mainThread) {
+        this.store = store;
+        this.gradebook = gradebook;
+        this.checkpointFile = checkpointFile;
+        this.background = background;
+        this.writer = writer;
+        this.mainThread = mainThread;
+    }
+
+    /**
+     * The checkpoint of an interrupted import that matches the gradebook on disk, or null.
+     */
+    Checkpoint pending() {
+        Properties saved = load(checkpointFile);
+        if (saved == null) {
+            return null;
+        }
+        int fileId = GradebookFile.readCheckpoint(gradebook);
+        if (fileId == 0) {
+            return null;
+        }
+        if (String.valueOf(fileId).equals(saved.getProperty("id"))) {
+            return checkpoint(saved, "");
+        }
+        if (String.valueOf(fileId).equals(saved.getProperty("pending.id"))) {
+            return checkpoint(saved, "pending.");
+        }
+        return null;
+    }
+
+    void discardPending() {
+        checkpointFile.delete();
+    }
+
+    /**
+     * Imports {@code source}. With the {@link #pending()} checkpoint of the same source, the import
+     * resumes where it stopped; otherwise it starts from the first row.
+     */
+    ReportExporter.Task start(Source source, Checkpoint resume, Listener listener) {
+        ReportExporter.Task task = new ReportExporter.Task();
+        Run run = new Run(source, resume != null && resume.key.equals(source.key()) ? resume : null, task, listener);
+        background.execute(() -> parse(run));
+        return task;
+    }
+
+    // Worker side.
+
+    private void parse(Run run) {
+        Interner[] interners = {
+                new Interner(store.cityNames), new Interner(store.classNames),
+                new Interner(store.studentNames), new Interner(store.subjectNames)};
+        Batch batch = null;
+        try (RowReader reader = RowReader.open(run.source.open(), run.format, run.startOffset)) {
+            run.format = reader.format();
+            batch = take(run);
+            if (batch != null) {
+                batch.end = reader.position();
+            }
+            while (batch != null && reader.next()) {
+                if (!batch.add(reader, interners)) {
+                    batch.skipped++;
+                }
+                batch.end = reader.position();
+                if (batch.size == BATCH_ROWS) {
+                    Batch full = batch;
+                    mainThread.execute(() -> apply(run, full));
+                    batch = take(run);
+                    if (batch != null) {
+                        batch.end = full.end;
+                    }
+                }
+            }
+            if (batch == null) {
+                mainThread.execute(() -> stop(run, null));
+                return;
+            }
+            Batch last = batch;
+            mainThread.execute(() -> {
+                apply(run, last);
+                finish(run);
+            });
+        } catch (IOException e) {
+            Batch partial = batch;
+            mainThread.execute(() -> {
+                if (partial != null) {
+                    apply(run, partial);
+                }
+                stop(run, e);
+            });
+        }
+    }
+
+    private static Batch take(Run run) {
+        try {
+            while (!run.task.cancelled.get()) {
+                Batch batch = run.free.poll(100, TimeUnit.MILLISECONDS);
+                if (batch != null) {
+                    return batch;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    // Main thread side.
+
+    private void apply(Run run, Batch batch) {
+        int applied = batch.size;
+        for (int i = 0; i < batch.size; i++) {
+            int classId = run.classId(batch.city[i], batch.classLabel[i]);
+            int slot = classId < 0 ? -1 : run.slot(classId, batch.student[i]);
+            if (slot < 0) {
+                applied--;
+                run.skipped++;
+                continue;
+            }
+            if (batch.subject[i] < 0) {
+                continue;
+            }
+            ClassBook book = store.book(classId);
+            store.pin(classId);
+            int subjectIndex;
+            try {
+                subjectIndex = book.addSubject(batch.subject[i]);
+            } catch (IllegalStateException e) {
+                applied--;
+                run.skipped++;
+                continue;
+            }
+            if (batch.present[i] >= 0) {
+                book.setPresent(slot, subjectIndex, batch.present[i] == 1);
+            }
+            if (batch.grade[i] > 0) {
+                try {
+                    book.addGrade(slot, subjectIndex, batch.grade[i]);
+                } catch (IllegalStateException e) {
+                    applied--;
+                    run.skipped++;
+                }
+            }
+        }
+        run.rows += applied;
+        run.skipped += batch.skipped;
+        run.offset = batch.end;
+        run.unsaved++;
+        batch.clear();
+        run.free.offer(batch);
+
+        if (run.unsaved >= SAVE_EVERY_BATCHES && !run.saving) {
+            save(run, null);
+        }
+        if (!run.task.cancelled.get()) {
+            run.listener.onProgress(run.rows, run.offset, run.source.length());
+        }
+    }
+
+    private void finish(Run run) {
+        saveAll(run, error -> {
+            if (error != null) {
+                report(run, error);
+                return;
+            }
+            checkpointFile.delete();
+            run.task.done = true;
+            run.listener.onFinished(run.result());
+        });
+    }
+
+    /**
+     * Saves what was applied so the import can resume, then reports a failure or cancellation.
+     */
+    private void stop(Run run, IOException failure) {
+        saveAll(run, error -> {
+            if (error != null) {
+                Log.w(TAG, "Cannot save import checkpoint", error);
+            }
+            report(run, failure != null ? failure : error);
+        });
+    }
+
+    private void report(Run run, IOException failure) {
+        run.task.done = true;
+        if (failure != null) {
+            run.listener.onFailed(failure);
+        } else {
+            run.listener.onCancelled(run.result());
+        }
+    }
+
+    /**
+     * Calls {@code then} once every applied batch is saved, after the save under way if there is one.
+     */
+    private void saveAll(Run run, SaveListener then) {
+        if (run.saving) {
+            run.afterSave = then;
+        } else if (run.unsaved == 0) {
+            then.onSaved(null);
+        } else {
+            save(run, then);
+        }
+    }
+
+    /**
+     * Starts saving the batches applied so far; {@code then}, if any, gets the outcome on the main thread.
+     */
+    private void save(Run run, SaveListener then) {
+        GradebookStore.Snapshot snapshot;
+        try {
+            snapshot = store.snapshot();
+        } catch (IOException e) {
+            if (then != null) {
+                then.onSaved(e);
+            } else {
+                Log.w(TAG, "Cannot save import checkpoint", e);
+            }
+            return;
+        }
+        int id = GradebookFile.newCheckpoint(random);
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty("key", run.source.key());
+        checkpoint.setProperty("format", run.format);
+        if (run.saved != null) {
+            checkpoint.putAll(run.saved);
+        }
+        checkpoint.setProperty("pending.id", String.valueOf(id));
+        checkpoint.setProperty("pending.offset", String.valueOf(run.offset));
+        checkpoint.setProperty("pending.rows", String.valueOf(run.rows));
+        checkpoint.setProperty("pending.skipped", String.valueOf(run.skipped));
+
+        Properties committed = new Properties();
+        committed.setProperty("key", run.source.key());
+        committed.setProperty("format", run.format);
+        committed.setProperty("id", String.valueOf(id));
+        committed.setProperty("offset", String.valueOf(run.offset));
+        committed.setProperty("rows", String.valueOf(run.rows));
+        committed.setProperty("skipped", String.valueOf(run.skipped));
+
+        int batches = run.unsaved;
+        run.unsaved = 0;
+        run.saving = true;
+        // Once written, classes not changed since are read back from the file and unpinned.
+        GradebookJournal.Save save = snapshot.adoptedOn(mainThread);
+        store.saveInBackground((target, checkpointId) -> {
+            try {
+                write(checkpointFile, checkpoint);
+                save.write(target, checkpointId);
+                write(checkpointFile, committed);
+            } catch (IOException e) {
+                mainThread.execute(() -> saved(run, batches, null, e, then));
+                throw e;
+            }
+            mainThread.execute(() -> saved(run, batches, committed, null, then));
+        }, gradebook, id, writer);
+    }
+
+    private void saved(Run run, int batches, Properties committed, IOException error, SaveListener then) {
+        run.saving = false;
+        if (error == null) {
+            run.saved = committed;
+        } else {
+            // Still unsaved: a periodic save retries with the next batch, and the previous checkpoint stays
+            // valid meanwhile.
+            run.unsaved += batches;
+        }
+        if (then != null) {
+            then.onSaved(error);
+        } else {
+            if (error != null) {
+                Log.w(TAG, "Cannot save import checkpoint", error);
+            }
+            if (run.afterSave != null) {
+                SaveListener waiting = run.afterSave;
+                run.afterSave = null;
+                saveAll(run, waiting);
+            }
+        }
+    }
+
+    private static Checkpoint checkpoint(Properties saved, String prefix) {
+        try {
+            return new Checkpoint(saved.getProperty("key"), saved.getProperty("format"),
+                    Long.parseLong(saved.getProperty(prefix + "offset")),
+                    Long.parseLong(saved.getProperty(prefix + "rows")),
+                    Long.parseLong(saved.getProperty(prefix + "skipped")));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Properties load(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+            return properties;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void write(File file, Properties properties) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            properties.store(out, null);
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot move " + temp + " to " + file);
+        }
+    }
+
+    private interface SaveListener {
+        /**
+         * Called on the main thread; {@code error} is null if the save succeeded.
+         */
+        void onSaved(IOException error);
+    }
+
+    /**
+     * State of one import. {@link #free} and the fields set before the worker starts are shared; the
+     * counters and lookup caches belong to the main thread.
+     */
+    private final class Run {
+        final Source source;
+        final ReportExporter.Task task;
+        final Listener listener;
+        final long startOffset;
+        final BlockingQueue<Batch> free = new ArrayBlockingQueue<>(BATCHES_IN_FLIGHT);
+        final long startNanos = System.nanoTime();
+        volatile String format;
+
+        long rows;
+        long skipped;
+        long offset;
+        int unsaved;
+        boolean saving;
+        SaveListener afterSave;
+        Properties saved;
+        private final Map<Long, Integer> classes = new HashMap<>();
+        private final Map<Long, Integer> slots = new HashMap<>();
+
+        Run(Source source, Checkpoint resume, ReportExporter.Task task, Listener listener) {
+            this.source = source;
+            this.task = task;
+            this.listener = listener;
+            for (int i = 0; i < BATCHES_IN_FLIGHT; i++) {
+                free.add(new Batch());
+            }
+            if (resume != null) {
+                format = resume.format;
+                startOffset = resume.offset;
+                rows = resume.rows;
+                skipped = resume.skipped;
+                offset = resume.offset;
+            } else {
+                startOffset = 0;
+            }
+        }
+
+        Result result() {
+            return new Result(rows, skipped, offset, System.nanoTime() - startNanos);
+        }
+
+        /**
+         * Finds or creates the class and indexes its current roster on first use; -1 if the class is in the
+         * gradebook but cannot be read, so its rows are skipped.
+         */
+        int classId(int cityNameId, int labelId) {
+            long key = (long) cityNameId << 32 | labelId;
+            Integer known = classes.get(key);
+            if (known != null) {
+                return known;
+            }
+            int cityId = store.addCity(store.cityNames.get(cityNameId));
+            String label = store.classNames.get(labelId);
+            int classId = store.findClass(cityId, label);
+            if (classId < 0) {
+                classId = store.addClass(cityId, label, store.newBook(Collections.<String>emptyList()));
+            }
+            ClassBook book = store.book(classId);
+            if (book == null) {
+                classes.put(key, -1);
+                return -1;
+            }
+            for (int slot = 0; slot < book.studentCount(); slot++) {
+                long student = (long) classId << 32 | book.studentName(slot);
+                if (!slots.containsKey(student)) {
+                    slots.put(student, slot);
+                }
+            }
+            classes.put(key, classId);
+            return classId;
+        }
+
+        int slot(int classId, int nameId) {
+            long key = (long) classId << 32 | nameId;
+            Integer slot = slots.get(key);
+            if (slot == null) {
+                slot = store.addStudent(classId, store.studentNames.get(nameId));
+                if (slot >= 0) {
+                    slots.put(key, slot);
+                }
+            }
+            return slot;
+        }
+    }
+
+    /**
+     * Columnar rows handed from the worker to the main thread. Name columns hold interned ids.
+     */
+    private static final class Batch {
+        private static final String[] PRESENT = {"1", "true", "t", "yes", "y", "present", "obecny"};
+        private static final String[] ABSENT = {"0", "false", "f", "no", "n", "absent", "nieobecny"};
+
+        final int[] city = new int[BATCH_ROWS];
+        final int[] classLabel = new int[BATCH_ROWS];
+        final int[] student = new int[BATCH_ROWS];
+        final int[] subject = new int[BATCH_ROWS];
+        final byte[] grade = new byte[BATCH_ROWS];
+        final byte[] present = new byte[BATCH_ROWS];
+        int size;
+        int skipped;
+        long end;
+
+        /**
+         * Adds the reader's current row; returns false if the row is malformed and was skipped.
+         */
+        boolean add(RowReader row, Interner[] interners) {
+            int grade = parseGrade(row.values[RowReader.GRADE], row.lengths[RowReader.GRADE]);
+            int present = parsePresent(row.values[RowReader.PRESENT], row.lengths[RowReader.PRESENT]);
+            int city = interners[0].intern(row, RowReader.CITY);
+            int classLabel = interners[1].intern(row, RowReader.CLASS);
+            int student = interners[2].intern(row, RowReader.STUDENT);
+            int subject = interners[3].intern(row, RowReader.SUBJECT);
+            if (grade < 0 || present < -1 || city < 0 || classLabel < 0 || student < 0
+                    || subject < 0 && (grade > 0 || present >= 0)) {
+                return false;
+            }
+            this.city[size] = city;
+            this.classLabel[size] = classLabel;
+            this.student[size] = student;
+            this.subject[size] = subject;
+            this.grade[size] = (byte) grade;
+            this.present[size] = (byte) present;
+            size++;
+            return true;
+        }
+
+        void clear() {
+            size = 0;
+            skipped = 0;
+        }
+
+        /**
+         * 1-5, 0 for no grade, -1 if malformed. "4.0" and "4,0" are accepted.
+         */
+        static int parseGrade(byte[] value, int length) {
+            int from = 0;
+            while (from < length && RowReader.isWhitespace(value[from])) {
+                from++;
+            }
+            while (length > from && RowReader.isWhitespace(value[length - 1])) {
+                length--;
+            }
+            if (from >= length) {
+                return 0;
+            }
+            int grade = value[from] - '0';
+            if (grade < 1 || grade > 5) {
+                return -1;
+            }
+            if (from + 1 < length) {
+                if (value[from + 1] != '.' && value[from + 1] != ',') {
+                    return -1;
+                }
+                for (int i = from + 2; i < length; i++) {
+                    if (value[i] != '0') {
+                        return -1;
+                    }
+                }
+            }
+            return grade;
+        }
+
+        /**
+         * 1 present, 0 absent, -1 not given, -2 malformed.
+         */
+        static int parsePresent(byte[] value, int length) {
+            int from = 0;
+            while (from < length && RowReader.isWhitespace(value[from])) {
+                from++;
+            }
+            while (length > from && RowReader.isWhitespace(value[length - 1])) {
+                length--;
+            }
+            if (from >= length) {
+                return -1;
+            }
+            for (String yes : PRESENT) {
+                if (RowReader.equalsIgnoreCase(value, from, length, yes)) {
+                    return 1;
+                }
+            }
+            for (String no : ABSENT) {
+                if (RowReader.equalsIgnoreCase(value, from, length, no)) {
+                    return 0;
+                }
+            }
+            return -2;
+        }
+    }
+
+    /**
+     * Interns one column. Exports are grouped by city and class, so most values repeat the previous row
+     * and are resolved by comparing bytes, without decoding a String.
+     */
+    private static final class Interner {
+        private final StringPool pool;
+        private byte[] last = new byte[64];
+        private int lastLength = -1;
+        private int lastId = -1;
+
+        Interner(StringPool pool) {
+            this.pool = pool;
+        }
+
+        /**
+         * Returns the id of the trimmed value, or -1 if the column is missing or blank.
+         */
+        int intern(RowReader row, int column) {
+            byte[] value = row.values[column];
+            int length = row.lengths[column];
+            int from = 0;
+            while (from < length && RowReader.isWhitespace(value[from])) {
+                from++;
+            }
+            while (length > from && RowReader.isWhitespace(value[length - 1])) {
+                length--;
+            }
+            if (from >= length) {
+                return -1;
+            }
+            int size = length - from;
+            if (size == lastLength && regionMatches(value, from)) {
+                return lastId;
+            }
+            if (last.length < size) {
+                last = new byte[Math.max(size, last.length * 2)];
+            }
+            System.arraycopy(value, from, last, 0, size);
+            lastLength = size;
+            lastId = pool.intern(new String(value, from, size, UTF_8));
+            return lastId;
+        }
+
+        private boolean regionMatches(byte[] value, int from) {
+            for (int i = 0; i < lastLength; i++) {
+                if (last[i] != value[from + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A source over a local file, e.g. one copied into the app's storage.
+     */
+    static Source fileSource(File file) {
+        return new Source() {
+            @Override
+            public String key() {
+                return file.getAbsolutePath();
+            }
+
+            @Override
+            public long length() {
+                return file.length();
+            }
+
+            @Override
+            public InputStream open() throws IOException {
+                return new FileInputStream(file);
+            }
+        };
+    }
+}
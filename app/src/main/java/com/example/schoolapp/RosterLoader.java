@@ -0,0 +1,143 @@
+package com.example.schoolapp;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads the roster on a background executor. A saved {@link GradebookFile} is opened and handed over
+ * in one step, since opening it reads only the directory. Otherwise the roster is generated and handed
+ * to the main thread in chunks: first the city names, then one {@link CityChunk} per city as soon as its
+ * classes are filled, while the same books are streamed into a new file for the next launch.
+ * Only the store's string pools are touched off the main thread; attaching the books is left to the listener.
+ */
+final class RosterLoader {
+    interface Listener {
+        void onFileOpened(GradebookFile file);
+
+        void onCitiesLoaded(List<String> cities);
+
+        void onCityLoaded(CityChunk chunk);
+
+        void onFileSaved(GradebookFile file);
+
+        void onLoadFinished();
+    }
+
+    static final class CityChunk {
+        final String city;
+        final List<String> classLabels;
+        final List<ClassBook> books;
+
+        CityChunk(String city, List<String> classLabels, List<ClassBook> books) {
+            this.city = city;
+            this.classLabels = classLabels;
+            this.books = books;
+        }
+    }
+
+    private static final String TAG = "RosterLoader";
+
+    private final GradebookStore store;
+    private final RosterGenerator generator;
+    private final File file;
+    private final Executor background;
+    private final Executor mainThread;
+    private volatile boolean cancelled;
+
+    RosterLoader(GradebookStore store, File file, Executor background, Executor mainThread) {
+        this(store, new RosterGenerator(RosterGenerator.Spec.standard(new Random().nextLong()), store),
+                file, background, mainThread);
+    }
+
+    RosterLoader(GradebookStore store, RosterGenerator generator, File file, Executor background, Executor mainThread) {
+        this.store = store;
+        this.generator = generator;
+        this.file = file;
+        this.background = background;
+        this.mainThread = mainThread;
+    }
+
+    void start(Listener listener) {
+        background.execute(() -> {
+            if (file.exists()) {
+                try {
+                    GradebookFile opened = GradebookFile.open(file);
+                    deliver(() -> listener.onFileOpened(opened));
+                    deliver(listener::onLoadFinished);
+                    return;
+                } catch (IOException e) {
+                    Log.w(TAG, "Discarding unreadable gradebook " + file, e);
+                }
+            }
+            generate(listener);
+        });
+    }
+
+    private void generate(Listener listener) {
+        List<String> cities = generator.cityNames();
+        deliver(() -> listener.onCitiesLoaded(cities));
+        GradebookFile.Writer writer = null;
+        try {
+            writer = new GradebookFile.Writer(file, store);
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot save gradebook to " + file, e);
+        }
+        for (int city = 0; city < cities.size(); city++) {
+            if (cancelled) {
+                if (writer != null) {
+                    writer.abort();
+                }
+                return;
+            }
+            CityChunk chunk = generator.city(city);
+            writer = save(writer, chunk);
+            deliver(() -> listener.onCityLoaded(chunk));
+        }
+        if (writer != null) {
+            try {
+                writer.setCheckpoint(GradebookFile.newCheckpoint(new Random()));
+                writer.finish();
+                GradebookFile saved = GradebookFile.open(file);
+                deliver(() -> listener.onFileSaved(saved));
+            } catch (IOException e) {
+                Log.w(TAG, "Cannot save gradebook to " + file, e);
+                writer.abort();
+            }
+        }
+        deliver(listener::onLoadFinished);
+    }
+
+    private GradebookFile.Writer save(GradebookFile.Writer writer, CityChunk chunk) {
+        if (writer == null) {
+            return null;
+        }
+        try {
+            int cityIndex = writer.addCity(chunk.city);
+            for (int i = 0; i < chunk.books.size(); i++) {
+                writer.addClass(cityIndex, chunk.classLabels.get(i), chunk.books.get(i));
+            }
+            return writer;
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot save gradebook to " + file, e);
+            writer.abort();
+            return null;
+        }
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    private void deliver(Runnable callback) {
+        mainThread.execute(() -> {
+            if (!cancelled) {
+                callback.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.schoolapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+
+/**
+ * Streaming parser for roster imports, one row per grade or attendance mark. Bytes are read through a
+ * fixed buffer, so memory stays flat however large the file is, and every consumed byte is counted, so the
+ * importer can checkpoint the exact offset of the next row and resume there later. Field values are left
+ * as UTF-8 byte ranges in {@link #values}; the importer decides whether it needs a String at all.
+ */
+abstract class RowReader implements Closeable {
+    static final int CITY = 0;
+    static final int CLASS = 1;
+    static final int STUDENT = 2;
+    static final int SUBJECT = 3;
+    static final int GRADE = 4;
+    static final int PRESENT = 5;
+    static final int COLUMNS = 6;
+    static final String[] COLUMN_NAMES = {"city", "class", "student", "subject", "grade", "present"};
+
+    static final String CSV = "csv";
+    static final String JSON = "json";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int SNIFF_SIZE = 512;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int index;
+    private int limit;
+    private long position;
+
+    /**
+     * Value bytes of each column for the current row; {@link #lengths} is -1 for a column the row lacks.
+     */
+    final byte[][] values = new byte[COLUMNS][64];
+    final int[] lengths = new int[COLUMNS];
+
+    RowReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Opens a reader positioned at byte {@code start}. A null {@code format} is detected from the first
+     * bytes, which is only possible when starting from the beginning.
+     */
+    static RowReader open(InputStream in, String format, long start) throws IOException {
+        if (format == null) {
+            byte[] head = new byte[SNIFF_SIZE];
+            int read = 0;
+            for (int n; read < head.length && (n = in.read(head, read, head.length - read)) > 0; ) {
+                read += n;
+            }
+            format = CSV;
+            for (int i = 0; i < read; i++) {
+                if (!isWhitespace(head[i]) && !isByteOrderMark(head, i)) {
+                    format = head[i] == '[' || head[i] == '{' ? JSON : CSV;
+                    break;
+                }
+            }
+            in = new SequenceInputStream(new ByteArrayInputStream(head, 0, read), in);
+        }
+        RowReader reader = JSON.equals(format) ? new JsonRowReader(in) : new CsvRowReader(in);
+        reader.start(start);
+        return reader;
+    }
+
+    abstract String format();
+
+    /**
+     * Prepares to read rows from {@code start}, e.g. by reading a header first.
+     */
+    void start(long start) throws IOException {
+        skipTo(start);
+    }
+
+    /**
+     * Reads the next row into {@link #values}; returns false at the end of the input.
+     */
+    abstract boolean next() throws IOException;
+
+    /**
+     * Byte offset just past the last row returned by {@link #next()}.
+     */
+    long position() {
+        return position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    final void skipTo(long offset) throws IOException {
+        while (position < offset) {
+            if (index == limit && !fill()) {
+                throw new IOException("Input ends at byte " + position + ", before resume offset " + offset);
+            }
+            int skip = (int) Math.min(limit - index, offset - position);
+            index += skip;
+            position += skip;
+        }
+    }
+
+    final int read() throws IOException {
+        if (index == limit && !fill()) {
+            return -1;
+        }
+        position++;
+        return buffer[index++] & 0xFF;
+    }
+
+    final int peek() throws IOException {
+        if (index == limit && !fill()) {
+            return -1;
+        }
+        return buffer[index] & 0xFF;
+    }
+
+    final void clearRow() {
+        Arrays.fill(lengths, -1);
+    }
+
+    final void startValue(int column) {
+        if (column >= 0) {
+            lengths[column] = 0;
+        }
+    }
+
+    final void append(int column, int b) {
+        if (column < 0) {
+            return;
+        }
+        byte[] value = values[column];
+        int length = lengths[column];
+        if (length == value.length) {
+            value = values[column] = Arrays.copyOf(value, length * 2);
+        }
+        value[length] = (byte) b;
+        lengths[column] = length + 1;
+    }
+
+    /**
+     * Appends a code point as UTF-8, for escapes that spell characters out.
+     */
+    final void appendCodePoint(int column, int codePoint) {
+        if (codePoint < 0x80) {
+            append(column, codePoint);
+        } else if (codePoint < 0x800) {
+            append(column, 0xC0 | codePoint >> 6);
+            append(column, 0x80 | codePoint & 0x3F);
+        } else if (codePoint < 0x10000) {
+            append(column, 0xE0 | codePoint >> 12);
+            append(column, 0x80 | codePoint >> 6 & 0x3F);
+            append(column, 0x80 | codePoint & 0x3F);
+        } else {
+            append(column, 0xF0 | codePoint >> 18);
+            append(column, 0x80 | codePoint >> 12 & 0x3F);
+            append(column, 0x80 | codePoint >> 6 & 0x3F);
+            append(column, 0x80 | codePoint & 0x3F);
+        }
+    }
+
+    /**
+     * Maps a header or key name to a column, ignoring case and surrounding blanks; -1 if unknown.
+     */
+    static int column(byte[] name, int length) {
+        int from = 0;
+        while (from < length && isWhitespace(name[from])) {
+            from++;
+        }
+        while (length > from && isWhitespace(name[length - 1])) {
+            length--;
+        }
+        for (int column = 0; column < COLUMNS; column++) {
+            if (equalsIgnoreCase(name, from, length, COLUMN_NAMES[column])) {
+                return column;
+            }
+        }
+        return -1;
+    }
+
+    static boolean equalsIgnoreCase(byte[] bytes, int from, int to, String ascii) {
+        if (to - from != ascii.length()) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            int b = bytes[from + i];
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isWhitespace(int b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    private static boolean isByteOrderMark(byte[] head, int i) {
+        return (head[i] & 0xFF) == 0xEF || (head[i] & 0xFF) == 0xBB || (head[i] & 0xFF) == 0xBF;
+    }
+
+    private boolean fill() throws IOException {
+        int read = in.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            return false;
+        }
+        index = 0;
+        limit = read;
+        return true;
+    }
+}
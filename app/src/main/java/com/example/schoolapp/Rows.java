@@ -0,0 +1,184 @@
+package com.example.schoolapp;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable row snapshots for the list screens. Every row carries a stable id taken from the store (city,
+ * class or subject id, or the student's slot in its class), so list adapters can diff one snapshot against
+ * the next on a background thread and rebind only the rows whose content changed.
+ */
+final class Rows {
+    private Rows() {
+    }
+
+    static final class Named {
+        static final DiffUtil.ItemCallback<Named> DIFF = new DiffUtil.ItemCallback<Named>() {
+            @Override
+            public boolean areItemsTheSame(Named a, Named b) {
+                return a.id == b.id;
+            }
+
+            @Override
+            public boolean areContentsTheSame(Named a, Named b) {
+                return a.name.equals(b.name);
+            }
+        };
+
+        final int id;
+        final String name;
+
+        Named(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    static final class Student {
+        static final DiffUtil.ItemCallback<Student> DIFF = new DiffUtil.ItemCallback<Student>() {
+            @Override
+            public boolean areItemsTheSame(Student a, Student b) {
+                return a.slot == b.slot;
+            }
+
+            @Override
+            public boolean areContentsTheSame(Student a, Student b) {
+                return a == b || a.name.equals(b.name) && a.grades.equals(b.grades);
+            }
+        };
+
+        final int slot;
+        final String name;
+        final String grades;
+        final int gradeCount;
+        final int gradeSum;
+
+        Student(int slot, String name, String grades, int gradeCount, int gradeSum) {
+            this.slot = slot;
+            this.name = name;
+            this.grades = grades;
+            this.gradeCount = gradeCount;
+            this.gradeSum = gradeSum;
+        }
+    }
+
+    static final class Attendance {
+        static final DiffUtil.ItemCallback<Attendance> DIFF = new DiffUtil.ItemCallback<Attendance>() {
+            @Override
+            public boolean areItemsTheSame(Attendance a, Attendance b) {
+                return a.slot == b.slot;
+            }
+
+            @Override
+            public boolean areContentsTheSame(Attendance a, Attendance b) {
+                return a.present == b.present && a.name.equals(b.name) && a.detail.equals(b.detail);
+            }
+        };
+
+        final int slot;
+        final String name;
+        final boolean present;
+        final String detail;
+
+        Attendance(int slot, String name, boolean present, String detail) {
+            this.slot = slot;
+            this.name = name;
+            this.present = present;
+            this.detail = detail;
+        }
+    }
+
+    static List<Named> cities(GradebookStore store) {
+        List<Named> rows = new ArrayList<>(store.cityCount());
+        for (int cityId = 0; cityId < store.cityCount(); cityId++) {
+            rows.add(new Named(cityId, store.cityName(cityId)));
+        }
+        return rows;
+    }
+
+    static List<Named> classes(GradebookStore store, int cityId) {
+        int[] classes = store.classesOf(cityId);
+        List<Named> rows = new ArrayList<>(classes.length);
+        for (int classId : classes) {
+            rows.add(new Named(classId, store.className(classId)));
+        }
+        return rows;
+    }
+
+    static List<Named> subjects(GradebookStore store, int classId) {
+        ClassBook book = store.book(classId);
+        if (book == null) {
+            return Collections.emptyList();
+        }
+        List<Named> rows = new ArrayList<>(book.subjectCount());
+        for (int i = 0; i < book.subjectCount(); i++) {
+            rows.add(new Named(book.subjectId(i), store.subjectNames.get(book.subjectId(i))));
+        }
+        return rows;
+    }
+
+    static List<Student> students(GradebookStore store, ClassBook book, int subjectIndex) {
+        return students(store, book, subjectIndex, Collections.<Student>emptyList());
+    }
+
+    /**
+     * Builds a snapshot, reusing the rows of {@code previous} whose grade count and sum are unchanged, so
+     * grade strings are formatted once per change rather than once per refresh and unchanged rows diff by
+     * identity.
+     */
+    static List<Student> students(GradebookStore store, ClassBook book, int subjectIndex, List<Student> previous) {
+        List<Student> rows = new ArrayList<>(book.studentCount());
+        ClassStats stats = book.stats();
+        StringBuilder grades = new StringBuilder();
+        for (int slot = 0; slot < book.studentCount(); slot++) {
+            int count = book.gradeCount(slot, subjectIndex);
+            int sum = stats.cellSum(slot, subjectIndex);
+            if (slot < previous.size()) {
+                Student old = previous.get(slot);
+                if (old.gradeCount == count && old.gradeSum == sum) {
+                    rows.add(old);
+                    continue;
+                }
+            }
+            grades.setLength(0);
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    grades.append(", ");
+                }
+                grades.append(book.grade(slot, subjectIndex, i));
+            }
+            rows.add(new Student(slot, store.studentNames.get(book.studentName(slot)), grades.toString(), count, sum));
+        }
+        return rows;
+    }
+
+    static List<Attendance> attendance(GradebookStore store, ClassBook book, int subjectIndex) {
+        return attendance(store, book, subjectIndex, 0, 0, 0);
+    }
+
+    /**
+     * Rows with the current mark; where lessons were marked on school days [{@code from}, {@code to}) of the
+     * school year starting in {@code year}, the detail line adds the student's attendance over them. History
+     * from an earlier year is left out.
+     */
+    static List<Attendance> attendance(GradebookStore store, ClassBook book, int subjectIndex, int year, int from,
+            int to) {
+        List<Attendance> rows = new ArrayList<>(book.studentCount());
+        int lessons = book.historyYear() == year ? book.lessonDays(subjectIndex, from, to) : 0;
+        for (int slot = 0; slot < book.studentCount(); slot++) {
+            boolean present = book.isPresent(slot, subjectIndex);
+            String detail = present ? Report.PRESENT : Report.ABSENT;
+            if (lessons > 0) {
+                int attended = book.presentDays(slot, subjectIndex, from, to);
+                detail = String.format(Locale.ROOT, "%s · %d%% this month (%d/%d)", detail,
+                        Math.round(attended * 100.0 / lessons), attended, lessons);
+            }
+            rows.add(new Attendance(slot, store.studentNames.get(book.studentName(slot)), present, detail));
+        }
+        return rows;
+    }
+}
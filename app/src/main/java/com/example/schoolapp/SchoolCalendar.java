@@ -0,0 +1,134 @@
+package com.example.schoolapp;
+
+import java.util.Arrays;
+
+/**
+ * The school days of one school year, numbered from 0. Attendance history is indexed by these numbers, so
+ * weekends and breaks take no space. Dates are epoch days (days since 1970-01-01), since java.time is not
+ * available on every supported API level.
+ */
+final class SchoolCalendar {
+    private final int startYear;
+    private final int[] epochDays;
+
+    SchoolCalendar(int startYear, int[] epochDays) {
+        for (int i = 1; i < epochDays.length; i++) {
+            if (epochDays[i] <= epochDays[i - 1]) {
+                throw new IllegalArgumentException("School days must be in increasing order");
+            }
+        }
+        if (epochDays.length > AttendanceHistory.MAX_DAYS) {
+            throw new IllegalArgumentException("More than " + AttendanceHistory.MAX_DAYS + " school days");
+        }
+        this.startYear = startYear;
+        this.epochDays = epochDays.clone();
+    }
+
+    /**
+     * Weekdays from 1 September of {@code startYear} to 30 June of the next year, without the Christmas
+     * break (23 December to 1 January).
+     */
+    static SchoolCalendar schoolYear(int startYear) {
+        int first = epochDay(startYear, 9, 1);
+        int last = epochDay(startYear + 1, 6, 30);
+        int breakStart = epochDay(startYear, 12, 23);
+        int breakEnd = epochDay(startYear + 1, 1, 1);
+        int[] days = new int[last - first + 1];
+        int count = 0;
+        for (int day = first; day <= last; day++) {
+            if (dayOfWeek(day) < 5 && (day < breakStart || day > breakEnd)) {
+                days[count++] = day;
+            }
+        }
+        return new SchoolCalendar(startYear, Arrays.copyOf(days, count));
+    }
+
+    /**
+     * The school year {@code epochDay} falls in; July and August belong to the year that starts after them.
+     */
+    static SchoolCalendar schoolYearOf(int epochDay) {
+        int date = civil(epochDay);
+        int year = date / 10000;
+        return schoolYear(date / 100 % 100 >= 7 ? year : year - 1);
+    }
+
+    /**
+     * The calendar year the school year starts in, which is how attendance history tells years apart.
+     */
+    int startYear() {
+        return startYear;
+    }
+
+    int dayCount() {
+        return epochDays.length;
+    }
+
+    int epochDay(int day) {
+        return epochDays[day];
+    }
+
+    /**
+     * The school day on {@code epochDay}, or -1 if there is no school that day.
+     */
+    int dayOf(int epochDay) {
+        int index = Arrays.binarySearch(epochDays, epochDay);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * The first school day on or after {@code epochDay}, or {@link #dayCount()} if there is none; use it
+     * for both ends of a half-open date range.
+     */
+    int firstOnOrAfter(int epochDay) {
+        int index = Arrays.binarySearch(epochDays, epochDay);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Start (inclusive) and end (exclusive) school day of a calendar month, month 1-12.
+     */
+    int monthStart(int year, int month) {
+        return firstOnOrAfter(epochDay(year, month, 1));
+    }
+
+    int monthEnd(int year, int month) {
+        return month == 12 ? firstOnOrAfter(epochDay(year + 1, 1, 1)) : firstOnOrAfter(epochDay(year, month + 1, 1));
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date, month 1-12.
+     */
+    static int epochDay(int year, int month, int dayOfMonth) {
+        // Counts from 1 March so the leap day falls at the end of the shifted year.
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + dayOfMonth - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * The date of {@code epochDay} as {@code year * 10000 + month * 100 + dayOfMonth}.
+     */
+    static int civil(int epochDay) {
+        int z = epochDay + 719468;
+        int era = Math.floorDiv(z, 146097);
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int dayOfMonth = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000 + month * 100 + dayOfMonth;
+    }
+
+    /**
+     * 0 for Monday through 6 for Sunday.
+     */
+    static int dayOfWeek(int epochDay) {
+        // 1970-01-01 was a Thursday.
+        return Math.floorMod(epochDay + 3, 7);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.schoolapp;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Single-activity navigation over one container view. Every screen on the back stack stays attached
+ * (hidden), so going back only flips visibility and keeps scroll positions. Screens popped off the stack
+ * are kept in a small LRU cache and reused, views and all, when the same screen is opened again.
+ */
+final class ScreenStack {
+    abstract static class Screen {
+        final String key;
+        View view;
+
+        Screen(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Inflates and binds the screen. Called once per screen instance.
+         */
+        abstract View create(LayoutInflater inflater, ViewGroup container);
+
+        /**
+         * Called every time the screen comes to the front, e.g. to refresh figures that may have changed.
+         */
+        void onShow() {
+        }
+    }
+
+    private final ViewGroup container;
+    private final LayoutInflater inflater;
+    private final int cacheSize;
+    private final List<Screen> stack = new ArrayList<>();
+    private final Map<String, Screen> cache;
+
+    ScreenStack(ViewGroup container, int cacheSize) {
+        this.container = container;
+        this.inflater = LayoutInflater.from(container.getContext());
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<>(cacheSize, 0.75f, true);
+    }
+
+    /**
+     * Shows {@code screen}, or the cached screen with the same key if there is one.
+     */
+    Screen push(Screen screen) {
+        if (!stack.isEmpty() && top().key.equals(screen.key)) {
+            return top();
+        }
+        Screen next = cache.remove(screen.key);
+        if (next == null) {
+            next = screen;
+            next.view = next.create(inflater, container);
+        }
+        if (!stack.isEmpty()) {
+            top().view.setVisibility(View.GONE);
+        }
+        stack.add(next);
+        container.addView(next.view);
+        next.view.setVisibility(View.VISIBLE);
+        next.onShow();
+        return next;
+    }
+
+    boolean pop() {
+        if (stack.size() <= 1) {
+            return false;
+        }
+        Screen popped = stack.remove(stack.size() - 1);
+        container.removeView(popped.view);
+        remember(popped);
+        Screen current = top();
+        current.view.setVisibility(View.VISIBLE);
+        current.onShow();
+        return true;
+    }
+
+    /**
+     * Pops every screen above the root.
+     */
+    void popToRoot() {
+        while (pop()) {
+            // Each pop caches the screen it removes.
+        }
+    }
+
+    Screen top() {
+        return stack.isEmpty() ? null : stack.get(stack.size() - 1);
+    }
+
+    int depth() {
+        return stack.size();
+    }
+
+    /**
+     * Finds a live screen, on the stack or in the cache, without changing the cache order.
+     */
+    Screen find(String key) {
+        for (Screen screen : stack) {
+            if (screen.key.equals(key)) {
+                return screen;
+            }
+        }
+        for (Screen screen : cache.values()) {
+            if (screen.key.equals(key)) {
+                return screen;
+            }
+        }
+        return null;
+    }
+
+    private void remember(Screen screen) {
+        cache.put(screen.key, screen);
+        if (cache.size() > cacheSize) {
+            Iterator<Screen> eldest = cache.values().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.schoolapp;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns repeated strings (city, class, subject and student names) to dense int ids.
+ * Interning is synchronized; lookups by id are lock-free for ids handed out before the reader saw them.
+ */
+final class StringPool {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private volatile String[] values = new String[16];
+    private int size;
+
+    synchronized int intern(String value) {
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        String[] current = values;
+        if (size == current.length) {
+            String[] grown = new String[size * 2];
+            System.arraycopy(current, 0, grown, 0, size);
+            current = grown;
+        }
+        current[size] = value;
+        values = current;
+        ids.put(value, size);
+        return size++;
+    }
+
+    synchronized int find(String value) {
+        Integer id = ids.get(value);
+        return id == null ? -1 : id;
+    }
+
+    String get(int id) {
+        return values[id];
+    }
+
+    synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,415 @@
+package com.example.schoolapp;
+
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable search index over every student of the district. Names are folded (lower case, no diacritics,
+ * so "loj" finds "Łojszczyk") and indexed twice: a sorted word list answers one- and two-letter prefixes,
+ * and trigram posting lists answer longer fragments. Each student also carries a mean per subject and an
+ * attendance rate, so "average below 2.5 in Matematyka" is one array read per candidate.
+ * <p>
+ * Figures are copied out of the store on the main thread by {@link #collect}; classes that are not
+ * resident are read from the gradebook file by {@link #build}, which runs on a worker.
+ */
+final class StudentIndex {
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    /**
+     * A query: name fragments (all must match) plus optional filters. NaN disables a threshold.
+     */
+    static final class Query {
+        final String text;
+        final int subjectId;
+        final double meanBelow;
+        final double attendanceBelow;
+
+        Query(String text, int subjectId, double meanBelow, double attendanceBelow) {
+            this.text = text;
+            this.subjectId = subjectId;
+            this.meanBelow = meanBelow;
+            this.attendanceBelow = attendanceBelow;
+        }
+    }
+
+    static final class Result {
+        final int[] students;
+        final int total;
+
+        Result(int[] students, int total) {
+            this.students = students;
+            this.total = total;
+        }
+    }
+
+    /**
+     * Names and figures of one class, copied so that a worker can index them while the store keeps changing.
+     */
+    static final class ClassRows {
+        final int classId;
+        final String city;
+        final String label;
+        final int[] nameIds;
+        final int[] subjectIds;
+        final float[] means;
+        final float[] overall;
+        final float[] attendance;
+
+        ClassRows(int classId, String city, String label, ClassBook book) {
+            this.classId = classId;
+            this.city = city;
+            this.label = label;
+            int students = book.studentCount();
+            int subjects = book.subjectCount();
+            ClassStats stats = book.stats();
+            nameIds = new int[students];
+            subjectIds = new int[subjects];
+            means = new float[students * subjects];
+            overall = new float[students];
+            attendance = new float[students];
+            for (int subject = 0; subject < subjects; subject++) {
+                subjectIds[subject] = book.subjectId(subject);
+            }
+            for (int slot = 0; slot < students; slot++) {
+                nameIds[slot] = book.studentName(slot);
+                overall[slot] = (float) stats.studentMean(slot);
+                attendance[slot] = (float) stats.studentAttendanceRate(slot);
+                for (int subject = 0; subject < subjects; subject++) {
+                    int count = book.gradeCount(slot, subject);
+                    means[slot * subjects + subject] = count == 0 ? Float.NaN : (float) stats.cellSum(slot, subject) / count;
+                }
+            }
+        }
+    }
+
+    /**
+     * What {@link #build} needs: copies of resident classes, plus file positions of classes that are not.
+     */
+    static final class Source {
+        final List<ClassRows> resident = new ArrayList<>();
+        final List<String[]> pagedNames = new ArrayList<>();
+        final IntList pagedClassId = new IntList();
+        final IntList pagedFileIndex = new IntList();
+        GradebookFile file;
+    }
+
+    private final ClassRows[] classes;
+    private final int[] classOf;
+    private final int[] slotOf;
+    private final String[] names;
+    private final String[] folded;
+    private final float[] attendance;
+    private final float[] overall;
+    private final float[] means;
+    private final int subjectCount;
+    private final String[] words;
+    private final int[] wordOwner;
+    private final Map<Long, int[]> trigrams;
+
+    /**
+     * Copies what the index needs out of the store. Main thread only; does not page classes in.
+     */
+    static Source collect(GradebookStore store) {
+        Source source = new Source();
+        source.file = store.file();
+        for (int classId = 0; classId < store.classCount(); classId++) {
+            String city = store.cityName(store.classCity(classId));
+            ClassBook book = store.residentBook(classId);
+            if (book != null) {
+                source.resident.add(new ClassRows(classId, city, store.className(classId), book));
+            } else {
+                source.pagedNames.add(new String[] {city, store.className(classId)});
+                source.pagedClassId.add(classId);
+                source.pagedFileIndex.add(store.classFileIndex(classId));
+            }
+        }
+        return source;
+    }
+
+    /**
+     * Reads the classes that were not resident and builds the index. Safe to call on a worker: the
+     * store is only used to intern names and subjects, which is thread-safe.
+     */
+    static StudentIndex build(Source source, GradebookStore store) throws IOException {
+        List<ClassRows> all = new ArrayList<>(source.resident);
+        for (int i = 0; i < source.pagedFileIndex.size(); i++) {
+            String[] names = source.pagedNames.get(i);
+            ClassBook book = source.file.readClass(source.pagedFileIndex.get(i), store);
+            all.add(new ClassRows(source.pagedClassId.get(i), names[0], names[1], book));
+        }
+        return new StudentIndex(all.toArray(new ClassRows[0]), store.studentNames, store.subjectNames.size());
+    }
+
+    StudentIndex(ClassRows[] classes, StringPool studentNames, int subjectCount) {
+        this.classes = classes;
+        this.subjectCount = subjectCount;
+        int count = 0;
+        for (ClassRows rows : classes) {
+            count += rows.nameIds.length;
+        }
+        classOf = new int[count];
+        slotOf = new int[count];
+        names = new String[count];
+        folded = new String[count];
+        attendance = new float[count];
+        overall = new float[count];
+        means = new float[count * subjectCount];
+        Arrays.fill(means, Float.NaN);
+
+        List<Word> wordList = new ArrayList<>(count * 2);
+        Map<Long, IntList> postings = new HashMap<>();
+        int student = 0;
+        for (int c = 0; c < classes.length; c++) {
+            ClassRows rows = classes[c];
+            int subjects = rows.subjectIds.length;
+            for (int slot = 0; slot < rows.nameIds.length; slot++, student++) {
+                classOf[student] = c;
+                slotOf[student] = slot;
+                names[student] = studentNames.get(rows.nameIds[slot]);
+                folded[student] = fold(names[student]);
+                attendance[student] = rows.attendance[slot];
+                overall[student] = rows.overall[slot];
+                for (int subject = 0; subject < subjects; subject++) {
+                    means[student * subjectCount + rows.subjectIds[subject]] = rows.means[slot * subjects + subject];
+                }
+                for (String word : SPACES.split(folded[student])) {
+                    if (!word.isEmpty()) {
+                        wordList.add(new Word(word, student));
+                    }
+                }
+                String name = folded[student];
+                for (int i = 0; i + 3 <= name.length(); i++) {
+                    IntList list = postings.get(trigram(name, i));
+                    if (list == null) {
+                        list = new IntList();
+                        postings.put(trigram(name, i), list);
+                    }
+                    if (list.size() == 0 || list.get(list.size() - 1) != student) {
+                        list.add(student);
+                    }
+                }
+            }
+        }
+
+        Word[] sorted = wordList.toArray(new Word[0]);
+        Arrays.sort(sorted, Word.ORDER);
+        words = new String[sorted.length];
+        wordOwner = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            words[i] = sorted[i].text;
+            wordOwner[i] = sorted[i].owner;
+        }
+        trigrams = new HashMap<>(postings.size() * 2);
+        for (Map.Entry<Long, IntList> entry : postings.entrySet()) {
+            trigrams.put(entry.getKey(), entry.getValue().toArray());
+        }
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    String name(int student) {
+        return names[student];
+    }
+
+    int classId(int student) {
+        return classes[classOf[student]].classId;
+    }
+
+    String city(int student) {
+        return classes[classOf[student]].city;
+    }
+
+    String classLabel(int student) {
+        return classes[classOf[student]].label;
+    }
+
+    int slot(int student) {
+        return slotOf[student];
+    }
+
+    /**
+     * Mean of the student's grades in a subject, or across all subjects for a negative {@code subjectId};
+     * NaN if the class has no such subject or there are no grades yet.
+     */
+    double mean(int student, int subjectId) {
+        if (subjectId < 0) {
+            return overall[student];
+        }
+        return subjectId >= subjectCount ? Double.NaN : means[student * subjectCount + subjectId];
+    }
+
+    double attendance(int student) {
+        return attendance[student];
+    }
+
+    /**
+     * Matches of {@code query}, of which the first {@code maxResults} are returned; a paged list asks for all
+     * of them, at 4 bytes a student.
+     */
+    Result search(Query query, int maxResults) {
+        int[] candidates = null;
+        for (String token : SPACES.split(fold(query.text))) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            if (candidates == null) {
+                candidates = token.length() < 3 ? prefixMatches(token) : fragmentMatches(token);
+            } else {
+                // Later tokens only narrow the candidates down, which is cheaper than looking them up.
+                candidates = narrow(candidates, token);
+            }
+            if (candidates.length == 0) {
+                break;
+            }
+        }
+
+        int limit = candidates == null ? names.length : candidates.length;
+        int[] found = new int[Math.min(limit, maxResults)];
+        int total = 0;
+        for (int i = 0; i < limit; i++) {
+            int student = candidates == null ? i : candidates[i];
+            if (accepts(query, student)) {
+                if (total < found.length) {
+                    found[total] = student;
+                }
+                total++;
+            }
+        }
+        return new Result(total < found.length ? Arrays.copyOf(found, total) : found, total);
+    }
+
+    private boolean accepts(Query query, int student) {
+        if (!Double.isNaN(query.meanBelow)) {
+            double mean = mean(student, query.subjectId);
+            if (Double.isNaN(mean) || mean >= query.meanBelow) {
+                return false;
+            }
+        }
+        return Double.isNaN(query.attendanceBelow) || attendance[student] < query.attendanceBelow;
+    }
+
+    private int[] prefixMatches(String prefix) {
+        int from = lowerBound(prefix);
+        int to = lowerBound(prefix + Character.MAX_VALUE);
+        BitSet owners = new BitSet(names.length);
+        for (int i = from; i < to; i++) {
+            owners.set(wordOwner[i]);
+        }
+        int[] matches = new int[owners.cardinality()];
+        for (int i = 0, student = owners.nextSetBit(0); student >= 0; student = owners.nextSetBit(student + 1)) {
+            matches[i++] = student;
+        }
+        return matches;
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = words.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (words[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private int[] narrow(int[] candidates, String token) {
+        boolean prefix = token.length() < 3;
+        int kept = 0;
+        int[] matches = new int[candidates.length];
+        for (int student : candidates) {
+            if (prefix ? startsWord(folded[student], token) : folded[student].contains(token)) {
+                matches[kept++] = student;
+            }
+        }
+        return Arrays.copyOf(matches, kept);
+    }
+
+    private static boolean startsWord(String name, String prefix) {
+        for (int i = name.indexOf(prefix); i >= 0; i = name.indexOf(prefix, i + 1)) {
+            if (i == 0 || Character.isWhitespace(name.charAt(i - 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int[] fragmentMatches(String fragment) {
+        int[] candidates = null;
+        for (int i = 0; i + 3 <= fragment.length(); i++) {
+            int[] posting = trigrams.get(trigram(fragment, i));
+            if (posting == null) {
+                return new int[0];
+            }
+            candidates = candidates == null ? posting : intersect(candidates, posting);
+        }
+        // Trigrams may match out of order; confirm the fragment itself.
+        int kept = 0;
+        int[] matches = new int[candidates.length];
+        for (int student : candidates) {
+            if (folded[student].contains(fragment)) {
+                matches[kept++] = student;
+            }
+        }
+        return Arrays.copyOf(matches, kept);
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    private static long trigram(String text, int start) {
+        return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16) | text.charAt(start + 2);
+    }
+
+    static String fold(String text) {
+        String lower = text.toLowerCase(Locale.ROOT).replace('ł', 'l');
+        return MARKS.matcher(Normalizer.normalize(lower, Normalizer.Form.NFD)).replaceAll("").trim();
+    }
+
+    private static final class Word {
+        static final Comparator<Word> ORDER = new Comparator<Word>() {
+            @Override
+            public int compare(Word a, Word b) {
+                int order = a.text.compareTo(b.text);
+                return order != 0 ? order : Integer.compare(a.owner, b.owner);
+            }
+        };
+
+        final String text;
+        final int owner;
+
+        Word(String text, int owner) {
+            this.text = text;
+            this.owner = owner;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.schoolapp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link StudentIndex} queries on a worker. Queries are debounced, so a burst of keystrokes costs one
+ * search, and results of a query that has since been replaced are dropped instead of delivered. Results are
+ * not capped: they come as {@link PagedRows} whose first page is ready, the rest loading on the same worker as
+ * the list scrolls.
+ * {@link #search} and {@link #rebuild} are called on the main thread; the listener is called there too.
+ * The worker must be single-threaded: builds and queries are ordered on it.
+ */
+final class StudentSearch {
+    interface Listener {
+        void onResults(PagedRows<Match> matches);
+
+        void onIndexFailed(IOException error);
+    }
+
+    /**
+     * A search result row. Unlike the {@link Rows} snapshots, results are paged, see {@link PagedRows}, rather
+     * than diffed.
+     */
+    static final class Match {
+        final long id;
+        final String name;
+        final String detail;
+        final String city;
+        final String classLabel;
+
+        Match(long id, String name, String detail, String city, String classLabel) {
+            this.id = id;
+            this.name = name;
+            this.detail = detail;
+            this.city = city;
+            this.classLabel = classLabel;
+        }
+    }
+
+    static final long DEBOUNCE_MS = 120;
+
+    private final ScheduledExecutorService worker;
+    private final Executor mainThread;
+    private final Listener listener;
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile StudentIndex index;
+    private volatile StudentIndex.Query lastQuery;
+    private ScheduledFuture<?> pending;
+    private int builtFrom = -1;
+    // Worker thread only.
+    private int lastRun;
+    private boolean waitingForIndex;
+
+    StudentSearch(ScheduledExecutorService worker, Executor mainThread, Listener listener) {
+        this.worker = worker;
+        this.mainThread = mainThread;
+        this.listener = listener;
+    }
+
+    /**
+     * Rebuilds the index from the current store contents and reruns the last query against it. Does nothing if
+     * the store has not changed since the last build, which copies every resident class and reads the rest.
+     */
+    void rebuild(GradebookStore store) {
+        if (store.changes() == builtFrom) {
+            return;
+        }
+        builtFrom = store.changes();
+        StudentIndex.Source source = StudentIndex.collect(store);
+        worker.execute(() -> {
+            try {
+                index = StudentIndex.build(source, store);
+            } catch (IOException e) {
+                mainThread.execute(() -> {
+                    builtFrom = -1;
+                    listener.onIndexFailed(e);
+                });
+                return;
+            }
+            // Refresh the results on screen, unless a newer query is already queued and will do it.
+            StudentIndex.Query query = lastQuery;
+            int current = generation.get();
+            if (query != null && (waitingForIndex || lastRun == current)) {
+                waitingForIndex = false;
+                run(query, current);
+            }
+        });
+    }
+
+    void search(StudentIndex.Query query) {
+        lastQuery = query;
+        int current = generation.incrementAndGet();
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        pending = worker.schedule(() -> run(query, current), DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private void run(StudentIndex.Query query, int queryGeneration) {
+        if (queryGeneration != generation.get()) {
+            return;
+        }
+        StudentIndex current = index;
+        if (current == null) {
+            waitingForIndex = true;
+            return;
+        }
+        lastRun = queryGeneration;
+        int[] students = current.search(query, Integer.MAX_VALUE).students;
+        PagedRows<Match> matches = new PagedRows<>(students.length,
+                (offset, count) -> matches(current, students, offset, offset + count, query.subjectId),
+                worker, mainThread);
+        List<Match> first = matches(current, students, 0,
+                Math.min(PagedRows.PAGE_SIZE, students.length), query.subjectId);
+        mainThread.execute(() -> {
+            if (queryGeneration == generation.get()) {
+                matches.put(0, first);
+                listener.onResults(matches);
+            }
+        });
+    }
+
+    /**
+     * Rows for search results {@code students[from..to)}, one page of them at a time; the detail line shows the
+     * mean in {@code subjectId}, or the overall mean for -1.
+     */
+    static List<Match> matches(StudentIndex index, int[] students, int from, int to, int subjectId) {
+        List<Match> rows = new ArrayList<>(to - from);
+        StringBuilder detail = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            int student = students[i];
+            detail.setLength(0);
+            detail.append(index.city(student)).append(", ").append(index.classLabel(student));
+            double mean = index.mean(student, subjectId);
+            if (!Double.isNaN(mean)) {
+                detail.append(String.format(Locale.ROOT, " | average %.2f", mean));
+            }
+            double attendance = index.attendance(student);
+            if (!Double.isNaN(attendance)) {
+                detail.append(String.format(Locale.ROOT, " | attendance %.0f%%", attendance * 100));
+            }
+            long id = ((long) index.classId(student) << 32) | index.slot(student);
+            rows.add(new Match(id, index.name(student), detail.toString(), index.city(student), index.classLabel(student)));
+        }
+        return rows;
+    }
+}
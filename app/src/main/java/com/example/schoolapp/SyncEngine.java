@@ -0,0 +1,633 @@
+package com.example.schoolapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Shares grades and attendance between devices by exchanging only what changed. Every edit entered on this
+ * device becomes a change numbered by (replica, counter) and stamped with a Lamport clock. A sync round sends
+ * the changes the server has not acknowledged together with this replica's {@link VersionVector}, and gets
+ * back the other replicas' changes past it, so the bytes and work of a sync grow with the number of changes,
+ * not with the size of the gradebook.
+ * <p>
+ * Conflicts resolve the same way on every replica. Grades only ever accumulate, so concurrent grades are all
+ * kept. For attendance marks, a cell's current mark or its mark on one school day, the change with the
+ * highest (stamp, replica) wins whatever order the changes arrive in. A lesson mark only ever writes the
+ * history here; when it set the current mark on its own device, that travels as a separate attendance
+ * change, so the current mark has one winner however lesson and attendance edits interleave. Changes for a class, student or
+ * subject this device does not have are skipped, as in journal replay.
+ * <p>
+ * A change names its student by name and by how many students of that name come before them in the class, not
+ * by slot, so devices whose rosters list a class in another order still apply it to the same student. The
+ * winning mark of a cell is remembered only until every replica the server knows has seen it; after that no
+ * change can arrive that it would beat, so the sync state grows with the changes in flight, not the gradebook.
+ * A device joining later sends nothing until it has caught up, and then restamps the changes it made offline
+ * past everything it received, so they win everywhere as they already did on the device.
+ * <p>
+ * Call everything except the transport from the thread that owns the store. Changes applied here are
+ * journaled like local edits but not sent back.
+ */
+final class SyncEngine {
+    static final int MAX_BATCH = 512;
+
+    private static final byte FORMAT = 2;
+    // Set on the kind byte of a change in the same city, class and subject as the one before it.
+    private static final int SAME_SUBJECT = 0x80;
+
+    interface Transport {
+        /**
+         * Sends one encoded {@link Message} and returns the encoded reply. Called on a worker thread.
+         */
+        byte[] exchange(byte[] request) throws IOException;
+    }
+
+    interface Listener {
+        void onSynced(Result result);
+
+        void onFailed(IOException error);
+    }
+
+    /**
+     * A numbered edit. Its student is {@code student} and {@code namesake}; the edit's slot is this device's and
+     * is -1 in a change read from a message or saved state.
+     */
+    static final class Change {
+        final int replica;
+        final long counter;
+        final long stamp;
+        final GradebookJournal.Edit edit;
+        final String student;
+        final int namesake;
+
+        Change(int replica, long counter, long stamp, GradebookJournal.Edit edit, String student, int namesake) {
+            this.replica = replica;
+            this.counter = counter;
+            this.stamp = stamp;
+            this.edit = edit;
+            this.student = student;
+            this.namesake = namesake;
+        }
+    }
+
+    /**
+     * One direction of a round. A client sends its replica, vector and unacknowledged changes; the server
+     * answers with how many of the client's changes it holds ({@code ack}), a batch of changes the client
+     * lacks, whether more are waiting, and as its vector the changes every replica has seen.
+     * <p>
+     * Encoded compactly: numbers are varints, the counter of a change following one of the same replica and
+     * every stamp are sent as signed differences, every replica id and city, class, subject or student name is
+     * written once per message and then referred to by index, and a run of changes in one class and subject
+     * names them once. A typical change takes 7 to 10 bytes.
+     */
+    static final class Message {
+        final int replica;
+        final VersionVector vector;
+        final long ack;
+        final boolean more;
+        final List<Change> changes;
+
+        Message(int replica, VersionVector vector, long ack, boolean more, List<Change> changes) {
+            this.replica = replica;
+            this.vector = vector;
+            this.ack = ack;
+            this.more = more;
+            this.changes = changes;
+        }
+
+        byte[] encode() {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + changes.size() * 10);
+            try {
+                DataOutputStream out = new DataOutputStream(bytes);
+                out.writeByte(FORMAT);
+                out.writeInt(replica);
+                vector.write(out);
+                writeVarLong(out, ack);
+                out.writeBoolean(more);
+                writeChanges(out, changes);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        static Message decode(byte[] bytes) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (in.readByte() != FORMAT) {
+                throw new IOException("Unknown sync format");
+            }
+            int replica = in.readInt();
+            VersionVector vector = VersionVector.read(in);
+            long ack = readVarLong(in);
+            boolean more = in.readBoolean();
+            List<Change> changes = readChanges(in);
+            if (in.read() != -1) {
+                throw new IOException("Trailing bytes in sync message");
+            }
+            return new Message(replica, vector, ack, more, changes);
+        }
+    }
+
+    static final class Result {
+        final int sent;
+        final int received;
+        final int applied;
+        final long bytesSent;
+        final long bytesReceived;
+        final int rounds;
+
+        Result(int sent, int received, int applied, long bytesSent, long bytesReceived, int rounds) {
+            this.sent = sent;
+            this.received = received;
+            this.applied = applied;
+            this.bytesSent = bytesSent;
+            this.bytesReceived = bytesReceived;
+            this.rounds = rounds;
+        }
+    }
+
+    /**
+     * A winning mark, packed by {@link #mark}, with the counter of its change.
+     */
+    private static final class Winner {
+        final long mark;
+        final long counter;
+
+        Winner(long mark, long counter) {
+            this.mark = mark;
+            this.counter = counter;
+        }
+    }
+
+    private final int replica;
+    private final GradebookStore store;
+    private final VersionVector seen = new VersionVector();
+    private final LinkedList<Change> outbox = new LinkedList<>();
+    // Winning change of each attendance cell and lesson mark not yet seen by every replica.
+    private final Map<String, Winner> marks = new HashMap<>();
+    private long counter;
+    private long clock;
+    // False until the first round that received everything; until then changes stay in the outbox.
+    private boolean joined;
+
+    SyncEngine(int replica, GradebookStore store) {
+        this.replica = replica;
+        this.store = store;
+    }
+
+    int replica() {
+        return replica;
+    }
+
+    VersionVector vector() {
+        return seen.copy();
+    }
+
+    int pendingChanges() {
+        return outbox.size();
+    }
+
+    /**
+     * Attendance cells and lesson marks whose winner is remembered, because some replica has not seen it yet.
+     */
+    int markCount() {
+        return marks.size();
+    }
+
+    /**
+     * Numbers and queues an edit just entered on this device. Called by {@link GradebookStore}.
+     */
+    void record(GradebookJournal.Edit edit) {
+        ClassBook book = store.book(store.findClass(edit.city, edit.classLabel));
+        int nameId = book.studentName(edit.slot);
+        int namesake = 0;
+        for (int slot = 0; slot < edit.slot; slot++) {
+            if (book.studentName(slot) == nameId) {
+                namesake++;
+            }
+        }
+        Change change = new Change(replica, ++counter, ++clock, edit, store.studentNames.get(nameId), namesake);
+        seen.advance(replica, counter);
+        if (edit.kind != GradebookJournal.GRADE) {
+            marks.put(edit.kind + edit.cell(), new Winner(mark(change), counter));
+        }
+        outbox.add(change);
+    }
+
+    /**
+     * The next request: this replica's vector and up to {@link #MAX_BATCH} changes the server has not
+     * acknowledged, oldest first.
+     */
+    byte[] request() {
+        List<Change> batch = new ArrayList<>(joined ? Math.min(outbox.size(), MAX_BATCH) : 0);
+        for (Iterator<Change> it = outbox.iterator(); joined && it.hasNext() && batch.size() < MAX_BATCH; ) {
+            batch.add(it.next());
+        }
+        return new Message(replica, seen.copy(), 0, false, batch).encode();
+    }
+
+    /**
+     * Takes in a reply: drops acknowledged changes and applies the received ones. Returns the changes applied;
+     * {@code progress} gets the acknowledged and received counts and whether another round is due.
+     */
+    int accept(byte[] response, long[] progress) throws IOException {
+        Message message = Message.decode(response);
+        int acked = 0;
+        while (!outbox.isEmpty() && outbox.getFirst().counter <= message.ack) {
+            outbox.removeFirst();
+            acked++;
+        }
+        int applied = 0;
+        for (Change change : message.changes) {
+            if (seen.covers(change.replica, change.counter)) {
+                continue;
+            }
+            if (change.counter != seen.get(change.replica) + 1) {
+                throw new IOException("Missing changes of replica " + change.replica + " before " + change.counter);
+            }
+            seen.advance(change.replica, change.counter);
+            clock = Math.max(clock, change.stamp);
+            GradebookJournal.Edit edit = resolve(change);
+            if (edit != null && wins(change, edit) && (edit.kind == GradebookJournal.LESSON
+                    ? store.applySyncedLesson(edit) : store.applySynced(edit))) {
+                applied++;
+            }
+        }
+        boolean joining = !joined && !message.more;
+        if (joining) {
+            join();
+        }
+        if (!message.more) {
+            // Everything the server holds has arrived, including whatever the other replicas made before
+            // they saw the settled marks.
+            forgetSettled(message.vector);
+        }
+        progress[0] = acked;
+        progress[1] = message.changes.size();
+        // Another round if the server has more, or took some changes or has just been joined and more are
+        // waiting here.
+        progress[2] = message.more || (acked > 0 || joining) && !outbox.isEmpty() ? 1 : 0;
+        return applied;
+    }
+
+    /**
+     * Runs rounds until both sides are up to date, exchanging on {@code worker} and applying on
+     * {@code mainThread}, the thread that owns the store.
+     */
+    void sync(Transport transport, Executor worker, Executor mainThread, Listener listener) {
+        round(transport, worker, mainThread, listener, new long[6]);
+    }
+
+    /**
+     * The same on the calling thread, which must own the store.
+     */
+    Result syncNow(Transport transport) throws IOException {
+        long[] totals = new long[6];
+        long[] progress = new long[3];
+        do {
+            byte[] request = request();
+            byte[] response = transport.exchange(request);
+            totals[2] += accept(response, progress);
+            count(totals, progress, request, response);
+        } while (progress[2] != 0);
+        return result(totals);
+    }
+
+    private void round(Transport transport, Executor worker, Executor mainThread, Listener listener, long[] totals) {
+        byte[] request = request();
+        worker.execute(() -> {
+            byte[] response;
+            try {
+                response = transport.exchange(request);
+            } catch (IOException e) {
+                mainThread.execute(() -> listener.onFailed(e));
+                return;
+            }
+            mainThread.execute(() -> {
+                long[] progress = new long[3];
+                try {
+                    totals[2] += accept(response, progress);
+                } catch (IOException e) {
+                    listener.onFailed(e);
+                    return;
+                }
+                count(totals, progress, request, response);
+                if (progress[2] != 0) {
+                    round(transport, worker, mainThread, listener, totals);
+                } else {
+                    listener.onSynced(result(totals));
+                }
+            });
+        });
+    }
+
+    private static void count(long[] totals, long[] progress, byte[] request, byte[] response) {
+        totals[0] += progress[0];
+        totals[1] += progress[1];
+        totals[3] += request.length;
+        totals[4] += response.length;
+        totals[5]++;
+    }
+
+    private static Result result(long[] totals) {
+        return new Result((int) totals[0], (int) totals[1], (int) totals[2], totals[3], totals[4], (int) totals[5]);
+    }
+
+    /**
+     * The change's edit with its student's slot on this device, or null if the class or student is not here.
+     */
+    private GradebookJournal.Edit resolve(Change change) {
+        GradebookJournal.Edit edit = change.edit;
+        int classId = store.findClass(edit.city, edit.classLabel);
+        ClassBook book = classId < 0 ? null : store.book(classId);
+        int nameId = store.studentNames.find(change.student);
+        if (book == null || nameId < 0) {
+            return null;
+        }
+        int namesake = change.namesake;
+        for (int slot = 0; slot < book.studentCount(); slot++) {
+            if (book.studentName(slot) == nameId && namesake-- == 0) {
+                return new GradebookJournal.Edit(edit.kind, edit.city, edit.classLabel, slot, edit.subject, edit.value,
+                        edit.year, edit.day);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether a received change takes effect: always for grades, and for marks if it beats the mark applied so far.
+     */
+    private boolean wins(Change change, GradebookJournal.Edit edit) {
+        if (edit.kind == GradebookJournal.GRADE) {
+            return true;
+        }
+        String cell = edit.kind + edit.cell();
+        Winner current = marks.get(cell);
+        long mark = mark(change);
+        // Before joining, this device's own marks win: join() restamps them past everything received.
+        if (current != null && (current.mark >= mark || !joined && (int) current.mark == replica)) {
+            return false;
+        }
+        marks.put(cell, new Winner(mark, change.counter));
+        return true;
+    }
+
+    /**
+     * Moves the stamps of the changes made before this replica caught up past every stamp it has received, in
+     * the same order. None of them has been sent, so every replica will see only the new stamps.
+     */
+    private void join() {
+        long shift = clock;
+        for (ListIterator<Change> it = outbox.listIterator(); it.hasNext(); ) {
+            Change change = it.next();
+            it.set(new Change(replica, change.counter, change.stamp + shift, change.edit, change.student,
+                    change.namesake));
+            clock = Math.max(clock, change.stamp + shift);
+        }
+        for (Map.Entry<String, Winner> mark : marks.entrySet()) {
+            Winner winner = mark.getValue();
+            if ((int) winner.mark == replica) {
+                mark.setValue(new Winner(winner.mark + (shift << 32), winner.counter));
+            }
+        }
+        joined = true;
+    }
+
+    /**
+     * Drops the marks of changes in {@code settled}, which every replica has seen: any change a replica makes
+     * after seeing one has a higher stamp and beats it anyway.
+     */
+    private void forgetSettled(VersionVector settled) {
+        for (Iterator<Winner> it = marks.values().iterator(); it.hasNext(); ) {
+            Winner winner = it.next();
+            if (settled.covers((int) winner.mark, winner.counter)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Stamp in the high half and replica in the low half, so comparing marks orders by stamp, then replica.
+     */
+    private static long mark(Change change) {
+        return change.stamp << 32 | change.replica & 0xffffffffL;
+    }
+
+    /**
+     * Writes the replica's counters, clock, winning marks and unacknowledged changes, replacing {@code file}
+     * atomically.
+     */
+    void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(temp)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+            out.writeByte(FORMAT);
+            out.writeInt(replica);
+            writeVarLong(out, counter);
+            writeVarLong(out, clock);
+            out.writeBoolean(joined);
+            seen.write(out);
+            writeVarLong(out, marks.size());
+            for (Map.Entry<String, Winner> mark : marks.entrySet()) {
+                out.writeUTF(mark.getKey());
+                out.writeLong(mark.getValue().mark);
+                writeVarLong(out, mark.getValue().counter);
+            }
+            writeChanges(out, outbox);
+            out.flush();
+            stream.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Cannot move " + temp + " to " + file);
+        }
+    }
+
+    /**
+     * The engine saved in {@code file}, or null if there is none yet.
+     */
+    static SyncEngine load(File file, GradebookStore store) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readByte() != FORMAT) {
+                throw new IOException("Unknown sync state format in " + file);
+            }
+            SyncEngine engine = new SyncEngine(in.readInt(), store);
+            engine.counter = readVarLong(in);
+            engine.clock = readVarLong(in);
+            engine.joined = in.readBoolean();
+            VersionVector seen = VersionVector.read(in);
+            for (Map.Entry<Integer, Long> entry : seen.entries()) {
+                engine.seen.advance(entry.getKey(), entry.getValue());
+            }
+            long marks = readVarLong(in);
+            for (long i = 0; i < marks; i++) {
+                engine.marks.put(in.readUTF(), new Winner(in.readLong(), readVarLong(in)));
+            }
+            engine.outbox.addAll(readChanges(in));
+            return engine;
+        }
+    }
+
+    private static void writeChanges(DataOutput out, List<Change> changes) throws IOException {
+        Map<String, Integer> strings = new HashMap<>();
+        Map<Integer, Integer> replicas = new HashMap<>();
+        writeVarLong(out, changes.size());
+        boolean first = true;
+        int lastReplica = 0;
+        long lastCounter = 0;
+        long lastStamp = 0;
+        GradebookJournal.Edit last = null;
+        for (Change change : changes) {
+            Integer index = replicas.get(change.replica);
+            if (index == null) {
+                writeVarLong(out, replicas.size());
+                out.writeInt(change.replica);
+                replicas.put(change.replica, replicas.size());
+            } else {
+                writeVarLong(out, index);
+            }
+            boolean sameReplica = !first && change.replica == lastReplica;
+            writeVarLong(out, sameReplica ? zigZag(change.counter - lastCounter) : change.counter);
+            writeVarLong(out, zigZag(change.stamp - lastStamp));
+            first = false;
+            lastReplica = change.replica;
+            lastCounter = change.counter;
+            lastStamp = change.stamp;
+            GradebookJournal.Edit edit = change.edit;
+            if (last != null && edit.subject.equals(last.subject) && edit.classLabel.equals(last.classLabel)
+                    && edit.city.equals(last.city)) {
+                out.writeByte(edit.kind | SAME_SUBJECT);
+            } else {
+                out.writeByte(edit.kind);
+                writeString(out, strings, edit.city);
+                writeString(out, strings, edit.classLabel);
+                writeString(out, strings, edit.subject);
+            }
+            last = edit;
+            writeString(out, strings, change.student);
+            writeVarLong(out, change.namesake);
+            out.writeByte(edit.value);
+            if (edit.kind == GradebookJournal.LESSON) {
+                writeVarLong(out, edit.year);
+                writeVarLong(out, edit.day);
+            }
+        }
+    }
+
+    private static List<Change> readChanges(DataInput in) throws IOException {
+        long count = readVarLong(in);
+        if (count < 0 || count > Integer.MAX_VALUE) {
+            throw new IOException("Bad change count " + count);
+        }
+        List<Change> changes = new ArrayList<>((int) Math.min(count, MAX_BATCH));
+        List<String> strings = new ArrayList<>();
+        List<Integer> replicas = new ArrayList<>();
+        int lastReplica = 0;
+        long lastCounter = 0;
+        long lastStamp = 0;
+        GradebookJournal.Edit last = null;
+        for (long i = 0; i < count; i++) {
+            int index = (int) readVarLong(in);
+            if (index == replicas.size()) {
+                replicas.add(in.readInt());
+            } else if (index < 0 || index > replicas.size()) {
+                throw new IOException("Bad replica reference " + index);
+            }
+            int replica = replicas.get(index);
+            long counter = i > 0 && replica == lastReplica ? lastCounter + unZigZag(readVarLong(in)) : readVarLong(in);
+            long stamp = lastStamp + unZigZag(readVarLong(in));
+            lastReplica = replica;
+            lastCounter = counter;
+            lastStamp = stamp;
+            int head = in.readUnsignedByte();
+            byte kind = (byte) (head & ~SAME_SUBJECT);
+            boolean sameSubject = (head & SAME_SUBJECT) != 0;
+            if (sameSubject && last == null) {
+                throw new IOException("First change refers to a previous one");
+            }
+            String city = sameSubject ? last.city : readString(in, strings);
+            String classLabel = sameSubject ? last.classLabel : readString(in, strings);
+            String subject = sameSubject ? last.subject : readString(in, strings);
+            String student = readString(in, strings);
+            int namesake = (int) readVarLong(in);
+            byte value = in.readByte();
+            int year = kind == GradebookJournal.LESSON ? (int) readVarLong(in) : 0;
+            int day = kind == GradebookJournal.LESSON ? (int) readVarLong(in) : 0;
+            if (kind != GradebookJournal.GRADE && kind != GradebookJournal.ATTENDANCE && kind != GradebookJournal.LESSON) {
+                throw new IOException("Unknown change kind " + kind);
+            }
+            last = new GradebookJournal.Edit(kind, city, classLabel, -1, subject, value, year, day);
+            changes.add(new Change(replica, counter, stamp, last, student, namesake));
+        }
+        return changes;
+    }
+
+    private static void writeString(DataOutput out, Map<String, Integer> strings, String value) throws IOException {
+        Integer index = strings.get(value);
+        if (index != null) {
+            writeVarLong(out, index);
+            return;
+        }
+        writeVarLong(out, strings.size());
+        out.writeUTF(value);
+        strings.put(value, strings.size());
+    }
+
+    private static String readString(DataInput in, List<String> strings) throws IOException {
+        long index = readVarLong(in);
+        if (index == strings.size()) {
+            strings.add(in.readUTF());
+        } else if (index < 0 || index >= strings.size()) {
+            throw new IOException("Bad string reference " + index);
+        }
+        return strings.get((int) index);
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint too long");
+    }
+
+    private static long zigZag(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    private static long unZigZag(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+}
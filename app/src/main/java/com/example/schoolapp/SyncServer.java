@@ -0,0 +1,119 @@
+package com.example.schoolapp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process stand-in for the sync server, speaking the {@link SyncEngine.Message} protocol: it keeps every
+ * replica's changes and relays them, knowing nothing of gradebooks. A replica's changes are kept in counter
+ * order, so the changes a client lacks are found by index from its vector, and a round costs time
+ * proportional to the changes it carries, however many are stored. Replies carry the changes every replica
+ * has seen, taken from each replica's last request that left none of its own changes behind.
+ * <p>
+ * Thread-safe; any number of engines can use one server as their transport.
+ */
+final class SyncServer implements SyncEngine.Transport {
+    private final Map<Integer, List<SyncEngine.Change>> changes = new HashMap<>();
+    private final Map<Integer, VersionVector> reported = new HashMap<>();
+    private final int batch;
+    private long rounds;
+    private long bytesIn;
+    private long bytesOut;
+
+    SyncServer() {
+        this(SyncEngine.MAX_BATCH);
+    }
+
+    /**
+     * A server sending at most {@code batch} changes per reply.
+     */
+    SyncServer(int batch) {
+        this.batch = batch;
+    }
+
+    @Override
+    public synchronized byte[] exchange(byte[] request) throws IOException {
+        SyncEngine.Message message = SyncEngine.Message.decode(request);
+        List<SyncEngine.Change> own = log(message.replica);
+        for (SyncEngine.Change change : message.changes) {
+            // Resent changes are already here; a gap means the client lost state, and it is sent from the ack.
+            if (change.replica == message.replica && change.counter == own.size() + 1) {
+                own.add(change);
+            }
+        }
+        if (own.size() == message.vector.get(message.replica)) {
+            reported.put(message.replica, message.vector);
+        }
+        List<SyncEngine.Change> reply = new ArrayList<>();
+        boolean more = false;
+        for (Map.Entry<Integer, List<SyncEngine.Change>> log : changes.entrySet()) {
+            if (log.getKey() == message.replica) {
+                continue;
+            }
+            List<SyncEngine.Change> missing = log.getValue();
+            long from = message.vector.get(log.getKey());
+            for (long counter = from + 1; counter <= missing.size(); counter++) {
+                if (reply.size() == batch) {
+                    more = true;
+                    break;
+                }
+                reply.add(missing.get((int) counter - 1));
+            }
+        }
+        byte[] response = new SyncEngine.Message(0, settled(), own.size(), more, reply).encode();
+        rounds++;
+        bytesIn += request.length;
+        bytesOut += response.length;
+        return response;
+    }
+
+    synchronized long rounds() {
+        return rounds;
+    }
+
+    synchronized long bytesIn() {
+        return bytesIn;
+    }
+
+    synchronized long bytesOut() {
+        return bytesOut;
+    }
+
+    synchronized int changeCount() {
+        int count = 0;
+        for (List<SyncEngine.Change> log : changes.values()) {
+            count += log.size();
+        }
+        return count;
+    }
+
+    /**
+     * Changes every replica has seen; none while a replica has not reported what it holds.
+     */
+    private VersionVector settled() {
+        VersionVector settled = new VersionVector();
+        if (!reported.keySet().containsAll(changes.keySet())) {
+            return settled;
+        }
+        for (int replica : changes.keySet()) {
+            long counter = Long.MAX_VALUE;
+            for (VersionVector vector : reported.values()) {
+                counter = Math.min(counter, vector.get(replica));
+            }
+            settled.advance(replica, counter);
+        }
+        return settled;
+    }
+
+    private List<SyncEngine.Change> log(int replica) {
+        List<SyncEngine.Change> log = changes.get(replica);
+        if (log == null) {
+            log = new ArrayList<>();
+            changes.put(replica, log);
+        }
+        return log;
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.schoolapp;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The weekly timetable of one city: for every class, day and period at most one lesson of one of the class's
+ * subjects, taught by a teacher in a room. A lesson is packed into one int per (class, slot), and teachers
+ * and rooms have a row of slots each holding the class they are booked by, so "what does the class have",
+ * "who teaches it where" and "is this teacher or room free" are each a single array read.
+ * <p>
+ * Classes are numbered by their position in the city ({@link #classIndex}); subjects are the class's subject
+ * indices, as in {@link ClassBook}. Not thread-safe; {@link TimetableSolver} fills one in and hands it
+ * over when done.
+ */
+final class Timetable {
+    static final int DAYS = 5;
+    static final int PERIODS = 8;
+    static final int SLOTS = DAYS * PERIODS;
+    static final int MAX_SUBJECTS = 0xff;
+    static final int MAX_TEACHERS = 0xfff;
+    static final int MAX_ROOMS = 0xfff;
+
+    private static final String[] DAY_NAMES = {"Mon", "Tue", "Wed", "Thu", "Fri"};
+    // Lessons of 45 minutes from 8:00 with 10 minute breaks, a 20 minute one after the third period.
+    private static final int[] PERIOD_STARTS = {480, 535, 590, 655, 710, 765, 820, 875};
+    private static final int LESSON_MINUTES = 45;
+
+    private final int[] classIds;
+    private final Map<Integer, Integer> classIndices;
+    private final String[] teachers;
+    private final String[] rooms;
+    // (subject + 1) | teacher << 8 | room << 20, 0 for a free period.
+    private final int[] lessons;
+    // Class index + 1 booking the teacher or room, 0 if free.
+    private final int[] teacherBookings;
+    private final int[] roomBookings;
+    private int lessonCount;
+
+    Timetable(int[] classIds, String[] teachers, String[] rooms) {
+        if (teachers.length > MAX_TEACHERS || rooms.length > MAX_ROOMS) {
+            throw new IllegalArgumentException("Too many teachers or rooms");
+        }
+        this.classIds = classIds.clone();
+        classIndices = new HashMap<>(classIds.length * 2);
+        for (int i = 0; i < classIds.length; i++) {
+            classIndices.put(classIds[i], i);
+        }
+        this.teachers = teachers.clone();
+        this.rooms = rooms.clone();
+        lessons = new int[classIds.length * SLOTS];
+        teacherBookings = new int[teachers.length * SLOTS];
+        roomBookings = new int[rooms.length * SLOTS];
+    }
+
+    static int slot(int day, int period) {
+        if (day < 0 || day >= DAYS || period < 0 || period >= PERIODS) {
+            throw new IndexOutOfBoundsException("No period " + period + " on day " + day);
+        }
+        return day * PERIODS + period;
+    }
+
+    int classCount() {
+        return classIds.length;
+    }
+
+    int classId(int classIndex) {
+        return classIds[classIndex];
+    }
+
+    /**
+     * Position of store class {@code classId} in this timetable, or -1 if it is not in the city.
+     */
+    int classIndex(int classId) {
+        Integer index = classIndices.get(classId);
+        return index == null ? -1 : index;
+    }
+
+    int teacherCount() {
+        return teachers.length;
+    }
+
+    String teacherName(int teacher) {
+        return teachers[teacher];
+    }
+
+    int roomCount() {
+        return rooms.length;
+    }
+
+    String roomName(int room) {
+        return rooms[room];
+    }
+
+    int lessonCount() {
+        return lessonCount;
+    }
+
+    boolean canPlace(int classIndex, int slot, int teacher, int room) {
+        return lessons[classIndex * SLOTS + slot] == 0 && teacherBookings[teacher * SLOTS + slot] == 0
+                && roomBookings[room * SLOTS + slot] == 0;
+    }
+
+    /**
+     * Books the class, teacher and room for {@code slot}; they must all be free.
+     */
+    void place(int classIndex, int slot, int subjectIndex, int teacher, int room) {
+        if (subjectIndex < 0 || subjectIndex >= MAX_SUBJECTS) {
+            throw new IllegalArgumentException("Bad subject " + subjectIndex);
+        }
+        if (!canPlace(classIndex, slot, teacher, room)) {
+            throw new IllegalStateException("Conflict at " + slotName(slot) + " for class " + classIndex);
+        }
+        lessons[classIndex * SLOTS + slot] = subjectIndex + 1 | teacher << 8 | room << 20;
+        teacherBookings[teacher * SLOTS + slot] = classIndex + 1;
+        roomBookings[room * SLOTS + slot] = classIndex + 1;
+        lessonCount++;
+    }
+
+    void clear(int classIndex, int slot) {
+        int lesson = lessons[classIndex * SLOTS + slot];
+        if (lesson != 0) {
+            lessons[classIndex * SLOTS + slot] = 0;
+            teacherBookings[teacher(lesson) * SLOTS + slot] = 0;
+            roomBookings[room(lesson) * SLOTS + slot] = 0;
+            lessonCount--;
+        }
+    }
+
+    /**
+     * The class's subject index at {@code slot}, or -1 for a free period.
+     */
+    int subjectAt(int classIndex, int slot) {
+        return (lessons[classIndex * SLOTS + slot] & 0xff) - 1;
+    }
+
+    int teacherAt(int classIndex, int slot) {
+        int lesson = lessons[classIndex * SLOTS + slot];
+        return lesson == 0 ? -1 : teacher(lesson);
+    }
+
+    int roomAt(int classIndex, int slot) {
+        int lesson = lessons[classIndex * SLOTS + slot];
+        return lesson == 0 ? -1 : room(lesson);
+    }
+
+    /**
+     * The class index the teacher teaches at {@code slot}, or -1 if the teacher is free.
+     */
+    int classOfTeacher(int teacher, int slot) {
+        return teacherBookings[teacher * SLOTS + slot] - 1;
+    }
+
+    int classInRoom(int room, int slot) {
+        return roomBookings[room * SLOTS + slot] - 1;
+    }
+
+    boolean isTeacherFree(int teacher, int slot) {
+        return teacherBookings[teacher * SLOTS + slot] == 0;
+    }
+
+    boolean isRoomFree(int room, int slot) {
+        return roomBookings[room * SLOTS + slot] == 0;
+    }
+
+    /**
+     * One line per period of the class's day up to its last lesson, the period under way marked.
+     */
+    String describeDay(int classIndex, int day, int currentPeriod, List<String> subjects) {
+        int last = -1;
+        for (int period = 0; period < PERIODS; period++) {
+            if (subjectAt(classIndex, slot(day, period)) >= 0) {
+                last = period;
+            }
+        }
+        StringBuilder out = new StringBuilder(DAY_NAMES[day]);
+        if (last < 0) {
+            return out.append(": no lessons").toString();
+        }
+        for (int period = 0; period <= last; period++) {
+            int slot = slot(day, period);
+            int subject = subjectAt(classIndex, slot);
+            out.append('\n').append(period == currentPeriod ? "> " : "  ").append(period + 1).append(". ")
+                    .append(periodTime(period)).append("  ");
+            if (subject < 0 || subject >= subjects.size()) {
+                out.append('-');
+            } else {
+                out.append(subjects.get(subject)).append(" · ").append(teachers[teacherAt(classIndex, slot)])
+                        .append(" · ").append(rooms[roomAt(classIndex, slot)]);
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * The period under way at {@code minuteOfDay}, or -1 during breaks and outside school hours.
+     */
+    static int periodAt(int minuteOfDay) {
+        for (int period = 0; period < PERIODS; period++) {
+            if (minuteOfDay >= PERIOD_STARTS[period] && minuteOfDay < PERIOD_STARTS[period] + LESSON_MINUTES) {
+                return period;
+            }
+        }
+        return -1;
+    }
+
+    static String periodTime(int period) {
+        int start = PERIOD_STARTS[period];
+        return String.format(Locale.ROOT, "%d:%02d", start / 60, start % 60);
+    }
+
+    static String slotName(int slot) {
+        return DAY_NAMES[slot / PERIODS] + " " + (slot % PERIODS + 1);
+    }
+
+    private static int teacher(int lesson) {
+        return lesson >>> 8 & 0xfff;
+    }
+
+    private static int room(int lesson) {
+        return lesson >>> 20;
+    }
+}
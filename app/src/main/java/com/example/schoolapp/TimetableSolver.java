@@ -0,0 +1,383 @@
+package com.example.schoolapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Plans a conflict-free week for a city: no class, teacher or room has two lessons in the same period.
+ * Each attempt places the lessons greedily, hardest first, then repairs clashes by min-conflicts search,
+ * moving a clashing lesson to the period where it clashes least, with a little noise to leave plateaus;
+ * a class seeing the same subject twice in a day breaks ties. Attempts are independent and seeded from the
+ * solver's seed and their number, so {@link #solve(ExecutorService, int, long)} runs them on every worker
+ * and takes the first one that succeeds. Lessons still clashing when the budget runs out are left out of
+ * the result, so a timetable is always conflict-free and {@link Timetable#lessonCount()} tells how
+ * complete it is.
+ */
+final class TimetableSolver {
+    /**
+     * The lessons to place: each is a (class, subject) pair with the teacher and room it must have, one
+     * entry per weekly hour.
+     */
+    static final class Problem {
+        final int[] classIds;
+        final String[] teachers;
+        final String[] rooms;
+        final int[] lessonClass;
+        final int[] lessonSubject;
+        final int[] lessonTeacher;
+        final int[] lessonRoom;
+
+        Problem(int[] classIds, String[] teachers, String[] rooms, int[] lessonClass, int[] lessonSubject,
+                int[] lessonTeacher, int[] lessonRoom) {
+            if (lessonSubject.length != lessonClass.length || lessonTeacher.length != lessonClass.length
+                    || lessonRoom.length != lessonClass.length) {
+                throw new IllegalArgumentException("Lesson arrays differ in length");
+            }
+            this.classIds = classIds;
+            this.teachers = teachers;
+            this.rooms = rooms;
+            this.lessonClass = lessonClass;
+            this.lessonSubject = lessonSubject;
+            this.lessonTeacher = lessonTeacher;
+            this.lessonRoom = lessonRoom;
+        }
+
+        int lessonCount() {
+            return lessonClass.length;
+        }
+
+        /**
+         * The week of the city's classes. The roster has no staff, so teachers and rooms are derived: each
+         * subject gets as many teachers as its hours across the city need at {@link #TEACHER_HOURS} a week,
+         * each class a home room, and PE and computing shared gyms and labs. Call from the thread that owns
+         * the store; it reads only subject lists, so no class is paged in.
+         */
+        static Problem of(GradebookStore store, int cityId) {
+            int[] classIds = store.classesOf(cityId);
+            List<String> teachers = new ArrayList<>();
+            List<String> rooms = new ArrayList<>();
+            Map<String, int[]> teacherLoads = new HashMap<>();
+            Map<String, int[]> roomLoads = new HashMap<>();
+            IntList lessonClass = new IntList();
+            IntList lessonSubject = new IntList();
+            IntList lessonTeacher = new IntList();
+            IntList lessonRoom = new IntList();
+            for (int c = 0; c < classIds.length; c++) {
+                List<String> subjects = store.subjectNameList(classIds[c]);
+                int[] hours = weeklyHours(subjects);
+                int homeRoom = rooms.size();
+                rooms.add("Room " + (101 + c));
+                for (int s = 0; s < hours.length; s++) {
+                    if (hours[s] == 0) {
+                        continue;
+                    }
+                    String subject = subjects.get(s);
+                    int teacher = assign(teacherLoads, teachers, subject, subject + " teacher ", hours[s], TEACHER_HOURS);
+                    String sharedRoom = SHARED_ROOMS.get(subject);
+                    int room = sharedRoom == null ? homeRoom
+                            : assign(roomLoads, rooms, sharedRoom, sharedRoom + " ", hours[s], SHARED_ROOM_HOURS);
+                    for (int h = 0; h < hours[s]; h++) {
+                        lessonClass.add(c);
+                        lessonSubject.add(s);
+                        lessonTeacher.add(teacher);
+                        lessonRoom.add(room);
+                    }
+                }
+            }
+            return new Problem(classIds, teachers.toArray(new String[0]), rooms.toArray(new String[0]),
+                    lessonClass.toArray(), lessonSubject.toArray(), lessonTeacher.toArray(), lessonRoom.toArray());
+        }
+
+        /**
+         * The newest resource of {@code kind} if {@code hours} more still fit in its week, or else a new one.
+         * Loads hold (index, hours) pairs per kind, so a subject taught by n teachers keeps n - 1 of them
+         * near full time.
+         */
+        private static int assign(Map<String, int[]> loads, List<String> names, String kind, String prefix,
+                int hours, int capacity) {
+            int[] load = loads.get(kind);
+            if (load == null) {
+                load = new int[0];
+            }
+            int count = load.length / 2;
+            if (count > 0 && load[2 * count - 1] + hours <= capacity) {
+                load[2 * count - 1] += hours;
+                return load[2 * count - 2];
+            }
+            int[] grown = Arrays.copyOf(load, load.length + 2);
+            grown[2 * count] = names.size();
+            grown[2 * count + 1] = hours;
+            loads.put(kind, grown);
+            names.add(prefix + (count + 1));
+            return names.size() - 1;
+        }
+    }
+
+    static final int TEACHER_HOURS = 18;
+    // A shared room is booked at most three quarters of the week, which leaves the search room to move.
+    static final int SHARED_ROOM_HOURS = Timetable.SLOTS * 3 / 4;
+
+    private static final Map<String, Integer> HOURS = new HashMap<>();
+    private static final Map<String, String> SHARED_ROOMS = new HashMap<>();
+    private static final int DEFAULT_HOURS = 2;
+    private static final int CHECK_EVERY = 256;
+    private static final double NOISE = 0.02;
+
+    static {
+        HOURS.put("Matematyka", 4);
+        HOURS.put("Język Angielski", 3);
+        HOURS.put("WF", 3);
+        HOURS.put("Plastyka", 1);
+        HOURS.put("Muzyka", 1);
+        HOURS.put("Informatyka", 1);
+        SHARED_ROOMS.put("WF", "Gym");
+        SHARED_ROOMS.put("Informatyka", "Computer lab");
+    }
+
+    private final Problem problem;
+    private final long seed;
+    private final int subjects;
+
+    TimetableSolver(Problem problem, long seed) {
+        this.problem = problem;
+        this.seed = seed;
+        int most = 0;
+        for (int subject : problem.lessonSubject) {
+            most = Math.max(most, subject + 1);
+        }
+        subjects = most;
+    }
+
+    /**
+     * Weekly hours of each subject, trimmed from the longest ones until the week fits in the timetable.
+     */
+    static int[] weeklyHours(List<String> subjects) {
+        int[] hours = new int[subjects.size()];
+        int total = 0;
+        for (int s = 0; s < hours.length; s++) {
+            Integer known = HOURS.get(subjects.get(s));
+            hours[s] = known == null ? DEFAULT_HOURS : known;
+            total += hours[s];
+        }
+        while (total > Timetable.SLOTS) {
+            int longest = 0;
+            for (int s = 1; s < hours.length; s++) {
+                if (hours[s] > hours[longest]) {
+                    longest = s;
+                }
+            }
+            hours[longest]--;
+            total--;
+        }
+        return hours;
+    }
+
+    /**
+     * Runs {@code attempts} attempts on {@code workers} until one places every lesson or {@code budgetNanos}
+     * pass, and returns the first complete timetable, or else the most complete one. Blocks; do not call
+     * from one of the workers.
+     */
+    Timetable solve(ExecutorService workers, int attempts, long budgetNanos) throws InterruptedException {
+        if (attempts < 1) {
+            throw new IllegalArgumentException("No attempts");
+        }
+        long deadline = System.nanoTime() + budgetNanos;
+        AtomicBoolean solved = new AtomicBoolean();
+        CompletionService<Attempt> results = new ExecutorCompletionService<>(workers);
+        List<Future<Attempt>> futures = new ArrayList<>(attempts);
+        for (int a = 0; a < attempts; a++) {
+            int index = a;
+            futures.add(results.submit(() -> new Attempt(index).run(deadline, solved)));
+        }
+        Attempt best = null;
+        try {
+            for (int a = 0; a < attempts; a++) {
+                Attempt attempt = results.take().get();
+                if (attempt.conflicts == 0) {
+                    solved.set(true);
+                    return attempt.timetable();
+                }
+                if (best == null || attempt.conflicts < best.conflicts
+                        || attempt.conflicts == best.conflicts && attempt.index < best.index) {
+                    best = attempt;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Timetable attempt failed", e.getCause());
+        } finally {
+            solved.set(true);
+            for (Future<Attempt> future : futures) {
+                future.cancel(false);
+            }
+        }
+        return best.timetable();
+    }
+
+    /**
+     * One attempt on the calling thread.
+     */
+    Timetable solve(long budgetNanos) {
+        return new Attempt(0).run(System.nanoTime() + budgetNanos, new AtomicBoolean()).timetable();
+    }
+
+    private final class Attempt {
+        final int index;
+        final Random random;
+        final int lessons = problem.lessonCount();
+        final int[] slot = new int[lessons];
+        final int[] classUse = new int[problem.classIds.length * Timetable.SLOTS];
+        final int[] teacherUse = new int[problem.teachers.length * Timetable.SLOTS];
+        final int[] roomUse = new int[problem.rooms.length * Timetable.SLOTS];
+        // Lessons of the same class and subject on each day, to spread a subject over the week.
+        final int[] subjectDays = new int[problem.classIds.length * subjects * Timetable.DAYS];
+        final int[] ties = new int[Timetable.SLOTS];
+        int conflicts;
+
+        Attempt(int index) {
+            this.index = index;
+            random = new Random(seed + 0x9E3779B97F4A7C15L * (index + 1));
+        }
+
+        Attempt run(long deadline, AtomicBoolean solved) {
+            int[] order = hardestFirst();
+            for (int lesson : order) {
+                book(lesson, bestSlot(lesson, -1));
+            }
+            for (long step = 0; conflicts > 0; step++) {
+                if (step % CHECK_EVERY == 0 && (solved.get() || System.nanoTime() - deadline >= 0)) {
+                    break;
+                }
+                int lesson = clashing();
+                int from = slot[lesson];
+                unbook(lesson);
+                book(lesson, random.nextDouble() < NOISE ? random.nextInt(Timetable.SLOTS) : bestSlot(lesson, from));
+            }
+            return this;
+        }
+
+        /**
+         * Lessons whose teacher and room are the busiest go first, shuffled among equals.
+         */
+        private int[] hardestFirst() {
+            int[] teacherHours = new int[problem.teachers.length];
+            int[] roomHours = new int[problem.rooms.length];
+            for (int lesson = 0; lesson < lessons; lesson++) {
+                teacherHours[problem.lessonTeacher[lesson]]++;
+                roomHours[problem.lessonRoom[lesson]]++;
+            }
+            long[] keys = new long[lessons];
+            for (int lesson = 0; lesson < lessons; lesson++) {
+                int load = teacherHours[problem.lessonTeacher[lesson]] + roomHours[problem.lessonRoom[lesson]];
+                keys[lesson] = (long) -load << 40 | (long) random.nextInt(1 << 20) << 20 | lesson;
+            }
+            Arrays.sort(keys);
+            int[] order = new int[lessons];
+            for (int i = 0; i < lessons; i++) {
+                order[i] = (int) (keys[i] & 0xfffff);
+            }
+            return order;
+        }
+
+        /**
+         * The slot where {@code lesson} clashes least, other than {@code avoid}; ties go to the day with
+         * the fewest lessons of its subject, then at random.
+         */
+        private int bestSlot(int lesson, int avoid) {
+            int bestCost = Integer.MAX_VALUE;
+            int count = 0;
+            for (int s = 0; s < Timetable.SLOTS; s++) {
+                if (s == avoid) {
+                    continue;
+                }
+                int cost = clashes(lesson, s) * 64 + subjectDays[subjectDay(lesson, s)];
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    count = 0;
+                }
+                if (cost == bestCost) {
+                    ties[count++] = s;
+                }
+            }
+            return ties[random.nextInt(count)];
+        }
+
+        private int clashes(int lesson, int s) {
+            return classUse[problem.lessonClass[lesson] * Timetable.SLOTS + s]
+                    + teacherUse[problem.lessonTeacher[lesson] * Timetable.SLOTS + s]
+                    + roomUse[problem.lessonRoom[lesson] * Timetable.SLOTS + s];
+        }
+
+        /**
+         * A random lesson that shares its period with another lesson of its class, teacher or room.
+         */
+        private int clashing() {
+            int start = random.nextInt(lessons);
+            for (int i = 0; i < lessons; i++) {
+                int lesson = (start + i) % lessons;
+                int s = slot[lesson];
+                if (classUse[problem.lessonClass[lesson] * Timetable.SLOTS + s] > 1
+                        || teacherUse[problem.lessonTeacher[lesson] * Timetable.SLOTS + s] > 1
+                        || roomUse[problem.lessonRoom[lesson] * Timetable.SLOTS + s] > 1) {
+                    return lesson;
+                }
+            }
+            throw new IllegalStateException("No clashing lesson among " + conflicts + " conflicts");
+        }
+
+        private void book(int lesson, int s) {
+            slot[lesson] = s;
+            conflicts += add(classUse, problem.lessonClass[lesson] * Timetable.SLOTS + s, 1)
+                    + add(teacherUse, problem.lessonTeacher[lesson] * Timetable.SLOTS + s, 1)
+                    + add(roomUse, problem.lessonRoom[lesson] * Timetable.SLOTS + s, 1);
+            subjectDays[subjectDay(lesson, s)]++;
+        }
+
+        private void unbook(int lesson) {
+            int s = slot[lesson];
+            conflicts -= add(classUse, problem.lessonClass[lesson] * Timetable.SLOTS + s, -1)
+                    + add(teacherUse, problem.lessonTeacher[lesson] * Timetable.SLOTS + s, -1)
+                    + add(roomUse, problem.lessonRoom[lesson] * Timetable.SLOTS + s, -1);
+            subjectDays[subjectDay(lesson, s)]--;
+        }
+
+        /**
+         * Adds {@code delta} bookings and returns whether a clash was made or resolved: 1 if the cell
+         * held at least one lesson besides the one moving.
+         */
+        private int add(int[] use, int cell, int delta) {
+            int before = use[cell];
+            use[cell] = before + delta;
+            return Math.min(before, before + delta) > 0 ? 1 : 0;
+        }
+
+        private int subjectDay(int lesson, int s) {
+            return (problem.lessonClass[lesson] * subjects + problem.lessonSubject[lesson]) * Timetable.DAYS
+                    + s / Timetable.PERIODS;
+        }
+
+        /**
+         * The lessons that do not clash; with clashes left, the earlier-placed lesson of each keeps its period.
+         */
+        Timetable timetable() {
+            Timetable timetable = new Timetable(problem.classIds, problem.teachers, problem.rooms);
+            for (int lesson = 0; lesson < lessons; lesson++) {
+                int c = problem.lessonClass[lesson];
+                if (timetable.canPlace(c, slot[lesson], problem.lessonTeacher[lesson], problem.lessonRoom[lesson])) {
+                    timetable.place(c, slot[lesson], problem.lessonSubject[lesson], problem.lessonTeacher[lesson],
+                            problem.lessonRoom[lesson]);
+                }
+            }
+            return timetable;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.schoolapp;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * For each replica (a device, or the server), the number of its changes seen so far. Changes of a replica are
+ * numbered from 1 and always exchanged in order, so one counter per replica says exactly which of them a
+ * peer holds, and what it lacks is the changes past its counters. Not thread-safe.
+ */
+final class VersionVector {
+    private final TreeMap<Integer, Long> counters = new TreeMap<>();
+
+    long get(int replica) {
+        Long counter = counters.get(replica);
+        return counter == null ? 0 : counter;
+    }
+
+    boolean covers(int replica, long counter) {
+        return counter <= get(replica);
+    }
+
+    void advance(int replica, long counter) {
+        if (counter > get(replica)) {
+            counters.put(replica, counter);
+        }
+    }
+
+    int size() {
+        return counters.size();
+    }
+
+    Iterable<Map.Entry<Integer, Long>> entries() {
+        return counters.entrySet();
+    }
+
+    VersionVector copy() {
+        VersionVector copy = new VersionVector();
+        copy.counters.putAll(counters);
+        return copy;
+    }
+
+    void write(DataOutput out) throws IOException {
+        SyncEngine.writeVarLong(out, counters.size());
+        for (Map.Entry<Integer, Long> entry : counters.entrySet()) {
+            out.writeInt(entry.getKey());
+            SyncEngine.writeVarLong(out, entry.getValue());
+        }
+    }
+
+    static VersionVector read(DataInput in) throws IOException {
+        VersionVector vector = new VersionVector();
+        long size = SyncEngine.readVarLong(in);
+        for (long i = 0; i < size; i++) {
+            vector.advance(in.readInt(), SyncEngine.readVarLong(in));
+        }
+        return vector;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof VersionVector && counters.equals(((VersionVector) o).counters);
+    }
+
+    @Override
+    public int hashCode() {
+        return counters.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return counters.toString();
+    }
+}
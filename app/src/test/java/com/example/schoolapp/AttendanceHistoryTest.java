@@ -0,0 +1,167 @@
+package com.example.schoolapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AttendanceHistoryTest {
+    @Test
+    public void convertsDates() {
+        assertEquals(0, SchoolCalendar.epochDay(1970, 1, 1));
+        assertEquals(19_783, SchoolCalendar.epochDay(2024, 3, 1));
+        assertEquals(20240229, SchoolCalendar.civil(19_782));
+        assertEquals(19691231, SchoolCalendar.civil(-1));
+        for (int day = -200_000; day < 800_000; day += 97) {
+            int date = SchoolCalendar.civil(day);
+            assertEquals(day, SchoolCalendar.epochDay(date / 10000, date / 100 % 100, date % 100));
+        }
+        // 2025-09-01 was a Monday.
+        assertEquals(0, SchoolCalendar.dayOfWeek(SchoolCalendar.epochDay(2025, 9, 1)));
+    }
+
+    @Test
+    public void schoolYearSkipsWeekendsAndBreaks() {
+        SchoolCalendar year = SchoolCalendar.schoolYear(2025);
+        assertTrue(year.dayCount() <= AttendanceHistory.MAX_DAYS);
+        assertEquals(SchoolCalendar.epochDay(2025, 9, 1), year.epochDay(0));
+        assertEquals(-1, year.dayOf(SchoolCalendar.epochDay(2025, 9, 6)));
+        assertEquals(-1, year.dayOf(SchoolCalendar.epochDay(2025, 12, 29)));
+        assertEquals(5, year.dayOf(SchoolCalendar.epochDay(2025, 9, 8)));
+        // September 2025 has 22 weekdays.
+        assertEquals(0, year.monthStart(2025, 9));
+        assertEquals(22, year.monthEnd(2025, 9));
+        assertEquals(year.dayCount(), year.monthEnd(2026, 6));
+        assertEquals(2026, SchoolCalendar.civil(SchoolCalendar.schoolYearOf(SchoolCalendar.epochDay(2026, 7, 15)).epochDay(0)) / 10000);
+        assertEquals(2025, SchoolCalendar.civil(SchoolCalendar.schoolYearOf(SchoolCalendar.epochDay(2026, 3, 2)).epochDay(0)) / 10000);
+    }
+
+    @Test
+    public void countsDaysInRanges() {
+        AttendanceHistory history = new AttendanceHistory(2);
+        Random random = new Random(5);
+        boolean[][] present = new boolean[3][AttendanceHistory.MAX_DAYS];
+        boolean[] held = new boolean[AttendanceHistory.MAX_DAYS];
+        for (int day = 0; day < AttendanceHistory.MAX_DAYS; day++) {
+            if (random.nextInt(3) == 0) {
+                continue;
+            }
+            held[day] = true;
+            for (int slot = 0; slot < 3; slot++) {
+                present[slot][day] = random.nextBoolean();
+                history.mark(slot, 1, 2025, day, present[slot][day]);
+            }
+        }
+        for (int from = 0; from <= AttendanceHistory.MAX_DAYS; from += 7) {
+            for (int to = from; to <= AttendanceHistory.MAX_DAYS; to += 13) {
+                int lessons = 0;
+                int attended = 0;
+                for (int day = from; day < to; day++) {
+                    lessons += held[day] ? 1 : 0;
+                    attended += present[2][day] ? 1 : 0;
+                }
+                assertEquals(lessons, history.lessonDays(1, from, to));
+                assertEquals(attended, history.presentDays(2, 1, from, to));
+                assertEquals(0, history.lessonDays(0, from, to));
+            }
+        }
+    }
+
+    @Test
+    public void laterMarkOverridesCurrentMarkOnlyForLatestLesson() {
+        ClassBook book = new ClassBook(new int[] {0});
+        book.addStudent(0);
+        book.markAttendance(0, 0, 2025, 9, true);
+        book.markAttendance(0, 0, 2025, 2, false);
+        assertTrue(book.isPresent(0, 0));
+        book.markAttendance(0, 0, 2025, 9, false);
+        assertFalse(book.isPresent(0, 0));
+        assertEquals(0.0, book.attendanceRate(0, 0, 0, 10), 0);
+        assertTrue(Double.isNaN(book.attendanceRate(0, 0, 10, 20)));
+    }
+
+    @Test
+    public void newSchoolYearStartsHistoryOver() {
+        GradebookStore store = new GradebookStore();
+        int classId = store.addClass(store.addCity("Rzeszów"), "Klasa 1", Arrays.asList("Muzyka"));
+        store.addStudent(classId, "Ala Kot");
+        ClassBook book = store.book(classId);
+        SchoolCalendar june = SchoolCalendar.schoolYearOf(SchoolCalendar.epochDay(2026, 6, 29));
+        SchoolCalendar september = SchoolCalendar.schoolYearOf(SchoolCalendar.epochDay(2026, 9, 2));
+        assertEquals(2025, june.startYear());
+        assertEquals(2026, september.startYear());
+        int lastDay = june.dayOf(SchoolCalendar.epochDay(2026, 6, 29));
+        int firstDay = september.dayOf(SchoolCalendar.epochDay(2026, 9, 2));
+        book.markAttendance(0, 0, 2025, lastDay, true);
+        book.markAttendance(0, 0, 2025, firstDay, true);
+
+        assertTrue(book.markAttendance(0, 0, 2026, firstDay, false));
+        assertEquals(2026, book.historyYear());
+        assertEquals(1, book.lessonDays(0, 0, AttendanceHistory.MAX_DAYS));
+        assertFalse(book.wasPresent(0, 0, lastDay));
+        assertFalse(book.wasPresent(0, 0, firstDay));
+        assertEquals("Absent · 0% this month (0/1)", Rows.attendance(store, book, 0, 2026, 0, firstDay + 1).get(0).detail);
+        assertEquals("Absent", Rows.attendance(store, book, 0, 2025, 0, firstDay + 1).get(0).detail);
+
+        // A mark from last year arriving late, say by sync, is dropped.
+        assertFalse(book.markAttendance(0, 0, 2025, lastDay, true));
+        assertFalse(book.isPresent(0, 0));
+        assertEquals(1, book.lessonDays(0, 0, AttendanceHistory.MAX_DAYS));
+    }
+
+    @Test
+    public void keepsHistoryWhenSubjectAdded() {
+        AttendanceHistory history = new AttendanceHistory(1);
+        history.mark(0, 0, 2025, 70, true);
+        history.mark(1, 0, 2025, 70, false);
+        history.mark(2, 0, 2025, 71, true);
+        history.addSubject(3);
+        history.mark(1, 1, 2025, 5, true);
+        assertTrue(history.wasPresent(0, 0, 70));
+        assertFalse(history.wasPresent(1, 0, 70));
+        assertTrue(history.wasPresent(2, 0, 71));
+        assertTrue(history.wasPresent(1, 1, 5));
+        assertEquals(2, history.lessonDays(0, 0, AttendanceHistory.MAX_DAYS));
+        assertEquals(71, history.lastLesson(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsDaysPastTheYear() {
+        new AttendanceHistory(1).mark(0, 0, 2025, AttendanceHistory.MAX_DAYS, true);
+    }
+
+    @Test
+    public void districtYearFitsInMemory() {
+        // 40 classes of 30 students with 12 subjects, every lesson of a school year marked.
+        SchoolCalendar year = SchoolCalendar.schoolYear(2025);
+        AttendanceHistory[] classes = new AttendanceHistory[40];
+        Random random = new Random(8);
+        for (int c = 0; c < classes.length; c++) {
+            classes[c] = new AttendanceHistory(12);
+            for (int day = 0; day < year.dayCount(); day++) {
+                for (int slot = 0; slot < 30; slot++) {
+                    for (int subject = 0; subject < 12; subject++) {
+                        classes[c].mark(slot, subject, 2025, day, random.nextInt(10) != 0);
+                    }
+                }
+            }
+        }
+        long bytes = 0;
+        for (AttendanceHistory history : classes) {
+            bytes += 8L * (history.lessonWords().length + history.presentWords().length);
+        }
+        int from = year.monthStart(2026, 3);
+        int to = year.monthEnd(2026, 3);
+        long attended = 0;
+        for (AttendanceHistory history : classes) {
+            for (int slot = 0; slot < 30; slot++) {
+                attended += history.presentDays(slot, 3, from, to);
+            }
+        }
+        // 32 bytes per cell, plus the lesson rows and at most doubling slack.
+        assertTrue(bytes + " bytes", bytes <= 40 * (2 * 30 + 1) * 12 * AttendanceHistory.WORDS * 8);
+        assertTrue(attended > 0);
+    }
+}
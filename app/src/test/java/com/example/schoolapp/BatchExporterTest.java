@@ -0,0 +1,119 @@
+package com.example.schoolapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.*;
+
+public class BatchExporterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final BatchExporter.Writer TEXT_WRITER = (report, file, cancelled) -> {
+        StringBuilder row = new StringBuilder();
+        try (Writer out = new FileWriter(file)) {
+            for (int i = 0; i < report.rowCount(); i++) {
+                row.setLength(0);
+                report.formatRow(i, row);
+                out.write(row.toString());
+            }
+        }
+    };
+
+    @Test
+    public void packsEveryClassAndSubjectIntoOneZip() throws IOException {
+        List<Report> reports = cityReports();
+        ExecutorService workers = Executors.newFixedThreadPool(4);
+        try {
+            BatchExporter exporter = new BatchExporter(TEXT_WRITER, workers, Runnable::run, Runnable::run);
+            BatchExporter.Result result = exporter.run(reports, folder.getRoot(), "Kraków_reports.zip",
+                    new AtomicBoolean(), (done, count) -> { });
+
+            assertEquals(reports.size(), result.reports);
+            assertTrue(result.reportsPerSecond() > 0);
+            Set<String> entries = new HashSet<>();
+            try (ZipInputStream zip = new ZipInputStream(new FileInputStream(result.zip))) {
+                for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                    entries.add(entry.getName());
+                }
+            }
+            assertEquals(reports.size(), entries.size());
+            assertTrue(entries.contains("Kraków_Klasa 2_Fizyka_attendance.pdf"));
+            assertEquals(1, folder.getRoot().listFiles().length);
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    @Test
+    public void failureRemovesPartialOutput() {
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        try {
+            BatchExporter exporter = new BatchExporter((report, file, cancelled) -> {
+                if (report.fileName.contains("Klasa 3")) {
+                    throw new IOException("disk full");
+                }
+                TEXT_WRITER.write(report, file, cancelled);
+            }, workers, Runnable::run, Runnable::run);
+
+            try {
+                exporter.run(cityReports(), folder.getRoot(), null, new AtomicBoolean(), (done, count) -> { });
+                fail("Expected the write failure to surface");
+            } catch (IOException e) {
+                assertEquals("disk full", e.getMessage());
+            }
+            assertEquals(0, folder.getRoot().listFiles().length);
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    @Test(expected = CancellationException.class)
+    public void cancelledBatchThrows() throws IOException {
+        ExecutorService workers = Executors.newSingleThreadExecutor();
+        try {
+            AtomicBoolean cancelled = new AtomicBoolean();
+            BatchExporter exporter = new BatchExporter((report, file, flag) -> {
+                flag.set(true);
+                throw new CancellationException();
+            }, workers, Runnable::run, Runnable::run);
+            exporter.run(cityReports(), folder.getRoot(), null, cancelled, (done, count) -> { });
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private static List<Report> cityReports() {
+        GradebookStore store = new GradebookStore();
+        int cityId = store.addCity("Kraków");
+        List<Report> reports = new ArrayList<>();
+        for (int c = 1; c <= 4; c++) {
+            int classId = store.addClass(cityId, "Klasa " + c, Arrays.asList("Matematyka", "Fizyka", "Biologia"));
+            int slot = store.addStudent(classId, "Karol Urban");
+            store.book(classId).addGrade(slot, 0, c);
+            for (int subject = 0; subject < 3; subject++) {
+                reports.add(Report.grades(store, "Kraków", classId, subject));
+                reports.add(Report.attendance(store, "Kraków", classId, subject));
+            }
+        }
+        return reports;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.schoolapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ClassStatsTest {
+    @Test
+    public void tracksGradesIncrementally() {
+        ClassBook book = new ClassBook(new int[] {0, 1});
+        int first = book.addStudent(0);
+        int second = book.addStudent(1);
+
+        book.addGrade(first, 0, 5);
+        book.addGrade(first, 0, 3);
+        book.addGrade(second, 0, 1);
+        book.addGrade(second, 1, 4);
+
+        ClassStats stats = book.stats();
+        assertEquals(3, stats.subjectGradeCount(0));
+        assertEquals(3.0, stats.subjectMean(0), 1e-9);
+        assertEquals(1, stats.subjectHistogram(0, 5));
+        assertEquals(0, stats.subjectHistogram(0, 2));
+        assertEquals(4.0, book.mean(first, 0), 1e-9);
+        assertEquals(2.5, stats.studentMean(second), 1e-9);
+        assertEquals(4.0, stats.subjectMean(1), 1e-9);
+        assertTrue(Double.isNaN(book.mean(first, 1)));
+    }
+
+    @Test
+    public void tracksAttendanceChangesOnly() {
+        ClassBook book = new ClassBook(new int[] {0, 1});
+        int first = book.addStudent(0);
+        book.addStudent(1);
+
+        book.setPresent(first, 1, true);
+        book.setPresent(first, 1, true);
+        assertEquals(1, book.stats().subjectPresent(1));
+        assertEquals(0.5, book.stats().subjectAttendanceRate(1), 1e-9);
+        assertEquals(0.5, book.stats().studentAttendanceRate(first), 1e-9);
+
+        book.setPresent(first, 1, false);
+        assertEquals(0, book.stats().subjectPresent(1));
+    }
+
+    @Test
+    public void addedSubjectKeepsExistingCells() {
+        ClassBook book = new ClassBook(new int[] {0, 1});
+        int first = book.addStudent(0);
+        int second = book.addStudent(1);
+        book.addGrade(first, 1, 5);
+        book.addGrade(second, 0, 2);
+        book.setPresent(second, 1, true);
+
+        assertEquals(2, book.addSubject(7));
+        assertEquals(2, book.addSubject(7));
+        book.addGrade(second, 2, 4);
+        book.setPresent(first, 2, true);
+
+        assertEquals(3, book.subjectCount());
+        assertEquals(5, book.grade(first, 1, 0));
+        assertEquals(2, book.grade(second, 0, 0));
+        assertTrue(book.isPresent(second, 1));
+        assertFalse(book.isPresent(second, 2));
+        assertTrue(book.isPresent(first, 2));
+        assertEquals(4.0, book.mean(second, 2), 1e-9);
+        assertEquals(3.0, book.stats().studentMean(second), 1e-9);
+        assertEquals(1, book.stats().subjectHistogram(2, 4));
+        assertEquals(1, book.stats().subjectPresent(1));
+        assertEquals(1, book.stats().subjectPresent(2));
+    }
+
+    @Test
+    public void bulkAttendanceLoadKeepsCountsConsistent() {
+        ClassBook book = new ClassBook(new int[] {0, 1, 2});
+        for (int i = 0; i < 3; i++) {
+            book.addStudent(i);
+        }
+        book.setPresent(0, 0, true);
+        book.setPresent(2, 2, true);
+
+        ClassBook copy = new ClassBook(new int[] {0, 1, 2});
+        for (int i = 0; i < 3; i++) {
+            copy.addStudent(i);
+        }
+        copy.setPresent(1, 1, true);
+        copy.setPresentWords(book.presentWords());
+
+        for (int subject = 0; subject < 3; subject++) {
+            assertEquals(book.stats().subjectPresent(subject), copy.stats().subjectPresent(subject));
+        }
+        assertFalse(copy.isPresent(1, 1));
+    }
+
+    @Test
+    public void summariesReadTheAggregates() {
+        GradebookStore store = new GradebookStore();
+        int classId = store.addClass(store.addCity("Warszawa"), "Klasa 7", Arrays.asList("Chemia"));
+        ClassBook book = store.book(classId);
+        int slot = store.addStudent(classId, "Maksymilian Bucki");
+        store.addStudent(classId, "Radek Baran");
+        book.addGrade(slot, 0, 2);
+        book.addGrade(slot, 0, 3);
+        book.setPresent(slot, 0, true);
+
+        assertEquals("Average 2.50 (2 grades) | 1: 0, 2: 1, 3: 1, 4: 0, 5: 0", Report.gradeSummary(book.stats(), 0));
+        assertEquals("Attendance 50% (1 present)", Report.attendanceSummary(book.stats(), 0));
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.schoolapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GradebookFileTest {
+    private static final List<String> SUBJECTS = Arrays.asList("Matematyka", "Fizyka");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void roundTripsClassesLazily() throws IOException {
+        File file = new File(folder.getRoot(), "gradebook.bin");
+        GradebookStore source = new GradebookStore();
+        GradebookFile.Writer writer = new GradebookFile.Writer(file, source);
+        int city = writer.addCity("Kraków");
+        for (int c = 0; c < 3; c++) {
+            ClassBook book = source.newBook(SUBJECTS);
+            int slot = book.addStudent(source.studentNames.intern("Kacper Pociask " + c));
+            book.addGrade(slot, 1, c + 1);
+            book.addGrade(slot, 1, 5);
+            book.setPresent(slot, 0, true);
+            writer.addClass(city, "Klasa " + (c + 1), book);
+        }
+        writer.finish();
+
+        GradebookStore store = new GradebookStore();
+        store.open(GradebookFile.open(file));
+
+        assertEquals(0, store.residentClassCount());
+        assertEquals(3, store.studentCount());
+        int classId = store.findClass(store.findCity("Kraków"), "Klasa 2");
+        assertEquals(SUBJECTS, store.subjectNameList(classId));
+        assertEquals(0, store.residentClassCount());
+        ClassBook book = store.book(classId);
+        assertEquals(1, store.residentClassCount());
+        assertEquals("Kacper Pociask 1", store.studentNames.get(book.studentName(0)));
+        assertEquals(1, book.studentId(0));
+        assertEquals(2, book.gradeCount(0, 1));
+        assertEquals(2, book.grade(0, 1, 0));
+        assertEquals(5, book.grade(0, 1, 1));
+        assertTrue(book.isPresent(0, 0));
+        assertFalse(book.isPresent(0, 1));
+        assertEquals(SUBJECTS, store.subjectNameList(classId));
+    }
+
+    @Test
+    public void roundTripsAttendanceHistory() throws IOException {
+        File file = new File(folder.getRoot(), "gradebook.bin");
+        GradebookStore source = new GradebookStore();
+        GradebookFile.Writer writer = new GradebookFile.Writer(file, source);
+        int city = writer.addCity("Kraków");
+        ClassBook book = source.newBook(SUBJECTS);
+        book.addStudent(source.studentNames.intern("Kacper Pociask"));
+        book.addStudent(source.studentNames.intern("Ala Kot"));
+        book.markAttendance(1, 1, 2025, 3, true);
+        book.markAttendance(1, 1, 2025, 200, false);
+        book.markAttendance(0, 1, 2025, 200, true);
+        writer.addClass(city, "Klasa 1", book);
+        writer.addClass(city, "Klasa 2", source.newBook(SUBJECTS));
+        writer.finish();
+
+        GradebookStore store = new GradebookStore();
+        store.open(GradebookFile.open(file));
+
+        ClassBook read = store.book(store.findClass(store.findCity("Kraków"), "Klasa 1"));
+        assertEquals(2025, read.historyYear());
+        assertEquals(2, read.lessonDays(1, 0, AttendanceHistory.MAX_DAYS));
+        assertTrue(read.wasPresent(1, 1, 3));
+        assertFalse(read.wasPresent(1, 1, 200));
+        assertTrue(read.wasPresent(0, 1, 200));
+        assertTrue(read.isPresent(0, 1));
+        assertFalse(read.isPresent(1, 1));
+        assertEquals(0, store.book(store.findClass(store.findCity("Kraków"), "Klasa 2")).lessonDays(1, 0, 256));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedClasses() throws IOException {
+        File file = new File(folder.getRoot(), "gradebook.bin");
+        GradebookStore source = new GradebookStore();
+        GradebookFile.Writer writer = new GradebookFile.Writer(file, source);
+        int city = writer.addCity("Rzeszów");
+        int classes = GradebookStore.MAX_PAGED_CLASSES + 8;
+        for (int c = 0; c < classes; c++) {
+            writer.addClass(city, "Klasa " + c, source.newBook(SUBJECTS));
+        }
+        writer.finish();
+
+        GradebookStore store = new GradebookStore();
+        store.open(GradebookFile.open(file));
+        for (int c = 0; c < classes; c++) {
+            store.book(c);
+        }
+
+        assertEquals(GradebookStore.MAX_PAGED_CLASSES, store.residentClassCount());
+    }
+
+    @Test
+    public void saveLeavesOnlyLaterEditsInMemory() throws IOException {
+        File file = new File(folder.getRoot(), "gradebook.bin");
+        GradebookStore store = new GradebookStore();
+        int city = store.addCity("Rzeszów");
+        int classes = GradebookStore.MAX_PAGED_CLASSES + 8;
+        for (int c = 0; c < classes; c++) {
+            store.addStudent(store.addClass(city, "Klasa " + c, SUBJECTS), "Anna Nowak");
+        }
+        GradebookStore.Snapshot snapshot = store.snapshot();
+        store.enterGrade(0, 0, 0, 4);
+
+        snapshot.adoptedOn(Runnable::run).write(file, 1);
+
+        assertEquals(-1, store.classFileIndex(0));
+        assertEquals(classes - 1, store.classFileIndex(classes - 1));
+        assertEquals(4, store.book(0).grade(0, 0, 0));
+
+        GradebookStore contiguous = new GradebookStore();
+        city = contiguous.addCity("Rzeszów");
+        for (int c = 0; c < classes; c++) {
+            ClassBook book = contiguous.newBook(SUBJECTS);
+            book.addStudent(contiguous.studentNames.intern("Anna Nowak"));
+            contiguous.addClass(city, "Klasa " + c, book);
+        }
+        contiguous.enterGrade(0, 0, 0, 5);
+        contiguous.save(file, 2);
+
+        assertEquals(GradebookStore.MAX_PAGED_CLASSES, contiguous.residentClassCount());
+        assertEquals(5, contiguous.book(0).grade(0, 0, 0));
+    }
+
+    @Test
+    public void readsVersionOneBlocksAndRejectsBlocksOfTheWrongLength() throws IOException {
+        File file = new File(folder.getRoot(), "gradebook.bin");
+        GradebookStore source = new GradebookStore();
+        GradebookFile.Writer writer = new GradebookFile.Writer(file, source);
+        ClassBook book = source.newBook(SUBJECTS);
+        book.addStudent(source.studentNames.intern("Ala Kot"));
+        book.addGrade(0, 1, 4);
+        writer.addClass(writer.addCity("Warszawa"), "Klasa 1", book);
+        writer.finish();
+        int history = 2 + 4 + 8 * book.lessonHistoryWords().length + 4 + 8 * book.presentHistoryWords().length;
+        long lengthAt;
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(20);
+            // City name, then the class's city index, label and block offset come before its block length.
+            lengthAt = raw.readLong() + 2 + "Warszawa".length() + 4 + 2 + "Klasa 1".length() + 8;
+            raw.seek(lengthAt);
+            int length = raw.readInt();
+            raw.seek(lengthAt);
+            raw.writeInt(length - history);
+        }
+
+        assertFalse(readsFirstClass(file));
+
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(4);
+            raw.writeInt(1);
+        }
+        ClassBook read = GradebookFile.open(file).readClass(0, new GradebookStore());
+        assertEquals(4, read.grade(0, 1, 0));
+        assertEquals(0, read.lessonDays(1, 0, AttendanceHistory.MAX_DAYS));
+        File upgraded = new File(folder.getRoot(), "upgraded.bin");
+        GradebookFile.Writer copy = new GradebookFile.Writer(upgraded, source);
+        copy.copyClass(copy.addCity("Warszawa"), "Klasa 1", GradebookFile.open(file), 0);
+        copy.finish();
+        assertTrue(readsFirstClass(upgraded));
+
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(lengthAt);
+            int length = raw.readInt();
+            raw.seek(lengthAt);
+            raw.writeInt(length + history);
+        }
+        assertFalse(readsFirstClass(file));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFormatVersion() throws IOException {
+        File file = new File(folder.getRoot(), "gradebook.bin");
+        GradebookStore source = new GradebookStore();
+        GradebookFile.Writer writer = new GradebookFile.Writer(file, source);
+        writer.addCity("Warszawa");
+        writer.finish();
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(4);
+            raw.writeInt(GradebookFile.VERSION + 1);
+        }
+
+        GradebookFile.open(file);
+    }
+
+    @Test
+    public void leavesOutClassWithCorruptBlock() throws IOException {
+        File file = new File(folder.getRoot(), "gradebook.bin");
+        GradebookStore source = new GradebookStore();
+        GradebookFile.Writer writer = new GradebookFile.Writer(file, source);
+        int city = writer.addCity("Warszawa");
+        for (int c = 0; c < 2; c++) {
+            ClassBook book = source.newBook(SUBJECTS);
+            book.addStudent(source.studentNames.intern("Anna Nowak"));
+            writer.addClass(city, "Klasa " + c, book);
+        }
+        writer.finish();
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            // The first student's name now runs past the end of the block.
+            raw.seek(GradebookFile.HEADER_SIZE);
+            raw.writeShort(0xFFFF);
+        }
+
+        GradebookStore store = new GradebookStore();
+        store.open(GradebookFile.open(file));
+
+        assertNull(store.book(0));
+        assertEquals(-1, store.addStudent(0, "Piotr Zieliński"));
+        assertEquals(1, store.book(1).studentCount());
+    }
+
+    @Test
+    public void rejectsCorruptDirectoryWithIOException() throws IOException {
+        File file = new File(folder.getRoot(), "gradebook.bin");
+        GradebookStore source = new GradebookStore();
+        GradebookFile.Writer writer = new GradebookFile.Writer(file, source);
+        int city = writer.addCity("Warszawa");
+        writer.addClass(city, "Klasa 1", source.newBook(SUBJECTS));
+        writer.finish();
+        // Class counts past the end of the directory, negative, and pointing at a city that does not exist.
+        int[][] corruptions = {{12, 1000}, {12, -1}, {8, 0}};
+        for (int[] corruption : corruptions) {
+            File copy = new File(folder.getRoot(), "corrupt.bin");
+            Files.copy(file.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            try (RandomAccessFile raw = new RandomAccessFile(copy, "rw")) {
+                raw.seek(corruption[0]);
+                raw.writeInt(corruption[1]);
+            }
+            try {
+                GradebookFile.open(copy);
+                fail("Opened a gradebook with " + Arrays.toString(corruption));
+            } catch (IOException expected) {
+                // RosterLoader discards the file and generates the roster again.
+            }
+        }
+    }
+
+    private static boolean readsFirstClass(File file) throws IOException {
+        GradebookFile opened = GradebookFile.open(file);
+        try {
+            opened.readClass(0, new GradebookStore());
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
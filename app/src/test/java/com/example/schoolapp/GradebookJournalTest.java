@@ -0,0 +1,271 @@
+package com.example.schoolapp;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.*;
+
+public class GradebookJournalTest {
+    private static final List<String> SUBJECTS = Arrays.asList("Matematyka", "Fizyka");
+    private static final Executor DIRECT = Runnable::run;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+
+    @After
+    public void shutDown() {
+        writer.shutdownNow();
+    }
+
+    @Test
+    public void replaysEditsAfterRestart() throws Exception {
+        GradebookStore store = saved(1);
+        GradebookJournal journal = journal();
+        recover(journal, store);
+        int classId = store.findClass("Kraków", "Klasa 1");
+        store.enterGrade(classId, 1, 1, 5);
+        store.enterGrade(classId, 1, 1, 2);
+        store.enterAttendance(classId, 0, 0, true);
+        journal.flush().get();
+
+        GradebookStore reopened = reopen();
+        assertEquals(3, recover(journal(), reopened));
+        ClassBook book = reopened.book(reopened.findClass("Kraków", "Klasa 1"));
+        assertEquals(2, book.gradeCount(1, 1));
+        assertEquals(2, book.grade(1, 1, 1));
+        assertTrue(book.isPresent(0, 0));
+        assertEquals(3.5, book.mean(1, 1), 1e-9);
+    }
+
+    @Test
+    public void replaysLessonMarks() throws Exception {
+        GradebookStore store = saved(1);
+        GradebookJournal journal = journal();
+        recover(journal, store);
+        int classId = store.findClass("Kraków", "Klasa 1");
+        store.enterAttendance(classId, 0, 1, 2025, 10, true);
+        store.enterAttendance(classId, 0, 1, 2025, 11, true);
+        store.enterAttendance(classId, 0, 1, 2025, 11, false);
+        store.enterAttendance(classId, 1, 1, 2025, 11, true);
+        journal.flush().get();
+
+        GradebookStore reopened = reopen();
+        recover(journal(), reopened);
+        ClassBook book = reopened.book(reopened.findClass("Kraków", "Klasa 1"));
+        assertEquals(2, book.lessonDays(1, 0, AttendanceHistory.MAX_DAYS));
+        assertEquals(1, book.presentDays(0, 1, 0, AttendanceHistory.MAX_DAYS));
+        assertFalse(book.isPresent(0, 1));
+        assertTrue(book.isPresent(1, 1));
+        assertEquals(2.0 / 60, book.classAttendanceRate(1, 0, AttendanceHistory.MAX_DAYS), 1e-9);
+    }
+
+    @Test
+    public void stopsAtTornRecord() throws Exception {
+        GradebookStore store = saved(1);
+        GradebookJournal journal = journal();
+        recover(journal, store);
+        store.enterGrade(store.findClass("Kraków", "Klasa 1"), 0, 0, 4);
+        journal.flush().get();
+        try (FileOutputStream out = new FileOutputStream(new File(folder.getRoot(), "gradebook.journal"), true)) {
+            out.write(new byte[] {0, 0, 0, 40, 1, 0, 5});
+        }
+
+        GradebookStore reopened = reopen();
+        GradebookJournal recovered = journal();
+        assertEquals(1, recover(recovered, reopened));
+        reopened.enterGrade(reopened.findClass("Kraków", "Klasa 1"), 0, 0, 3);
+        recovered.flush().get();
+
+        GradebookStore again = reopen();
+        assertEquals(2, recover(journal(), again));
+        assertEquals(2, again.book(again.findClass("Kraków", "Klasa 1")).gradeCount(0, 0));
+    }
+
+    @Test
+    public void saveRebasesJournal() throws Exception {
+        GradebookStore store = saved(1);
+        GradebookJournal journal = journal();
+        recover(journal, store);
+        int classId = store.findClass("Kraków", "Klasa 1");
+        store.enterGrade(classId, 0, 1, 3);
+        journal.flush().get();
+        store.save(new File(folder.getRoot(), "gradebook.bin"), 7);
+        store.enterGrade(classId, 0, 1, 1);
+        journal.flush().get();
+
+        GradebookStore reopened = reopen();
+        assertEquals(1, recover(journal(), reopened));
+        ClassBook book = reopened.book(reopened.findClass("Kraków", "Klasa 1"));
+        assertEquals(2, book.gradeCount(0, 1));
+        assertEquals(1, book.grade(0, 1, 1));
+    }
+
+    @Test
+    public void compactsInBackgroundKeepingLaterEdits() throws Exception {
+        GradebookStore store = saved(1);
+        int before = GradebookFile.readCheckpoint(new File(folder.getRoot(), "gradebook.bin"));
+        GradebookJournal journal = journal();
+        recover(journal, store);
+        int classId = store.findClass("Kraków", "Klasa 1");
+        store.enterGrade(classId, 0, 1, 3);
+        CountDownLatch hold = holdWriter();
+        journal.compact(store.snapshot(), 7);
+        // Entered after the snapshot, while the writer has not saved it yet.
+        store.enterGrade(classId, 0, 1, 1);
+        assertFalse(journal.needsCompaction());
+        assertEquals(before, GradebookFile.readCheckpoint(new File(folder.getRoot(), "gradebook.bin")));
+        hold.countDown();
+        journal.flush().get();
+
+        assertEquals(7, GradebookFile.readCheckpoint(new File(folder.getRoot(), "gradebook.bin")));
+        GradebookStore reopened = reopen();
+        assertEquals(1, recover(journal(), reopened));
+        ClassBook book = reopened.book(reopened.findClass("Kraków", "Klasa 1"));
+        assertEquals(2, book.gradeCount(0, 1));
+        assertEquals(1, book.grade(0, 1, 1));
+    }
+
+    @Test
+    public void failedCompactionKeepsOldJournal() throws Exception {
+        GradebookStore store = saved(1);
+        GradebookJournal journal = journal();
+        recover(journal, store);
+        int classId = store.findClass("Kraków", "Klasa 1");
+        store.enterGrade(classId, 0, 1, 3);
+        // The writer cannot create its temporary file.
+        assertTrue(new File(folder.getRoot(), "gradebook.bin.tmp").mkdir());
+        journal.compact(store.snapshot(), 7);
+        store.enterGrade(classId, 0, 1, 1);
+        journal.flush().get();
+
+        GradebookStore reopened = reopen();
+        assertEquals(2, recover(journal(), reopened));
+        assertEquals(2, reopened.book(reopened.findClass("Kraków", "Klasa 1")).gradeCount(0, 1));
+    }
+
+    @Test
+    public void ignoresJournalOfAnotherGradebook() throws Exception {
+        GradebookStore store = saved(1);
+        GradebookJournal journal = journal();
+        recover(journal, store);
+        store.enterGrade(store.findClass("Kraków", "Klasa 1"), 0, 0, 4);
+        journal.flush().get();
+
+        // The gradebook was replaced without the journal being rebased, e.g. regenerated after corruption.
+        saved(1);
+        GradebookStore reopened = reopen();
+        assertEquals(0, recover(journal(), reopened));
+        assertEquals(0, reopened.book(reopened.findClass("Kraków", "Klasa 1")).gradeCount(0, 0));
+    }
+
+    @Test
+    public void coalescesAttendanceWithinBatch() throws Exception {
+        GradebookStore store = saved(1);
+        GradebookJournal journal = journal();
+        recover(journal, store);
+        int classId = store.findClass("Kraków", "Klasa 1");
+        long empty = new File(folder.getRoot(), "gradebook.journal").length();
+        for (int i = 0; i < 101; i++) {
+            store.enterAttendance(classId, 1, 0, i % 2 == 0);
+        }
+        journal.flush().get();
+        long oneRecord = new File(folder.getRoot(), "gradebook.journal").length() - empty;
+        store.enterAttendance(classId, 2, 0, true);
+        journal.flush().get();
+
+        assertEquals(oneRecord, new File(folder.getRoot(), "gradebook.journal").length() - empty - oneRecord);
+        GradebookStore reopened = reopen();
+        assertEquals(2, recover(journal(), reopened));
+        assertTrue(reopened.book(reopened.findClass("Kraków", "Klasa 1")).isPresent(1, 0));
+    }
+
+    @Test
+    public void tapTouchesOnlyItsClassAsStoreGrows() throws Exception {
+        // However large the store, a tap pages in its own class and leaves the saved file alone; the journal
+        // takes the edit. How long a tap takes is measured by GradeEntryBenchmark in the benchmark module.
+        for (int cities : new int[] {1, 400}) {
+            GradebookStore store = saved(cities);
+            File gradebook = new File(folder.getRoot(), "gradebook.bin");
+            int checkpoint = GradebookFile.readCheckpoint(gradebook);
+            GradebookJournal journal = journal();
+            recover(journal, store);
+            int classId = store.findClass("Kraków", "Klasa 1");
+            for (int tap = 0; tap < 100; tap++) {
+                store.enterAttendance(classId, tap % 30, tap % 2, tap % 3 == 0);
+            }
+            journal.flush().get();
+            assertEquals(1, store.residentClassCount());
+            assertEquals(checkpoint, GradebookFile.readCheckpoint(gradebook));
+            assertFalse(store.book(classId).isPresent(1, 1));
+            assertTrue(store.book(classId).isPresent(3, 1));
+        }
+    }
+
+    /**
+     * Keeps the writer thread busy until the returned latch is released.
+     */
+    private CountDownLatch holdWriter() {
+        CountDownLatch hold = new CountDownLatch(1);
+        writer.execute(() -> {
+            try {
+                hold.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return hold;
+    }
+
+    private GradebookJournal journal() {
+        return new GradebookJournal(new File(folder.getRoot(), "gradebook.journal"),
+                new File(folder.getRoot(), "gradebook.bin"), writer, DIRECT);
+    }
+
+    private int recover(GradebookJournal journal, GradebookStore store) throws Exception {
+        int[] replayed = {-1};
+        journal.recover(store, edits -> {
+            replayed[0] = edits;
+            store.attach(journal);
+        });
+        journal.flush().get();
+        return replayed[0];
+    }
+
+    /**
+     * A store of Kraków plus {@code cities - 1} others, saved to the gradebook file and reopened from it.
+     */
+    private GradebookStore saved(int cities) throws Exception {
+        GradebookStore store = new GradebookStore();
+        for (int c = 0; c < cities; c++) {
+            int cityId = store.addCity(c == 0 ? "Kraków" : "City " + c);
+            for (int k = 1; k <= 8; k++) {
+                int classId = store.addClass(cityId, "Klasa " + k, SUBJECTS);
+                for (int s = 0; s < 30; s++) {
+                    store.addStudent(classId, "Uczeń " + s);
+                }
+            }
+        }
+        store.save(new File(folder.getRoot(), "gradebook.bin"), GradebookFile.newCheckpoint(new Random()));
+        return reopen();
+    }
+
+    private GradebookStore reopen() throws Exception {
+        GradebookStore store = new GradebookStore();
+        store.open(GradebookFile.open(new File(folder.getRoot(), "gradebook.bin")));
+        return store;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.schoolapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GradebookStoreTest {
+    private static final List<String> SUBJECTS = Arrays.asList("Matematyka", "Fizyka", "Historia");
+
+    @Test
+    public void studentsWithSameNameStaySeparate() {
+        GradebookStore store = new GradebookStore();
+        int warszawa = store.addCity("Warszawa");
+        int krakow = store.addCity("Kraków");
+        int first = store.addClass(warszawa, "Klasa 1", SUBJECTS);
+        int second = store.addClass(krakow, "Klasa 1", SUBJECTS);
+
+        int a = store.addStudent(first, "Michał Urban");
+        int b = store.addStudent(second, "Michał Urban");
+        store.book(first).addGrade(a, 0, 5);
+        store.book(second).addGrade(b, 0, 1);
+
+        assertNotEquals(store.book(first).studentId(a), store.book(second).studentId(b));
+        assertEquals(5, store.book(first).grade(a, 0, 0));
+        assertEquals(1, store.book(second).grade(b, 0, 0));
+        assertEquals(second, store.findClass(krakow, "Klasa 1"));
+    }
+
+    @Test
+    public void gradesSurviveCellRelocation() {
+        GradebookStore store = new GradebookStore();
+        int classId = store.addClass(store.addCity("Rzeszów"), "Klasa 2", SUBJECTS);
+        ClassBook book = store.book(classId);
+        int first = store.addStudent(classId, "Paweł Baran");
+        int second = store.addStudent(classId, "Karol Kępa");
+
+        for (int i = 0; i < 20; i++) {
+            book.addGrade(first, 1, i % 5 + 1);
+            book.addGrade(second, 1, 5 - i % 5);
+        }
+
+        assertEquals(20, book.gradeCount(first, 1));
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i % 5 + 1, book.grade(first, 1, i));
+            assertEquals(5 - i % 5, book.grade(second, 1, i));
+        }
+        assertEquals(0, book.gradeCount(first, 0));
+    }
+
+    @Test
+    public void attendanceIsPerCell() {
+        GradebookStore store = new GradebookStore();
+        int classId = store.addClass(store.addCity("Warszawa"), "Klasa 3", SUBJECTS);
+        ClassBook book = store.book(classId);
+        int slot = store.addStudent(classId, "Artur Krupa");
+
+        book.setPresent(slot, 2, true);
+
+        assertTrue(book.isPresent(slot, 2));
+        assertFalse(book.isPresent(slot, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsGradeOutsideScale() {
+        GradebookStore store = new GradebookStore();
+        int classId = store.addClass(store.addCity("Warszawa"), "Klasa 4", SUBJECTS);
+        int slot = store.addStudent(classId, "Radek Bucki");
+        store.book(classId).addGrade(slot, 0, 6);
+    }
+
+    @Test
+    public void rejectsMoreSubjectsThanTheFileHolds() {
+        GradebookStore store = new GradebookStore();
+        int classId = store.addClass(store.addCity("Warszawa"), "Klasa 5", SUBJECTS);
+        ClassBook book = store.book(classId);
+        for (int i = SUBJECTS.size(); i < ClassBook.MAX_SUBJECTS; i++) {
+            book.addSubject(store.subjectNames.intern("Przedmiot " + i));
+        }
+        try {
+            book.addSubject(store.subjectNames.intern("Przedmiot " + ClassBook.MAX_SUBJECTS));
+            fail("Added subject " + (ClassBook.MAX_SUBJECTS + 1));
+        } catch (IllegalStateException expected) {
+            // The importer counts the row as skipped.
+        }
+        assertEquals(ClassBook.MAX_SUBJECTS, book.subjectCount());
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.schoolapp;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+    @After
+    public void tearDown() {
+        Metrics.install(Metrics.NONE);
+        Metrics.resetAll();
+    }
+
+    @Test
+    public void bucketsTileTheRange() {
+        int last = LatencyHistogram.bucket(LatencyHistogram.MAX_VALUE);
+        for (int bucket = 0; bucket < last; bucket++) {
+            long highest = LatencyHistogram.highest(bucket);
+            assertEquals(bucket, LatencyHistogram.bucket(highest));
+            assertEquals(bucket + 1, LatencyHistogram.bucket(highest + 1));
+        }
+        assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.highest(last));
+    }
+
+    @Test
+    public void percentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random random = new Random(3);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // Log-uniform from 1 us to 100 ms, like a mix of binds and screen opens.
+            values[i] = (long) Math.pow(10, 3 + random.nextDouble() * 5);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(values.length, snapshot.count);
+        assertEquals(values[values.length - 1], snapshot.max);
+        for (double percentile : new double[] {50, 90, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(values.length * percentile / 100) - 1];
+            long estimate = snapshot.percentile(percentile);
+            assertTrue(percentile + ": " + estimate + " vs " + exact, estimate >= exact && estimate <= exact + exact / 16 + 1);
+        }
+    }
+
+    @Test
+    public void concurrentRecordingLosesNothing() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                done.add(threads.submit(() -> {
+                    for (int i = 0; i < 50_000; i++) {
+                        Metrics.BIND_STUDENT.end(Metrics.BIND_STUDENT.begin());
+                    }
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+        assertEquals(200_000, Metrics.BIND_STUDENT.latency.snapshot().count);
+    }
+
+    @Test
+    public void nestedSectionsReachProbeAndCountAllocations() {
+        FakeProbe probe = new FakeProbe();
+        Metrics.install(probe);
+        long outer = Metrics.SHOW_STUDENT_LIST.begin();
+        probe.allocated += 100;
+        for (int row = 0; row < 3; row++) {
+            long bind = Metrics.BIND_STUDENT.begin();
+            probe.allocated += 2;
+            Metrics.BIND_STUDENT.end(bind);
+        }
+        Metrics.SHOW_STUDENT_LIST.end(outer);
+
+        assertEquals("+nav.showStudentList +bind.student - +bind.student - +bind.student - -", probe.sections.toString().trim());
+        assertEquals(106, Metrics.SHOW_STUDENT_LIST.allocationsPerSample(), 0);
+        assertEquals(2, Metrics.BIND_STUDENT.allocationsPerSample(), 0);
+        assertEquals(3, Metrics.BIND_STUDENT.latency.snapshot().count);
+    }
+
+    @Test
+    public void allocationsOnlyCountedWhenOnForWholeSection() {
+        FakeProbe probe = new FakeProbe();
+        probe.counting = false;
+        Metrics.install(probe);
+        long start = Metrics.BIND_CITY.begin();
+        probe.counting = true;
+        Metrics.BIND_CITY.end(start);
+        assertTrue(Double.isNaN(Metrics.BIND_CITY.allocationsPerSample()));
+        assertEquals(1, Metrics.BIND_CITY.latency.snapshot().count);
+    }
+
+    @Test
+    public void recordingIsAllocationFree() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long id = Thread.currentThread().getId();
+        for (int i = 0; i < 200_000; i++) {
+            Metrics.BIND_ATTENDANCE.end(Metrics.BIND_ATTENDANCE.begin());
+        }
+        long bytes = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < 1_000_000; i++) {
+            Metrics.BIND_ATTENDANCE.end(Metrics.BIND_ATTENDANCE.begin());
+        }
+        long allocated = threads.getThreadAllocatedBytes(id) - bytes;
+        assertTrue("Allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    @Test
+    public void dumpListsRecordedMetrics() throws IOException {
+        Metrics.SHOW_TIMETABLE.latency.record(2_000_000);
+        Metrics.SHOW_TIMETABLE.latency.record(4_000_000);
+        StringWriter out = new StringWriter();
+        Metrics.dump(out);
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("metric"));
+        assertTrue(lines[1], lines[1].matches("nav\\.showTimetable +2 +3000\\.0 +2\\d{3}\\.\\d +4\\d{3}\\.\\d +4\\d{3}\\.\\d +4000\\.0 +-\\s*"));
+    }
+
+    private static final class FakeProbe implements Metrics.Probe {
+        final StringBuilder sections = new StringBuilder();
+        long allocated;
+        boolean counting = true;
+
+        @Override
+        public void beginSection(String name) {
+            sections.append('+').append(name).append(' ');
+        }
+
+        @Override
+        public void endSection() {
+            sections.append("- ");
+        }
+
+        @Override
+        public long allocations() {
+            return counting ? allocated : -1;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.schoolapp;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+import static org.junit.Assert.*;
+
+public class PagedRowsTest {
+    /**
+     * Loads run only when the test says so, as if the worker were slow.
+     */
+    private final Queue<Runnable> worker = new ArrayDeque<>();
+    private final List<Integer> loadedOffsets = new ArrayList<>();
+
+    private PagedRows<Integer> rows(int size) {
+        return new PagedRows<>(size, 10, 1, 4, (offset, count) -> {
+            loadedOffsets.add(offset);
+            List<Integer> page = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                page.add(offset + i);
+            }
+            return page;
+        }, worker::add, Runnable::run);
+    }
+
+    private void runLoads() {
+        while (!worker.isEmpty()) {
+            worker.poll().run();
+        }
+    }
+
+    @Test
+    public void missingRowIsPlaceholderUntilItsPageLoads() {
+        PagedRows<Integer> rows = rows(95);
+        List<Integer> notified = new ArrayList<>();
+        rows.setListener(new PagedRows.Listener() {
+            @Override
+            public void onRowsLoaded(int position, int count) {
+                notified.add(position);
+                notified.add(count);
+            }
+
+            @Override
+            public void onLoadFailed(IOException error) {
+                fail(error.toString());
+            }
+        });
+
+        assertNull(rows.get(92));
+        runLoads();
+
+        assertEquals(Integer.valueOf(92), rows.get(92));
+        // The last page is short, and there is nothing past it to prefetch.
+        assertEquals(asList(90, 5), notified);
+        assertEquals(1, rows.loads());
+    }
+
+    @Test
+    public void prefetchesInScrollDirection() {
+        PagedRows<Integer> rows = rows(1000);
+        rows.get(0);
+        rows.get(5);
+        runLoads();
+        assertEquals(asList(0, 10), loadedOffsets);
+
+        loadedOffsets.clear();
+        rows.get(505);
+        rows.get(495);
+        runLoads();
+        // The jump to 505 prefetched page 51; moving up from there prefetches page 48 instead.
+        assertEquals(asList(500, 510, 490, 480), loadedOffsets);
+    }
+
+    @Test
+    public void holdsAtMostMaxPagesWhileScrollingEverything() {
+        PagedRows<Integer> rows = rows(10_000);
+        for (int position = 0; position < rows.size(); position++) {
+            rows.get(position);
+            runLoads();
+            assertEquals(Integer.valueOf(position), rows.get(position));
+            assertTrue(rows.loadedPages() <= 4);
+        }
+        assertEquals(1000, rows.loads());
+        assertTrue(rows.evictions() >= 996);
+
+        // Scrolling back reloads what was dropped.
+        assertNull(rows.get(0));
+        runLoads();
+        assertEquals(Integer.valueOf(0), rows.get(0));
+    }
+
+    @Test
+    public void closedRowsDropLateLoads() {
+        PagedRows<Integer> rows = rows(100);
+        rows.setListener(new PagedRows.Listener() {
+            @Override
+            public void onRowsLoaded(int position, int count) {
+                fail("Delivered after close");
+            }
+
+            @Override
+            public void onLoadFailed(IOException error) {
+                fail(error.toString());
+            }
+        });
+        rows.get(0);
+        rows.close();
+        runLoads();
+        assertEquals(0, rows.loadedPages());
+    }
+
+    @Test
+    public void failedPageIsRetried() {
+        int[] failures = {1};
+        List<IOException> errors = new ArrayList<>();
+        PagedRows<Integer> rows = new PagedRows<>(30, 10, 0, 2, (offset, count) -> {
+            if (failures[0]-- > 0) {
+                throw new IOException("Gradebook file unreadable");
+            }
+            List<Integer> page = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                page.add(offset + i);
+            }
+            return page;
+        }, worker::add, Runnable::run);
+        rows.setListener(new PagedRows.Listener() {
+            @Override
+            public void onRowsLoaded(int position, int count) {
+            }
+
+            @Override
+            public void onLoadFailed(IOException error) {
+                errors.add(error);
+            }
+        });
+
+        assertNull(rows.get(3));
+        runLoads();
+        assertEquals(1, errors.size());
+        assertNull(rows.get(3));
+        runLoads();
+        assertEquals(Integer.valueOf(3), rows.get(3));
+    }
+
+    private static List<Integer> asList(Integer... values) {
+        List<Integer> list = new ArrayList<>();
+        for (Integer value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+}
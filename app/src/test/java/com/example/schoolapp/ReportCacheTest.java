@@ -0,0 +1,120 @@
+package com.example.schoolapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ReportCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void servesUnchangedReportAndRerendersAfterEdit() throws IOException {
+        GradebookStore store = store();
+        int classId = store.findClass("Kraków", "Klasa 1");
+        ReportCache cache = new ReportCache(new File(folder.getRoot(), "cache"), 1024 * 1024);
+        File target = new File(folder.getRoot(), "out.pdf");
+
+        Report first = Report.grades(store, "Kraków", classId, 0);
+        assertFalse(cache.copyTo(first, target));
+        assertFalse(target.exists());
+        cache.put(first, pdf("v1", 100));
+
+        assertTrue(cache.copyTo(Report.grades(store, "Kraków", classId, 0), target));
+        assertEquals(100, target.length());
+
+        store.enterGrade(classId, 0, 0, 5);
+        Report edited = Report.grades(store, "Kraków", classId, 0);
+        assertFalse(cache.copyTo(edited, target));
+        cache.put(edited, pdf("v2", 150));
+        assertTrue(cache.copyTo(edited, target));
+        assertEquals(150, target.length());
+
+        ReportCache.Stats stats = cache.stats();
+        assertEquals(2, stats.hits);
+        assertEquals(2, stats.misses);
+        assertEquals(0, stats.evictions);
+        assertEquals(1, stats.entries);
+        assertEquals(150, stats.bytes);
+        assertEquals(1, new File(folder.getRoot(), "cache").list().length);
+    }
+
+    @Test
+    public void editsOutsideTheScopeKeepTheEntry() {
+        GradebookStore store = store();
+        int classId = store.findClass("Kraków", "Klasa 1");
+        long grades = Report.grades(store, "Kraków", classId, 0).version;
+        long attendance = Report.attendance(store, "Kraków", classId, 0).version;
+
+        store.enterGrade(classId, 0, 1, 3);
+        store.enterGrade(store.findClass("Kraków", "Klasa 2"), 0, 0, 3);
+        assertEquals(grades, Report.grades(store, "Kraków", classId, 0).version);
+        store.enterAttendance(classId, 1, 0, true);
+        assertEquals(grades, Report.grades(store, "Kraków", classId, 0).version);
+        assertNotEquals(attendance, Report.attendance(store, "Kraków", classId, 0).version);
+
+        store.addStudent(classId, "Nowy Uczeń");
+        assertNotEquals(grades, Report.grades(store, "Kraków", classId, 0).version);
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() throws IOException {
+        GradebookStore store = store();
+        ReportCache cache = new ReportCache(new File(folder.getRoot(), "cache"), 250);
+        File target = new File(folder.getRoot(), "out.pdf");
+        Report a = Report.grades(store, "Kraków", store.findClass("Kraków", "Klasa 1"), 0);
+        Report b = Report.grades(store, "Kraków", store.findClass("Kraków", "Klasa 2"), 0);
+        Report c = Report.attendance(store, "Kraków", store.findClass("Kraków", "Klasa 1"), 0);
+        cache.put(a, pdf("a", 100));
+        cache.put(b, pdf("b", 100));
+        assertTrue(cache.copyTo(a, target));
+        cache.put(c, pdf("c", 100));
+
+        assertTrue(cache.copyTo(a, target));
+        assertFalse(cache.copyTo(b, target));
+        assertTrue(cache.copyTo(c, target));
+        assertEquals(1, cache.stats().evictions);
+        assertEquals(200, cache.stats().bytes);
+    }
+
+    @Test
+    public void survivesRestart() throws IOException {
+        GradebookStore store = store();
+        File directory = new File(folder.getRoot(), "cache");
+        Report report = Report.attendance(store, "Kraków", store.findClass("Kraków", "Klasa 2"), 0);
+        new ReportCache(directory, 1024).put(report, pdf("a", 100));
+        assertTrue(new File(directory, "leftover.pdf.part").createNewFile());
+
+        ReportCache reopened = new ReportCache(directory, 1024);
+        assertTrue(reopened.copyTo(report, new File(folder.getRoot(), "out.pdf")));
+        assertEquals(1, reopened.stats().entries);
+        assertFalse(new File(directory, "leftover.pdf.part").exists());
+    }
+
+    private File pdf(String name, int size) throws IOException {
+        File file = folder.newFile(name + ".pdf");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[size]);
+        }
+        return file;
+    }
+
+    private static GradebookStore store() {
+        GradebookStore store = new GradebookStore();
+        int cityId = store.addCity("Kraków");
+        for (int k = 1; k <= 2; k++) {
+            int classId = store.addClass(cityId, "Klasa " + k, Arrays.asList("Matematyka", "Fizyka"));
+            for (int s = 0; s < 3; s++) {
+                store.addStudent(classId, "Uczeń " + s);
+            }
+        }
+        return store;
+    }
+}
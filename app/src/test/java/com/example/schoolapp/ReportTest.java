@@ -0,0 +1,78 @@
+package com.example.schoolapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ReportTest {
+    @Test
+    public void gradeRowsAreSnapshotOfTheSubject() {
+        GradebookStore store = new GradebookStore();
+        int classId = store.addClass(store.addCity("Kraków"), "Klasa 5", Arrays.asList("Historia", "WF"));
+        int slot = store.addStudent(classId, "Krystian Kalita");
+        store.book(classId).addGrade(slot, 1, 4);
+        store.book(classId).addGrade(slot, 1, 2);
+
+        Report report = Report.grades(store, "Kraków", classId, 1);
+        store.book(classId).addGrade(slot, 1, 5);
+
+        StringBuilder row = new StringBuilder();
+        report.formatRow(0, row);
+        assertEquals("Krystian Kalita: [4, 2]", row.toString());
+        assertEquals("Kraków_Klasa 5_WF_grades.pdf", report.fileName);
+        assertEquals("Grades for Kraków - Klasa 5 - WF", report.title);
+    }
+
+    @Test
+    public void attendanceRowsShowRecordedPresence() {
+        GradebookStore store = new GradebookStore();
+        int classId = store.addClass(store.addCity("Rzeszów"), "Klasa 6", Arrays.asList("Muzyka"));
+        store.addStudent(classId, "Adrian Połeć");
+        int present = store.addStudent(classId, "Rysiu Krupa");
+        store.book(classId).setPresent(present, 0, true);
+
+        Report report = Report.attendance(store, "Rzeszów", classId, 0);
+
+        StringBuilder row = new StringBuilder();
+        report.formatRow(0, row);
+        assertEquals("Adrian Połeć: Absent", row.toString());
+        row.setLength(0);
+        report.formatRow(1, row);
+        assertEquals("Rysiu Krupa: Present", row.toString());
+    }
+
+    @Test
+    public void attendanceRowsCountLessonsFromHistory() {
+        GradebookStore store = new GradebookStore();
+        int classId = store.addClass(store.addCity("Rzeszów"), "Klasa 6", Arrays.asList("Muzyka"));
+        store.addStudent(classId, "Adrian Połeć");
+        store.addStudent(classId, "Rysiu Krupa");
+        ClassBook book = store.book(classId);
+        for (int day = 0; day < 4; day++) {
+            book.markAttendance(0, 0, 2025, day, day != 1);
+            book.markAttendance(1, 0, 2025, day, day == 0);
+        }
+
+        Report report = Report.attendance(store, "Rzeszów", classId, 0);
+        book.markAttendance(1, 0, 2025, 3, true);
+
+        StringBuilder row = new StringBuilder();
+        report.formatRow(0, row);
+        assertEquals("Adrian Połeć: Present (attended 3 of 4 lessons, 75%)", row.toString());
+        row.setLength(0);
+        report.formatRow(1, row);
+        assertEquals("Rysiu Krupa: Absent (attended 1 of 4 lessons, 25%)", row.toString());
+        assertTrue(report.summary, report.summary.endsWith(" | 50% over 4 lessons in 2025/26"));
+        assertNotEquals(report.version, Report.attendance(store, "Rzeszów", classId, 0).version);
+    }
+
+    @Test
+    public void paginatesInsteadOfRunningOffThePage() {
+        assertEquals(1, ReportRenderer.pageCount(0));
+        assertEquals(1, ReportRenderer.pageCount(ReportRenderer.ROWS_PER_PAGE));
+        assertEquals(2, ReportRenderer.pageCount(ReportRenderer.ROWS_PER_PAGE + 1));
+        assertEquals(30, ReportRenderer.pageCount(ReportRenderer.ROWS_PER_PAGE * 30));
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.schoolapp;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class RosterGeneratorTest {
+    private final ExecutorService workers = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+    @After
+    public void shutDown() {
+        workers.shutdownNow();
+    }
+
+    @Test
+    public void sameSeedGivesSameDataset() {
+        RosterGenerator.Spec spec = new RosterGenerator.Spec(4, 3, 20, 5, 3, 0.8, 42);
+        assertEquals(fingerprint(serial(spec)), fingerprint(serial(spec)));
+        assertNotEquals(fingerprint(serial(spec)), fingerprint(serial(new RosterGenerator.Spec(4, 3, 20, 5, 3, 0.8, 43))));
+    }
+
+    @Test
+    public void parallelRunMatchesSerialRun() throws InterruptedException {
+        RosterGenerator.Spec spec = new RosterGenerator.Spec(16, 4, 25, 6, 2, 0.9, 7);
+        GradebookStore parallel = new GradebookStore();
+        new RosterGenerator(spec, parallel).generate(workers);
+        GradebookStore serial = serial(spec);
+
+        assertEquals(fingerprint(serial), fingerprint(parallel));
+        for (int classId = 0; classId < serial.classCount(); classId++) {
+            assertEquals(serial.className(classId), parallel.className(classId));
+            assertEquals(serial.cityName(serial.classCity(classId)), parallel.cityName(parallel.classCity(classId)));
+        }
+    }
+
+    @Test
+    public void followsTheSpec() {
+        RosterGenerator.Spec spec = new RosterGenerator.Spec(20, 2, 10, 3, 4, 0.75, 1);
+        GradebookStore store = serial(spec);
+
+        assertEquals(20, store.cityCount());
+        assertEquals(40, store.classCount());
+        assertEquals(400, store.studentCount());
+        HashSet<String> cities = new HashSet<>();
+        for (int city = 0; city < store.cityCount(); city++) {
+            cities.add(store.cityName(city));
+        }
+        assertEquals(20, cities.size());
+        long present = 0;
+        long cells = 0;
+        for (int classId = 0; classId < store.classCount(); classId++) {
+            ClassBook book = store.book(classId);
+            assertEquals(3, book.subjectCount());
+            for (int slot = 0; slot < book.studentCount(); slot++) {
+                for (int subject = 0; subject < book.subjectCount(); subject++) {
+                    assertEquals(4, book.gradeCount(slot, subject));
+                    present += book.isPresent(slot, subject) ? 1 : 0;
+                    cells++;
+                }
+            }
+        }
+        assertEquals(spec.records(), cells * 5);
+        assertEquals(0.75, (double) present / cells, 0.05);
+    }
+
+    private static GradebookStore serial(RosterGenerator.Spec spec) {
+        GradebookStore store = new GradebookStore();
+        new RosterGenerator(spec, store).generate();
+        return store;
+    }
+
+    /**
+     * Order-sensitive hash over names, grades and attendance; ids are left out since interning order may vary.
+     */
+    private static long fingerprint(GradebookStore store) {
+        long hash = 17;
+        for (int classId = 0; classId < store.classCount(); classId++) {
+            ClassBook book = store.book(classId);
+            hash = hash * 31 + store.className(classId).hashCode();
+            for (int subject = 0; subject < book.subjectCount(); subject++) {
+                hash = hash * 31 + store.subjectNames.get(book.subjectId(subject)).hashCode();
+            }
+            for (int slot = 0; slot < book.studentCount(); slot++) {
+                hash = hash * 31 + store.studentNames.get(book.studentName(slot)).hashCode();
+                for (int subject = 0; subject < book.subjectCount(); subject++) {
+                    for (int i = 0; i < book.gradeCount(slot, subject); i++) {
+                        hash = hash * 31 + book.grade(slot, subject, i);
+                    }
+                    hash = hash * 31 + (book.isPresent(slot, subject) ? 1 : 0);
+                }
+            }
+        }
+        return hash;
+    }
+}
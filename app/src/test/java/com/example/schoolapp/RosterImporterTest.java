@@ -0,0 +1,261 @@
+package com.example.schoolapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class RosterImporterTest {
+    private static final Executor DIRECT = Runnable::run;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final List<Runnable> queued = new ArrayList<>();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void importsSemicolonCsvWithQuotes() throws IOException {
+        File csv = write("roster.csv", "\uFEFFcity;class;student;subject;grade;present;note\r\n"
+                + "Kraków;Klasa 1;\"Nowak; \"\"Jaś\"\"\";Matematyka;4,0;yes;x\r\n"
+                + "Kraków;Klasa 1;Anna Kowalska;Matematyka;5;;\r\n"
+                + "Kraków;Klasa 1;Anna Kowalska;Fizyka;;nie wiem\r\n"
+                + "Kraków;Klasa 1;Anna Kowalska;Fizyka;;0\r\n"
+                + "Kraków;Klasa 2;Piotr Zieliński\r\n"
+                + ";Klasa 2;Nobody;Fizyka;3;\r\n");
+        GradebookStore store = new GradebookStore();
+        Outcome outcome = run(importer(store), csv, null, -1);
+
+        assertNotNull(outcome.finished);
+        assertEquals(4, outcome.finished.rows);
+        assertEquals(2, outcome.finished.skipped);
+        assertEquals(csv.length(), outcome.finished.bytes);
+
+        int classId = store.findClass("Kraków", "Klasa 1");
+        ClassBook book = store.book(classId);
+        assertEquals(2, book.studentCount());
+        assertEquals("Nowak; \"Jaś\"", store.studentNames.get(book.studentName(0)));
+        int math = book.subjectIndex(store.subjectNames.find("Matematyka"));
+        int physics = book.subjectIndex(store.subjectNames.find("Fizyka"));
+        assertEquals(4, book.grade(0, math, 0));
+        assertTrue(book.isPresent(0, math));
+        assertEquals(5, book.grade(1, math, 0));
+        assertFalse(book.isPresent(1, physics));
+        assertEquals(1, store.book(store.findClass("Kraków", "Klasa 2")).studentCount());
+        assertEquals(0, store.book(store.findClass("Kraków", "Klasa 2")).subjectCount());
+    }
+
+    @Test
+    public void importsJsonArraysAndLines() throws IOException {
+        File array = write("roster.json", "[\n"
+                + "  {\"city\": \"\\u0141\\u00f3d\\u017a\", \"class\": \"Klasa 3\", \"student\": \"Ola \\\"Mała\\\"\","
+                + " \"subject\": \"WF\", \"grade\": 5, \"present\": true, \"extra\": 1.5},\n"
+                + "  {\"city\": \"Łódź\", \"class\": \"Klasa 3\", \"student\": \"Ola \\\"Mała\\\"\","
+                + " \"subject\": \"WF\", \"grade\": null, \"present\": false}\n"
+                + "]\n");
+        File lines = write("roster.jsonl", "{\"city\":\"Łódź\",\"class\":\"Klasa 3\",\"student\":\"Jan\",\"subject\":\"WF\",\"grade\":\"2\"}\n"
+                + "{\"city\":\"Łódź\",\"class\":\"Klasa 3\",\"student\":\"Jan\",\"subject\":\"WF\",\"grade\":7}\n");
+        GradebookStore store = new GradebookStore();
+        Outcome first = run(importer(store), array, null, -1);
+        Outcome second = run(importer(store), lines, null, -1);
+
+        assertEquals(2, first.finished.rows);
+        assertEquals(1, second.finished.rows);
+        assertEquals(1, second.finished.skipped);
+        ClassBook book = store.book(store.findClass("Łódź", "Klasa 3"));
+        assertEquals("Ola \"Mała\"", store.studentNames.get(book.studentName(0)));
+        assertEquals(1, book.gradeCount(0, 0));
+        assertFalse(book.isPresent(0, 0));
+        assertEquals(2, book.grade(1, 0, 0));
+    }
+
+    @Test
+    public void resumedImportMatchesUninterruptedOne() throws IOException {
+        File csv = roster("roster.csv", 20_000);
+        GradebookStore full = new GradebookStore();
+        run(new RosterImporter(full, folder.newFile("full.bin"), new File(folder.getRoot(), "full.checkpoint"), queued::add, queued::add, DIRECT),
+                csv, null, -1);
+
+        File gradebook = new File(folder.getRoot(), "gradebook.bin");
+        RosterImporter importer = importer(new GradebookStore());
+        Outcome interrupted = run(importer, csv, null, 3);
+        assertNotNull(interrupted.cancelled);
+        assertEquals(3 * RosterImporter.BATCH_ROWS, interrupted.cancelled.rows);
+
+        // As after a restart: reopen the saved gradebook and pick up where it stopped.
+        GradebookStore reopened = new GradebookStore();
+        reopened.open(GradebookFile.open(gradebook));
+        RosterImporter resumed = importer(reopened);
+        RosterImporter.Checkpoint checkpoint = resumed.pending();
+        assertNotNull(checkpoint);
+        assertEquals(interrupted.cancelled.bytes, checkpoint.offset);
+        Outcome rest = run(resumed, csv, checkpoint, -1);
+
+        assertEquals(20_000, rest.finished.rows);
+        assertEquals(csv.length(), rest.finished.bytes);
+        assertNull(resumed.pending());
+        assertEquals(fingerprint(full), fingerprint(reopened));
+    }
+
+    @Test
+    public void ignoresCheckpointOfAnotherGradebook() throws IOException {
+        File csv = roster("roster.csv", 10_000);
+        GradebookStore store = new GradebookStore();
+        RosterImporter importer = importer(store);
+        run(importer, csv, null, 1);
+        assertNotNull(importer.pending());
+
+        store.save(new File(folder.getRoot(), "gradebook.bin"), 42);
+        assertNull(importer.pending());
+    }
+
+    @Test
+    public void savesOnWriterWhileBatchesKeepComing() throws IOException {
+        File csv = roster("roster.csv", 20_000);
+        File gradebook = new File(folder.getRoot(), "gradebook.bin");
+        List<Runnable> writes = new ArrayList<>();
+        GradebookStore store = new GradebookStore();
+        RosterImporter importer = new RosterImporter(store, gradebook, new File(folder.getRoot(), "import.checkpoint"),
+                queued::add, writes::add, DIRECT);
+        Outcome outcome = new Outcome();
+        outcome.task = importer.start(RosterImporter.fileSource(csv), null, outcome);
+        while (!queued.isEmpty()) {
+            queued.remove(0).run();
+        }
+
+        // Every batch is applied, but nothing has been written on the main thread.
+        // 2000 students in 5 subjects.
+        assertEquals(2000 * 5, fingerprint(store).size());
+        assertFalse(gradebook.exists());
+        assertFalse(outcome.task.isDone());
+        assertNull(outcome.finished);
+        assertEquals(1, writes.size());
+
+        writes.remove(0).run();
+        assertNotNull(outcome.finished);
+        assertEquals(20_000, outcome.finished.rows);
+        assertTrue(outcome.task.isDone());
+        assertNull(importer.pending());
+        GradebookStore reopened = new GradebookStore();
+        reopened.open(GradebookFile.open(gradebook));
+        assertEquals(fingerprint(store), fingerprint(reopened));
+    }
+
+    @Test
+    public void importsLargeRoster() throws IOException {
+        // Parsing speed is measured by RosterParseBenchmark in the benchmark module.
+        int rows = 200_000;
+        File csv = roster("large.csv", rows);
+        GradebookStore store = new GradebookStore();
+        Outcome outcome = run(new RosterImporter(store, new File(folder.getRoot(), "large.bin"),
+                new File(folder.getRoot(), "large.checkpoint"), queued::add, queued::add, DIRECT), csv, null, -1);
+        assertEquals(rows, outcome.finished.rows);
+        assertEquals(0, outcome.finished.skipped);
+        assertEquals(rows / 10, store.studentCount());
+        assertTrue(store.residentClassCount() <= GradebookStore.MAX_PAGED_CLASSES);
+        assertEquals(rows / 10 * 5, fingerprint(store).size());
+    }
+
+    private RosterImporter importer(GradebookStore store) {
+        return new RosterImporter(store, new File(folder.getRoot(), "gradebook.bin"),
+                new File(folder.getRoot(), "import.checkpoint"), queued::add, queued::add, DIRECT);
+    }
+
+    /**
+     * Runs the import to its end on the calling thread, optionally cancelling it after a number of batches.
+     */
+    private Outcome run(RosterImporter importer, File file, RosterImporter.Checkpoint resume, int cancelAfterBatches) {
+        Outcome outcome = new Outcome();
+        outcome.cancelAfterBatches = cancelAfterBatches;
+        outcome.task = importer.start(RosterImporter.fileSource(file), resume, outcome);
+        while (!queued.isEmpty()) {
+            queued.remove(0).run();
+        }
+        assertTrue(outcome.task.isDone());
+        return outcome;
+    }
+
+    private File write(String name, String content) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), UTF_8)) {
+            out.write(content);
+        }
+        return file;
+    }
+
+    private File roster(String name, int rows) throws IOException {
+        String[] subjects = {"Matematyka", "Fizyka", "Język Angielski", "Historia", "Biologia"};
+        StringBuilder csv = new StringBuilder("city,class,student,subject,grade,present\n");
+        for (int i = 0; i < rows; i++) {
+            int student = i / 10;
+            csv.append("Miasto ").append(student / 240).append(",Klasa ").append(student / 30 % 8 + 1)
+                    .append(",Uczeń ").append(student % 30).append(',').append(subjects[i % subjects.length])
+                    .append(',').append(i % 5 + 1).append(',').append(i % 3 == 0 ? "0" : "1").append('\n');
+        }
+        return write(name, csv.toString());
+    }
+
+    private static List<String> fingerprint(GradebookStore store) {
+        List<String> lines = new ArrayList<>();
+        for (int classId = 0; classId < store.classCount(); classId++) {
+            ClassBook book = store.book(classId);
+            for (int slot = 0; slot < book.studentCount(); slot++) {
+                for (int subject = 0; subject < book.subjectCount(); subject++) {
+                    StringBuilder line = new StringBuilder()
+                            .append(store.cityName(store.classCity(classId))).append('/')
+                            .append(store.className(classId)).append('/')
+                            .append(store.studentNames.get(book.studentName(slot))).append('/')
+                            .append(store.subjectNames.get(book.subjectId(subject))).append(':');
+                    for (int i = 0; i < book.gradeCount(slot, subject); i++) {
+                        line.append(book.grade(slot, subject, i));
+                    }
+                    lines.add(line.append(book.isPresent(slot, subject) ? "+" : "-").toString());
+                }
+            }
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+    private static final class Outcome implements RosterImporter.Listener {
+        int cancelAfterBatches = -1;
+        ReportExporter.Task task;
+        int batches;
+        RosterImporter.Result finished;
+        RosterImporter.Result cancelled;
+
+        @Override
+        public void onProgress(long rows, long bytes, long totalBytes) {
+            if (++batches == cancelAfterBatches) {
+                task.cancel();
+            }
+        }
+
+        @Override
+        public void onFinished(RosterImporter.Result result) {
+            finished = result;
+        }
+
+        @Override
+        public void onFailed(IOException error) {
+            throw new AssertionError(error);
+        }
+
+        @Override
+        public void onCancelled(RosterImporter.Result partial) {
+            cancelled = partial;
+        }
+    }
+}
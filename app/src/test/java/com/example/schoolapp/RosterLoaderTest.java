@@ -0,0 +1,194 @@
+package com.example.schoolapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RosterLoaderTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void publishesCitiesBeforeTheirClasses() {
+        GradebookStore store = new GradebookStore();
+        List<String> events = new ArrayList<>();
+        File file = new File(folder.getRoot(), "gradebook.bin");
+        RosterLoader loader = new RosterLoader(store, file, Runnable::run, Runnable::run);
+
+        loader.start(new RosterLoader.Listener() {
+            @Override
+            public void onFileOpened(GradebookFile file) {
+                events.add("file");
+            }
+
+            @Override
+            public void onCitiesLoaded(List<String> cities) {
+                events.add("cities");
+                for (String city : cities) {
+                    store.addCity(city);
+                }
+            }
+
+            @Override
+            public void onCityLoaded(RosterLoader.CityChunk chunk) {
+                events.add(chunk.city);
+                int cityId = store.findCity(chunk.city);
+                for (int i = 0; i < chunk.books.size(); i++) {
+                    store.addClass(cityId, chunk.classLabels.get(i), chunk.books.get(i));
+                }
+            }
+
+            @Override
+            public void onFileSaved(GradebookFile saved) {
+                events.add("saved");
+                store.adopt(saved, 0);
+            }
+
+            @Override
+            public void onLoadFinished() {
+                events.add("done");
+            }
+        });
+
+        assertEquals("cities", events.get(0));
+        assertEquals("done", events.get(events.size() - 1));
+        assertEquals("saved", events.get(events.size() - 2));
+        assertEquals(store.cityCount() + 3, events.size());
+        assertEquals(store.cityCount() * 8 * 30, store.studentCount());
+        assertTrue(file.exists());
+    }
+
+    @Test
+    public void generatedClassesAreReadFromTheSavedFile() {
+        GradebookStore store = new GradebookStore();
+        RosterLoader loader = new RosterLoader(store, new File(folder.getRoot(), "gradebook.bin"), Runnable::run,
+                Runnable::run);
+        List<Integer> edited = new ArrayList<>();
+
+        loader.start(new RosterLoader.Listener() {
+            @Override
+            public void onFileOpened(GradebookFile file) {
+            }
+
+            @Override
+            public void onCitiesLoaded(List<String> cities) {
+                for (String city : cities) {
+                    store.addCity(city);
+                }
+            }
+
+            @Override
+            public void onCityLoaded(RosterLoader.CityChunk chunk) {
+                int cityId = store.findCity(chunk.city);
+                for (int i = 0; i < chunk.books.size(); i++) {
+                    store.addClass(cityId, chunk.classLabels.get(i), chunk.books.get(i));
+                }
+                if (edited.isEmpty()) {
+                    edited.add(store.classesOf(cityId)[0]);
+                    store.enterGrade(edited.get(0), 0, 0, 5);
+                }
+            }
+
+            @Override
+            public void onFileSaved(GradebookFile saved) {
+                store.adopt(saved, 0);
+            }
+
+            @Override
+            public void onLoadFinished() {
+            }
+        });
+
+        assertEquals(-1, store.classFileIndex(edited.get(0)));
+        assertTrue(store.classFileIndex(edited.get(0) + 1) >= 0);
+        assertTrue(store.residentClassCount() <= GradebookStore.MAX_PAGED_CLASSES + 1);
+    }
+
+    @Test
+    public void reopensSavedGradebookInOneStep() {
+        File file = new File(folder.getRoot(), "gradebook.bin");
+        List<String> events = new ArrayList<>();
+        RosterLoader.Listener listener = new RosterLoader.Listener() {
+            @Override
+            public void onFileOpened(GradebookFile opened) {
+                events.add("file");
+                assertEquals(3, opened.cityCount());
+            }
+
+            @Override
+            public void onCitiesLoaded(List<String> cities) {
+                events.add("cities");
+            }
+
+            @Override
+            public void onCityLoaded(RosterLoader.CityChunk chunk) {
+                events.add(chunk.city);
+            }
+
+            @Override
+            public void onFileSaved(GradebookFile saved) {
+                events.add("saved");
+            }
+
+            @Override
+            public void onLoadFinished() {
+                events.add("done");
+            }
+        };
+        new RosterLoader(new GradebookStore(), file, Runnable::run, Runnable::run).start(listener);
+        events.clear();
+
+        new RosterLoader(new GradebookStore(), file, Runnable::run, Runnable::run).start(listener);
+
+        assertEquals("file", events.get(0));
+        assertEquals("done", events.get(1));
+        assertEquals(2, events.size());
+    }
+
+    @Test
+    public void cancelStopsDelivery() {
+        GradebookStore store = new GradebookStore();
+        List<Runnable> pending = new ArrayList<>();
+        List<String> events = new ArrayList<>();
+        RosterLoader loader = new RosterLoader(store, new File(folder.getRoot(), "gradebook.bin"), Runnable::run, pending::add);
+
+        loader.start(new RosterLoader.Listener() {
+            @Override
+            public void onFileOpened(GradebookFile file) {
+                events.add("file");
+            }
+
+            @Override
+            public void onCitiesLoaded(List<String> cities) {
+                events.add("cities");
+            }
+
+            @Override
+            public void onCityLoaded(RosterLoader.CityChunk chunk) {
+                events.add(chunk.city);
+            }
+
+            @Override
+            public void onFileSaved(GradebookFile saved) {
+                events.add("saved");
+            }
+
+            @Override
+            public void onLoadFinished() {
+                events.add("done");
+            }
+        });
+        loader.cancel();
+        for (Runnable callback : pending) {
+            callback.run();
+        }
+
+        assertTrue(events.isEmpty());
+    }
+}
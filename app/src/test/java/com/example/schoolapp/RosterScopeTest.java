@@ -0,0 +1,57 @@
+package com.example.schoolapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Opening a subject screen resolves its class and walks that class's roster. The work must be scoped to
+ * the class however many other cities and classes the district has; how long it takes is measured by
+ * RosterLookupBenchmark in the benchmark module.
+ */
+public class RosterScopeTest {
+    private static final List<String> SUBJECTS = Arrays.asList("Matematyka", "Fizyka", "Język Angielski", "Historia",
+            "Geografia", "Plastyka", "Muzyka", "WF", "Informatyka", "Biologia", "Chemia", "Jezyk niemiecki");
+    private static final int CLASSES_PER_CITY = 8;
+    private static final int STUDENTS_PER_CLASS = 30;
+
+    @Test
+    public void screenOpenSeesOnlyItsClassRoster() {
+        GradebookStore store = district(200);
+        assertEquals(200 * CLASSES_PER_CITY * STUDENTS_PER_CLASS, store.studentCount());
+        for (int i = 0; i < 200 * CLASSES_PER_CITY; i += 37) {
+            String city = "City " + i / CLASSES_PER_CITY;
+            String label = "Klasa " + (i % CLASSES_PER_CITY + 1);
+            int classId = store.findClass(city, label);
+            assertEquals(city, store.cityName(store.classCity(classId)));
+            assertEquals(label, store.className(classId));
+            assertEquals(CLASSES_PER_CITY, store.classesOf(store.classCity(classId)).length);
+            ClassBook book = store.book(classId);
+            assertEquals(STUDENTS_PER_CLASS, book.studentCount());
+            assertEquals("Student 0", store.studentNames.get(book.studentName(0)));
+        }
+        assertEquals(-1, store.findClass("City 200", "Klasa 1"));
+        assertEquals(-1, store.findClass("City 0", "Klasa 9"));
+    }
+
+    private static GradebookStore district(int cities) {
+        GradebookStore store = new GradebookStore();
+        for (int c = 0; c < cities; c++) {
+            int cityId = store.addCity("City " + c);
+            for (int k = 1; k <= CLASSES_PER_CITY; k++) {
+                int classId = store.addClass(cityId, "Klasa " + k, SUBJECTS);
+                ClassBook book = store.book(classId);
+                for (int s = 0; s < STUDENTS_PER_CLASS; s++) {
+                    int slot = store.addStudent(classId, "Student " + s);
+                    for (int subject = 0; subject < SUBJECTS.size(); subject++) {
+                        book.addGrade(slot, subject, (slot + subject) % 5 + 1);
+                    }
+                }
+            }
+        }
+        return store;
+    }
+}
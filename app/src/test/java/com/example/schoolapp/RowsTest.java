@@ -0,0 +1,108 @@
+package com.example.schoolapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RowsTest {
+    private static final List<String> SUBJECTS = Arrays.asList("Matematyka", "Fizyka");
+
+    @Test
+    public void gradeEditChangesOnlyThatStudentsRow() {
+        GradebookStore store = new GradebookStore();
+        int cityId = store.addCity("Warszawa");
+        int classId = store.addClass(cityId, "Klasa 1", SUBJECTS);
+        store.addStudent(classId, "Ala Kot");
+        store.addStudent(classId, "Jan Nowak");
+        ClassBook book = store.book(classId);
+        book.addGrade(0, 0, 4);
+
+        List<Rows.Student> before = Rows.students(store, book, 0);
+        book.addGrade(1, 0, 2);
+        List<Rows.Student> after = Rows.students(store, book, 0);
+
+        assertEquals("4", after.get(0).grades);
+        assertEquals("2", after.get(1).grades);
+        for (int i = 0; i < before.size(); i++) {
+            assertTrue(Rows.Student.DIFF.areItemsTheSame(before.get(i), after.get(i)));
+        }
+        assertTrue(Rows.Student.DIFF.areContentsTheSame(before.get(0), after.get(0)));
+        assertFalse(Rows.Student.DIFF.areContentsTheSame(before.get(1), after.get(1)));
+    }
+
+    @Test
+    public void namedRowsUseStoreIds() {
+        GradebookStore store = new GradebookStore();
+        int warszawa = store.addCity("Warszawa");
+        int krakow = store.addCity("Kraków");
+        int first = store.addClass(krakow, "Klasa 1", SUBJECTS);
+        int second = store.addClass(krakow, "Klasa 2", SUBJECTS);
+
+        List<Rows.Named> cities = Rows.cities(store);
+        assertEquals(warszawa, cities.get(0).id);
+        assertEquals("Kraków", cities.get(1).name);
+
+        List<Rows.Named> classes = Rows.classes(store, krakow);
+        assertEquals(first, classes.get(0).id);
+        assertEquals(second, classes.get(1).id);
+        assertEquals("Klasa 2", classes.get(1).name);
+        assertTrue(Rows.classes(store, warszawa).isEmpty());
+
+        List<Rows.Named> subjects = Rows.subjects(store, first);
+        assertEquals(store.subjectNames.find("Fizyka"), subjects.get(1).id);
+    }
+
+    @Test
+    public void attendanceRowChangesWithMark() {
+        GradebookStore store = new GradebookStore();
+        int classId = store.addClass(store.addCity("Rzeszów"), "Klasa 3", SUBJECTS);
+        store.addStudent(classId, "Ala Kot");
+        ClassBook book = store.book(classId);
+
+        Rows.Attendance absent = Rows.attendance(store, book, 1).get(0);
+        book.setPresent(0, 1, true);
+        Rows.Attendance present = Rows.attendance(store, book, 1).get(0);
+
+        assertFalse(absent.present);
+        assertTrue(present.present);
+        assertTrue(Rows.Attendance.DIFF.areItemsTheSame(absent, present));
+        assertFalse(Rows.Attendance.DIFF.areContentsTheSame(absent, present));
+    }
+
+    @Test
+    public void attendanceRowShowsRateOverRange() {
+        GradebookStore store = new GradebookStore();
+        int classId = store.addClass(store.addCity("Rzeszów"), "Klasa 3", SUBJECTS);
+        store.addStudent(classId, "Ala Kot");
+        ClassBook book = store.book(classId);
+        book.markAttendance(0, 0, 2025, 4, true);
+        book.markAttendance(0, 0, 2025, 5, false);
+        book.markAttendance(0, 0, 2025, 6, true);
+        book.markAttendance(0, 0, 2025, 30, false);
+
+        assertEquals("Absent · 67% this month (2/3)", Rows.attendance(store, book, 0, 2025, 0, 20).get(0).detail);
+        assertEquals("Absent", Rows.attendance(store, book, 0, 2025, 20, 30).get(0).detail);
+    }
+
+    @Test
+    public void unchangedStudentRowsAreReused() {
+        GradebookStore store = new GradebookStore();
+        int classId = store.addClass(store.addCity("Kraków"), "Klasa 2", SUBJECTS);
+        store.addStudent(classId, "Ala Kot");
+        store.addStudent(classId, "Jan Nowak");
+        ClassBook book = store.book(classId);
+        book.addGrade(0, 1, 5);
+
+        List<Rows.Student> before = Rows.students(store, book, 1);
+        book.addGrade(1, 1, 3);
+        book.addGrade(1, 1, 4);
+        List<Rows.Student> after = Rows.students(store, book, 1, before);
+
+        assertSame(before.get(0), after.get(0));
+        assertNotSame(before.get(1), after.get(1));
+        assertEquals("3, 4", after.get(1).grades);
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.schoolapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StudentIndexTest {
+    private static final List<String> SUBJECTS = Arrays.asList("Matematyka", "Fizyka");
+    private static final String[] FIRST = {"Michał", "Paweł", "Karol", "Kacper", "Radek", "Artur", "Adrian", "Krystian"};
+    private static final String[] LAST = {"Urban", "Rzeszutek", "Łojszczyk", "Bucki", "Baran", "Połeć", "Kępa", "Krupa"};
+
+    @Test
+    public void findsByPrefixFragmentAndFoldedName() {
+        GradebookStore store = new GradebookStore();
+        int classId = store.addClass(store.addCity("Rzeszów"), "Klasa 1", SUBJECTS);
+        store.addStudent(classId, "Michał Łojszczyk");
+        store.addStudent(classId, "Paweł Urban");
+        store.addStudent(classId, "Karol Baran");
+        StudentIndex index = index(store);
+
+        assertEquals(Arrays.asList("Michał Łojszczyk"), names(index, "loj"));
+        assertEquals(Arrays.asList("Karol Baran"), names(index, "ba"));
+        assertEquals(Arrays.asList("Paweł Urban"), names(index, "p u"));
+        assertEquals(Arrays.asList("Karol Baran"), names(index, "ran k"));
+        assertEquals(Arrays.asList("Paweł Urban"), names(index, "PAWEL"));
+        assertTrue(names(index, "xyz").isEmpty());
+        assertEquals(3, search(index, new StudentIndex.Query("", -1, Double.NaN, Double.NaN)).total);
+    }
+
+    @Test
+    public void filtersByAverageAndAttendance() {
+        GradebookStore store = new GradebookStore();
+        int classId = store.addClass(store.addCity("Kraków"), "Klasa 2", SUBJECTS);
+        int weak = store.addStudent(classId, "Ala Kot");
+        int strong = store.addStudent(classId, "Jan Nowak");
+        ClassBook book = store.book(classId);
+        book.addGrade(weak, 0, 2);
+        book.addGrade(weak, 0, 3);
+        book.addGrade(strong, 0, 5);
+        book.setPresent(strong, 0, true);
+        book.setPresent(strong, 1, true);
+        StudentIndex index = index(store);
+        int matematyka = store.subjectNames.find("Matematyka");
+
+        StudentIndex.Result weakInMaths = search(index, new StudentIndex.Query("", matematyka, 2.6, Double.NaN));
+        assertEquals(1, weakInMaths.total);
+        assertEquals("Ala Kot", index.name(weakInMaths.students[0]));
+        assertEquals(2.5, index.mean(weakInMaths.students[0], matematyka), 1e-6);
+
+        StudentIndex.Result absent = search(index, new StudentIndex.Query("", -1, Double.NaN, 0.8));
+        assertEquals(1, absent.total);
+        assertEquals("Ala Kot", index.name(absent.students[0]));
+
+        assertEquals(0, search(index, new StudentIndex.Query("jan", matematyka, 2.6, Double.NaN)).total);
+        assertEquals(0, search(index, new StudentIndex.Query("", store.subjectNames.find("Fizyka"), 6, Double.NaN)).total);
+    }
+
+    @Test
+    public void readsPagedOutClassesFromTheFile() throws Exception {
+        java.io.File file = java.io.File.createTempFile("index", ".bin");
+        try {
+            GradebookStore source = new GradebookStore();
+            GradebookFile.Writer writer = new GradebookFile.Writer(file, source);
+            int city = writer.addCity("Warszawa");
+            ClassBook book = source.newBook(SUBJECTS);
+            book.addStudent(source.studentNames.intern("Artur Kępa"));
+            writer.addClass(city, "Klasa 3", book);
+            writer.finish();
+
+            GradebookStore store = new GradebookStore();
+            store.open(GradebookFile.open(file));
+            assertNull(store.residentBook(0));
+            StudentIndex index = index(store);
+            assertEquals(Arrays.asList("Artur Kępa"), names(index, "kepa"));
+            assertEquals("Klasa 3", index.classLabel(0));
+            assertNull(store.residentBook(0));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void keystrokeQueriesMatchExactlyTheNames() {
+        GradebookStore store = new GradebookStore();
+        int student = 0;
+        for (int c = 0; c < 50; c++) {
+            int cityId = store.addCity("City " + c);
+            for (int k = 1; k <= 40; k++) {
+                int classId = store.addClass(cityId, "Klasa " + k, SUBJECTS);
+                ClassBook book = store.book(classId);
+                for (int s = 0; s < 25; s++, student++) {
+                    int slot = store.addStudent(classId, FIRST[student % FIRST.length] + " "
+                            + LAST[(student / FIRST.length) % LAST.length] + " " + student);
+                    book.addGrade(slot, 0, student % 5 + 1);
+                    book.setPresent(slot, student % 2, true);
+                }
+            }
+        }
+        StudentIndex index = index(store);
+        assertEquals(50_000, index.size());
+
+        // Each keystroke finds exactly the students whose names match, a small part of the 50,000.
+        // How long a keystroke takes is measured by StudentSearchBenchmark in the benchmark module.
+        String typed = "krystian krupa 4";
+        int matematyka = store.subjectNames.find("Matematyka");
+        for (int i = 1; i <= typed.length(); i++) {
+            String text = typed.substring(0, i);
+            StudentIndex.Result all = search(index, new StudentIndex.Query(text, -1, Double.NaN, Double.NaN));
+            StudentIndex.Result failing = search(index, new StudentIndex.Query(text, matematyka, 2.5, 0.8));
+            int matches = nameMatches(index, text);
+            assertEquals(text, matches, all.total);
+            assertTrue(text, failing.total <= matches);
+        }
+        assertTrue(nameMatches(index, typed) < index.size() / 64);
+    }
+
+    /**
+     * Students whose folded name matches every token of {@code text}, found by checking each one.
+     */
+    private static int nameMatches(StudentIndex index, String text) {
+        String[] tokens = StudentIndex.fold(text).split(" ");
+        int count = 0;
+        for (int student = 0; student < index.size(); student++) {
+            String name = StudentIndex.fold(index.name(student));
+            boolean matches = true;
+            for (String token : tokens) {
+                matches &= token.length() < 3 ? (" " + name).contains(" " + token) : name.contains(token);
+            }
+            count += matches ? 1 : 0;
+        }
+        return count;
+    }
+
+    private static StudentIndex index(GradebookStore store) {
+        try {
+            return StudentIndex.build(StudentIndex.collect(store), store);
+        } catch (java.io.IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static StudentIndex.Result search(StudentIndex index, StudentIndex.Query query) {
+        // Production asks for every match and pages through them.
+        return index.search(query, Integer.MAX_VALUE);
+    }
+
+    private static List<String> names(StudentIndex index, String text) {
+        StudentIndex.Result result = search(index, new StudentIndex.Query(text, -1, Double.NaN, Double.NaN));
+        String[] names = new String[result.students.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = index.name(result.students[i]);
+        }
+        return Arrays.asList(names);
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.schoolapp;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StudentSearchTest {
+    @Test
+    public void burstOfKeystrokesDeliversOnlyTheLastQuery() throws InterruptedException {
+        GradebookStore store = new GradebookStore();
+        int classId = store.addClass(store.addCity("Warszawa"), "Klasa 1", Arrays.asList("Matematyka"));
+        store.addStudent(classId, "Karol Baran");
+        store.addStudent(classId, "Kacper Bucki");
+
+        ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor();
+        List<PagedRows<StudentSearch.Match>> delivered = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        try {
+            StudentSearch search = new StudentSearch(worker, Runnable::run, new StudentSearch.Listener() {
+                @Override
+                public void onResults(PagedRows<StudentSearch.Match> matches) {
+                    synchronized (delivered) {
+                        delivered.add(matches);
+                    }
+                    done.countDown();
+                }
+
+                @Override
+                public void onIndexFailed(IOException error) {
+                    fail(error.toString());
+                }
+            });
+            search.rebuild(store);
+            for (String typed : new String[] {"k", "ka", "kac", "kacp"}) {
+                search.search(new StudentIndex.Query(typed, -1, Double.NaN, Double.NaN));
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            Thread.sleep(StudentSearch.DEBOUNCE_MS * 2);
+        } finally {
+            worker.shutdownNow();
+        }
+
+        assertEquals(1, delivered.size());
+        assertEquals(1, delivered.get(0).size());
+        assertEquals("Kacper Bucki", delivered.get(0).get(0).name);
+        assertEquals("Warszawa, Klasa 1 | attendance 0%", delivered.get(0).get(0).detail);
+    }
+
+    @Test
+    public void resultsAreNotCappedAndLoadPagesOnWorker() throws InterruptedException {
+        GradebookStore store = new GradebookStore();
+        new RosterGenerator(new RosterGenerator.Spec(2, 8, 30, 6, 2, 0.9, 5), store).generate();
+
+        ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor();
+        // Stands in for the main thread: the test runs what the search posts to it.
+        BlockingQueue<Runnable> mainThread = new LinkedBlockingQueue<>();
+        List<PagedRows<StudentSearch.Match>> delivered = new ArrayList<>();
+        try {
+            StudentSearch search = new StudentSearch(worker, mainThread::add, new StudentSearch.Listener() {
+                @Override
+                public void onResults(PagedRows<StudentSearch.Match> matches) {
+                    delivered.add(matches);
+                }
+
+                @Override
+                public void onIndexFailed(IOException error) {
+                    fail(error.toString());
+                }
+            });
+            search.rebuild(store);
+            search.search(new StudentIndex.Query("", -1, Double.NaN, Double.NaN));
+            while (delivered.isEmpty()) {
+                mainThread.poll(5, TimeUnit.SECONDS).run();
+            }
+
+            PagedRows<StudentSearch.Match> matches = delivered.get(0);
+            assertEquals(2 * 8 * 30, matches.size());
+            assertTrue(matches.size() > PagedRows.PAGE_SIZE);
+            // The first page comes with the results; the last one is loaded when asked for.
+            assertNotNull(matches.get(PagedRows.PAGE_SIZE - 1));
+            int last = matches.size() - 1;
+            assertNull(matches.get(last));
+            while (matches.get(last) == null) {
+                mainThread.poll(5, TimeUnit.SECONDS).run();
+            }
+            assertFalse(matches.get(last).name.isEmpty());
+        } finally {
+            worker.shutdownNow();
+        }
+    }
+}
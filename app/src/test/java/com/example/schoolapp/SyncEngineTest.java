@@ -0,0 +1,356 @@
+package com.example.schoolapp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SyncEngineTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void devicesConvergeOnSharedGradebook() throws IOException {
+        SyncServer server = new SyncServer();
+        GradebookStore a = roster(1);
+        GradebookStore b = roster(1);
+        SyncEngine syncA = attach(a, 1);
+        SyncEngine syncB = attach(b, 2);
+        int classA = a.findClass("Warszawa", "Klasa 1");
+        int classB = b.findClass("Warszawa", "Klasa 1");
+        int grades = a.book(classA).gradeCount(0, 0);
+        a.enterGrade(classA, 0, 0, 5);
+        a.enterAttendance(classA, 1, 0, 2025, 7, true);
+        b.enterGrade(classB, 0, 0, 3);
+        b.enterAttendance(classB, 2, 1, false);
+
+        // The lesson mark set A's current mark too, which travels as a change of its own.
+        assertEquals(3, syncA.syncNow(server).sent);
+        SyncEngine.Result result = syncB.syncNow(server);
+        assertEquals(2, result.sent);
+        assertEquals(3, result.applied);
+        assertEquals(2, syncA.syncNow(server).applied);
+
+        for (GradebookStore store : Arrays.asList(a, b)) {
+            ClassBook book = store.book(store.findClass("Warszawa", "Klasa 1"));
+            assertEquals(grades + 2, book.gradeCount(0, 0));
+            // Concurrent grades are all kept, in the order they reached the device.
+            assertEquals(8, book.grade(0, 0, grades) + book.grade(0, 0, grades + 1));
+            assertTrue(book.wasPresent(1, 0, 7));
+            assertFalse(book.isPresent(2, 1));
+        }
+        assertEquals(syncA.vector(), syncB.vector());
+        assertEquals(0, syncA.pendingChanges());
+    }
+
+    @Test
+    public void concurrentMarksResolveTheSameEverywhere() throws IOException {
+        for (boolean aFirst : new boolean[] {true, false}) {
+            SyncServer server = new SyncServer();
+            GradebookStore a = roster(1);
+            GradebookStore b = roster(1);
+            SyncEngine syncA = attach(a, 1);
+            SyncEngine syncB = attach(b, 2);
+            int classId = a.findClass("Warszawa", "Klasa 2");
+            syncA.syncNow(server);
+            syncB.syncNow(server);
+            // Both have joined with nothing to send, so the stamps tie and the higher replica wins.
+            a.enterAttendance(classId, 3, 1, true);
+            b.enterAttendance(classId, 3, 1, false);
+            a.enterAttendance(classId, 4, 1, 2025, 30, false);
+            b.enterAttendance(classId, 4, 1, 2025, 30, true);
+
+            SyncEngine first = aFirst ? syncA : syncB;
+            SyncEngine second = aFirst ? syncB : syncA;
+            first.syncNow(server);
+            second.syncNow(server);
+            first.syncNow(server);
+
+            for (GradebookStore store : Arrays.asList(a, b)) {
+                ClassBook book = store.book(classId);
+                assertFalse(book.isPresent(3, 1));
+                assertTrue(book.wasPresent(4, 1, 30));
+            }
+        }
+    }
+
+    @Test
+    public void lessonMarkAndAttendanceEditShareTheCurrentMark() throws IOException {
+        for (boolean lessonLater : new boolean[] {false, true}) {
+            SyncServer server = new SyncServer();
+            GradebookStore a = roster(1);
+            GradebookStore b = roster(1);
+            SyncEngine syncA = attach(a, 1);
+            SyncEngine syncB = attach(b, 2);
+            int classId = a.findClass("Warszawa", "Klasa 1");
+            syncA.syncNow(server);
+            syncB.syncNow(server);
+            // The later device's clock runs two edits ahead, so its mark has the higher stamp.
+            GradebookStore later = lessonLater ? b : a;
+            later.enterGrade(classId, 5, 0, 4);
+            later.enterGrade(classId, 5, 0, 5);
+            a.enterAttendance(classId, 0, 0, false);
+            b.enterAttendance(classId, 0, 0, 2025, 10, true);
+
+            syncA.syncNow(server);
+            syncB.syncNow(server);
+            syncA.syncNow(server);
+
+            for (GradebookStore store : Arrays.asList(a, b)) {
+                ClassBook book = store.book(classId);
+                assertEquals(lessonLater, book.isPresent(0, 0));
+                // The lesson itself is kept either way.
+                assertTrue(book.wasPresent(0, 0, 10));
+            }
+        }
+    }
+
+    @Test
+    public void laterMarkWinsOverEarlierOne() throws IOException {
+        SyncServer server = new SyncServer();
+        GradebookStore a = roster(1);
+        GradebookStore b = roster(1);
+        SyncEngine syncA = attach(a, 9);
+        SyncEngine syncB = attach(b, 1);
+        int classId = a.findClass("Warszawa", "Klasa 1");
+        a.enterAttendance(classId, 0, 0, true);
+        syncA.syncNow(server);
+        syncB.syncNow(server);
+        // Seen A's mark, so B's clock is past it despite the lower replica id.
+        b.enterAttendance(classId, 0, 0, false);
+        syncB.syncNow(server);
+        syncA.syncNow(server);
+
+        assertFalse(a.book(classId).isPresent(0, 0));
+        assertFalse(b.book(classId).isPresent(0, 0));
+    }
+
+    @Test
+    public void offlineEditsWinOnceTheDeviceJoins() throws IOException {
+        SyncServer server = new SyncServer();
+        GradebookStore a = roster(1);
+        GradebookStore b = roster(1);
+        SyncEngine syncA = attach(a, 1);
+        SyncEngine syncB = attach(b, 2);
+        int classId = a.findClass("Warszawa", "Klasa 1");
+        b.enterAttendance(classId, 0, 0, false);
+        for (int i = 0; i < 3; i++) {
+            a.enterAttendance(classId, 0, 0, i % 2 == 0);
+            syncA.syncNow(server);
+        }
+        // A's mark is settled and forgotten, as the server has heard from A alone.
+        assertEquals(0, syncA.markCount());
+
+        syncB.syncNow(server);
+        syncA.syncNow(server);
+
+        assertFalse(a.book(classId).isPresent(0, 0));
+        assertFalse(b.book(classId).isPresent(0, 0));
+    }
+
+    @Test
+    public void settledMarksAreForgotten() throws IOException {
+        SyncServer server = new SyncServer();
+        GradebookStore a = roster(1);
+        GradebookStore b = roster(1);
+        SyncEngine syncA = attach(a, 1);
+        SyncEngine syncB = attach(b, 2);
+        syncA.syncNow(server);
+        syncB.syncNow(server);
+        int classId = a.findClass("Warszawa", "Klasa 1");
+        for (int slot = 0; slot < 10; slot++) {
+            a.enterAttendance(classId, slot, 0, false);
+            b.enterAttendance(classId, slot, 1, 2025, 3, true);
+        }
+        assertEquals(10, syncA.markCount());
+
+        // Each round tells the server what the device has seen; the last one reports B has seen everything.
+        for (int round = 0; round < 3; round++) {
+            syncA.syncNow(server);
+            syncB.syncNow(server);
+        }
+        syncA.syncNow(server);
+
+        assertEquals(0, syncA.markCount());
+        assertEquals(0, syncB.markCount());
+        assertFalse(b.book(classId).isPresent(9, 0));
+        assertTrue(a.book(classId).wasPresent(9, 1, 3));
+    }
+
+    @Test
+    public void studentsAreMatchedByNameNotSlot() throws IOException {
+        SyncServer server = new SyncServer();
+        GradebookStore a = new GradebookStore();
+        GradebookStore b = new GradebookStore();
+        int classA = a.addClass(a.addCity("Gdańsk"), "Klasa 1", Arrays.asList("Fizyka"));
+        int classB = b.addClass(b.addCity("Gdańsk"), "Klasa 1", Arrays.asList("Fizyka"));
+        for (String name : new String[] {"Jan Nowak", "Ola Wiśniewska", "Jan Nowak"}) {
+            a.addStudent(classA, name);
+        }
+        for (String name : new String[] {"Jan Nowak", "Jan Nowak", "Ola Wiśniewska"}) {
+            b.addStudent(classB, name);
+        }
+        SyncEngine syncA = attach(a, 1);
+        SyncEngine syncB = attach(b, 2);
+        a.enterGrade(classA, 1, 0, 5);
+        a.enterGrade(classA, 2, 0, 2);
+
+        syncA.syncNow(server);
+        syncB.syncNow(server);
+
+        ClassBook book = b.book(classB);
+        assertEquals(0, book.gradeCount(0, 0));
+        assertEquals(2, book.grade(1, 0, 0));
+        assertEquals(5, book.grade(2, 0, 0));
+    }
+
+    @Test
+    public void payloadGrowsWithChangesNotGradebook() throws IOException {
+        long[] small = syncTwentyEdits(roster(1));
+        long[] large = syncTwentyEdits(roster(48));
+        assertEquals(small[0], large[0]);
+        assertEquals(small[1], large[1]);
+        // 20 grades of 5 students in one class and subject: the names once, then 7 bytes a grade.
+        assertTrue(small[0] + " bytes", small[0] < 20 * 7 + 5 * 20 + 64);
+    }
+
+    @Test
+    public void largeBacklogTravelsInBatches() throws IOException {
+        SyncServer server = new SyncServer(100);
+        GradebookStore a = roster(1);
+        GradebookStore b = roster(1);
+        SyncEngine syncA = attach(a, 1);
+        SyncEngine syncB = attach(b, 2);
+        Random random = new Random(3);
+        int classId = a.findClass("Warszawa", "Klasa 1");
+        for (int i = 0; i < 1500; i++) {
+            a.enterGrade(classId, random.nextInt(30), random.nextInt(6), random.nextInt(5) + 1);
+        }
+
+        SyncEngine.Result up = syncA.syncNow(server);
+        SyncEngine.Result down = syncB.syncNow(server);
+
+        assertEquals(1500, up.sent);
+        // One round to join, then 1500 changes in batches of 500.
+        assertEquals(4, up.rounds);
+        assertEquals(1500, down.applied);
+        assertEquals(15, down.rounds);
+        assertEquals(1500, server.changeCount());
+        for (int slot = 0; slot < 30; slot++) {
+            for (int subject = 0; subject < 6; subject++) {
+                assertEquals(a.book(classId).gradeCount(slot, subject), b.book(classId).gradeCount(slot, subject));
+            }
+        }
+    }
+
+    @Test
+    public void lostReplyIsResentWithoutDuplicates() throws IOException {
+        SyncServer server = new SyncServer();
+        GradebookStore a = roster(1);
+        GradebookStore b = roster(1);
+        SyncEngine syncA = attach(a, 1);
+        SyncEngine syncB = attach(b, 2);
+        int classId = a.findClass("Warszawa", "Klasa 1");
+        a.enterGrade(classId, 0, 0, 2);
+        boolean[] lost = {false};
+        SyncEngine.Transport flaky = request -> {
+            byte[] response = server.exchange(request);
+            if (!lost[0]) {
+                lost[0] = true;
+                throw new IOException("Connection reset");
+            }
+            return response;
+        };
+
+        try {
+            syncA.syncNow(flaky);
+            fail();
+        } catch (IOException expected) {
+            assertEquals(1, syncA.pendingChanges());
+        }
+        syncA.syncNow(flaky);
+        syncB.syncNow(server);
+
+        assertEquals(0, syncA.pendingChanges());
+        assertEquals(1, server.changeCount());
+        assertEquals(a.book(classId).gradeCount(0, 0), b.book(classId).gradeCount(0, 0));
+    }
+
+    @Test
+    public void savedStateResumes() throws IOException {
+        SyncServer server = new SyncServer();
+        GradebookStore a = roster(1);
+        GradebookStore b = roster(1);
+        SyncEngine syncA = attach(a, 1);
+        SyncEngine syncB = attach(b, 2);
+        int classId = a.findClass("Warszawa", "Klasa 1");
+        b.enterAttendance(classId, 0, 2, 2025, 4, true);
+        syncB.syncNow(server);
+        syncA.syncNow(server);
+        a.enterGrade(classId, 1, 2, 4);
+        a.enterAttendance(classId, 0, 2, 2025, 4, false);
+        File state = new File(folder.getRoot(), "sync.state");
+        syncA.save(state);
+        assertNull(SyncEngine.load(new File(folder.getRoot(), "missing"), a));
+
+        SyncEngine resumed = SyncEngine.load(state, a);
+        a.attach(resumed);
+        assertEquals(syncA.vector(), resumed.vector());
+        assertEquals(3, resumed.pendingChanges());
+        assertEquals(0, resumed.syncNow(server).received);
+        syncB.syncNow(server);
+
+        assertFalse(b.book(classId).wasPresent(0, 2, 4));
+        assertEquals(a.book(classId).gradeCount(1, 2), b.book(classId).gradeCount(1, 2));
+    }
+
+    @Test
+    public void rejectsCorruptMessages() {
+        byte[] message = new SyncEngine.Message(1, new VersionVector(), 0, false, Arrays.asList(
+                new SyncEngine.Change(1, 1, 1, GradebookJournal.Edit.grade("Kraków", "Klasa 1", 0, "WF", 5), "Ala Kot", 0)))
+                .encode();
+        for (int cut = 0; cut < message.length; cut++) {
+            try {
+                SyncEngine.Message.decode(Arrays.copyOf(message, cut));
+                fail("Decoded " + cut + " of " + message.length + " bytes");
+            } catch (IOException expected) {
+                // Truncated.
+            }
+        }
+    }
+
+    /**
+     * Bytes sent and received by one device syncing 20 grades on {@code store}.
+     */
+    private long[] syncTwentyEdits(GradebookStore store) throws IOException {
+        SyncServer server = new SyncServer();
+        SyncEngine sync = attach(store, 5);
+        int classId = store.findClass("Warszawa", "Klasa 1");
+        for (int i = 0; i < 20; i++) {
+            store.enterGrade(classId, i % 5, 0, i % 5 + 1);
+        }
+        SyncEngine.Result result = sync.syncNow(server);
+        return new long[] {result.bytesSent, result.bytesReceived};
+    }
+
+    /**
+     * The same district on every call: {@code cities} cities of 8 classes of 30 students.
+     */
+    private static GradebookStore roster(int cities) {
+        GradebookStore store = new GradebookStore();
+        new RosterGenerator(new RosterGenerator.Spec(cities, 8, 30, 6, 2, 0.9, 11), store).generate();
+        return store;
+    }
+
+    private static SyncEngine attach(GradebookStore store, int replica) {
+        SyncEngine sync = new SyncEngine(replica, store);
+        store.attach(sync);
+        return sync;
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.schoolapp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TimetableTest {
+    @Test
+    public void looksUpLessonsTeachersAndRooms() {
+        Timetable timetable = new Timetable(new int[] {7, 9}, new String[] {"Anna", "Jan"}, new String[] {"101", "Gym"});
+        int monday2 = Timetable.slot(0, 1);
+        timetable.place(1, monday2, 3, 1, 0);
+
+        assertEquals(1, timetable.classIndex(9));
+        assertEquals(-1, timetable.classIndex(8));
+        assertEquals(3, timetable.subjectAt(1, monday2));
+        assertEquals(1, timetable.teacherAt(1, monday2));
+        assertEquals(0, timetable.roomAt(1, monday2));
+        assertEquals(-1, timetable.subjectAt(0, monday2));
+        assertEquals(1, timetable.classOfTeacher(1, monday2));
+        assertFalse(timetable.isTeacherFree(1, monday2));
+        assertTrue(timetable.isTeacherFree(1, Timetable.slot(0, 2)));
+        assertFalse(timetable.canPlace(0, monday2, 0, 0));
+        assertTrue(timetable.canPlace(0, monday2, 0, 1));
+
+        timetable.clear(1, monday2);
+        assertTrue(timetable.isRoomFree(0, monday2));
+        assertEquals(0, timetable.lessonCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsDoubleBookedTeacher() {
+        Timetable timetable = new Timetable(new int[] {0, 1}, new String[] {"Anna"}, new String[] {"101", "102"});
+        timetable.place(0, 5, 0, 0, 0);
+        timetable.place(1, 5, 0, 0, 1);
+    }
+
+    @Test
+    public void mapsClockToPeriods() {
+        assertEquals(-1, Timetable.periodAt(7 * 60 + 59));
+        assertEquals(0, Timetable.periodAt(8 * 60));
+        assertEquals(-1, Timetable.periodAt(8 * 60 + 50));
+        assertEquals(3, Timetable.periodAt(11 * 60));
+        assertEquals("14:35", Timetable.periodTime(7));
+        assertEquals("Wed 4", Timetable.slotName(Timetable.slot(2, 3)));
+    }
+
+    @Test
+    public void trimsWeekThatDoesNotFit() {
+        String[] subjects = new String[25];
+        Arrays.fill(subjects, "Koło");
+        subjects[0] = "Matematyka";
+        int[] hours = TimetableSolver.weeklyHours(Arrays.asList(subjects));
+        assertEquals(Timetable.SLOTS, Arrays.stream(hours).sum());
+        assertTrue(hours[0] <= 2);
+    }
+
+    @Test
+    public void plansGeneratedCityWithoutConflicts() {
+        GradebookStore store = new GradebookStore();
+        new RosterGenerator(new RosterGenerator.Spec(1, 8, 0, RosterGenerator.SUBJECTS.size(), 0, 1, 4), store).generate();
+        TimetableSolver.Problem problem = TimetableSolver.Problem.of(store, 0);
+
+        Timetable timetable = new TimetableSolver(problem, 1).solve(2_000_000_000L);
+
+        assertEquals(problem.lessonCount(), timetable.lessonCount());
+        assertValid(store, problem, timetable);
+    }
+
+    @Test
+    public void parallelAttemptsPlanLargeCity() throws Exception {
+        GradebookStore store = new GradebookStore();
+        new RosterGenerator(new RosterGenerator.Spec(1, 60, 0, RosterGenerator.SUBJECTS.size(), 0, 1, 9), store).generate();
+        TimetableSolver.Problem problem = TimetableSolver.Problem.of(store, 0);
+        ExecutorService workers = Executors.newFixedThreadPool(4);
+        try {
+            Timetable timetable = new TimetableSolver(problem, 2).solve(workers, 4, TimeUnit.SECONDS.toNanos(5));
+            assertEquals(problem.lessonCount(), timetable.lessonCount());
+            assertValid(store, problem, timetable);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void describesDayWithCurrentPeriod() {
+        Timetable timetable = new Timetable(new int[] {0}, new String[] {"Matematyka teacher 1"}, new String[] {"Room 101"});
+        timetable.place(0, Timetable.slot(1, 1), 0, 0, 0);
+        List<String> subjects = Arrays.asList("Matematyka");
+
+        assertEquals("Tue\n  1. 8:00  -\n> 2. 8:55  Matematyka · Matematyka teacher 1 · Room 101",
+                timetable.describeDay(0, 1, 1, subjects));
+        assertEquals("Mon: no lessons", timetable.describeDay(0, 0, -1, subjects));
+    }
+
+    /**
+     * Every class has each subject for its weekly hours, with the teacher and room the problem asks for.
+     */
+    private static void assertValid(GradebookStore store, TimetableSolver.Problem problem, Timetable timetable) {
+        for (int c = 0; c < timetable.classCount(); c++) {
+            int[] hours = TimetableSolver.weeklyHours(store.subjectNameList(timetable.classId(c)));
+            int[] taught = new int[hours.length];
+            for (int slot = 0; slot < Timetable.SLOTS; slot++) {
+                int subject = timetable.subjectAt(c, slot);
+                if (subject >= 0) {
+                    taught[subject]++;
+                    assertEquals(c, timetable.classOfTeacher(timetable.teacherAt(c, slot), slot));
+                    assertEquals(c, timetable.classInRoom(timetable.roomAt(c, slot), slot));
+                }
+            }
+            assertArrayEquals(hours, taught);
+        }
+        for (int lesson = 0; lesson < problem.lessonCount(); lesson++) {
+            assertTrue(problem.teachers[problem.lessonTeacher[lesson]].startsWith(
+                    store.subjectNameList(problem.classIds[problem.lessonClass[lesson]]).get(problem.lessonSubject[lesson])));
+        }
+    }
+}
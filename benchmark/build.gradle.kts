@@ -0,0 +1,149 @@
+import groovy.json.JsonSlurper
+
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+// JVM benchmarks for the app's data layer. The Android-free sources of :app are compiled straight into this
+// module, so they run with JMH on any JDK without a device or emulator. View binding and PDF rendering need
+// the framework and are measured by the BenchmarkRule tests in app/src/androidTest instead.
+val appSources = listOf(
+    "AttendanceHistory", "ClassBook", "ClassStats", "CsvRowReader", "GradebookFile", "GradebookJournal",
+    "GradebookStore", "IntList", "JsonRowReader", "PagedRows", "Report", "RosterGenerator", "RosterLoader",
+    "RowReader", "SchoolCalendar", "StringPool", "StudentIndex", "StudentSearch", "SyncEngine", "VersionVector",
+)
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java"))
+            include(appSources.map { "com/example/schoolapp/$it.java" })
+        }
+    }
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    // android.util.Log, which the included sources call on error paths only.
+    compileOnly(libs.android.stubs)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    // GradeEntryBenchmark taps faster than the journal writer drains on a small machine; the backlog is about 1 GB
+    // by the end of a run.
+    jvmArgs.set(listOf("-Xmx4g"))
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    includes.addAll(providers.gradleProperty("benchmark.include").map { listOf(it) }.orElse(emptyList()))
+}
+
+// Baselines belong under baselines/, one file per suite, in the suite's own JSON format:
+//   ./gradlew :benchmark:jmh :benchmark:saveJmhBaseline
+//   ./gradlew :app:connectedAndroidTest :benchmark:saveDeviceBaseline
+//   ./gradlew :benchmark:compareBaselines [-Pbenchmark.maxRegression=0.10]
+// Scores only compare on the machine or device that produced them. baselines/jmh.json was recorded on a
+// single-core x86-64 Linux VM with JDK 17 and the settings above, by a plain timing loop standing in for the
+// JMH runner; replace it with a saveJmhBaseline run on the machine that runs compareBaselines. There is no
+// device baseline yet, as it has to come from the reference device; until then that suite is skipped.
+val jmhResults = layout.buildDirectory.file("results/jmh/results.json")
+val jmhBaseline = layout.projectDirectory.file("baselines/jmh.json")
+val deviceOutputs = rootProject.layout.projectDirectory.dir("app/build/outputs/connected_android_test_additional_output")
+val deviceBaseline = layout.projectDirectory.file("baselines/device.json")
+
+fun latestDeviceResults(): File? = deviceOutputs.asFile.walkTopDown()
+    .filter { it.name.endsWith("-benchmarkData.json") }
+    .maxByOrNull { it.lastModified() }
+
+/**
+ * Scores keyed by benchmark and parameters, in nanoseconds per operation where the format allows. Reads both
+ * JMH results and Jetpack Microbenchmark output.
+ */
+@Suppress("UNCHECKED_CAST")
+fun scores(file: File): Map<String, Double> {
+    val json = JsonSlurper().parse(file)
+    val scores = sortedMapOf<String, Double>()
+    if (json is List<*>) {
+        for (entry in json as List<Map<String, Any?>>) {
+            val params = (entry["params"] as Map<String, Any?>?).orEmpty().entries.joinToString(",") { "${it.key}=${it.value}" }
+            val metric = entry["primaryMetric"] as Map<String, Any?>
+            val unit = metric["scoreUnit"] as String
+            val nanos = when {
+                unit.startsWith("ns/") -> 1.0
+                unit.startsWith("us/") -> 1e3
+                unit.startsWith("ms/") -> 1e6
+                unit.startsWith("s/") -> 1e9
+                else -> throw GradleException("Unsupported JMH unit $unit in $file")
+            }
+            scores["${entry["benchmark"]}[$params]"] = (metric["score"] as Number).toDouble() * nanos
+        }
+    } else {
+        for (entry in (json as Map<String, Any?>)["benchmarks"] as List<Map<String, Any?>>) {
+            val params = (entry["params"] as Map<String, Any?>?).orEmpty().entries.joinToString(",") { "${it.key}=${it.value}" }
+            val time = (entry["metrics"] as Map<String, Any?>)["timeNs"] as Map<String, Any?>
+            scores["${entry["className"]}.${entry["name"]}[$params]"] = (time["median"] as Number).toDouble()
+        }
+    }
+    return scores
+}
+
+tasks.register<Copy>("saveJmhBaseline") {
+    description = "Stores the last JMH run as the baseline."
+    from(jmhResults)
+    into(jmhBaseline.asFile.parentFile)
+    rename { jmhBaseline.asFile.name }
+}
+
+tasks.register("saveDeviceBaseline") {
+    description = "Stores the last connectedAndroidTest benchmark run as the baseline."
+    doLast {
+        val results = latestDeviceResults() ?: throw GradleException("No device benchmark results under $deviceOutputs")
+        results.copyTo(deviceBaseline.asFile, overwrite = true)
+    }
+}
+
+tasks.register("compareBaselines") {
+    description = "Compares the last benchmark runs with the committed baselines and fails on regressions."
+    doLast {
+        val maxRegression = (findProperty("benchmark.maxRegression") as String?)?.toDouble() ?: 0.10
+        val regressions = mutableListOf<String>()
+        val pairs = listOf(jmhResults.get().asFile to jmhBaseline.asFile, latestDeviceResults() to deviceBaseline.asFile)
+        for ((current, baseline) in pairs) {
+            if (current == null || !current.exists()) {
+                continue
+            }
+            if (!baseline.exists()) {
+                println("No baseline at $baseline; not comparing ${current.name}")
+                continue
+            }
+            val before = scores(baseline)
+            for ((name, after) in scores(current)) {
+                val base = before[name]
+                if (base == null) {
+                    println(String.format("%-90s %12.0f ns  (new)", name, after))
+                    continue
+                }
+                val change = after / base - 1
+                println(String.format("%-90s %12.0f ns  %+6.1f%%", name, after, change * 100))
+                if (change > maxRegression) {
+                    regressions += String.format("%s: %.0f ns -> %.0f ns (%+.1f%%)", name, base, after, change * 100)
+                }
+            }
+        }
+        if (regressions.isNotEmpty()) {
+            throw GradleException("Benchmarks regressed by more than ${maxRegression * 100}%:\n" + regressions.joinToString("\n"))
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.schoolapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the district the app starts with (3 cities) and larger ones, serially as RosterLoader does on
+ * first launch and in parallel across cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DatasetBenchmark {
+    @Param({"3", "48"})
+    public int cities;
+
+    private ExecutorService workers;
+
+    @Setup
+    public void setUp() {
+        workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        workers.shutdownNow();
+    }
+
+    @Benchmark
+    public int serial() {
+        GradebookStore store = new GradebookStore();
+        new RosterGenerator(spec(), store).generate();
+        return store.studentCount();
+    }
+
+    @Benchmark
+    public int parallel() throws InterruptedException {
+        GradebookStore store = new GradebookStore();
+        new RosterGenerator(spec(), store).generate(workers);
+        return store.studentCount();
+    }
+
+    private RosterGenerator.Spec spec() {
+        return new RosterGenerator.Spec(cities, 8, 30, RosterGenerator.SUBJECTS.size(), 4, 0.9, 42);
+    }
+}
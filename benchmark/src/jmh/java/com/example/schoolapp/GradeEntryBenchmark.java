@@ -0,0 +1,70 @@
+package com.example.schoolapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One attendance tap on a saved store with the edit journal attached: the main-thread part of an edit, with
+ * the journal writing in the background. Should not depend on the number of cities in the file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GradeEntryBenchmark {
+    @Param({"1", "400"})
+    public int cities;
+
+    private File directory;
+    private ScheduledExecutorService writer;
+    private GradebookJournal journal;
+    private GradebookStore store;
+    private int classId;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("grade-entry").toFile();
+        File gradebook = new File(directory, "gradebook.bin");
+        GradebookStore source = new GradebookStore();
+        new RosterGenerator(new RosterGenerator.Spec(cities, 8, 30, RosterGenerator.SUBJECTS.size(), 4, 0.9, 42), source)
+                .generate();
+        source.save(gradebook, GradebookFile.newCheckpoint(new Random(42)));
+        store = new GradebookStore();
+        store.open(GradebookFile.open(gradebook));
+        writer = Executors.newSingleThreadScheduledExecutor();
+        journal = new GradebookJournal(new File(directory, "gradebook.journal"), gradebook, writer, Runnable::run);
+        journal.recover(store, edits -> store.attach(journal));
+        journal.flush().get();
+        classId = store.findClass(RosterGenerator.cityName(0), RosterGenerator.classLabel(0));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        journal.flush().get();
+        writer.shutdownNow();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public void tap() {
+        int tap = next++;
+        store.enterAttendance(classId, tap % 30, tap % 2, tap % 3 == 0);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.schoolapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshotting a class into a report, the part of a PDF export that runs on the main thread. Drawing the
+ * pages is measured on a device by ReportRenderBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReportBenchmark {
+    @Param({"30", "300", "3000"})
+    public int rows;
+
+    private GradebookStore store;
+    private int classId;
+
+    @Setup
+    public void setUp() {
+        store = new GradebookStore();
+        new RosterGenerator(new RosterGenerator.Spec(1, 1, rows, RosterGenerator.SUBJECTS.size(), 4, 0.9, 42), store)
+                .generate();
+        classId = store.findClass(RosterGenerator.cityName(0), RosterGenerator.classLabel(0));
+    }
+
+    @Benchmark
+    public int grades() {
+        return Report.grades(store, RosterGenerator.cityName(0), classId, 0).rowCount();
+    }
+
+    @Benchmark
+    public int attendance() {
+        return Report.attendance(store, RosterGenerator.cityName(0), classId, 0).rowCount();
+    }
+}
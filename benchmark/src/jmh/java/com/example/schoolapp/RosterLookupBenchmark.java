@@ -0,0 +1,53 @@
+package com.example.schoolapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What opening a subject screen costs in the data layer: resolve (city, class), find the subject and walk
+ * the class roster for its grades and summary. Should not depend on the number of cities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RosterLookupBenchmark {
+    @Param({"1", "200"})
+    public int cities;
+
+    private GradebookStore store;
+    private String[] cityNames;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        store = new GradebookStore();
+        new RosterGenerator(new RosterGenerator.Spec(cities, 8, 30, RosterGenerator.SUBJECTS.size(), 4, 0.9, 42), store)
+                .generate();
+        cityNames = new String[cities];
+        for (int city = 0; city < cities; city++) {
+            cityNames[city] = RosterGenerator.cityName(city);
+        }
+    }
+
+    @Benchmark
+    public long openSubjectScreen() {
+        int i = next++;
+        int classId = store.findClass(cityNames[i % cityNames.length], RosterGenerator.classLabel(i % 8));
+        ClassBook book = store.book(classId);
+        String subject = RosterGenerator.SUBJECTS.get(i % RosterGenerator.SUBJECTS.size());
+        int subjectIndex = book.subjectIndex(store.subjectNames.find(subject));
+        long checksum = Report.gradeSummary(book.stats(), subjectIndex).length();
+        for (int slot = 0; slot < book.studentCount(); slot++) {
+            checksum += book.studentName(slot) + book.gradeCount(slot, subjectIndex);
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.schoolapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The parsing stage of a roster import: a 200,000-row CSV file, about 8 MB, read row by row as the importer's
+ * worker does. Applying batches and saving need the main thread and a file system and are left out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RosterParseBenchmark {
+    private static final int ROWS = 200_000;
+    private static final String[] SUBJECTS = {"Matematyka", "Fizyka", "Język Angielski", "Historia", "Biologia"};
+
+    private byte[] csv;
+
+    @Setup
+    public void setUp() {
+        StringBuilder out = new StringBuilder("city,class,student,subject,grade,present\n");
+        for (int i = 0; i < ROWS; i++) {
+            int student = i / 10;
+            out.append("Miasto ").append(student / 240).append(",Klasa ").append(student / 30 % 8 + 1)
+                    .append(",Uczeń ").append(student % 30).append(',').append(SUBJECTS[i % SUBJECTS.length])
+                    .append(',').append(i % 5 + 1).append(',').append(i % 3 == 0 ? "0" : "1").append('\n');
+        }
+        csv = out.toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    @Benchmark
+    public long parseCsv() throws IOException {
+        long checksum = 0;
+        try (RowReader reader = RowReader.open(new ByteArrayInputStream(csv), RowReader.CSV, 0)) {
+            while (reader.next()) {
+                checksum += reader.lengths[RowReader.STUDENT];
+            }
+        }
+        return checksum;
+    }
+}
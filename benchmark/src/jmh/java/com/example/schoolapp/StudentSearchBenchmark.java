@@ -0,0 +1,53 @@
+package com.example.schoolapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One keystroke of the search screen as {@link StudentSearch} runs it: every match of the query for each prefix
+ * of a student's name as it is typed, with and without the mean and attendance filters, and the first page of
+ * rows. 208 cities is about 50,000 students; a keystroke should stay well inside a 16 ms frame there.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StudentSearchBenchmark {
+    @Param({"3", "208"})
+    public int cities;
+
+    private StudentIndex index;
+    private StudentIndex.Query[] keystrokes;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        GradebookStore store = new GradebookStore();
+        new RosterGenerator(new RosterGenerator.Spec(cities, 8, 30, RosterGenerator.SUBJECTS.size(), 4, 0.9, 42), store)
+                .generate();
+        index = StudentIndex.build(StudentIndex.collect(store), store);
+        String typed = index.name(index.size() / 2);
+        int subjectId = store.subjectNames.find(RosterGenerator.SUBJECTS.get(0));
+        keystrokes = new StudentIndex.Query[2 * typed.length()];
+        for (int i = 1; i <= typed.length(); i++) {
+            keystrokes[2 * i - 2] = new StudentIndex.Query(typed.substring(0, i), -1, Double.NaN, Double.NaN);
+            keystrokes[2 * i - 1] = new StudentIndex.Query(typed.substring(0, i), subjectId, 2.5, 0.8);
+        }
+    }
+
+    @Benchmark
+    public List<StudentSearch.Match> keystroke() {
+        StudentIndex.Query query = keystrokes[next++ % keystrokes.length];
+        int[] students = index.search(query, Integer.MAX_VALUE).students;
+        return StudentSearch.matches(index, students, 0, Math.min(PagedRows.PAGE_SIZE, students.length), query.subjectId);
+    }
+}